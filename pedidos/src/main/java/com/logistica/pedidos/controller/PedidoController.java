@@ -50,6 +50,18 @@ public class PedidoController {
         return ResponseEntity.ok(pedido);
     }
 
+    @Operation(summary = "Buscar pedidos em lote",
+            description = "Retorna os pedidos encontrados entre os IDs informados (até 500 por consulta)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Lista de pedidos retornada com sucesso"),
+            @ApiResponse(responseCode = "400", description = "Quantidade de IDs acima do limite")
+    })
+    @GetMapping("/lote")
+    public ResponseEntity<List<PedidoResponse>> buscarPedidosPorIds(@RequestParam List<Long> ids) {
+        List<PedidoResponse> pedidos = pedidoService.buscarPedidosPorIds(ids);
+        return ResponseEntity.ok(pedidos);
+    }
+
     @Operation(summary = "Listar pedidos por cliente")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Lista de pedidos retornada com sucesso"),
@@ -131,4 +143,21 @@ public class PedidoController {
                 pedidoId, motoristaId, latitude, longitude);
         return ResponseEntity.ok(pedido);
     }
+
+    @Operation(summary = "Recalcular rota do motorista",
+            description = "Recalcula a rota a partir da posição atual do motorista até o ponto de coleta ou de entrega")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Rota recalculada com sucesso"),
+            @ApiResponse(responseCode = "400", description = "Pedido não está em coleta ou em rota"),
+            @ApiResponse(responseCode = "404", description = "Pedido não encontrado")
+    })
+    @PostMapping("/{pedidoId}/rota/recalcular")
+    public ResponseEntity<PedidoResponse> recalcularRota(
+            @PathVariable Long pedidoId,
+            @RequestParam Double latitude,
+            @RequestParam Double longitude) {
+
+        PedidoResponse pedido = pedidoService.recalcularRota(pedidoId, latitude, longitude);
+        return ResponseEntity.ok(pedido);
+    }
 }
@@ -91,6 +91,32 @@ public class PedidoEventSender {
         }
     }
 
+    /**
+     * Envia notificação de rota do motorista recalculada (desvio detectado pelo rastreamento)
+     */
+    public void enviarNotificacaoRotaRecalculada(Pedido pedido) {
+        logger.debug("Enviando evento rota recalculada do pedido {}", pedido.getId());
+        try {
+            Map<String, Object> mensagem = new HashMap<>();
+            mensagem.put("evento", "ROTA_RECALCULADA");
+            mensagem.put("origem", "PEDIDOS_SERVICE");
+            mensagem.put("timestamp", Instant.now().toString());
+
+            Map<String, Object> dados = new HashMap<>();
+            dados.put("pedidoId", pedido.getId());
+            dados.put("motoristaId", pedido.getMotoristaId());
+            dados.put("status", pedido.getStatus());
+            dados.put("dataAtualizacao", pedido.getDataAtualizacao());
+
+            mensagem.put("dados", dados);
+
+            String routingKey = "pedidos.pedido.rota_recalculada";
+            rabbitTemplate.convertAndSend(exchange, routingKey, mensagem);
+        } catch (Exception e) {
+            logger.error("Erro ao enviar notificação de rota recalculada: {}", e.getMessage());
+        }
+    }
+
     /**
      * Envia notificação para motoristas próximos sobre um novo pedido disponível
      */
@@ -15,8 +15,12 @@ public interface PedidoService {
 
     PedidoResponse aceitarPedido(Long pedidoId, Long motoristaId, Double motoristaLatitude, Double motoristaLongitude);
 
+    PedidoResponse recalcularRota(Long pedidoId, Double motoristaLatitude, Double motoristaLongitude);
+
     PedidoResponse buscarPedidoPorId(Long id);
 
+    List<PedidoResponse> buscarPedidosPorIds(List<Long> ids);
+
     List<PedidoResponse> buscarPedidosPorCliente(Long clienteId);
 
     List<PedidoResponse> buscarPedidosPorStatus(StatusPedido status);
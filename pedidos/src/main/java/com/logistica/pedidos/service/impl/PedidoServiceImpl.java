@@ -25,6 +25,8 @@ import java.util.stream.Collectors;
 @Service
 public class PedidoServiceImpl implements PedidoService {
 
+    private static final int MAX_PEDIDOS_POR_LOTE = 500;
+
     private final PedidoRepository pedidoRepository;
     private final UsuarioServiceClient usuarioServiceClient;
     private final OSRMClient osrmService;
@@ -154,6 +156,49 @@ public class PedidoServiceImpl implements PedidoService {
     }
 
 
+    /**
+     * Recalcula a rota do motorista a partir da posição informada, até o ponto de coleta
+     * (aguardando coleta) ou de entrega (em rota). Usado pelo rastreamento quando o
+     * motorista se desvia da rota planejada.
+     */
+    @Override
+    public PedidoResponse recalcularRota(Long pedidoId, Double motoristaLatitude, Double motoristaLongitude) {
+        Pedido pedido = pedidoRepository.findById(pedidoId)
+                .orElseThrow(() -> new RecursoNaoEncontradoException("Pedido não encontrado"));
+
+        String alvoLatitude;
+        String alvoLongitude;
+        if (pedido.getStatus() == StatusPedido.AGUARDANDO_COLETA) {
+            alvoLatitude = pedido.getOrigemLatitude();
+            alvoLongitude = pedido.getOrigemLongitude();
+        } else if (pedido.getStatus() == StatusPedido.EM_ROTA) {
+            alvoLatitude = pedido.getDestinoLatitude();
+            alvoLongitude = pedido.getDestinoLongitude();
+        } else {
+            throw new OperacaoInvalidaException("Rota só pode ser recalculada para pedidos em coleta ou em rota");
+        }
+
+        RotaResponse rotaMotoristaResponse = osrmService.calcularRota(
+                String.valueOf(motoristaLatitude),
+                String.valueOf(motoristaLongitude),
+                alvoLatitude,
+                alvoLongitude
+        );
+
+        try {
+            pedido.setRotaMotoristaJson(objectMapper.writeValueAsString(rotaMotoristaResponse.rota()));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Erro ao processar rota do motorista", e);
+        }
+        pedido.setDataAtualizacao(LocalDateTime.now());
+
+        Pedido pedidoAtualizado = pedidoRepository.save(pedido);
+
+        rabbitMQService.enviarNotificacaoRotaRecalculada(pedidoAtualizado);
+
+        return mapToPedidoResponse(pedidoAtualizado);
+    }
+
     @Scheduled(fixedDelay = 60000) // Executa a cada minuto
     public void verificarPedidosSemAceite() {
         LocalDateTime limiteAceite = LocalDateTime.now().minusMinutes(15); // 15 minutos
@@ -195,6 +240,23 @@ public class PedidoServiceImpl implements PedidoService {
         return mapToPedidoResponse(pedido);
     }
 
+    /**
+     * Busca vários pedidos de uma vez (consulta em lote dos serviços internos).
+     * Ids inexistentes são omitidos da resposta e não há validação de usuários por pedido.
+     */
+    @Override
+    public List<PedidoResponse> buscarPedidosPorIds(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return List.of();
+        }
+        if (ids.size() > MAX_PEDIDOS_POR_LOTE) {
+            throw new OperacaoInvalidaException("No máximo " + MAX_PEDIDOS_POR_LOTE + " pedidos por consulta");
+        }
+        return pedidoRepository.findAllById(ids).stream()
+                .map(this::mapToPedidoResponse)
+                .collect(Collectors.toList());
+    }
+
     /**
      * Lista todos os pedidos de um cliente
      */
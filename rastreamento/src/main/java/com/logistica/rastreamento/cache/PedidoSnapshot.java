@@ -0,0 +1,51 @@
+package com.logistica.rastreamento.cache;
+
+import com.logistica.rastreamento.dto.PedidoDTO;
+import com.logistica.rastreamento.geo.RotaPlanejada;
+import com.logistica.rastreamento.model.StatusPedido;
+
+import java.time.LocalDateTime;
+
+/**
+ * Cópia local e imutável dos dados de um pedido usados pelo rastreamento.
+ * A rota é a última calculada pelo serviço de pedidos (origem → destino na criação,
+ * motorista → origem no aceite); null se ausente ou inválida.
+ */
+public record PedidoSnapshot(Long id,
+                             Double origemLatitude,
+                             Double origemLongitude,
+                             Double destinoLatitude,
+                             Double destinoLongitude,
+                             Long motoristaId,
+                             StatusPedido status,
+                             Integer tempoEstimadoMinutos,
+                             Double distanciaKm,
+                             LocalDateTime dataCriacao,
+                             RotaPlanejada rota) {
+
+    public static PedidoSnapshot de(PedidoDTO pedido) {
+        return new PedidoSnapshot(
+                pedido.getId(),
+                pedido.getOrigemLatitude(),
+                pedido.getOrigemLongitude(),
+                pedido.getDestinoLatitude(),
+                pedido.getDestinoLongitude(),
+                pedido.getMotoristaId(),
+                StatusPedido.valueOf(pedido.getStatus()),
+                pedido.getTempoEstimadoMinutos(),
+                pedido.getDistanciaKm(),
+                pedido.getDataCriacao(),
+                pedido.getRotaMotorista() != null ? RotaPlanejada.de(pedido.getRotaMotorista().getRota()) : null
+        );
+    }
+
+    public PedidoSnapshot comStatus(StatusPedido novoStatus, Long novoMotoristaId) {
+        return new PedidoSnapshot(id, origemLatitude, origemLongitude, destinoLatitude, destinoLongitude,
+                novoMotoristaId != null ? novoMotoristaId : motoristaId, novoStatus,
+                tempoEstimadoMinutos, distanciaKm, dataCriacao, rota);
+    }
+
+    public boolean finalizado() {
+        return status == StatusPedido.ENTREGUE || status == StatusPedido.CANCELADO;
+    }
+}
@@ -0,0 +1,143 @@
+package com.logistica.rastreamento.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.logistica.rastreamento.dto.PedidoDTO;
+import com.logistica.rastreamento.model.StatusPedido;
+import com.logistica.rastreamento.service.PedidoServiceClient;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache local dos pedidos consultados pelo rastreamento.
+ * É preenchido no primeiro uso (consulta ao microsserviço de pedidos) e mantido
+ * atualizado pelos eventos publicados pelo PedidoEventSender, de forma que os
+ * caminhos de ingestão e de leitura não façam chamadas síncronas a pedidos.
+ *
+ * Cada cópia vale pelo tempo de vida configurado e depois é recarregada, para corrigir
+ * eventos perdidos; se a recarga falhar, a cópia antiga continua em uso. Um evento recebido
+ * enquanto o pedido é consultado descarta o resultado da consulta, que poderia ser anterior
+ * a ele. Pedidos finalizados saem do cache no evento de finalização, as cópias vencidas são
+ * removidas periodicamente e, no limite de entradas, novos pedidos deixam de ser guardados.
+ */
+@Component
+public class PedidoSnapshotCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(PedidoSnapshotCache.class);
+
+    // Comparada por identidade: sem snapshot, marca um pedido em consulta ao microsserviço
+    private static final class Entrada {
+        private final PedidoSnapshot snapshot;
+        private final long expiraEmNanos;
+
+        private Entrada(PedidoSnapshot snapshot, long expiraEmNanos) {
+            this.snapshot = snapshot;
+            this.expiraEmNanos = expiraEmNanos;
+        }
+
+        private boolean vencida(long agora) {
+            return agora - expiraEmNanos >= 0;
+        }
+    }
+
+    private final PedidoServiceClient pedidoServiceClient;
+    private final ObjectMapper objectMapper;
+    private final int maxEntradas;
+    private final long tempoVidaNanos;
+    private final Map<Long, Entrada> pedidos = new ConcurrentHashMap<>();
+
+    private final Counter acertos;
+    private final Counter falhas;
+    private final Counter naoArmazenados;
+
+    public PedidoSnapshotCache(PedidoServiceClient pedidoServiceClient,
+                               ObjectMapper objectMapper,
+                               MeterRegistry meterRegistry,
+                               @Value("${rastreamento.cache.pedido.max-entradas:50000}") int maxEntradas,
+                               @Value("${rastreamento.cache.pedido.tempo-vida-segundos:300}") long tempoVidaSegundos) {
+        this.pedidoServiceClient = pedidoServiceClient;
+        this.objectMapper = objectMapper;
+        this.maxEntradas = maxEntradas;
+        this.tempoVidaNanos = TimeUnit.SECONDS.toNanos(tempoVidaSegundos);
+
+        meterRegistry.gaugeMapSize("rastreamento.cache.pedido.tamanho", Tags.empty(), pedidos);
+        this.acertos = meterRegistry.counter("rastreamento.cache.pedido.acertos");
+        this.falhas = meterRegistry.counter("rastreamento.cache.pedido.falhas");
+        this.naoArmazenados = meterRegistry.counter("rastreamento.cache.pedido.nao-armazenados");
+    }
+
+    /**
+     * Retorna o pedido do cache ou, se ausente ou vencido, consulta o microsserviço de pedidos.
+     */
+    public PedidoSnapshot buscar(Long pedidoId) {
+        Entrada entrada = pedidos.get(pedidoId);
+        if (entrada != null && entrada.snapshot != null && !entrada.vencida(System.nanoTime())) {
+            acertos.increment();
+            return entrada.snapshot;
+        }
+        falhas.increment();
+
+        // Sem marcador (outra consulta em andamento ou cache cheio), o resultado não é guardado
+        Entrada marcador = new Entrada(null, 0);
+        boolean marcado = entrada != null
+                ? entrada.snapshot != null && pedidos.replace(pedidoId, entrada, marcador)
+                : pedidos.size() < maxEntradas && pedidos.putIfAbsent(pedidoId, marcador) == null;
+        PedidoSnapshot snapshot;
+        try {
+            snapshot = PedidoSnapshot.de(
+                    objectMapper.convertValue(pedidoServiceClient.buscarPedidoPorId(pedidoId), PedidoDTO.class));
+        } catch (RuntimeException e) {
+            if (marcado && entrada != null && entrada.snapshot != null) {
+                // Mantém a cópia vencida por mais um período em vez de consultar a cada localização
+                logger.warn("Erro ao recarregar o pedido {}, mantendo a cópia anterior: {}", pedidoId, e.getMessage());
+                pedidos.replace(pedidoId, marcador, new Entrada(entrada.snapshot, System.nanoTime() + tempoVidaNanos));
+                return entrada.snapshot;
+            }
+            if (marcado) {
+                pedidos.remove(pedidoId, marcador);
+            }
+            throw e;
+        }
+        if (!marcado || !pedidos.replace(pedidoId, marcador, new Entrada(snapshot, System.nanoTime() + tempoVidaNanos))) {
+            naoArmazenados.increment();
+        }
+        return snapshot;
+    }
+
+    /**
+     * Atualiza o status de um pedido já presente no cache. Pedidos ausentes são
+     * ignorados e serão carregados no próximo uso; pedidos finalizados são removidos.
+     */
+    public void atualizarStatus(Long pedidoId, StatusPedido novoStatus, Long motoristaId) {
+        pedidos.computeIfPresent(pedidoId, (id, entrada) -> {
+            if (entrada.snapshot == null || novoStatus == StatusPedido.ENTREGUE || novoStatus == StatusPedido.CANCELADO) {
+                return null;
+            }
+            return new Entrada(entrada.snapshot.comStatus(novoStatus, motoristaId), entrada.expiraEmNanos);
+        });
+    }
+
+    public void invalidar(Long pedidoId) {
+        pedidos.remove(pedidoId);
+    }
+
+    @Scheduled(fixedDelayString = "${rastreamento.cache.pedido.intervalo-limpeza-ms:60000}")
+    public void removerVencidos() {
+        long agora = System.nanoTime();
+        int antes = pedidos.size();
+        pedidos.values().removeIf(entrada -> entrada.snapshot != null && entrada.vencida(agora));
+        int removidos = antes - pedidos.size();
+        if (removidos > 0) {
+            logger.debug("{} pedidos vencidos removidos do cache", removidos);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.logistica.rastreamento.cache;
+
+import com.logistica.rastreamento.model.Localizacao;
+import com.logistica.rastreamento.model.PosicaoAtual;
+import com.logistica.rastreamento.model.StatusVeiculo;
+
+import java.time.LocalDateTime;
+
+/**
+ * Cópia imutável da última localização conhecida de um motorista ou pedido.
+ */
+public record UltimaPosicao(long motoristaId,
+                            Long pedidoId,
+                            double latitude,
+                            double longitude,
+                            LocalDateTime timestamp,
+                            StatusVeiculo statusVeiculo) {
+
+    public static UltimaPosicao de(Localizacao localizacao) {
+        return new UltimaPosicao(
+                localizacao.getMotoristaId(),
+                localizacao.getPedidoId(),
+                localizacao.getLatitude(),
+                localizacao.getLongitude(),
+                localizacao.getTimestamp(),
+                localizacao.getStatusVeiculo()
+        );
+    }
+
+    public static UltimaPosicao de(PosicaoAtual posicaoAtual) {
+        return new UltimaPosicao(
+                posicaoAtual.getMotoristaId(),
+                posicaoAtual.getPedidoId(),
+                posicaoAtual.getLatitude(),
+                posicaoAtual.getLongitude(),
+                posicaoAtual.getTimestamp(),
+                posicaoAtual.getStatusVeiculo()
+        );
+    }
+
+    public Localizacao paraLocalizacao() {
+        Localizacao localizacao = new Localizacao();
+        localizacao.setMotoristaId(motoristaId);
+        localizacao.setPedidoId(pedidoId);
+        localizacao.setLatitude(latitude);
+        localizacao.setLongitude(longitude);
+        localizacao.setTimestamp(timestamp);
+        localizacao.setStatusVeiculo(statusVeiculo);
+        return localizacao;
+    }
+}
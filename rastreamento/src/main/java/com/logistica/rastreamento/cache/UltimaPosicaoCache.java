@@ -0,0 +1,131 @@
+package com.logistica.rastreamento.cache;
+
+import com.logistica.rastreamento.model.Localizacao;
+import com.logistica.rastreamento.repository.LocalizacaoRepository;
+import com.logistica.rastreamento.repository.PosicaoAtualRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Armazena em memória a última localização de cada motorista e de cada pedido.
+ * É mantido pelo caminho de ingestão e aquecido a partir do banco na inicialização,
+ * de forma que as leituras de "posição atual" não precisem consultar o Postgres.
+ * Em caso de ausência (cache frio), consulta o repositório e guarda o resultado.
+ */
+@Component
+public class UltimaPosicaoCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(UltimaPosicaoCache.class);
+
+    private final LocalizacaoRepository localizacaoRepository;
+    private final PosicaoAtualRepository posicaoAtualRepository;
+    private final int janelaAquecimentoHoras;
+    private final Map<Long, UltimaPosicao> porMotorista = new ConcurrentHashMap<>();
+    private final Map<Long, UltimaPosicao> porPedido = new ConcurrentHashMap<>();
+
+    private final Counter acertosMotorista;
+    private final Counter falhasMotorista;
+    private final Counter acertosPedido;
+    private final Counter falhasPedido;
+
+    public UltimaPosicaoCache(LocalizacaoRepository localizacaoRepository,
+                              PosicaoAtualRepository posicaoAtualRepository,
+                              MeterRegistry meterRegistry,
+                              @Value("${rastreamento.cache.posicao.janela-aquecimento-horas:24}") int janelaAquecimentoHoras) {
+        this.localizacaoRepository = localizacaoRepository;
+        this.posicaoAtualRepository = posicaoAtualRepository;
+        this.janelaAquecimentoHoras = janelaAquecimentoHoras;
+
+        meterRegistry.gaugeMapSize("rastreamento.cache.posicao.tamanho", Tags.of("chave", "motorista"), porMotorista);
+        meterRegistry.gaugeMapSize("rastreamento.cache.posicao.tamanho", Tags.of("chave", "pedido"), porPedido);
+        this.acertosMotorista = meterRegistry.counter("rastreamento.cache.posicao.acertos", "chave", "motorista");
+        this.falhasMotorista = meterRegistry.counter("rastreamento.cache.posicao.falhas", "chave", "motorista");
+        this.acertosPedido = meterRegistry.counter("rastreamento.cache.posicao.acertos", "chave", "pedido");
+        this.falhasPedido = meterRegistry.counter("rastreamento.cache.posicao.falhas", "chave", "pedido");
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(0)
+    public void aquecer() {
+        try {
+            if (posicaoAtualRepository.count() == 0) {
+                int preenchidas = posicaoAtualRepository.preencherAPartirDoHistorico();
+                logger.info("Tabela posicao_atual preenchida a partir do histórico: {} motoristas", preenchidas);
+            }
+            posicaoAtualRepository.findAll().forEach(p -> registrar(UltimaPosicao.de(p)));
+            localizacaoRepository.findUltimasPorPedidoDesde(LocalDateTime.now().minusHours(janelaAquecimentoHoras))
+                    .forEach(this::registrar);
+            logger.info("Cache de posições aquecido: {} motoristas, {} pedidos", porMotorista.size(), porPedido.size());
+        } catch (Exception e) {
+            logger.error("Erro ao aquecer cache de posições: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Registra uma nova localização, ignorando-a se já houver uma mais recente.
+     */
+    public UltimaPosicao registrar(Localizacao localizacao) {
+        return registrar(UltimaPosicao.de(localizacao));
+    }
+
+    /**
+     * Registra uma posição recebida de outra instância.
+     *
+     * @return false se já havia uma posição mais recente do motorista
+     */
+    public boolean registrarSeMaisRecente(UltimaPosicao posicao) {
+        return registrar(posicao) == porMotorista.get(posicao.motoristaId());
+    }
+
+    private UltimaPosicao registrar(UltimaPosicao posicao) {
+        porMotorista.merge(posicao.motoristaId(), posicao, UltimaPosicaoCache::maisRecente);
+        if (posicao.pedidoId() != null) {
+            porPedido.merge(posicao.pedidoId(), posicao, UltimaPosicaoCache::maisRecente);
+        }
+        return posicao;
+    }
+
+    public Optional<UltimaPosicao> buscarPorMotorista(Long motoristaId) {
+        UltimaPosicao posicao = porMotorista.get(motoristaId);
+        if (posicao != null) {
+            acertosMotorista.increment();
+            return Optional.of(posicao);
+        }
+        falhasMotorista.increment();
+        return localizacaoRepository.findTopByMotoristaIdOrderByTimestampDesc(motoristaId)
+                .map(this::registrar);
+    }
+
+    public Optional<UltimaPosicao> buscarPorPedido(Long pedidoId) {
+        UltimaPosicao posicao = porPedido.get(pedidoId);
+        if (posicao != null) {
+            acertosPedido.increment();
+            return Optional.of(posicao);
+        }
+        falhasPedido.increment();
+        return localizacaoRepository.findTopByPedidoIdOrderByTimestampDesc(pedidoId)
+                .map(this::registrar);
+    }
+
+    public Collection<UltimaPosicao> motoristas() {
+        return porMotorista.values();
+    }
+
+    private static UltimaPosicao maisRecente(UltimaPosicao atual, UltimaPosicao nova) {
+        return nova.timestamp().isBefore(atual.timestamp()) ? atual : nova;
+    }
+}
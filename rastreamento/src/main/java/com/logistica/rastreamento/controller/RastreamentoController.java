@@ -1,29 +1,49 @@
 package com.logistica.rastreamento.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.logistica.rastreamento.cache.PedidoSnapshot;
 import com.logistica.rastreamento.dto.AtualizacaoLocalizacaoDTO;
+import com.logistica.rastreamento.dto.CursorHistorico;
 import com.logistica.rastreamento.dto.LocalizacaoDTO;
 import com.logistica.rastreamento.dto.MotoristaProximoDTO;
+import com.logistica.rastreamento.dto.PaginaHistoricoDTO;
+import com.logistica.rastreamento.exception.OperacaoInvalidaException;
 import com.logistica.rastreamento.service.RastreamentoService;
+import com.logistica.rastreamento.service.RelatorioFrotaService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 
 @RestController
 @RequestMapping("/api/rastreamento")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = "X-Proximo-Cursor")
 public class RastreamentoController {
 
+    private static final String CABECALHO_PROXIMO_CURSOR = "X-Proximo-Cursor";
+    private static final String MEDIA_TYPE_NDJSON = "application/x-ndjson";
+    private static final int LIMITE_PADRAO_PAGINA = 500;
+    private static final int LIMITE_MAXIMO_PAGINA = 5000;
+
     private final RastreamentoService rastreamentoService;
+    private final RelatorioFrotaService relatorioFrotaService;
+    private final ObjectMapper objectMapper;
 
-    public RastreamentoController(RastreamentoService rastreamentoService) {
+    public RastreamentoController(RastreamentoService rastreamentoService, RelatorioFrotaService relatorioFrotaService,
+                                  ObjectMapper objectMapper) {
         this.rastreamentoService = rastreamentoService;
+        this.relatorioFrotaService = relatorioFrotaService;
+        this.objectMapper = objectMapper;
     }
 
     @Operation(summary = "Atualizar localização de entrega",
@@ -67,15 +87,66 @@ public class RastreamentoController {
     }
 
     @Operation(summary = "Histórico de localizações",
-            description = "Retorna o histórico de localizações de um pedido")
+            description = "Retorna o histórico de localizações de um pedido, opcionalmente simplificado " +
+                    "(tolerância em metros e/ou número máximo de pontos). Com after/limit, retorna uma página " +
+                    "e o cursor da próxima no cabeçalho " + CABECALHO_PROXIMO_CURSOR + "; a paginação não pode ser " +
+                    "combinada com a simplificação")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Histórico retornado com sucesso"),
+            @ApiResponse(responseCode = "400", description = "Cursor de paginação inválido ou paginação combinada com simplificação"),
             @ApiResponse(responseCode = "404", description = "Pedido não encontrado")
     })
     @GetMapping("/historico/{pedidoId}")
-    public ResponseEntity<List<LocalizacaoDTO>> consultarHistoricoLocalizacao(@PathVariable Long pedidoId) {
-        List<LocalizacaoDTO> historico = rastreamentoService.buscarHistoricoLocalizacoes(pedidoId);
-        return ResponseEntity.ok(historico);
+    public ResponseEntity<List<LocalizacaoDTO>> consultarHistoricoLocalizacao(
+            @PathVariable Long pedidoId,
+            @RequestParam(required = false) Double tolerancia,
+            @RequestParam(required = false) Integer maxPontos,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit) {
+
+        if (after == null && limit == null) {
+            List<LocalizacaoDTO> historico = rastreamentoService.buscarHistoricoLocalizacoes(pedidoId, tolerancia, maxPontos);
+            return ResponseEntity.ok(historico);
+        }
+
+        // A simplificação depende da trajetória inteira e não se aplica a uma página isolada
+        if (tolerancia != null || maxPontos != null) {
+            throw new OperacaoInvalidaException("Os parâmetros tolerancia e maxPontos não podem ser usados com after/limit");
+        }
+
+        CursorHistorico cursor = after != null ? CursorHistorico.de(after) : null;
+        int limite = limit != null ? Math.max(1, Math.min(limit, LIMITE_MAXIMO_PAGINA)) : LIMITE_PADRAO_PAGINA;
+        PaginaHistoricoDTO pagina = rastreamentoService.buscarHistoricoPaginado(pedidoId, cursor, limite);
+
+        ResponseEntity.BodyBuilder resposta = ResponseEntity.ok();
+        if (pagina.getProximoCursor() != null) {
+            resposta.header(CABECALHO_PROXIMO_CURSOR, pagina.getProximoCursor().toString());
+        }
+        return resposta.body(pagina.getLocalizacoes());
+    }
+
+    @Operation(summary = "Histórico de localizações (streaming)",
+            description = "Transmite o histórico completo de um pedido em NDJSON (um objeto por linha), " +
+                    "sem carregá-lo inteiro em memória")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Histórico transmitido com sucesso"),
+            @ApiResponse(responseCode = "404", description = "Pedido não encontrado")
+    })
+    @GetMapping(value = "/historico/{pedidoId}/stream", produces = MEDIA_TYPE_NDJSON)
+    public ResponseEntity<StreamingResponseBody> transmitirHistoricoLocalizacao(@PathVariable Long pedidoId) {
+        // Resolvido antes do corpo: depois que o streaming começa, o status 200 já foi enviado
+        PedidoSnapshot pedido = rastreamentoService.buscarPedidoDoHistorico(pedidoId);
+        StreamingResponseBody corpo = saida -> rastreamentoService.transmitirHistoricoLocalizacoes(pedido, localizacao -> {
+            try {
+                saida.write(objectMapper.writeValueAsBytes(localizacao));
+                saida.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(MEDIA_TYPE_NDJSON))
+                .body(corpo);
     }
 
     @Operation(summary = "Estatísticas de rastreamento",
@@ -96,6 +167,31 @@ public class RastreamentoController {
         return ResponseEntity.ok(estatisticas);
     }
 
+    @Operation(summary = "Relatório de estatísticas da frota",
+            description = "Calcula as estatísticas de todos os motoristas com registros no período e as transmite " +
+                    "em NDJSON (um motorista por linha, na ordem em que ficam prontas)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Relatório transmitido com sucesso")
+    })
+    @GetMapping(value = "/estatisticas/frota", produces = MEDIA_TYPE_NDJSON)
+    public ResponseEntity<StreamingResponseBody> gerarRelatorioFrota(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dataInicio,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dataFim) {
+
+        StreamingResponseBody corpo = saida -> relatorioFrotaService.gerarEstatisticasFrota(dataInicio, dataFim, estatisticas -> {
+            try {
+                saida.write(objectMapper.writeValueAsBytes(estatisticas));
+                saida.write('\n');
+                saida.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(MEDIA_TYPE_NDJSON))
+                .body(corpo);
+    }
+
     @PostMapping("/pedido/{pedidoId}/coleta")
     public ResponseEntity<Boolean> confirmarColetaPedido(
             @PathVariable Long pedidoId,
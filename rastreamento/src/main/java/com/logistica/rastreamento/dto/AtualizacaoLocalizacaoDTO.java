@@ -15,4 +15,6 @@ public class AtualizacaoLocalizacaoDTO {
     private Double latitude;
     private Double longitude;
     private String statusVeiculo;
+    // Momento da leitura no dispositivo (epoch), quando informado
+    private Long timestamp;
 }
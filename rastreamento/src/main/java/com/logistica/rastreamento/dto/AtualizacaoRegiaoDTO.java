@@ -0,0 +1,24 @@
+package com.logistica.rastreamento.dto;
+
+import com.logistica.rastreamento.cache.UltimaPosicao;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Quadro de atualizações de uma região: veículos que entraram, que se moveram dentro dela
+ * e que saíram desde o quadro anterior. O primeiro quadro traz todos os veículos da região.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class AtualizacaoRegiaoDTO {
+    private boolean inicial;
+    private List<UltimaPosicao> entraram;
+    private List<UltimaPosicao> atualizados;
+    private List<Long> sairam;
+}
@@ -0,0 +1,29 @@
+package com.logistica.rastreamento.dto;
+
+import com.logistica.rastreamento.exception.OperacaoInvalidaException;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Posição no histórico de localizações para paginação por chave (keyset), no formato "timestamp,id".
+ * A página seguinte contém os registros anteriores a essa posição na ordem (timestamp desc, id desc).
+ */
+public record CursorHistorico(LocalDateTime timestamp, Long id) {
+
+    public static CursorHistorico de(String valor) {
+        int separador = valor.lastIndexOf(',');
+        try {
+            return new CursorHistorico(
+                    LocalDateTime.parse(valor.substring(0, separador)),
+                    Long.valueOf(valor.substring(separador + 1)));
+        } catch (IndexOutOfBoundsException | DateTimeParseException | NumberFormatException e) {
+            throw new OperacaoInvalidaException("Cursor de paginação inválido: " + valor);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return timestamp + "," + id;
+    }
+}
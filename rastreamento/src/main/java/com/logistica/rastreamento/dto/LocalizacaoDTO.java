@@ -21,4 +21,6 @@ public class LocalizacaoDTO {
     private String statusVeiculo;
     private Double distanciaDestinoKm;
     private Integer tempoEstimadoMinutos;
+    // Null quando o pedido não tem rota planejada compatível com o alvo atual
+    private Boolean foraDaRota;
 }
@@ -0,0 +1,18 @@
+package com.logistica.rastreamento.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class PaginaHistoricoDTO {
+    private List<LocalizacaoDTO> localizacoes;
+    // Nulo quando não há mais registros
+    private CursorHistorico proximoCursor;
+}
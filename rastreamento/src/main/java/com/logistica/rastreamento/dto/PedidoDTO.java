@@ -5,6 +5,8 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
+import java.time.LocalDateTime;
+
 @Getter
 @Setter
 @AllArgsConstructor
@@ -19,4 +21,6 @@ public class PedidoDTO {
     private String status;
     private Integer tempoEstimadoMinutos;
     private Double distanciaKm;
+    private LocalDateTime dataCriacao;
+    private RotaDTO rotaMotorista;
 }
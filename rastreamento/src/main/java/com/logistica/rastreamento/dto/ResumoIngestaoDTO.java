@@ -0,0 +1,16 @@
+package com.logistica.rastreamento.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class ResumoIngestaoDTO {
+    private int aceitas;
+    private int rejeitadas;
+    private int duplicadas;
+}
@@ -0,0 +1,18 @@
+package com.logistica.rastreamento.dto;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class RotaDTO {
+    private Double distanciaKm;
+    private Integer tempoEstimadoMinutos;
+    // Geometria GeoJSON LineString calculada pelo OSRM
+    private JsonNode rota;
+}
@@ -0,0 +1,155 @@
+package com.logistica.rastreamento.geo;
+
+import com.logistica.rastreamento.cache.PedidoSnapshot;
+import com.logistica.rastreamento.cache.UltimaPosicao;
+import com.logistica.rastreamento.cache.UltimaPosicaoCache;
+import com.logistica.rastreamento.exception.OperacaoInvalidaException;
+import com.logistica.rastreamento.exception.RecursoNaoEncontradoException;
+import com.logistica.rastreamento.message.PedidoChegadaEventSender;
+import com.logistica.rastreamento.model.Localizacao;
+import com.logistica.rastreamento.model.StatusPedido;
+import com.logistica.rastreamento.repository.PosicaoAtualRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.logistica.rastreamento.util.DistanciaUtils.calculateDistanceInKm;
+
+/**
+ * Cercas virtuais circulares em torno da origem e do destino dos pedidos ativos.
+ * A cerca ativa depende do status do pedido (origem enquanto aguarda coleta, destino
+ * enquanto em rota) e é avaliada a cada localização ingerida. Na entrada do motorista
+ * atribuído é publicado CHEGOU_ORIGEM ou CHEGOU_DESTINO; a saída só é considerada além
+ * de uma margem (histerese), para que o ruído do GPS na borda não gere eventos repetidos.
+ */
+@Component
+public class CercasVirtuaisPedidos {
+
+    public enum Alvo {
+        ORIGEM("CHEGOU_ORIGEM"),
+        DESTINO("CHEGOU_DESTINO");
+
+        private final String evento;
+
+        Alvo(String evento) {
+            this.evento = evento;
+        }
+    }
+
+    // dentro considera a histerese (só para os eventos); distanciaKm e timestamp são os da última localização
+    private record Estado(Alvo alvo, long motoristaId, boolean dentro, double distanciaKm, LocalDateTime timestamp) {
+    }
+
+    private final UltimaPosicaoCache ultimaPosicaoCache;
+    private final PosicaoAtualRepository posicaoAtualRepository;
+    private final PedidoChegadaEventSender pedidoChegadaEventSender;
+    private final double raioKm;
+    private final double histereseKm;
+    private final Map<Long, Estado> estados = new ConcurrentHashMap<>();
+
+    private final Counter chegadasOrigem;
+    private final Counter chegadasDestino;
+
+    public CercasVirtuaisPedidos(UltimaPosicaoCache ultimaPosicaoCache,
+                                 PosicaoAtualRepository posicaoAtualRepository,
+                                 PedidoChegadaEventSender pedidoChegadaEventSender,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${rastreamento.cercas.raio-km:1.0}") double raioKm,
+                                 @Value("${rastreamento.cercas.histerese-km:0.2}") double histereseKm) {
+        this.ultimaPosicaoCache = ultimaPosicaoCache;
+        this.posicaoAtualRepository = posicaoAtualRepository;
+        this.pedidoChegadaEventSender = pedidoChegadaEventSender;
+        this.raioKm = raioKm;
+        this.histereseKm = histereseKm;
+
+        meterRegistry.gaugeMapSize("rastreamento.cercas.ativas", Tags.empty(), estados);
+        this.chegadasOrigem = meterRegistry.counter("rastreamento.cercas.chegadas", "alvo", "origem");
+        this.chegadasDestino = meterRegistry.counter("rastreamento.cercas.chegadas", "alvo", "destino");
+    }
+
+    /**
+     * Avalia a cerca ativa do pedido com a nova localização. Localizações de motoristas
+     * que não estão atribuídos ao pedido são ignoradas.
+     */
+    public void avaliar(Localizacao localizacao, PedidoSnapshot pedido) {
+        Alvo alvo = alvo(pedido.status());
+        if (alvo == null) {
+            estados.remove(pedido.id());
+            return;
+        }
+        Double latitudeAlvo = alvo == Alvo.ORIGEM ? pedido.origemLatitude() : pedido.destinoLatitude();
+        Double longitudeAlvo = alvo == Alvo.ORIGEM ? pedido.origemLongitude() : pedido.destinoLongitude();
+        long motoristaId = localizacao.getMotoristaId();
+        if (latitudeAlvo == null || longitudeAlvo == null
+                || (pedido.motoristaId() != null && pedido.motoristaId() != motoristaId)) {
+            return;
+        }
+
+        double distancia = calculateDistanceInKm(localizacao.getLatitude(), localizacao.getLongitude(),
+                latitudeAlvo, longitudeAlvo);
+        boolean[] chegou = {false};
+        estados.compute(pedido.id(), (id, anterior) -> {
+            boolean estavaDentro = anterior != null && anterior.alvo() == alvo
+                    && anterior.motoristaId() == motoristaId && anterior.dentro();
+            boolean dentro = distancia <= (estavaDentro ? raioKm + histereseKm : raioKm);
+            chegou[0] = dentro && !estavaDentro;
+            return new Estado(alvo, motoristaId, dentro, distancia, localizacao.getTimestamp());
+        });
+
+        if (chegou[0]) {
+            (alvo == Alvo.ORIGEM ? chegadasOrigem : chegadasDestino).increment();
+            pedidoChegadaEventSender.enviarNotificacaoChegada(alvo.evento, pedido.id(), motoristaId,
+                    localizacao.getLatitude(), localizacao.getLongitude(), distancia);
+        }
+    }
+
+    /**
+     * Indica se o motorista está dentro do raio do alvo informado, sem a margem de histerese.
+     * Usa a distância da última localização avaliada pela ingestão, a menos que haja posição
+     * mais recente do motorista no cache ou na tabela posicao_atual (localizações recebidas
+     * por outra instância, ou pedido ainda não avaliado após um reinício).
+     */
+    public boolean motoristaNoAlvo(PedidoSnapshot pedido, Long motoristaId, Alvo alvo) {
+        Double latitudeAlvo = alvo == Alvo.ORIGEM ? pedido.origemLatitude() : pedido.destinoLatitude();
+        Double longitudeAlvo = alvo == Alvo.ORIGEM ? pedido.origemLongitude() : pedido.destinoLongitude();
+        if (latitudeAlvo == null || longitudeAlvo == null) {
+            throw new OperacaoInvalidaException(alvo == Alvo.ORIGEM
+                    ? "Pedido sem coordenadas do ponto de coleta"
+                    : "Pedido sem coordenadas do ponto de entrega");
+        }
+
+        UltimaPosicao posicao = ultimaPosicaoCache.buscarPorMotorista(motoristaId).orElse(null);
+        UltimaPosicao gravada = posicaoAtualRepository.findById(motoristaId).map(UltimaPosicao::de).orElse(null);
+        if (gravada != null && (posicao == null || gravada.timestamp().isAfter(posicao.timestamp()))) {
+            posicao = gravada;
+        }
+
+        Estado estado = estados.get(pedido.id());
+        if (estado != null && estado.alvo() == alvo && estado.motoristaId() == motoristaId
+                && (posicao == null || !posicao.timestamp().isAfter(estado.timestamp()))) {
+            return estado.distanciaKm() <= raioKm;
+        }
+        if (posicao == null) {
+            throw new RecursoNaoEncontradoException("Localização não encontrada");
+        }
+        return calculateDistanceInKm(posicao.latitude(), posicao.longitude(), latitudeAlvo, longitudeAlvo) <= raioKm;
+    }
+
+    public void remover(Long pedidoId) {
+        estados.remove(pedidoId);
+    }
+
+    private static Alvo alvo(StatusPedido status) {
+        return switch (status) {
+            case AGUARDANDO_COLETA -> Alvo.ORIGEM;
+            case EM_ROTA -> Alvo.DESTINO;
+            default -> null;
+        };
+    }
+}
@@ -0,0 +1,244 @@
+package com.logistica.rastreamento.geo;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Índice dos corredores das rotas planejadas dos pedidos em andamento, para encontrar os
+ * veículos cujo trajeto restante passa por um ponto (um incidente reportado).
+ *
+ * Cada segmento da rota é indexado nas células da grade cobertas pelo seu retângulo
+ * envolvente. Uma consulta visita só as células do círculo consultado e mede a distância
+ * exata aos segmentos encontrados nelas, ignorando os que ficam atrás da posição atual do
+ * veículo (no segmento atual, os pontos cuja projeção fica atrás dela).
+ *
+ * A rota de um pedido é indexada uma única vez; as localizações seguintes apenas
+ * atualizam o segmento atual.
+ */
+@Component
+public class CorredoresRotasIndex {
+
+    private static final double KM_POR_GRAU_LATITUDE = 111.32;
+
+    /**
+     * Pedido cuja rota restante passa pelo ponto consultado.
+     *
+     * @param distanciaAtePontoKm distância ao longo da rota, da posição atual à projeção do ponto no trecho mais próximo
+     * @param distanciaDaRotaKm   distância do ponto ao trecho da rota
+     */
+    public record Afetado(long pedidoId, long motoristaId, double distanciaAtePontoKm, double distanciaDaRotaKm) {
+    }
+
+    private static final class Corredor {
+        private final RotaPlanejada rota;
+        private final long motoristaId;
+        // Segmentos da rota em cada célula coberta pelos seus retângulos envolventes
+        private final Map<Long, int[]> segmentosPorCelula;
+        private volatile int segmentoAtual;
+        private volatile double percorridoMetros;
+
+        private Corredor(RotaPlanejada rota, long motoristaId, Map<Long, int[]> segmentosPorCelula) {
+            this.rota = rota;
+            this.motoristaId = motoristaId;
+            this.segmentosPorCelula = segmentosPorCelula;
+        }
+    }
+
+    private final double tamanhoCelulaGraus;
+    private final Map<Long, Corredor> corredores = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Long>> pedidosPorCelula = new ConcurrentHashMap<>();
+
+    public CorredoresRotasIndex(MeterRegistry meterRegistry,
+                                @Value("${rastreamento.rotas.tamanho-celula-corredor-km:1.0}") double tamanhoCelulaKm) {
+        this.tamanhoCelulaGraus = tamanhoCelulaKm / KM_POR_GRAU_LATITUDE;
+
+        meterRegistry.gaugeMapSize("rastreamento.rotas.corredores", Tags.empty(), corredores);
+    }
+
+    /**
+     * Registra a posição do veículo na rota do pedido (segmento e comprimento percorrido da
+     * projeção). A rota só é indexada quando muda.
+     */
+    public void atualizar(long pedidoId, long motoristaId, RotaPlanejada rota, int segmento, double percorridoMetros) {
+        Corredor atual = corredores.get(pedidoId);
+        if (atual == null || atual.rota != rota || atual.motoristaId != motoristaId) {
+            Corredor novo = new Corredor(rota, motoristaId, mapearCelulas(rota));
+            atual = corredores.compute(pedidoId, (id, anterior) -> {
+                if (anterior != null) {
+                    desindexar(id, anterior);
+                }
+                indexar(id, novo);
+                return novo;
+            });
+        }
+        atual.segmentoAtual = segmento;
+        atual.percorridoMetros = percorridoMetros;
+    }
+
+    public void remover(long pedidoId) {
+        corredores.computeIfPresent(pedidoId, (id, corredor) -> {
+            desindexar(id, corredor);
+            return null;
+        });
+    }
+
+    public boolean contem(long pedidoId) {
+        return corredores.containsKey(pedidoId);
+    }
+
+    /**
+     * Pedidos cuja rota, a partir da posição atual do veículo, passa a até raioKm do ponto,
+     * ordenados pela distância até ele ao longo da rota. O raio é limitado a
+     * {@link GradeEspacial#RAIO_MAXIMO_KM} e, quando o retângulo dele cobre mais células que as
+     * ocupadas, os corredores são percorridos diretamente.
+     *
+     * @throws IllegalArgumentException se o raio não for um número positivo
+     */
+    public List<Afetado> buscarAfetados(double latitude, double longitude, double raioKm) {
+        if (!(raioKm > 0) || Double.isInfinite(raioKm)) {
+            throw new IllegalArgumentException("Raio de impacto inválido: " + raioKm);
+        }
+        raioKm = Math.min(raioKm, GradeEspacial.RAIO_MAXIMO_KM);
+        double deltaLat = raioKm / KM_POR_GRAU_LATITUDE;
+        double deltaLon = deltaLat / Math.max(Math.cos(Math.toRadians(latitude)), 0.01);
+        int latMin = indice(latitude - deltaLat);
+        int latMax = indice(latitude + deltaLat);
+        int lonMin = indice(longitude - deltaLon);
+        int lonMax = indice(longitude + deltaLon);
+
+        Busca busca = new Busca(latitude, longitude, raioKm * 1000);
+        long celulasNoRetangulo = ((long) latMax - latMin + 1) * ((long) lonMax - lonMin + 1);
+        if (celulasNoRetangulo > pedidosPorCelula.size()) {
+            corredores.forEach((pedidoId, corredor) -> {
+                for (int segmento = corredor.segmentoAtual; segmento < corredor.rota.segmentos(); segmento++) {
+                    busca.avaliar(pedidoId, corredor, segmento);
+                }
+            });
+        } else {
+            for (int i = latMin; i <= latMax; i++) {
+                for (int j = lonMin; j <= lonMax; j++) {
+                    long celula = chave(i, j);
+                    Set<Long> pedidos = pedidosPorCelula.get(celula);
+                    if (pedidos == null) {
+                        continue;
+                    }
+                    for (Long pedidoId : pedidos) {
+                        Corredor corredor = corredores.get(pedidoId);
+                        int[] segmentos = corredor != null ? corredor.segmentosPorCelula.get(celula) : null;
+                        if (segmentos == null) {
+                            continue;
+                        }
+                        for (int segmento : segmentos) {
+                            busca.avaliar(pedidoId, corredor, segmento);
+                        }
+                    }
+                }
+            }
+        }
+
+        List<Afetado> afetados = new ArrayList<>(busca.percorridoAtePonto.size());
+        busca.percorridoAtePonto.forEach((pedidoId, ateProjecao) -> {
+            Corredor corredor = corredores.get(pedidoId);
+            if (corredor == null) {
+                return;
+            }
+            double atePontoMetros = Math.max(ateProjecao - corredor.percorridoMetros, 0);
+            afetados.add(new Afetado(pedidoId, corredor.motoristaId, atePontoMetros / 1000,
+                    busca.distanciaDaRota.get(pedidoId) / 1000));
+        });
+        afetados.sort(Comparator.comparingDouble(Afetado::distanciaAtePontoKm));
+        return afetados;
+    }
+
+    // Para cada pedido, o trecho à frente do veículo mais próximo do ponto e o comprimento até a projeção nele
+    private static final class Busca {
+        private final double latitude;
+        private final double longitude;
+        private final double raioMetros;
+        private final Map<Long, Double> percorridoAtePonto = new HashMap<>();
+        private final Map<Long, Double> distanciaDaRota = new HashMap<>();
+
+        private Busca(double latitude, double longitude, double raioMetros) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.raioMetros = raioMetros;
+        }
+
+        private void avaliar(long pedidoId, Corredor corredor, int segmento) {
+            int segmentoAtual = corredor.segmentoAtual;
+            if (segmento < segmentoAtual) {
+                return;
+            }
+            double distancia = corredor.rota.distanciaAoSegmentoMetros(segmento, latitude, longitude);
+            Double melhor = distanciaDaRota.get(pedidoId);
+            if (distancia > raioMetros || (melhor != null && distancia >= melhor)) {
+                return;
+            }
+            double ateProjecao = corredor.rota.percorridoNaProjecaoMetros(segmento, latitude, longitude);
+            // No segmento atual, o ponto pode já ter ficado para trás
+            if (segmento == segmentoAtual && ateProjecao < corredor.percorridoMetros) {
+                return;
+            }
+            percorridoAtePonto.put(pedidoId, ateProjecao);
+            distanciaDaRota.put(pedidoId, distancia);
+        }
+    }
+
+    // Células cobertas pelo retângulo envolvente de cada segmento
+    private Map<Long, int[]> mapearCelulas(RotaPlanejada rota) {
+        Map<Long, List<Integer>> segmentosPorCelula = new HashMap<>();
+        for (int s = 0; s < rota.segmentos(); s++) {
+            int latA = indice(rota.latitude(s));
+            int latB = indice(rota.latitude(s + 1));
+            int lonA = indice(rota.longitude(s));
+            int lonB = indice(rota.longitude(s + 1));
+            for (int i = Math.min(latA, latB); i <= Math.max(latA, latB); i++) {
+                for (int j = Math.min(lonA, lonB); j <= Math.max(lonA, lonB); j++) {
+                    segmentosPorCelula.computeIfAbsent(chave(i, j), c -> new ArrayList<>()).add(s);
+                }
+            }
+        }
+        Map<Long, int[]> resultado = new HashMap<>(segmentosPorCelula.size() * 2);
+        segmentosPorCelula.forEach((celula, segmentos) ->
+                resultado.put(celula, segmentos.stream().mapToInt(Integer::intValue).toArray()));
+        return resultado;
+    }
+
+    // Inclusão e remoção usam compute para não perder pedidos quando uma célula é esvaziada em paralelo
+    private void indexar(long pedidoId, Corredor corredor) {
+        for (Long celula : corredor.segmentosPorCelula.keySet()) {
+            pedidosPorCelula.compute(celula, (c, pedidos) -> {
+                Set<Long> conjunto = pedidos != null ? pedidos : ConcurrentHashMap.newKeySet();
+                conjunto.add(pedidoId);
+                return conjunto;
+            });
+        }
+    }
+
+    private void desindexar(long pedidoId, Corredor corredor) {
+        for (Long celula : corredor.segmentosPorCelula.keySet()) {
+            pedidosPorCelula.computeIfPresent(celula, (c, pedidos) -> {
+                pedidos.remove(pedidoId);
+                return pedidos.isEmpty() ? null : pedidos;
+            });
+        }
+    }
+
+    private int indice(double coordenada) {
+        return (int) Math.floor(coordenada / tamanhoCelulaGraus);
+    }
+
+    private static long chave(int indiceLat, int indiceLon) {
+        return ((long) indiceLat << 32) | (indiceLon & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,182 @@
+package com.logistica.rastreamento.geo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.logistica.rastreamento.cache.PedidoSnapshot;
+import com.logistica.rastreamento.cache.PedidoSnapshotCache;
+import com.logistica.rastreamento.dto.PedidoDTO;
+import com.logistica.rastreamento.geo.EstimadorChegada.Estimativa;
+import com.logistica.rastreamento.message.RotaEventSender;
+import com.logistica.rastreamento.model.Localizacao;
+import com.logistica.rastreamento.model.StatusPedido;
+import com.logistica.rastreamento.service.PedidoServiceClient;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Detecta o desvio do motorista em relação à rota planejada do pedido e solicita uma nova rota.
+ *
+ * Avaliado a cada nova localização, com o resultado da projeção na rota: após N leituras
+ * consecutivas fora do corredor da rota, pede ao serviço de pedidos (OSRM) uma rota a partir
+ * da posição atual e publica DESVIO_ROTA quando a resposta chega. O estado por pedido é um
+ * contador e o horário do último recálculo, e há no máximo um recálculo em andamento por
+ * pedido, respeitando um intervalo mínimo entre recálculos.
+ *
+ * Pedidos sem rota compatível com o alvo atual (por exemplo, em rota com a rota calculada no
+ * aceite, até o ponto de coleta) também recebem uma nova rota, sem evento de desvio. Esses
+ * recálculos são limitados por alvo: se o serviço de pedidos continua sem devolver uma rota
+ * utilizável, o pedido fica sem rota até que o alvo mude.
+ */
+@Component
+public class DetectorDesvioRota {
+
+    private static final Logger logger = LoggerFactory.getLogger(DetectorDesvioRota.class);
+
+    // alvo é o status do pedido (origem ou destino) ao qual recalculosSemRota se refere
+    private record EstadoDesvio(int leiturasFora, boolean recalculando, int recalculos, long ultimoRecalculo,
+                                StatusPedido alvo, int recalculosSemRota) {
+
+        private EstadoDesvio comLeiturasFora(int leituras, int semRota) {
+            return new EstadoDesvio(leituras, recalculando, recalculos, ultimoRecalculo, alvo, semRota);
+        }
+    }
+
+    private final PedidoServiceClient pedidoServiceClient;
+    private final PedidoSnapshotCache pedidoSnapshotCache;
+    private final RotaEventSender rotaEventSender;
+    private final ObjectMapper objectMapper;
+    private final int leiturasParaDesvio;
+    private final long intervaloMinimoRecalculoNanos;
+    private final int maximoRecalculosSemRota;
+    private final Map<Long, EstadoDesvio> estados = new ConcurrentHashMap<>();
+
+    private final Counter desvios;
+    private final Counter recalculadas;
+    private final Counter falhas;
+
+    public DetectorDesvioRota(PedidoServiceClient pedidoServiceClient,
+                              PedidoSnapshotCache pedidoSnapshotCache,
+                              RotaEventSender rotaEventSender,
+                              ObjectMapper objectMapper,
+                              MeterRegistry meterRegistry,
+                              @Value("${rastreamento.rotas.leituras-para-desvio:3}") int leiturasParaDesvio,
+                              @Value("${rastreamento.rotas.intervalo-minimo-recalculo-segundos:60}") long intervaloMinimoRecalculoSegundos,
+                              @Value("${rastreamento.rotas.maximo-recalculos-sem-rota:3}") int maximoRecalculosSemRota) {
+        this.pedidoServiceClient = pedidoServiceClient;
+        this.pedidoSnapshotCache = pedidoSnapshotCache;
+        this.rotaEventSender = rotaEventSender;
+        this.objectMapper = objectMapper;
+        this.leiturasParaDesvio = Math.max(leiturasParaDesvio, 1);
+        this.intervaloMinimoRecalculoNanos = TimeUnit.SECONDS.toNanos(intervaloMinimoRecalculoSegundos);
+        this.maximoRecalculosSemRota = maximoRecalculosSemRota;
+
+        meterRegistry.gaugeMapSize("rastreamento.rotas.desvio.pedidos", Tags.empty(), estados);
+        this.desvios = meterRegistry.counter("rastreamento.rotas.desvios");
+        this.recalculadas = meterRegistry.counter("rastreamento.rotas.recalculos", "resultado", "sucesso");
+        this.falhas = meterRegistry.counter("rastreamento.rotas.recalculos", "resultado", "falha");
+    }
+
+    /**
+     * Avalia a nova localização do pedido a partir da estimativa calculada na ingestão. Não bloqueia:
+     * o recálculo da rota é assíncrono.
+     */
+    public void avaliar(Localizacao localizacao, PedidoSnapshot pedido, Estimativa estimativa) {
+        if (estimativa == null
+                || (pedido.status() != StatusPedido.AGUARDANDO_COLETA && pedido.status() != StatusPedido.EM_ROTA)) {
+            return;
+        }
+        Boolean foraDaRota = estimativa.foraDaRota();
+        long agora = System.nanoTime();
+        // Leituras fora da rota que dispararam o recálculo; 0 quando o recálculo é só por falta de rota
+        int[] disparo = {-1};
+        boolean[] ultimoSemRota = {false};
+        estados.compute(pedido.id(), (id, anterior) -> {
+            disparo[0] = -1;
+            ultimoSemRota[0] = false;
+            EstadoDesvio atual;
+            if (anterior == null) {
+                atual = new EstadoDesvio(0, false, 0, 0, pedido.status(), 0);
+            } else if (anterior.alvo() != pedido.status()) {
+                // Novo alvo: o limite de recálculos sem rota recomeça
+                atual = new EstadoDesvio(0, anterior.recalculando(), anterior.recalculos(), anterior.ultimoRecalculo(),
+                        pedido.status(), 0);
+            } else {
+                atual = anterior;
+            }
+            if (Boolean.FALSE.equals(foraDaRota)) {
+                return atual.leiturasFora() == 0 && atual.recalculosSemRota() == 0 ? atual : atual.comLeiturasFora(0, 0);
+            }
+            int leiturasFora = foraDaRota == null ? 0 : atual.leiturasFora() + 1;
+            int semRota = foraDaRota == null ? atual.recalculosSemRota() : 0;
+            boolean solicitar = foraDaRota == null
+                    ? semRota < maximoRecalculosSemRota
+                    : leiturasFora >= leiturasParaDesvio;
+            boolean liberado = !atual.recalculando()
+                    && (atual.recalculos() == 0 || agora - atual.ultimoRecalculo() >= intervaloMinimoRecalculoNanos);
+            if (solicitar && liberado) {
+                disparo[0] = leiturasFora;
+                int novoSemRota = foraDaRota == null ? semRota + 1 : 0;
+                ultimoSemRota[0] = foraDaRota == null && novoSemRota == maximoRecalculosSemRota;
+                return new EstadoDesvio(0, true, atual.recalculos() + 1, agora, atual.alvo(), novoSemRota);
+            }
+            return atual.comLeiturasFora(leiturasFora, semRota);
+        });
+
+        if (disparo[0] >= 0) {
+            if (ultimoSemRota[0]) {
+                logger.warn("Pedido {} sem rota compatível com o alvo após {} recálculos; novos recálculos só com a mudança do alvo",
+                        pedido.id(), maximoRecalculosSemRota);
+            }
+            recalcular(localizacao, pedido.id(), disparo[0]);
+        }
+    }
+
+    public void remover(Long pedidoId) {
+        estados.remove(pedidoId);
+    }
+
+    private void recalcular(Localizacao localizacao, Long pedidoId, int leiturasFora) {
+        boolean desvio = leiturasFora > 0;
+        if (desvio) {
+            desvios.increment();
+            logger.info("Desvio de rota detectado no pedido {} após {} leituras fora da rota", pedidoId, leiturasFora);
+        }
+        pedidoServiceClient.recalcularRotaAsync(pedidoId, localizacao.getLatitude(), localizacao.getLongitude())
+                .whenComplete((resposta, erro) -> {
+                    Double novaDistanciaKm = null;
+                    if (erro == null) {
+                        recalculadas.increment();
+                        RotaPlanejada novaRota = novaRota(resposta);
+                        novaDistanciaKm = novaRota != null ? novaRota.comprimentoKm() : null;
+                        // A próxima localização recarrega o pedido com a nova rota
+                        pedidoSnapshotCache.invalidar(pedidoId);
+                    } else {
+                        falhas.increment();
+                        logger.warn("Erro ao recalcular rota do pedido {}: {}", pedidoId, erro.getMessage());
+                    }
+                    estados.computeIfPresent(pedidoId, (id, estado) -> new EstadoDesvio(estado.leiturasFora(), false,
+                            estado.recalculos(), estado.ultimoRecalculo(), estado.alvo(), estado.recalculosSemRota()));
+                    if (desvio) {
+                        rotaEventSender.enviarNotificacaoDesvioRota(pedidoId, localizacao.getMotoristaId(),
+                                localizacao.getLatitude(), localizacao.getLongitude(), leiturasFora, novaDistanciaKm);
+                    }
+                });
+    }
+
+    private RotaPlanejada novaRota(Object resposta) {
+        try {
+            PedidoDTO pedido = objectMapper.convertValue(resposta, PedidoDTO.class);
+            return pedido.getRotaMotorista() != null ? RotaPlanejada.de(pedido.getRotaMotorista().getRota()) : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
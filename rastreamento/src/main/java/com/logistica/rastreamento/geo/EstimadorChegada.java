@@ -0,0 +1,236 @@
+package com.logistica.rastreamento.geo;
+
+import com.logistica.rastreamento.cache.PedidoSnapshot;
+import com.logistica.rastreamento.model.Localizacao;
+import com.logistica.rastreamento.model.StatusPedido;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.logistica.rastreamento.util.DistanciaUtils.calculateDistanceInKm;
+
+/**
+ * Estima a distância e o tempo restantes dos pedidos.
+ *
+ * Mantém por motorista uma média móvel exponencial da velocidade observada entre as
+ * localizações recebidas, ponderada pelo intervalo entre elas. O tempo restante usa a
+ * combinação dessa velocidade com a velocidade planejada do pedido (distância e tempo
+ * calculados pelo OSRM); o peso da velocidade observada cresce com o número de amostras.
+ *
+ * A distância restante é medida ao longo da rota planejada do pedido quando ela termina no
+ * alvo atual (ponto de coleta ou destino); sem rota compatível, é a distância em linha reta.
+ * A posição na rota é repassada ao {@link CorredoresRotasIndex}.
+ *
+ * A estimativa de cada pedido é recalculada apenas quando chega uma nova localização e
+ * fica guardada para as conversões seguintes. Posições antigas (histórico) usam apenas a
+ * velocidade planejada, pois a velocidade atual do motorista não vale para elas.
+ */
+@Component
+public class EstimadorChegada {
+
+    private static final double DISTANCIA_CHEGADA_KM = 0.1;
+    // Amostras com intervalo menor acumulam o deslocamento até o intervalo mínimo; lacunas maiores que o máximo reiniciam a medição
+    private static final long INTERVALO_MINIMO_MS = 5_000;
+    private static final long INTERVALO_MAXIMO_MS = 600_000;
+    // Velocidades acima deste limite são saltos de GPS e não entram na média
+    private static final double VELOCIDADE_MAXIMA_KM_MIN = 160 / 60.0;
+
+    /**
+     * @param foraDaRota null quando a distância não foi medida pela rota planejada
+     */
+    public record Estimativa(long motoristaId, LocalDateTime timestamp, double distanciaKm, int tempoMinutos,
+                             Boolean foraDaRota) {
+    }
+
+    // Ponto de referência da próxima amostra e a velocidade média (km/min) do motorista
+    private record VelocidadeMotorista(double latitude, double longitude, long timestampMs,
+                                       double velocidadeKmMin, int amostras) {
+    }
+
+    private final double constanteTempoMs;
+    private final double velocidadePadraoKmMin;
+    private final double velocidadeMinimaKmMin;
+    private final double pesoMaximoObservado;
+    private final int amostrasConfianca;
+    private final double limiteForaDaRotaMetros;
+    private final double toleranciaFimRotaKm;
+    private final Map<Long, VelocidadeMotorista> velocidades = new ConcurrentHashMap<>();
+    private final Map<Long, Estimativa> estimativas = new ConcurrentHashMap<>();
+    // Progresso na rota de cada pedido, reutilizado a cada localização recebida
+    private final Map<Long, ProgressoRota> progressos = new ConcurrentHashMap<>();
+    private final CorredoresRotasIndex corredoresRotas;
+
+    public EstimadorChegada(CorredoresRotasIndex corredoresRotas,
+                            MeterRegistry meterRegistry,
+                            @Value("${rastreamento.eta.constante-tempo-segundos:300}") long constanteTempoSegundos,
+                            @Value("${rastreamento.eta.velocidade-padrao-kmh:30}") double velocidadePadraoKmH,
+                            @Value("${rastreamento.eta.velocidade-minima-kmh:5}") double velocidadeMinimaKmH,
+                            @Value("${rastreamento.eta.peso-maximo-observado:0.7}") double pesoMaximoObservado,
+                            @Value("${rastreamento.eta.amostras-confianca:10}") int amostrasConfianca,
+                            @Value("${rastreamento.rotas.limite-fora-da-rota-metros:150}") double limiteForaDaRotaMetros,
+                            @Value("${rastreamento.rotas.tolerancia-fim-rota-km:0.5}") double toleranciaFimRotaKm) {
+        this.constanteTempoMs = constanteTempoSegundos * 1000.0;
+        this.velocidadePadraoKmMin = velocidadePadraoKmH / 60;
+        this.velocidadeMinimaKmMin = velocidadeMinimaKmH / 60;
+        this.pesoMaximoObservado = pesoMaximoObservado;
+        this.amostrasConfianca = Math.max(amostrasConfianca, 1);
+        this.limiteForaDaRotaMetros = limiteForaDaRotaMetros;
+        this.toleranciaFimRotaKm = toleranciaFimRotaKm;
+        this.corredoresRotas = corredoresRotas;
+
+        meterRegistry.gaugeMapSize("rastreamento.eta.motoristas", Tags.empty(), velocidades);
+        meterRegistry.gaugeMapSize("rastreamento.eta.pedidos", Tags.empty(), estimativas);
+        meterRegistry.gaugeMapSize("rastreamento.rotas.pedidos", Tags.empty(), progressos);
+    }
+
+    /**
+     * Registra uma nova localização do motorista (caminho de ingestão): atualiza a
+     * velocidade média e, se houver pedido, recalcula e guarda a estimativa dele.
+     */
+    public Estimativa atualizar(Localizacao localizacao, PedidoSnapshot pedido) {
+        VelocidadeMotorista velocidade = registrarVelocidade(localizacao);
+        if (pedido == null) {
+            return null;
+        }
+        ProgressoRota progresso = progressos.computeIfAbsent(pedido.id(), id -> new ProgressoRota());
+        Estimativa estimativa;
+        synchronized (progresso) {
+            estimativa = calcular(localizacao, pedido, velocidade, progresso);
+            if (estimativa.foraDaRota() != null) {
+                corredoresRotas.atualizar(pedido.id(), localizacao.getMotoristaId(), pedido.rota(),
+                        progresso.segmento, progresso.percorridoMetros);
+            } else {
+                corredoresRotas.remover(pedido.id());
+            }
+        }
+        estimativas.put(pedido.id(), estimativa);
+        return estimativa;
+    }
+
+    /**
+     * Estimativa guardada para esta localização, ou null se ela não é a última recebida do pedido.
+     */
+    public Estimativa estimativaAtual(Localizacao localizacao) {
+        if (localizacao.getPedidoId() == null) {
+            return null;
+        }
+        Estimativa estimativa = estimativas.get(localizacao.getPedidoId());
+        boolean atual = estimativa != null
+                && estimativa.motoristaId() == localizacao.getMotoristaId()
+                && estimativa.timestamp().equals(localizacao.getTimestamp());
+        return atual ? estimativa : null;
+    }
+
+    /**
+     * Estimativa para a conversão de uma localização: a guardada, se for a atual do pedido,
+     * senão uma estimativa calculada apenas com a velocidade planejada.
+     */
+    public Estimativa estimar(Localizacao localizacao, PedidoSnapshot pedido) {
+        if (pedido == null) {
+            return null;
+        }
+        Estimativa atual = estimativaAtual(localizacao);
+        return atual != null ? atual : calcular(localizacao, pedido, null, new ProgressoRota());
+    }
+
+    /**
+     * Velocidade média observada do motorista (km/min), ou a velocidade padrão se ainda não há amostras dele.
+     */
+    public double velocidadeMotoristaKmMin(long motoristaId) {
+        VelocidadeMotorista velocidade = velocidades.get(motoristaId);
+        if (velocidade == null || velocidade.amostras() == 0) {
+            return velocidadePadraoKmMin;
+        }
+        return Math.max(velocidade.velocidadeKmMin(), velocidadeMinimaKmMin);
+    }
+
+    /**
+     * Descarta a estimativa guardada (mudança de status ou fim do pedido); a próxima
+     * localização recebida gera uma nova.
+     */
+    public void invalidar(Long pedidoId) {
+        estimativas.remove(pedidoId);
+        progressos.remove(pedidoId);
+        corredoresRotas.remover(pedidoId);
+    }
+
+    private VelocidadeMotorista registrarVelocidade(Localizacao localizacao) {
+        long timestampMs = localizacao.getTimestamp().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        double latitude = localizacao.getLatitude();
+        double longitude = localizacao.getLongitude();
+        return velocidades.compute(localizacao.getMotoristaId(), (id, anterior) -> {
+            if (anterior == null) {
+                return new VelocidadeMotorista(latitude, longitude, timestampMs, 0, 0);
+            }
+            long intervaloMs = timestampMs - anterior.timestampMs();
+            if (intervaloMs < INTERVALO_MINIMO_MS && intervaloMs >= 0) {
+                return anterior;
+            }
+            if (intervaloMs > INTERVALO_MAXIMO_MS || intervaloMs < 0) {
+                return new VelocidadeMotorista(latitude, longitude, timestampMs,
+                        anterior.velocidadeKmMin(), anterior.amostras());
+            }
+            double velocidadeKmMin = calculateDistanceInKm(anterior.latitude(), anterior.longitude(), latitude, longitude)
+                    / (intervaloMs / 60_000.0);
+            if (velocidadeKmMin > VELOCIDADE_MAXIMA_KM_MIN) {
+                return new VelocidadeMotorista(latitude, longitude, timestampMs,
+                        anterior.velocidadeKmMin(), anterior.amostras());
+            }
+            // Peso da nova amostra proporcional ao intervalo que ela cobre
+            double alfa = anterior.amostras() == 0 ? 1 : 1 - Math.exp(-intervaloMs / constanteTempoMs);
+            double media = anterior.velocidadeKmMin() + alfa * (velocidadeKmMin - anterior.velocidadeKmMin());
+            return new VelocidadeMotorista(latitude, longitude, timestampMs, media, anterior.amostras() + 1);
+        });
+    }
+
+    private Estimativa calcular(Localizacao localizacao, PedidoSnapshot pedido, VelocidadeMotorista velocidade,
+                                ProgressoRota progresso) {
+        // Aguardando coleta: o alvo é o ponto de coleta (origem); depois, o destino final
+        boolean coleta = pedido.status() == StatusPedido.AGUARDANDO_COLETA;
+        double latAlvo = coleta ? pedido.origemLatitude() : pedido.destinoLatitude();
+        double lonAlvo = coleta ? pedido.origemLongitude() : pedido.destinoLongitude();
+
+        double distanciaKm;
+        Boolean foraDaRota = null;
+        RotaPlanejada rota = pedido.rota();
+        if (rota != null && rota.terminaEm(latAlvo, lonAlvo, toleranciaFimRotaKm)) {
+            rota.projetar(localizacao.getLatitude(), localizacao.getLongitude(), limiteForaDaRotaMetros, progresso);
+            distanciaKm = progresso.kmRestantes();
+            foraDaRota = progresso.foraDaRota();
+        } else {
+            distanciaKm = calculateDistanceInKm(latAlvo, lonAlvo, localizacao.getLatitude(), localizacao.getLongitude());
+        }
+
+        int tempoMinutos = 0;
+        if (distanciaKm > DISTANCIA_CHEGADA_KM) {
+            tempoMinutos = (int) Math.ceil(distanciaKm / velocidadeCombinada(pedido, velocidade));
+        }
+        return new Estimativa(localizacao.getMotoristaId(), localizacao.getTimestamp(), distanciaKm, tempoMinutos, foraDaRota);
+    }
+
+    private double velocidadeCombinada(PedidoSnapshot pedido, VelocidadeMotorista velocidade) {
+        double planejada = velocidadePlanejada(pedido);
+        if (velocidade == null || velocidade.amostras() == 0) {
+            return planejada;
+        }
+        double peso = pesoMaximoObservado * Math.min(1.0, (double) velocidade.amostras() / amostrasConfianca);
+        double observada = Math.max(velocidade.velocidadeKmMin(), velocidadeMinimaKmMin);
+        return peso * observada + (1 - peso) * planejada;
+    }
+
+    private double velocidadePlanejada(PedidoSnapshot pedido) {
+        // O tempo planejado do pedido cobre o trajeto origem → destino; na coleta usa a velocidade urbana padrão
+        if (pedido.status() != StatusPedido.AGUARDANDO_COLETA
+                && pedido.tempoEstimadoMinutos() != null && pedido.tempoEstimadoMinutos() > 0
+                && pedido.distanciaKm() != null && pedido.distanciaKm() > 0) {
+            return pedido.distanciaKm() / pedido.tempoEstimadoMinutos();
+        }
+        return velocidadePadraoKmMin;
+    }
+}
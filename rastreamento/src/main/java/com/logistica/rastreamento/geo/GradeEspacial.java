@@ -0,0 +1,152 @@
+package com.logistica.rastreamento.geo;
+
+import com.logistica.rastreamento.util.DistanciaUtils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Índice espacial em memória baseado em uma grade uniforme de células.
+ * Cada célula é identificada por um long que combina os índices de latitude e longitude,
+ * e cada ponto indexado é identificado por um id long (motorista, incidente etc.).
+ */
+public class GradeEspacial {
+
+    private static final double KM_POR_GRAU_LATITUDE = 111.32;
+    // Metade da circunferência da Terra: um raio maior já cobre o globo inteiro
+    public static final double RAIO_MAXIMO_KM = Math.PI * 6371.0;
+
+    private final double tamanhoCelulaGraus;
+    private final Map<Long, Set<Long>> celulas = new ConcurrentHashMap<>();
+    private final Map<Long, Ponto> pontos = new ConcurrentHashMap<>();
+
+    public GradeEspacial(double tamanhoCelulaKm) {
+        this.tamanhoCelulaGraus = tamanhoCelulaKm / KM_POR_GRAU_LATITUDE;
+    }
+
+    public record Ponto(long id, double latitude, double longitude, long celula) {
+    }
+
+    public record Resultado(long id, double latitude, double longitude, double distanciaKm) {
+    }
+
+    /**
+     * Insere ou move o ponto com o id informado.
+     */
+    public void atualizar(long id, double latitude, double longitude) {
+        long novaCelula = celula(latitude, longitude);
+        pontos.compute(id, (chave, anterior) -> {
+            if (anterior == null || anterior.celula() != novaCelula) {
+                if (anterior != null) {
+                    removerDaCelula(anterior.celula(), id);
+                }
+                adicionarNaCelula(novaCelula, id);
+            }
+            return new Ponto(id, latitude, longitude, novaCelula);
+        });
+    }
+
+    public void remover(long id) {
+        pontos.computeIfPresent(id, (chave, anterior) -> {
+            removerDaCelula(anterior.celula(), id);
+            return null;
+        });
+    }
+
+    public boolean contem(long id) {
+        return pontos.containsKey(id);
+    }
+
+    public int tamanho() {
+        return pontos.size();
+    }
+
+    /**
+     * Retorna os pontos a até raioKm da coordenada, ordenados pela distância.
+     * Apenas as células que intersectam o retângulo envolvente do raio são visitadas; quando o
+     * retângulo tem mais células que as ocupadas, os pontos são percorridos diretamente.
+     * Raios acima de {@link #RAIO_MAXIMO_KM} são limitados a ele.
+     *
+     * @throws IllegalArgumentException se o raio não for um número positivo
+     */
+    public List<Resultado> buscarNoRaio(double latitude, double longitude, double raioKm) {
+        if (!(raioKm > 0) || Double.isInfinite(raioKm)) {
+            throw new IllegalArgumentException("Raio de busca inválido: " + raioKm);
+        }
+        raioKm = Math.min(raioKm, RAIO_MAXIMO_KM);
+        double deltaLat = raioKm / KM_POR_GRAU_LATITUDE;
+        double cosLat = Math.max(Math.cos(Math.toRadians(latitude)), 0.01);
+        double deltaLon = raioKm / (KM_POR_GRAU_LATITUDE * cosLat);
+
+        int latMin = indice(latitude - deltaLat);
+        int latMax = indice(latitude + deltaLat);
+        int lonMin = indice(longitude - deltaLon);
+        int lonMax = indice(longitude + deltaLon);
+
+        List<Resultado> resultados = new ArrayList<>();
+        long celulasNoRetangulo = ((long) latMax - latMin + 1) * ((long) lonMax - lonMin + 1);
+        if (celulasNoRetangulo > celulas.size()) {
+            for (Ponto ponto : pontos.values()) {
+                adicionarSeNoRaio(resultados, ponto, latitude, longitude, raioKm);
+            }
+        } else {
+            for (int i = latMin; i <= latMax; i++) {
+                for (int j = lonMin; j <= lonMax; j++) {
+                    Set<Long> ids = celulas.get(chave(i, j));
+                    if (ids == null) {
+                        continue;
+                    }
+                    for (Long id : ids) {
+                        Ponto ponto = pontos.get(id);
+                        if (ponto != null) {
+                            adicionarSeNoRaio(resultados, ponto, latitude, longitude, raioKm);
+                        }
+                    }
+                }
+            }
+        }
+        resultados.sort(Comparator.comparingDouble(Resultado::distanciaKm));
+        return resultados;
+    }
+
+    private static void adicionarSeNoRaio(List<Resultado> resultados, Ponto ponto,
+                                          double latitude, double longitude, double raioKm) {
+        double distancia = DistanciaUtils.calculateDistanceInKm(
+                latitude, longitude, ponto.latitude(), ponto.longitude());
+        if (distancia <= raioKm) {
+            resultados.add(new Resultado(ponto.id(), ponto.latitude(), ponto.longitude(), distancia));
+        }
+    }
+
+    // Inclusão e remoção usam compute para não perder ids quando uma célula é esvaziada em paralelo
+    private void adicionarNaCelula(long celula, long id) {
+        celulas.compute(celula, (c, ids) -> {
+            Set<Long> conjunto = ids != null ? ids : ConcurrentHashMap.newKeySet();
+            conjunto.add(id);
+            return conjunto;
+        });
+    }
+
+    private void removerDaCelula(long celula, long id) {
+        celulas.computeIfPresent(celula, (c, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    private long celula(double latitude, double longitude) {
+        return chave(indice(latitude), indice(longitude));
+    }
+
+    private int indice(double coordenada) {
+        return (int) Math.floor(coordenada / tamanhoCelulaGraus);
+    }
+
+    private static long chave(int indiceLat, int indiceLon) {
+        return ((long) indiceLat << 32) | (indiceLon & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,211 @@
+package com.logistica.rastreamento.geo;
+
+import com.logistica.rastreamento.model.Incidente;
+import com.logistica.rastreamento.repository.IncidenteRepository;
+import com.logistica.rastreamento.util.RodaTemporizacao;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Índice em memória dos incidentes ativos, para as buscas por raio sem consultar o banco.
+ *
+ * Os incidentes ficam numa grade espacial e a expiração de cada um é agendada numa roda de
+ * temporização com ticks de 1 s: ao expirar, o incidente sai do índice e é desativado no
+ * banco no mesmo segundo. O índice é aquecido na inicialização, atualizado pelo reporte e
+ * pela desativação, e ressincronizado periodicamente com o banco para refletir os incidentes
+ * reportados ou desativados por outras instâncias.
+ *
+ * A consulta da sincronização pode ser anterior a alterações locais feitas enquanto ela roda.
+ * Por isso os incidentes removidos localmente deixam uma marca (tombstone) que impede a
+ * sincronização de reinseri-los, até que uma consulta iniciada depois da remoção confirme que
+ * não estão mais ativos; e só são removidos pela sincronização os incidentes indexados antes
+ * do início da consulta.
+ */
+@Component
+public class IncidentesAtivosIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(IncidentesAtivosIndex.class);
+    private static final long DURACAO_TICK_MS = 1000;
+
+    private record Entrada(Incidente incidente, RodaTemporizacao.Agendamento<Long> expiracao, long indexadaEmNanos) {
+    }
+
+    private final IncidenteRepository incidenteRepository;
+    private final GradeEspacial grade;
+    private final Map<Long, Entrada> incidentes = new ConcurrentHashMap<>();
+    // Incidentes removidos localmente e o instante (System.nanoTime) da remoção
+    private final Map<Long, Long> removidos = new ConcurrentHashMap<>();
+    private final RodaTemporizacao<Long> roda = new RodaTemporizacao<>(DURACAO_TICK_MS, System.currentTimeMillis());
+    private final ScheduledExecutorService agendador = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "rastreamento-incidentes-expiracao");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile boolean aquecido;
+
+    private final Counter expirados;
+
+    public IncidentesAtivosIndex(IncidenteRepository incidenteRepository,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${rastreamento.incidentes.tamanho-celula-km:5.0}") double tamanhoCelulaKm) {
+        this.incidenteRepository = incidenteRepository;
+        this.grade = new GradeEspacial(tamanhoCelulaKm);
+
+        meterRegistry.gaugeMapSize("rastreamento.indice.incidentes.tamanho", Tags.empty(), incidentes);
+        this.expirados = meterRegistry.counter("rastreamento.indice.incidentes.expirados");
+
+        agendador.scheduleAtFixedRate(this::expirar, DURACAO_TICK_MS, DURACAO_TICK_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void encerrar() {
+        agendador.shutdownNow();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void aquecer() {
+        sincronizar();
+        aquecido = true;
+        logger.info("Índice de incidentes aquecido com {} incidentes ativos", incidentes.size());
+    }
+
+    /**
+     * Reconcilia o índice com os incidentes ativos no banco (reportes e desativações de outras instâncias).
+     */
+    @Scheduled(fixedDelayString = "${rastreamento.incidentes.intervalo-sincronizacao-ms:30000}",
+            initialDelayString = "${rastreamento.incidentes.intervalo-sincronizacao-ms:30000}")
+    public void sincronizar() {
+        long inicioNanos = System.nanoTime();
+        try {
+            List<Incidente> ativos = incidenteRepository.findByAtivoTrueAndDataExpiracaoAfter(LocalDateTime.now());
+            Set<Long> ids = new HashSet<>();
+            for (Incidente incidente : ativos) {
+                ids.add(incidente.getId());
+                indexar(incidente, true);
+            }
+            // Incidentes indexados localmente depois do início da consulta ainda não aparecem nela
+            incidentes.values().removeIf(entrada -> {
+                boolean removido = !ids.contains(entrada.incidente().getId())
+                        && entrada.indexadaEmNanos() - inicioNanos < 0;
+                if (removido) {
+                    desindexar(entrada);
+                }
+                return removido;
+            });
+            // A consulta começou depois da remoção e não trouxe o incidente: a marca já não é necessária
+            removidos.entrySet().removeIf(removido ->
+                    removido.getValue() - inicioNanos < 0 && !ids.contains(removido.getKey()));
+        } catch (Exception e) {
+            logger.error("Erro ao sincronizar índice de incidentes: {}", e.getMessage());
+        }
+    }
+
+    public void adicionar(Incidente incidente) {
+        indexar(incidente, false);
+    }
+
+    public void remover(Long incidenteId) {
+        // A marca é gravada antes da remoção, para que uma sincronização concorrente não reinsira o incidente
+        removidos.put(incidenteId, System.nanoTime());
+        incidentes.computeIfPresent(incidenteId, (id, entrada) -> {
+            desindexar(entrada);
+            return null;
+        });
+    }
+
+    /**
+     * Indica se o índice já foi carregado; antes disso as consultas devem ir ao banco.
+     */
+    public boolean aquecido() {
+        return aquecido;
+    }
+
+    public List<Incidente> listarAtivos() {
+        Collection<Entrada> entradas = incidentes.values();
+        List<Incidente> ativos = new ArrayList<>(entradas.size());
+        entradas.forEach(entrada -> ativos.add(entrada.incidente()));
+        return ativos;
+    }
+
+    /**
+     * Incidentes ativos a até raioKm da coordenada, ordenados pela distância.
+     * O raio segue as regras de {@link GradeEspacial#buscarNoRaio}: precisa ser positivo
+     * e é limitado a {@link GradeEspacial#RAIO_MAXIMO_KM}.
+     */
+    public List<Incidente> buscarNoRaio(double latitude, double longitude, double raioKm) {
+        List<Incidente> proximos = new ArrayList<>();
+        for (GradeEspacial.Resultado resultado : grade.buscarNoRaio(latitude, longitude, raioKm)) {
+            Entrada entrada = incidentes.get(resultado.id());
+            if (entrada != null) {
+                proximos.add(entrada.incidente());
+            }
+        }
+        return proximos;
+    }
+
+    // Pela sincronização, não substitui a entrada existente nem reinsere incidentes removidos localmente
+    private void indexar(Incidente incidente, boolean sincronizacao) {
+        if (!Boolean.TRUE.equals(incidente.getAtivo()) || incidente.getDataExpiracao() == null) {
+            return;
+        }
+        long expiracaoMs = incidente.getDataExpiracao().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        incidentes.compute(incidente.getId(), (id, anterior) -> {
+            if (sincronizacao && (anterior != null || removidos.containsKey(id))) {
+                return anterior;
+            }
+            if (anterior != null) {
+                desindexar(anterior);
+            }
+            grade.atualizar(id, incidente.getLatitude(), incidente.getLongitude());
+            return new Entrada(incidente, roda.agendar(id, expiracaoMs), System.nanoTime());
+        });
+    }
+
+    private void desindexar(Entrada entrada) {
+        grade.remover(entrada.incidente().getId());
+        roda.cancelar(entrada.expiracao());
+    }
+
+    private void expirar() {
+        try {
+            List<Long> vencidos = roda.avancar(System.currentTimeMillis());
+            if (vencidos.isEmpty()) {
+                return;
+            }
+            for (Long id : vencidos) {
+                removidos.put(id, System.nanoTime());
+                incidentes.computeIfPresent(id, (chave, entrada) -> {
+                    grade.remover(chave);
+                    return null;
+                });
+            }
+            expirados.increment(vencidos.size());
+            int desativados = incidenteRepository.desativarIncidentesExpirados(LocalDateTime.now());
+            logger.debug("{} incidentes expirados removidos do índice ({} desativados no banco)", vencidos.size(), desativados);
+        } catch (Exception e) {
+            logger.error("Erro ao expirar incidentes: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.logistica.rastreamento.geo;
+
+import com.logistica.rastreamento.cache.UltimaPosicao;
+import com.logistica.rastreamento.cache.UltimaPosicaoCache;
+import com.logistica.rastreamento.model.StatusVeiculo;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Índice espacial das posições atuais dos motoristas disponíveis.
+ * É atualizado a cada localização ingerida e aquecido a partir do cache de posições,
+ * permitindo responder às buscas por raio sem consultar o histórico no banco.
+ * Motoristas sem localização há mais que a idade máxima deixam de ser retornados e são
+ * removidos periodicamente do índice.
+ */
+@Component
+public class MotoristasDisponiveisIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(MotoristasDisponiveisIndex.class);
+
+    private final UltimaPosicaoCache ultimaPosicaoCache;
+    private final GradeEspacial grade;
+    private final Duration idadeMaxima;
+    // Horário da última localização de cada motorista indexado
+    private final Map<Long, LocalDateTime> atualizacoes = new ConcurrentHashMap<>();
+
+    public MotoristasDisponiveisIndex(UltimaPosicaoCache ultimaPosicaoCache,
+                                      MeterRegistry meterRegistry,
+                                      @Value("${rastreamento.indice-espacial.tamanho-celula-km:1.0}") double tamanhoCelulaKm,
+                                      @Value("${rastreamento.indice-espacial.idade-maxima-segundos:600}") long idadeMaximaSegundos) {
+        this.ultimaPosicaoCache = ultimaPosicaoCache;
+        this.grade = new GradeEspacial(tamanhoCelulaKm);
+        this.idadeMaxima = Duration.ofSeconds(idadeMaximaSegundos);
+        meterRegistry.gauge("rastreamento.indice.motoristas.tamanho", grade, GradeEspacial::tamanho);
+    }
+
+    // Executado após o aquecimento do UltimaPosicaoCache
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(1)
+    public void aquecer() {
+        ultimaPosicaoCache.motoristas().forEach(this::atualizar);
+        logger.info("Índice espacial aquecido com {} motoristas disponíveis", grade.tamanho());
+    }
+
+    public void atualizar(UltimaPosicao posicao) {
+        // A grade é alterada dentro do compute, para não intercalar com a remoção dos desatualizados
+        atualizacoes.compute(posicao.motoristaId(), (motoristaId, anterior) -> {
+            if (posicao.statusVeiculo() == StatusVeiculo.DISPONIVEL) {
+                grade.atualizar(motoristaId, posicao.latitude(), posicao.longitude());
+                return posicao.timestamp();
+            }
+            grade.remover(motoristaId);
+            return null;
+        });
+    }
+
+    public List<GradeEspacial.Resultado> buscarNoRaio(double latitude, double longitude, double raioKm) {
+        LocalDateTime limite = LocalDateTime.now().minus(idadeMaxima);
+        List<GradeEspacial.Resultado> resultados = grade.buscarNoRaio(latitude, longitude, raioKm);
+        resultados.removeIf(resultado -> desatualizado(resultado.id(), limite));
+        return resultados;
+    }
+
+    @Scheduled(fixedDelayString = "${rastreamento.indice-espacial.intervalo-limpeza-ms:60000}")
+    public void removerDesatualizados() {
+        LocalDateTime limite = LocalDateTime.now().minus(idadeMaxima);
+        int antes = grade.tamanho();
+        for (Long id : atualizacoes.keySet()) {
+            atualizacoes.computeIfPresent(id, (motoristaId, horario) -> {
+                if (horario.isBefore(limite)) {
+                    grade.remover(motoristaId);
+                    return null;
+                }
+                return horario;
+            });
+        }
+        int removidos = antes - grade.tamanho();
+        if (removidos > 0) {
+            logger.debug("{} motoristas sem localização recente removidos do índice espacial", removidos);
+        }
+    }
+
+    private boolean desatualizado(long motoristaId, LocalDateTime limite) {
+        LocalDateTime horario = atualizacoes.get(motoristaId);
+        return horario == null || horario.isBefore(limite);
+    }
+}
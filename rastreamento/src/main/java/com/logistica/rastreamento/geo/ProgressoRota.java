@@ -0,0 +1,34 @@
+package com.logistica.rastreamento.geo;
+
+/**
+ * Resultado mutável da projeção de uma localização na {@link RotaPlanejada}. Cada pedido mantém
+ * o seu e o reutiliza a cada localização, o que evita alocações e guarda o segmento usado como
+ * ponto de partida da próxima busca.
+ *
+ * Não é thread-safe: o dono deve serializar as projeções.
+ */
+public final class ProgressoRota {
+
+    RotaPlanejada rota;
+    int segmento = -1;
+    double percorridoMetros;
+    double distanciaRotaMetros;
+    double kmRestantes;
+    boolean foraDaRota;
+
+    public int segmento() {
+        return segmento;
+    }
+
+    public double distanciaRotaMetros() {
+        return distanciaRotaMetros;
+    }
+
+    public double kmRestantes() {
+        return kmRestantes;
+    }
+
+    public boolean foraDaRota() {
+        return foraDaRota;
+    }
+}
@@ -0,0 +1,24 @@
+package com.logistica.rastreamento.geo;
+
+import com.logistica.rastreamento.exception.OperacaoInvalidaException;
+
+/**
+ * Região retangular delimitada por latitudes e longitudes mínimas e máximas.
+ * Regiões que cruzam o antimeridiano não são suportadas.
+ */
+public record RetanguloGeografico(double latitudeMin, double longitudeMin,
+                                  double latitudeMax, double longitudeMax) {
+
+    public RetanguloGeografico {
+        if (latitudeMin > latitudeMax || longitudeMin > longitudeMax
+                || latitudeMin < -90 || latitudeMax > 90 || longitudeMin < -180 || longitudeMax > 180) {
+            throw new OperacaoInvalidaException("Região inválida: limites mínimos devem ser menores que os máximos "
+                    + "e as coordenadas devem ser válidas");
+        }
+    }
+
+    public boolean contem(double latitude, double longitude) {
+        return latitude >= latitudeMin && latitude <= latitudeMax
+                && longitude >= longitudeMin && longitude <= longitudeMax;
+    }
+}
@@ -0,0 +1,199 @@
+package com.logistica.rastreamento.geo;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Arrays;
+
+import static com.logistica.rastreamento.util.DistanciaUtils.calculateDistanceInKm;
+
+/**
+ * Rota planejada de um pedido (geometria GeoJSON LineString calculada pelo OSRM), pré-processada
+ * para a projeção das localizações recebidas.
+ *
+ * Os vértices são convertidos uma única vez para metros num plano local (projeção equiretangular
+ * centrada no primeiro ponto), com o comprimento acumulado até cada vértice. A projeção de uma
+ * localização procura o segmento mais próximo a partir do segmento da projeção anterior e não
+ * aloca objetos: o resultado é gravado no {@link ProgressoRota} de quem chama.
+ *
+ * Imutável após a construção; pode ser compartilhada entre threads.
+ */
+public final class RotaPlanejada {
+
+    private static final double METROS_POR_GRAU = 6371000.0 * Math.PI / 180.0;
+    // Janela de busca em torno do segmento anterior: pequenos recuos (ruído do GPS) e avanços entre leituras
+    private static final int SEGMENTOS_ANTERIORES = 2;
+    private static final int SEGMENTOS_SEGUINTES = 25;
+
+    private final double latitudeReferencia;
+    private final double longitudeReferencia;
+    private final double metrosPorGrauLongitude;
+    private final double[] x;
+    private final double[] y;
+    private final double[] acumuladoMetros;
+    private final double latitudeFinal;
+    private final double longitudeFinal;
+
+    private RotaPlanejada(double[] latitudes, double[] longitudes) {
+        int pontos = latitudes.length;
+        this.latitudeReferencia = latitudes[0];
+        this.longitudeReferencia = longitudes[0];
+        this.metrosPorGrauLongitude = METROS_POR_GRAU * Math.cos(Math.toRadians(latitudeReferencia));
+        this.x = new double[pontos];
+        this.y = new double[pontos];
+        this.acumuladoMetros = new double[pontos];
+        for (int i = 0; i < pontos; i++) {
+            x[i] = (longitudes[i] - longitudeReferencia) * metrosPorGrauLongitude;
+            y[i] = (latitudes[i] - latitudeReferencia) * METROS_POR_GRAU;
+            if (i > 0) {
+                acumuladoMetros[i] = acumuladoMetros[i - 1] + Math.hypot(x[i] - x[i - 1], y[i] - y[i - 1]);
+            }
+        }
+        this.latitudeFinal = latitudes[pontos - 1];
+        this.longitudeFinal = longitudes[pontos - 1];
+    }
+
+    /**
+     * Lê a geometria GeoJSON LineString ({"type": "LineString", "coordinates": [[lon, lat], ...]}).
+     * Retorna null se a geometria estiver ausente ou não tiver ao menos dois pontos válidos.
+     */
+    public static RotaPlanejada de(JsonNode geometria) {
+        if (geometria == null || !geometria.path("coordinates").isArray()) {
+            return null;
+        }
+        JsonNode coordenadas = geometria.path("coordinates");
+        double[] latitudes = new double[coordenadas.size()];
+        double[] longitudes = new double[coordenadas.size()];
+        int pontos = 0;
+        for (JsonNode coordenada : coordenadas) {
+            if (coordenada.size() < 2 || !coordenada.get(0).isNumber() || !coordenada.get(1).isNumber()) {
+                return null;
+            }
+            double longitude = coordenada.get(0).asDouble();
+            double latitude = coordenada.get(1).asDouble();
+            // Pontos repetidos geram segmentos de comprimento zero
+            if (pontos > 0 && latitude == latitudes[pontos - 1] && longitude == longitudes[pontos - 1]) {
+                continue;
+            }
+            latitudes[pontos] = latitude;
+            longitudes[pontos] = longitude;
+            pontos++;
+        }
+        if (pontos < 2) {
+            return null;
+        }
+        return new RotaPlanejada(Arrays.copyOf(latitudes, pontos), Arrays.copyOf(longitudes, pontos));
+    }
+
+    public double comprimentoKm() {
+        return acumuladoMetros[acumuladoMetros.length - 1] / 1000;
+    }
+
+    public int segmentos() {
+        return x.length - 1;
+    }
+
+    public double latitude(int vertice) {
+        return latitudeReferencia + y[vertice] / METROS_POR_GRAU;
+    }
+
+    public double longitude(int vertice) {
+        return longitudeReferencia + x[vertice] / metrosPorGrauLongitude;
+    }
+
+    /**
+     * Distância do ponto ao segmento informado (entre os vértices segmento e segmento + 1).
+     */
+    public double distanciaAoSegmentoMetros(int segmento, double latitude, double longitude) {
+        double px = (longitude - longitudeReferencia) * metrosPorGrauLongitude;
+        double py = (latitude - latitudeReferencia) * METROS_POR_GRAU;
+        double t = fracaoNoSegmento(segmento, px, py);
+        return Math.hypot(x[segmento] + t * (x[segmento + 1] - x[segmento]) - px,
+                y[segmento] + t * (y[segmento + 1] - y[segmento]) - py);
+    }
+
+    /**
+     * Comprimento da rota do início até a projeção do ponto no segmento informado.
+     */
+    public double percorridoNaProjecaoMetros(int segmento, double latitude, double longitude) {
+        double px = (longitude - longitudeReferencia) * metrosPorGrauLongitude;
+        double py = (latitude - latitudeReferencia) * METROS_POR_GRAU;
+        double t = fracaoNoSegmento(segmento, px, py);
+        return acumuladoMetros[segmento] + t * (acumuladoMetros[segmento + 1] - acumuladoMetros[segmento]);
+    }
+
+    // Posição (0 a 1) da projeção do ponto no segmento, em coordenadas do plano local
+    private double fracaoNoSegmento(int segmento, double px, double py) {
+        double dx = x[segmento + 1] - x[segmento];
+        double dy = y[segmento + 1] - y[segmento];
+        double comprimento2 = dx * dx + dy * dy;
+        double t = comprimento2 > 0 ? ((px - x[segmento]) * dx + (py - y[segmento]) * dy) / comprimento2 : 0;
+        return Math.max(0, Math.min(1, t));
+    }
+
+    /**
+     * Indica se a rota termina a até toleranciaKm do ponto informado (o alvo atual do pedido).
+     */
+    public boolean terminaEm(double latitude, double longitude, double toleranciaKm) {
+        return calculateDistanceInKm(latitudeFinal, longitudeFinal, latitude, longitude) <= toleranciaKm;
+    }
+
+    /**
+     * Projeta a localização na rota e grava no progresso o segmento, a distância até a rota e os
+     * quilômetros restantes ao longo dela. A busca começa no segmento da projeção anterior; a rota
+     * inteira só é percorrida na primeira projeção ou quando o ponto está longe da janela de busca.
+     *
+     * @param limiteForaDaRotaMetros distância da rota acima da qual a localização é considerada fora dela
+     */
+    public void projetar(double latitude, double longitude, double limiteForaDaRotaMetros, ProgressoRota progresso) {
+        double px = (longitude - longitudeReferencia) * metrosPorGrauLongitude;
+        double py = (latitude - latitudeReferencia) * METROS_POR_GRAU;
+        int ultimoSegmento = x.length - 2;
+
+        boolean encontrado = false;
+        if (progresso.rota == this && progresso.segmento >= 0) {
+            encontrado = buscar(px, py, Math.max(progresso.segmento - SEGMENTOS_ANTERIORES, 0),
+                    Math.min(progresso.segmento + SEGMENTOS_SEGUINTES, ultimoSegmento), progresso)
+                    && progresso.distanciaRotaMetros <= limiteForaDaRotaMetros;
+        }
+        if (!encontrado) {
+            buscar(px, py, 0, ultimoSegmento, progresso);
+        }
+        progresso.rota = this;
+        progresso.foraDaRota = progresso.distanciaRotaMetros > limiteForaDaRotaMetros;
+        // Fora da rota, soma a distância até ela ao que falta percorrer
+        double restanteMetros = acumuladoMetros[acumuladoMetros.length - 1] - progresso.percorridoMetros;
+        if (progresso.foraDaRota) {
+            restanteMetros += progresso.distanciaRotaMetros;
+        }
+        progresso.kmRestantes = Math.max(restanteMetros, 0) / 1000;
+    }
+
+    // Segmento mais próximo entre inicio e fim (inclusive); grava segmento, distância e comprimento percorrido
+    private boolean buscar(double px, double py, int inicio, int fim, ProgressoRota progresso) {
+        double melhorDistancia2 = Double.MAX_VALUE;
+        int melhorSegmento = -1;
+        double melhorPercorrido = 0;
+        for (int i = inicio; i <= fim; i++) {
+            double dx = x[i + 1] - x[i];
+            double dy = y[i + 1] - y[i];
+            double comprimento2 = dx * dx + dy * dy;
+            double t = comprimento2 > 0 ? ((px - x[i]) * dx + (py - y[i]) * dy) / comprimento2 : 0;
+            t = Math.max(0, Math.min(1, t));
+            double qx = x[i] + t * dx - px;
+            double qy = y[i] + t * dy - py;
+            double distancia2 = qx * qx + qy * qy;
+            if (distancia2 < melhorDistancia2) {
+                melhorDistancia2 = distancia2;
+                melhorSegmento = i;
+                melhorPercorrido = acumuladoMetros[i] + t * (acumuladoMetros[i + 1] - acumuladoMetros[i]);
+            }
+        }
+        if (melhorSegmento < 0) {
+            return false;
+        }
+        progresso.segmento = melhorSegmento;
+        progresso.distanciaRotaMetros = Math.sqrt(melhorDistancia2);
+        progresso.percorridoMetros = melhorPercorrido;
+        return true;
+    }
+}
@@ -0,0 +1,101 @@
+package com.logistica.rastreamento.grpc;
+
+import com.logistica.rastreamento.dto.LocalizacaoDTO;
+
+import java.time.ZoneOffset;
+
+/**
+ * Codifica as localizações de um stream no formato LocalizacaoCompacta: o primeiro quadro
+ * é completo e os seguintes levam apenas as diferenças em relação ao último quadro enviado.
+ * Os deltas são calculados sobre os valores já quantizados, portanto não acumulam erro
+ * mesmo quando localizações intermediárias são descartadas pelo distribuidor. Como um campo
+ * opcional ausente num delta significa "não mudou", um valor que deixa de existir força um
+ * quadro chave, no qual a ausência significa "sem valor".
+ *
+ * Mantém estado por stream e não é thread-safe: cada stream deve ter o seu codificador
+ * e as mensagens de um stream são codificadas uma por vez.
+ */
+class CodificadorLocalizacaoCompacta {
+
+    private static final double MICROGRAUS_POR_GRAU = 1_000_000.0;
+
+    private final int intervaloQuadroChave;
+
+    private boolean iniciado;
+    private int deltasDesdeQuadroChave;
+    private int latitude;
+    private int longitude;
+    private long timestamp;
+    private StatusVeiculo status;
+    private Integer distanciaMetros;
+    private Integer tempoEstimadoMinutos;
+
+    CodificadorLocalizacaoCompacta(int intervaloQuadroChave) {
+        this.intervaloQuadroChave = intervaloQuadroChave;
+    }
+
+    LocalizacaoCompacta codificar(LocalizacaoDTO dto) {
+        int novaLatitude = (int) Math.round(dto.getLatitude() * MICROGRAUS_POR_GRAU);
+        int novaLongitude = (int) Math.round(dto.getLongitude() * MICROGRAUS_POR_GRAU);
+        long novoTimestamp = dto.getTimestamp().toEpochSecond(ZoneOffset.UTC);
+        StatusVeiculo novoStatus = status(dto.getStatusVeiculo());
+        Integer novaDistancia = dto.getDistanciaDestinoKm() != null
+                ? (int) Math.round(dto.getDistanciaDestinoKm() * 1000)
+                : null;
+        Integer novoTempo = dto.getTempoEstimadoMinutos();
+
+        LocalizacaoCompacta.Builder builder = LocalizacaoCompacta.newBuilder();
+        boolean removido = (distanciaMetros != null && novaDistancia == null)
+                || (tempoEstimadoMinutos != null && novoTempo == null);
+        boolean quadroChave = !iniciado || removido || deltasDesdeQuadroChave >= intervaloQuadroChave;
+        if (quadroChave) {
+            builder.setQuadroChave(true)
+                    .setPedidoId(dto.getPedidoId())
+                    .setLatitude(novaLatitude)
+                    .setLongitude(novaLongitude)
+                    .setTimestamp(novoTimestamp)
+                    .setStatusVeiculo(novoStatus);
+            if (novaDistancia != null) {
+                builder.setDistanciaDestinoMetros(novaDistancia);
+            }
+            if (novoTempo != null) {
+                builder.setTempoEstimadoMinutos(novoTempo);
+            }
+            deltasDesdeQuadroChave = 0;
+            iniciado = true;
+        } else {
+            builder.setLatitude(novaLatitude - latitude)
+                    .setLongitude(novaLongitude - longitude)
+                    .setDeltaTimestamp((int) (novoTimestamp - timestamp));
+            if (novoStatus != status) {
+                builder.setStatusVeiculo(novoStatus);
+            }
+            if (novaDistancia != null && !novaDistancia.equals(distanciaMetros)) {
+                builder.setDistanciaDestinoMetros(novaDistancia);
+            }
+            if (novoTempo != null && !novoTempo.equals(tempoEstimadoMinutos)) {
+                builder.setTempoEstimadoMinutos(novoTempo);
+            }
+            deltasDesdeQuadroChave++;
+        }
+
+        latitude = novaLatitude;
+        longitude = novaLongitude;
+        timestamp = novoTimestamp;
+        status = novoStatus;
+        distanciaMetros = novaDistancia;
+        tempoEstimadoMinutos = novoTempo;
+        return builder.build();
+    }
+
+    private static StatusVeiculo status(String statusVeiculo) {
+        if (statusVeiculo == null) {
+            return StatusVeiculo.STATUS_VEICULO_DESCONHECIDO;
+        }
+        try {
+            return StatusVeiculo.valueOf(statusVeiculo);
+        } catch (IllegalArgumentException e) {
+            return StatusVeiculo.STATUS_VEICULO_DESCONHECIDO;
+        }
+    }
+}
@@ -1,44 +1,59 @@
 package com.logistica.rastreamento.grpc;
 
+import com.logistica.rastreamento.cache.UltimaPosicao;
 import com.logistica.rastreamento.dto.AtualizacaoLocalizacaoDTO;
+import com.logistica.rastreamento.dto.AtualizacaoRegiaoDTO;
 import com.logistica.rastreamento.dto.LocalizacaoDTO;
+import com.logistica.rastreamento.dto.ResumoIngestaoDTO;
 import com.logistica.rastreamento.grpc.*;
+import com.logistica.rastreamento.exception.OperacaoInvalidaException;
+import com.logistica.rastreamento.geo.RetanguloGeografico;
 import com.logistica.rastreamento.service.LocalizacaoObserver;
 import com.logistica.rastreamento.service.RastreamentoService;
+import com.logistica.rastreamento.service.RegiaoObserver;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import net.devh.boot.grpc.server.service.GrpcService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
 
 
 import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Function;
 
 @GrpcService
 public class RastreamentoGrpcServer extends RastreamentoServiceGrpc.RastreamentoServiceImplBase {
 
+    private static final Logger logger = LoggerFactory.getLogger(RastreamentoGrpcServer.class);
+    // Quantidade de localizações recebidas por stream antes de enviá-las ao serviço
+    private static final int TAMANHO_LOTE_STREAM = 500;
+
     private final RastreamentoService rastreamentoService;
+    // Quantidade de deltas do stream compacto entre dois quadros completos
+    private final int intervaloQuadroChave;
     Executor directExecutor = Runnable::run;
 
 
     @Autowired
-    public RastreamentoGrpcServer(RastreamentoService rastreamentoService) {
+    public RastreamentoGrpcServer(RastreamentoService rastreamentoService,
+                                  @Value("${rastreamento.grpc.compacto.intervalo-quadro-chave:30}") int intervaloQuadroChave) {
         this.rastreamentoService = rastreamentoService;
+        this.intervaloQuadroChave = intervaloQuadroChave;
     }
 
     @Override
     public void atualizarLocalizacao(AtualizacaoLocalizacaoRequest request,
                                      StreamObserver<AtualizacaoLocalizacaoResponse> responseObserver) {
 
-        AtualizacaoLocalizacaoDTO dto = new AtualizacaoLocalizacaoDTO();
-        dto.setPedidoId(request.getPedidoId());
-        dto.setMotoristaId(request.getMotoristaId());
-        dto.setLatitude(request.getLatitude());
-        dto.setLongitude(request.getLongitude());
-        dto.setStatusVeiculo(request.getStatusVeiculo());
-
-        boolean sucesso = rastreamentoService.atualizarLocalizacao(dto);
+        boolean sucesso = rastreamentoService.atualizarLocalizacao(converterParaDTO(request));
 
         AtualizacaoLocalizacaoResponse response = AtualizacaoLocalizacaoResponse.newBuilder()
                 .setSucesso(sucesso)
@@ -49,6 +64,61 @@ public class RastreamentoGrpcServer extends RastreamentoServiceGrpc.Rastreamento
         responseObserver.onCompleted();
     }
 
+    @Override
+    public StreamObserver<AtualizacaoLocalizacaoRequest> streamLocalizacoes(
+            StreamObserver<IngestSummary> responseObserver) {
+
+        return new StreamObserver<>() {
+            private final List<AtualizacaoLocalizacaoDTO> pendentes = new ArrayList<>(TAMANHO_LOTE_STREAM);
+            private final IngestSummary.Builder resumo = IngestSummary.newBuilder();
+
+            @Override
+            public void onNext(AtualizacaoLocalizacaoRequest request) {
+                pendentes.add(converterParaDTO(request));
+                if (pendentes.size() >= TAMANHO_LOTE_STREAM) {
+                    processarPendentes();
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                // As localizações já recebidas continuam válidas mesmo se a conexão cair
+                logger.warn("Stream de localizações interrompido: {}", t.getMessage());
+                processarPendentes();
+            }
+
+            @Override
+            public void onCompleted() {
+                processarPendentes();
+                responseObserver.onNext(resumo.build());
+                responseObserver.onCompleted();
+            }
+
+            private void processarPendentes() {
+                if (pendentes.isEmpty()) {
+                    return;
+                }
+                acumular(resumo, rastreamentoService.atualizarLocalizacoes(pendentes));
+                pendentes.clear();
+            }
+        };
+    }
+
+    @Override
+    public void atualizarLocalizacoesLote(LoteLocalizacaoRequest request,
+                                          StreamObserver<IngestSummary> responseObserver) {
+
+        List<AtualizacaoLocalizacaoDTO> dtos = request.getLocalizacoesList().stream()
+                .map(this::converterParaDTO)
+                .toList();
+
+        IngestSummary.Builder resumo = IngestSummary.newBuilder();
+        acumular(resumo, rastreamentoService.atualizarLocalizacoes(dtos));
+
+        responseObserver.onNext(resumo.build());
+        responseObserver.onCompleted();
+    }
+
     @Override
     public void consultarLocalizacao(ConsultaLocalizacaoRequest request,
                                      StreamObserver<LocalizacaoResponse> responseObserver) {
@@ -69,22 +139,96 @@ public class RastreamentoGrpcServer extends RastreamentoServiceGrpc.Rastreamento
     @Override
     public void monitorarLocalizacao(ConsultaLocalizacaoRequest request,
                                      StreamObserver<LocalizacaoResponse> responseObserver) {
+        monitorar(request.getPedidoId(), responseObserver, this::converterParaGrpc);
+    }
+
+    @Override
+    public void monitorarLocalizacaoCompacta(ConsultaLocalizacaoRequest request,
+                                             StreamObserver<LocalizacaoCompacta> responseObserver) {
+        CodificadorLocalizacaoCompacta codificador = new CodificadorLocalizacaoCompacta(intervaloQuadroChave);
+        monitorar(request.getPedidoId(), responseObserver, codificador::codificar);
+    }
+
+    @Override
+    public void monitorarRegiao(BoundingBox request, StreamObserver<FleetUpdate> responseObserver) {
+        ServerCallStreamObserver<FleetUpdate> chamada = (ServerCallStreamObserver<FleetUpdate>) responseObserver;
+        RegiaoObserver observer = new RegiaoObserver() {
+            @Override
+            public void onAtualizacao(AtualizacaoRegiaoDTO atualizacao) {
+                chamada.onNext(converterParaGrpc(atualizacao));
+            }
 
-        Long pedidoId = request.getPedidoId();
+            @Override
+            public boolean prontoParaReceber() {
+                return chamada.isReady();
+            }
+
+            @Override
+            public void encerrar(String motivo) {
+                chamada.onError(Status.RESOURCE_EXHAUSTED.withDescription(motivo).asRuntimeException());
+            }
+        };
+
+        try {
+            rastreamentoService.registrarObservadorRegiao(new RetanguloGeografico(
+                    request.getLatitudeMin(), request.getLongitudeMin(),
+                    request.getLatitudeMax(), request.getLongitudeMax()), observer);
+        } catch (OperacaoInvalidaException e) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription(e.getMessage()).asRuntimeException());
+            return;
+        }
+
+        io.grpc.Context.current().addListener(
+                context -> rastreamentoService.removerObservadorRegiao(observer),
+                io.grpc.Context.currentContextExecutor(directExecutor)
+        );
+    }
+
+    /**
+     * Envia a localização atual e registra um observador para as atualizações seguintes,
+     * convertidas para a mensagem do stream. As conversões de um stream são sequenciais.
+     */
+    private <T> void monitorar(Long pedidoId, StreamObserver<T> responseObserver,
+                               Function<LocalizacaoDTO, T> conversor) {
 
         // Enviar localização atual imediatamente
         try {
             LocalizacaoDTO localizacaoAtual = rastreamentoService.consultarLocalizacaoAtual(pedidoId);
-            responseObserver.onNext(converterParaGrpc(localizacaoAtual));
+            responseObserver.onNext(conversor.apply(localizacaoAtual));
         } catch (Exception e) {
             // Ignorar se não houver dados iniciais
         }
 
-        // Registrar observador para atualizações futuras
+        // Registrar observador para atualizações futuras, respeitando o controle de fluxo do cliente:
+        // enquanto o stream não estiver pronto, o distribuidor mantém apenas a localização mais recente
+        ServerCallStreamObserver<T> chamada = (ServerCallStreamObserver<T>) responseObserver;
+        AtomicReference<Runnable> aoFicarPronto = new AtomicReference<>();
+        chamada.setOnReadyHandler(() -> {
+            Runnable acao = aoFicarPronto.get();
+            if (acao != null) {
+                acao.run();
+            }
+        });
+
         LocalizacaoObserver observer = new LocalizacaoObserver() {
             @Override
             public void onNovaLocalizacao(LocalizacaoDTO localizacao) {
-                responseObserver.onNext(converterParaGrpc(localizacao));
+                chamada.onNext(conversor.apply(localizacao));
+            }
+
+            @Override
+            public boolean prontoParaReceber() {
+                return chamada.isReady();
+            }
+
+            @Override
+            public void aoFicarPronto(Runnable acao) {
+                aoFicarPronto.set(acao);
+            }
+
+            @Override
+            public void encerrar(String motivo) {
+                chamada.onError(Status.RESOURCE_EXHAUSTED.withDescription(motivo).asRuntimeException());
             }
         };
 
@@ -124,6 +268,24 @@ public class RastreamentoGrpcServer extends RastreamentoServiceGrpc.Rastreamento
         responseObserver.onCompleted();
     }
 
+    private AtualizacaoLocalizacaoDTO converterParaDTO(AtualizacaoLocalizacaoRequest request) {
+        AtualizacaoLocalizacaoDTO dto = new AtualizacaoLocalizacaoDTO();
+        // Campos int64 não informados chegam como 0
+        dto.setPedidoId(request.getPedidoId() != 0 ? request.getPedidoId() : null);
+        dto.setMotoristaId(request.getMotoristaId());
+        dto.setLatitude(request.getLatitude());
+        dto.setLongitude(request.getLongitude());
+        dto.setStatusVeiculo(request.getStatusVeiculo());
+        dto.setTimestamp(request.getTimestamp() != 0 ? request.getTimestamp() : null);
+        return dto;
+    }
+
+    private static void acumular(IngestSummary.Builder resumo, ResumoIngestaoDTO parcial) {
+        resumo.setAceitas(resumo.getAceitas() + parcial.getAceitas())
+                .setRejeitadas(resumo.getRejeitadas() + parcial.getRejeitadas())
+                .setDuplicadas(resumo.getDuplicadas() + parcial.getDuplicadas());
+    }
+
     private LocalizacaoResponse converterParaGrpc(LocalizacaoDTO dto) {
         return LocalizacaoResponse.newBuilder()
                 .setPedidoId(dto.getPedidoId())
@@ -135,4 +297,28 @@ public class RastreamentoGrpcServer extends RastreamentoServiceGrpc.Rastreamento
                 .setTempoEstimadoMinutos(dto.getTempoEstimadoMinutos())
                 .build();
     }
+
+    private FleetUpdate converterParaGrpc(AtualizacaoRegiaoDTO atualizacao) {
+        FleetUpdate.Builder builder = FleetUpdate.newBuilder()
+                .setInicial(atualizacao.isInicial())
+                .addAllSairam(atualizacao.getSairam());
+        atualizacao.getEntraram().forEach(posicao -> builder.addEntraram(converterParaGrpc(posicao)));
+        atualizacao.getAtualizados().forEach(posicao -> builder.addAtualizados(converterParaGrpc(posicao)));
+        return builder.build();
+    }
+
+    private PosicaoVeiculo converterParaGrpc(UltimaPosicao posicao) {
+        PosicaoVeiculo.Builder builder = PosicaoVeiculo.newBuilder()
+                .setMotoristaId(posicao.motoristaId())
+                .setLatitude(posicao.latitude())
+                .setLongitude(posicao.longitude())
+                .setTimestamp(posicao.timestamp().toEpochSecond(ZoneOffset.UTC));
+        if (posicao.pedidoId() != null) {
+            builder.setPedidoId(posicao.pedidoId());
+        }
+        if (posicao.statusVeiculo() != null) {
+            builder.setStatusVeiculo(StatusVeiculo.valueOf(posicao.statusVeiculo().name()));
+        }
+        return builder.build();
+    }
 }
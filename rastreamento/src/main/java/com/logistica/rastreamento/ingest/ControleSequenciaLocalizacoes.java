@@ -0,0 +1,177 @@
+package com.logistica.rastreamento.ingest;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Classifica as localizações de cada motorista pelo horário do dispositivo.
+ *
+ * Mantém por motorista a marca d'água (maior horário aceito) e os horários aceitos dentro
+ * da janela de reordenação, em ordem. Localizações posteriores à marca são novas; anteriores,
+ * dentro da janela, são atrasadas (persistidas, mas sem alterar o estado em tempo real); as
+ * já aceitas são duplicadas e as anteriores à janela são descartadas. Como todo horário
+ * dentro da janela fica guardado, a detecção de duplicatas cobre a janela inteira.
+ * Motoristas sem localização há mais que a janela são esquecidos.
+ */
+@Component
+public class ControleSequenciaLocalizacoes {
+
+    private static final Logger logger = LoggerFactory.getLogger(ControleSequenciaLocalizacoes.class);
+    private static final int CAPACIDADE_INICIAL = 16;
+
+    public enum Classificacao {
+        NOVA,
+        ATRASADA,
+        DUPLICADA,
+        FORA_DA_JANELA
+    }
+
+    // Acessado apenas dentro do compute do mapa, o que serializa as operações por motorista
+    private static final class Sequencia {
+        // Horários aceitos em ordem crescente, nas posições [inicio, fim)
+        private long[] horarios = new long[CAPACIDADE_INICIAL];
+        private int inicio;
+        private int fim;
+        private long marcaDagua = Long.MIN_VALUE;
+        private long ultimaAtividadeMs;
+
+        private int buscar(long horario) {
+            return Arrays.binarySearch(horarios, inicio, fim, horario);
+        }
+
+        private boolean contem(long horario) {
+            return buscar(horario) >= 0;
+        }
+
+        private void adicionar(long horario) {
+            // Localizações novas entram no fim; apenas as atrasadas deslocam elementos. Horários do
+            // servidor não passam pela verificação de duplicata e podem se repetir
+            int posicao = fim > inicio && horarios[fim - 1] < horario ? fim : buscar(horario);
+            if (posicao < 0) {
+                posicao = -posicao - 1;
+            }
+            if (fim == horarios.length) {
+                int deslocamento = inicio;
+                compactar();
+                posicao -= deslocamento;
+            }
+            System.arraycopy(horarios, posicao, horarios, posicao + 1, fim - posicao);
+            horarios[posicao] = horario;
+            fim++;
+            marcaDagua = Math.max(marcaDagua, horario);
+        }
+
+        private void remover(long horario) {
+            int posicao = buscar(horario);
+            if (posicao < 0) {
+                return;
+            }
+            System.arraycopy(horarios, posicao + 1, horarios, posicao, fim - posicao - 1);
+            fim--;
+            if (marcaDagua == horario) {
+                marcaDagua = fim > inicio ? horarios[fim - 1] : Long.MIN_VALUE;
+            }
+        }
+
+        // Descarta os horários anteriores ao limite, que já não podem ser aceitos
+        private void descartarAnteriores(long limite) {
+            while (inicio < fim && horarios[inicio] < limite) {
+                inicio++;
+            }
+        }
+
+        // Move os horários para o começo do array, dobrando-o se estiver cheio
+        private void compactar() {
+            int quantidade = fim - inicio;
+            long[] destino = quantidade == horarios.length ? new long[horarios.length * 2] : horarios;
+            System.arraycopy(horarios, inicio, destino, 0, quantidade);
+            horarios = destino;
+            inicio = 0;
+            fim = quantidade;
+        }
+    }
+
+    private final long janelaReordenacaoMs;
+    private final Map<Long, Sequencia> sequencias = new ConcurrentHashMap<>();
+    private final Map<Classificacao, Counter> contadores = new ConcurrentHashMap<>();
+
+    public ControleSequenciaLocalizacoes(MeterRegistry meterRegistry,
+                                         @Value("${rastreamento.ingest.sequencia.janela-reordenacao-segundos:300}") long janelaReordenacaoSegundos) {
+        this.janelaReordenacaoMs = janelaReordenacaoSegundos * 1000;
+
+        meterRegistry.gaugeMapSize("rastreamento.ingest.sequencia.motoristas", Tags.empty(), sequencias);
+        for (Classificacao classificacao : Classificacao.values()) {
+            contadores.put(classificacao, meterRegistry.counter("rastreamento.ingest.sequencia",
+                    "classificacao", classificacao.name().toLowerCase()));
+        }
+    }
+
+    /**
+     * Classifica e, se aceita (NOVA ou ATRASADA), registra a localização do motorista.
+     *
+     * @param horarioMs       horário da localização em epoch (ms)
+     * @param doDispositivo   false quando o horário é o do servidor; nesse caso não há verificação de duplicata
+     */
+    public Classificacao classificar(long motoristaId, long horarioMs, boolean doDispositivo) {
+        Classificacao[] resultado = new Classificacao[1];
+        sequencias.compute(motoristaId, (id, sequencia) -> {
+            Sequencia atual = sequencia != null ? sequencia : new Sequencia();
+            atual.ultimaAtividadeMs = System.currentTimeMillis();
+            if (horarioMs > atual.marcaDagua) {
+                resultado[0] = Classificacao.NOVA;
+            } else if (doDispositivo && atual.contem(horarioMs)) {
+                resultado[0] = Classificacao.DUPLICADA;
+            } else if (atual.marcaDagua - horarioMs > janelaReordenacaoMs) {
+                resultado[0] = Classificacao.FORA_DA_JANELA;
+            } else {
+                resultado[0] = Classificacao.ATRASADA;
+            }
+            if (resultado[0] == Classificacao.NOVA || resultado[0] == Classificacao.ATRASADA) {
+                atual.adicionar(horarioMs);
+                atual.descartarAnteriores(atual.marcaDagua - janelaReordenacaoMs);
+            }
+            return atual;
+        });
+        contadores.get(resultado[0]).increment();
+        return resultado[0];
+    }
+
+    /**
+     * Desfaz o registro de uma localização aceita que não pôde ser enfileirada,
+     * para que o reenvio pelo dispositivo não seja tratado como duplicata.
+     */
+    public void desfazer(long motoristaId, long horarioMs) {
+        sequencias.computeIfPresent(motoristaId, (id, sequencia) -> {
+            sequencia.remover(horarioMs);
+            return sequencia;
+        });
+    }
+
+    /**
+     * Esquece os motoristas sem localização há mais que a janela de reordenação: qualquer
+     * localização que chegue depois disso passa a ser a primeira da sequência.
+     */
+    @Scheduled(fixedDelayString = "${rastreamento.ingest.sequencia.intervalo-limpeza-ms:60000}")
+    public void removerInativos() {
+        long limite = System.currentTimeMillis() - janelaReordenacaoMs;
+        int antes = sequencias.size();
+        for (Long id : sequencias.keySet()) {
+            sequencias.computeIfPresent(id, (motoristaId, sequencia) ->
+                    sequencia.ultimaAtividadeMs < limite ? null : sequencia);
+        }
+        int removidos = antes - sequencias.size();
+        if (removidos > 0) {
+            logger.debug("{} motoristas inativos removidos do controle de sequência", removidos);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.logistica.rastreamento.ingest;
+
+import com.logistica.rastreamento.model.EstatisticaDiariaMotorista;
+import com.logistica.rastreamento.model.Localizacao;
+import com.logistica.rastreamento.model.PedidoDiarioMotorista;
+import com.logistica.rastreamento.model.PosicaoAtual;
+import com.logistica.rastreamento.model.StatusVeiculo;
+import com.logistica.rastreamento.repository.PosicaoAtualRepository;
+import com.logistica.rastreamento.repository.PreenchimentoEstatisticasRepository;
+import com.logistica.rastreamento.util.DistanciaUtils;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Calcula, para cada lote de localizações persistido, os incrementos das estatísticas
+ * diárias dos motoristas (registros, distância, tempo em movimento, contagem por status
+ * e pedidos atendidos). Guarda a localização anterior de cada motorista para medir o
+ * trecho percorrido entre lotes; é usado apenas pela thread de flush da ingestão.
+ *
+ * Pressupõe um único escritor das estatísticas de cada motorista: as localizações de um
+ * motorista chegam sempre à mesma instância, que é a única a agregá-las. A localização
+ * anterior que ainda não está em memória (após um reinício) é lida de posicao_atual.
+ */
+@Component
+public class EstatisticasMotoristaAgregador {
+
+    private static final Logger logger = LoggerFactory.getLogger(EstatisticasMotoristaAgregador.class);
+
+    private record Anterior(double latitude, double longitude, LocalDateTime timestamp, LocalDateTime ultimoMovimento) {
+    }
+
+    public record Incrementos(Collection<EstatisticaDiariaMotorista> dias, Collection<PedidoDiarioMotorista> pedidos) {
+    }
+
+    private final PreenchimentoEstatisticasRepository preenchimentoEstatisticasRepository;
+    private final PosicaoAtualRepository posicaoAtualRepository;
+    private final Map<Long, Anterior> anteriores = new HashMap<>();
+
+    // Localizações anteriores a este instante são contabilizadas pelo preenchimento inicial
+    private volatile LocalDateTime contarAPartirDe = LocalDateTime.MIN;
+
+    public EstatisticasMotoristaAgregador(PreenchimentoEstatisticasRepository preenchimentoEstatisticasRepository,
+                                          PosicaoAtualRepository posicaoAtualRepository) {
+        this.preenchimentoEstatisticasRepository = preenchimentoEstatisticasRepository;
+        this.posicaoAtualRepository = posicaoAtualRepository;
+    }
+
+    /**
+     * Na primeira execução (tabela vazia), gera as estatísticas a partir do histórico anterior ao
+     * corte. Roda antes que o buffer de ingestão (que depende deste componente) possa agregar o
+     * primeiro lote; assim nenhuma localização é contada duas vezes.
+     */
+    @PostConstruct
+    public void preencherSeNecessario() {
+        LocalDateTime corte = LocalDateTime.now();
+        try {
+            if (preenchimentoEstatisticasRepository.preencherSeVazia(corte)) {
+                contarAPartirDe = corte;
+                logger.info("Estatísticas diárias preenchidas a partir do histórico anterior a {}", corte);
+            }
+        } catch (Exception e) {
+            logger.error("Erro ao preencher estatísticas diárias: {}", e.getMessage(), e);
+        }
+    }
+
+    public Incrementos agregar(List<Localizacao> lote) {
+        Map<EstatisticaDiariaMotorista.Chave, EstatisticaDiariaMotorista> dias = new HashMap<>();
+        Set<PedidoDiarioMotorista.Chave> pedidos = new HashSet<>();
+        LocalDateTime limite = contarAPartirDe;
+        carregarAnteriores(lote);
+
+        for (Localizacao localizacao : lote) {
+            if (localizacao.getTimestamp().isBefore(limite)) {
+                continue;
+            }
+            LocalDate data = localizacao.getTimestamp().toLocalDate();
+            EstatisticaDiariaMotorista dia = dias.computeIfAbsent(
+                    new EstatisticaDiariaMotorista.Chave(localizacao.getMotoristaId(), data),
+                    chave -> novoDia(chave.getMotoristaId(), chave.getData()));
+
+            dia.setTotalRegistros(dia.getTotalRegistros() + 1);
+            switch (localizacao.getStatusVeiculo()) {
+                case DISPONIVEL -> dia.setRegistrosDisponivel(dia.getRegistrosDisponivel() + 1);
+                case PARADO -> dia.setRegistrosParado(dia.getRegistrosParado() + 1);
+                case EM_MOVIMENTO -> dia.setRegistrosEmMovimento(dia.getRegistrosEmMovimento() + 1);
+            }
+            if (localizacao.getPedidoId() != null) {
+                pedidos.add(new PedidoDiarioMotorista.Chave(localizacao.getMotoristaId(), data, localizacao.getPedidoId()));
+            }
+            acumularTrecho(dia, localizacao);
+        }
+
+        return new Incrementos(dias.values(), pedidos.stream()
+                .map(chave -> new PedidoDiarioMotorista(chave.getMotoristaId(), chave.getData(), chave.getPedidoId()))
+                .toList());
+    }
+
+    // Após um reinício, a localização anterior de cada motorista é a última persistida
+    private void carregarAnteriores(List<Localizacao> lote) {
+        Set<Long> faltantes = new HashSet<>();
+        for (Localizacao localizacao : lote) {
+            if (!anteriores.containsKey(localizacao.getMotoristaId())) {
+                faltantes.add(localizacao.getMotoristaId());
+            }
+        }
+        if (faltantes.isEmpty()) {
+            return;
+        }
+        try {
+            for (PosicaoAtual posicao : posicaoAtualRepository.findAllById(faltantes)) {
+                anteriores.put(posicao.getMotoristaId(), new Anterior(posicao.getLatitude(), posicao.getLongitude(),
+                        posicao.getTimestamp(),
+                        posicao.getStatusVeiculo() == StatusVeiculo.EM_MOVIMENTO ? posicao.getTimestamp() : null));
+            }
+        } catch (Exception e) {
+            // Sem a posição anterior, o primeiro trecho de cada motorista não é contado
+            logger.warn("Erro ao carregar posições anteriores dos motoristas: {}", e.getMessage());
+        }
+    }
+
+    // Distância desde a localização anterior e tempo entre registros EM_MOVIMENTO consecutivos
+    private void acumularTrecho(EstatisticaDiariaMotorista dia, Localizacao localizacao) {
+        Anterior anterior = anteriores.get(localizacao.getMotoristaId());
+        if (anterior != null && localizacao.getTimestamp().isBefore(anterior.timestamp())) {
+            // Fora de ordem: conta apenas o registro, sem trecho
+            return;
+        }
+
+        LocalDateTime ultimoMovimento = anterior != null ? anterior.ultimoMovimento() : null;
+        if (anterior != null) {
+            dia.setDistanciaKm(dia.getDistanciaKm() + DistanciaUtils.calculateDistanceInKm(
+                    anterior.latitude(), anterior.longitude(), localizacao.getLatitude(), localizacao.getLongitude()));
+        }
+        if (localizacao.getStatusVeiculo() == StatusVeiculo.EM_MOVIMENTO) {
+            if (ultimoMovimento != null) {
+                dia.setMovimentoSegundos(dia.getMovimentoSegundos()
+                        + Duration.between(ultimoMovimento, localizacao.getTimestamp()).getSeconds());
+            }
+            ultimoMovimento = localizacao.getTimestamp();
+        }
+        anteriores.put(localizacao.getMotoristaId(), new Anterior(
+                localizacao.getLatitude(), localizacao.getLongitude(), localizacao.getTimestamp(), ultimoMovimento));
+    }
+
+    private static EstatisticaDiariaMotorista novoDia(Long motoristaId, LocalDate data) {
+        EstatisticaDiariaMotorista dia = new EstatisticaDiariaMotorista();
+        dia.setMotoristaId(motoristaId);
+        dia.setData(data);
+        dia.setTotalRegistros(0L);
+        dia.setDistanciaKm(0.0);
+        dia.setMovimentoSegundos(0L);
+        dia.setRegistrosDisponivel(0L);
+        dia.setRegistrosParado(0L);
+        dia.setRegistrosEmMovimento(0L);
+        return dia;
+    }
+}
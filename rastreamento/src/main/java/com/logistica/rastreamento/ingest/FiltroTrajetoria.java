@@ -0,0 +1,102 @@
+package com.logistica.rastreamento.ingest;
+
+import com.logistica.rastreamento.model.Localizacao;
+import com.logistica.rastreamento.util.DistanciaUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Filtro de dead reckoning aplicado antes da persistência das localizações.
+ * Para cada motorista, extrapola a posição a partir dos dois últimos pontos persistidos
+ * (velocidade constante); uma nova localização só é persistida se se afastar da posição
+ * prevista mais do que a tolerância, se mudar o status ou o pedido, ou se o intervalo
+ * máximo sem persistir for atingido. Pontos descartados continuam atualizando a posição
+ * em memória e os observadores; apenas o histórico fica mais esparso.
+ */
+@Component
+public class FiltroTrajetoria {
+
+    // Última localização persistida e velocidade estimada (graus por segundo)
+    private record Estado(Localizacao referencia, double velocidadeLatitude, double velocidadeLongitude) {
+    }
+
+    private final boolean habilitado;
+    private final double toleranciaMetros;
+    private final Duration intervaloMaximo;
+    private final Map<Long, Estado> estados = new ConcurrentHashMap<>();
+    private final Counter descartadas;
+
+    public FiltroTrajetoria(MeterRegistry meterRegistry,
+                            @Value("${rastreamento.ingest.simplificacao.habilitada:false}") boolean habilitado,
+                            @Value("${rastreamento.ingest.simplificacao.tolerancia-metros:15}") double toleranciaMetros,
+                            @Value("${rastreamento.ingest.simplificacao.intervalo-maximo-segundos:60}") long intervaloMaximoSegundos) {
+        this.habilitado = habilitado;
+        this.toleranciaMetros = toleranciaMetros;
+        this.intervaloMaximo = Duration.ofSeconds(intervaloMaximoSegundos);
+        this.descartadas = meterRegistry.counter("rastreamento.ingest.simplificacao.descartadas");
+    }
+
+    /**
+     * Indica se a localização deve ser persistida. Não altera a referência: quem chama
+     * confirma com {@link #registrarPersistida(Localizacao)} depois que ela for enfileirada.
+     */
+    public boolean devePersistir(Localizacao localizacao) {
+        if (!habilitado) {
+            return true;
+        }
+        Estado estado = estados.get(localizacao.getMotoristaId());
+        if (estado != null && previsivel(estado, localizacao)) {
+            descartadas.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Passa a usar a localização, já aceita pela fila de persistência, como referência do motorista.
+     */
+    public void registrarPersistida(Localizacao localizacao) {
+        if (!habilitado) {
+            return;
+        }
+        estados.compute(localizacao.getMotoristaId(), (id, estado) -> novoEstado(estado, localizacao));
+    }
+
+    private boolean previsivel(Estado estado, Localizacao localizacao) {
+        Localizacao referencia = estado.referencia();
+        if (!Objects.equals(referencia.getPedidoId(), localizacao.getPedidoId())
+                || referencia.getStatusVeiculo() != localizacao.getStatusVeiculo()) {
+            return false;
+        }
+        Duration decorrido = Duration.between(referencia.getTimestamp(), localizacao.getTimestamp());
+        if (decorrido.isNegative() || decorrido.compareTo(intervaloMaximo) >= 0) {
+            return false;
+        }
+        double segundos = decorrido.toMillis() / 1000.0;
+        double latitudePrevista = referencia.getLatitude() + estado.velocidadeLatitude() * segundos;
+        double longitudePrevista = referencia.getLongitude() + estado.velocidadeLongitude() * segundos;
+        return DistanciaUtils.calculateDistanceInMeters(latitudePrevista, longitudePrevista,
+                localizacao.getLatitude(), localizacao.getLongitude()) <= toleranciaMetros;
+    }
+
+    private static Estado novoEstado(Estado anterior, Localizacao localizacao) {
+        double velocidadeLatitude = 0;
+        double velocidadeLongitude = 0;
+        if (anterior != null) {
+            Localizacao referencia = anterior.referencia();
+            double segundos = Duration.between(referencia.getTimestamp(), localizacao.getTimestamp()).toMillis() / 1000.0;
+            if (segundos > 0) {
+                velocidadeLatitude = (localizacao.getLatitude() - referencia.getLatitude()) / segundos;
+                velocidadeLongitude = (localizacao.getLongitude() - referencia.getLongitude()) / segundos;
+            }
+        }
+        return new Estado(localizacao, velocidadeLatitude, velocidadeLongitude);
+    }
+}
@@ -0,0 +1,278 @@
+package com.logistica.rastreamento.ingest;
+
+import com.logistica.rastreamento.model.Localizacao;
+import com.logistica.rastreamento.repository.LocalizacaoBatchRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Estágio de ingestão write-behind das localizações.
+ * As atualizações são colocadas em uma fila limitada e persistidas em lotes
+ * (por tamanho ou por tempo) por uma thread dedicada. Quando a fila enche,
+ * o produtor aguarda até o timeout configurado e a atualização é rejeitada.
+ *
+ * Um lote que falha por erro transitório (ex.: banco indisponível) não é descartado: a gravação
+ * é repetida com espera exponencial até ter sucesso, enquanto a fila absorve as novas
+ * localizações e, cheia, passa a rejeitá-las. Já um erro permanente (ex.: violação de
+ * restrição) não se resolve repetindo: o lote é regravado linha a linha e as linhas recusadas
+ * são descartadas, com registro no log e na métrica de falhas. Localizações descartadas, ou
+ * abandonadas no encerramento, são retiradas do controle de sequência para que o reenvio pelo
+ * dispositivo não seja tratado como duplicata.
+ */
+@Component
+public class LocalizacaoIngestBuffer {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalizacaoIngestBuffer.class);
+
+    private static final EstatisticasMotoristaAgregador.Incrementos SEM_INCREMENTOS =
+            new EstatisticasMotoristaAgregador.Incrementos(List.of(), List.of());
+
+    private final LocalizacaoBatchRepository localizacaoBatchRepository;
+    private final EstatisticasMotoristaAgregador estatisticasMotoristaAgregador;
+    private final ControleSequenciaLocalizacoes controleSequenciaLocalizacoes;
+    private final BlockingQueue<Localizacao> fila;
+    private final int tamanhoLote;
+    private final long intervaloFlushMs;
+    private final long timeoutEnfileiramentoMs;
+    private final long esperaInicialMs;
+    private final long esperaMaximaMs;
+
+    private final Timer tempoFlush;
+    private final Counter persistidas;
+    private final Counter rejeitadas;
+    private final Counter falhas;
+    private final Counter retentativas;
+
+    private volatile boolean ativo = true;
+    private Thread threadFlush;
+
+    public LocalizacaoIngestBuffer(LocalizacaoBatchRepository localizacaoBatchRepository,
+                                   EstatisticasMotoristaAgregador estatisticasMotoristaAgregador,
+                                   ControleSequenciaLocalizacoes controleSequenciaLocalizacoes,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${rastreamento.ingest.capacidade-fila:10000}") int capacidadeFila,
+                                   @Value("${rastreamento.ingest.tamanho-lote:500}") int tamanhoLote,
+                                   @Value("${rastreamento.ingest.intervalo-flush-ms:1000}") long intervaloFlushMs,
+                                   @Value("${rastreamento.ingest.timeout-enfileiramento-ms:200}") long timeoutEnfileiramentoMs,
+                                   @Value("${rastreamento.ingest.espera-inicial-retentativa-ms:100}") long esperaInicialMs,
+                                   @Value("${rastreamento.ingest.espera-maxima-retentativa-ms:30000}") long esperaMaximaMs) {
+        this.localizacaoBatchRepository = localizacaoBatchRepository;
+        this.estatisticasMotoristaAgregador = estatisticasMotoristaAgregador;
+        this.controleSequenciaLocalizacoes = controleSequenciaLocalizacoes;
+        this.fila = new ArrayBlockingQueue<>(capacidadeFila);
+        this.tamanhoLote = tamanhoLote;
+        this.intervaloFlushMs = intervaloFlushMs;
+        this.timeoutEnfileiramentoMs = timeoutEnfileiramentoMs;
+        this.esperaInicialMs = Math.max(esperaInicialMs, 1);
+        this.esperaMaximaMs = Math.max(esperaMaximaMs, this.esperaInicialMs);
+
+        meterRegistry.gauge("rastreamento.ingest.fila.tamanho", fila, BlockingQueue::size);
+        this.tempoFlush = Timer.builder("rastreamento.ingest.flush")
+                .description("Latência de persistência de um lote de localizações")
+                .register(meterRegistry);
+        this.persistidas = meterRegistry.counter("rastreamento.ingest.persistidas");
+        this.rejeitadas = meterRegistry.counter("rastreamento.ingest.rejeitadas");
+        this.falhas = meterRegistry.counter("rastreamento.ingest.falhas");
+        this.retentativas = meterRegistry.counter("rastreamento.ingest.retentativas");
+    }
+
+    @PostConstruct
+    public void iniciar() {
+        threadFlush = new Thread(this::executarFlush, "localizacao-ingest-flush");
+        threadFlush.setDaemon(true);
+        threadFlush.start();
+    }
+
+    @PreDestroy
+    public void encerrar() throws InterruptedException {
+        ativo = false;
+        threadFlush.join(intervaloFlushMs * 5);
+    }
+
+    /**
+     * Coloca a localização na fila de persistência.
+     *
+     * @return false se a fila continuar cheia após o timeout de enfileiramento
+     */
+    public boolean enfileirar(Localizacao localizacao) {
+        try {
+            if (fila.offer(localizacao, timeoutEnfileiramentoMs, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        rejeitadas.increment();
+        logger.warn("Fila de ingestão cheia, localização do motorista {} rejeitada", localizacao.getMotoristaId());
+        return false;
+    }
+
+    private void executarFlush() {
+        List<Localizacao> lote = new ArrayList<>(tamanhoLote);
+        while (ativo || !fila.isEmpty()) {
+            try {
+                Localizacao primeira = fila.poll(intervaloFlushMs, TimeUnit.MILLISECONDS);
+                if (primeira == null) {
+                    continue;
+                }
+                lote.add(primeira);
+                completarLote(lote);
+            } catch (InterruptedException e) {
+                // Encerramento: persiste o que restou na fila antes de sair
+                fila.drainTo(lote);
+                ativo = false;
+            }
+            persistir(lote);
+        }
+    }
+
+    // Agrupa registros até atingir o tamanho do lote ou o intervalo máximo de espera
+    private void completarLote(List<Localizacao> lote) throws InterruptedException {
+        long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(intervaloFlushMs);
+        while (lote.size() < tamanhoLote) {
+            fila.drainTo(lote, tamanhoLote - lote.size());
+            long restante = limite - System.nanoTime();
+            if (lote.size() >= tamanhoLote || restante <= 0) {
+                return;
+            }
+            Localizacao proxima = fila.poll(restante, TimeUnit.NANOSECONDS);
+            if (proxima == null) {
+                return;
+            }
+            lote.add(proxima);
+        }
+    }
+
+    private void persistir(List<Localizacao> lote) {
+        if (lote.isEmpty()) {
+            return;
+        }
+        // Localizações atrasadas chegam fora de ordem: as estatísticas são agregadas em ordem cronológica
+        lote.sort(Comparator.comparing(Localizacao::getTimestamp));
+        // Agregado uma única vez: o agregador guarda a última localização de cada motorista
+        EstatisticasMotoristaAgregador.Incrementos incrementos = estatisticasMotoristaAgregador.agregar(lote);
+        try {
+            if (gravarComRetentativas(lote, () -> localizacaoBatchRepository.inserirEmLote(lote, incrementos))) {
+                persistidas.increment(lote.size());
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Lote de {} localizações recusado pelo banco, gravando linha a linha: {}",
+                    lote.size(), e.getMessage());
+            persistirLinhaALinha(lote, incrementos);
+        } finally {
+            lote.clear();
+        }
+    }
+
+    // Isola as linhas que o banco recusa: as demais são gravadas e os incrementos das
+    // estatísticas aplicados à parte, uma única vez
+    private void persistirLinhaALinha(List<Localizacao> lote, EstatisticasMotoristaAgregador.Incrementos incrementos) {
+        List<Localizacao> descartadas = new ArrayList<>();
+        for (int i = 0; i < lote.size(); i++) {
+            List<Localizacao> linha = List.of(lote.get(i));
+            try {
+                if (!gravarComRetentativas(linha, () -> localizacaoBatchRepository.inserirEmLote(linha, SEM_INCREMENTOS))) {
+                    // Encerramento durante a regravação: o restante já foi liberado
+                    lote.subList(i + 1, lote.size()).forEach(this::liberar);
+                    falhas.increment(lote.size() - i - 1);
+                    break;
+                }
+                persistidas.increment();
+            } catch (RuntimeException e) {
+                logger.error("Localização do motorista {} em {} descartada: {}",
+                        linha.get(0).getMotoristaId(), linha.get(0).getTimestamp(), e.getMessage(), e);
+                descartadas.add(linha.get(0));
+            }
+        }
+        descartar(descartadas);
+        try {
+            gravarComRetentativas(List.of(), () -> localizacaoBatchRepository.gravarEstatisticas(incrementos));
+        } catch (RuntimeException e) {
+            logger.error("Estatísticas de {} dias de motorista descartadas: {}",
+                    incrementos.dias().size(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Executa a gravação repetindo, com espera exponencial, enquanto a falha for transitória.
+     * Falhas permanentes são propagadas sem nova tentativa.
+     *
+     * @return false se a gravação foi abandonada no encerramento (as localizações já foram liberadas)
+     */
+    private boolean gravarComRetentativas(List<Localizacao> localizacoes, Runnable gravacao) {
+        long espera = esperaInicialMs;
+        while (true) {
+            try {
+                tempoFlush.record(gravacao);
+                return true;
+            } catch (RuntimeException e) {
+                if (!transitoria(e)) {
+                    throw e;
+                }
+                if (!ativo) {
+                    abandonar(localizacoes, e);
+                    return false;
+                }
+                retentativas.increment();
+                logger.error("Erro ao persistir {} localizações, nova tentativa em {} ms: {}",
+                        localizacoes.size(), espera, e.getMessage());
+            }
+            try {
+                Thread.sleep(espera);
+            } catch (InterruptedException e) {
+                // Encerramento: ainda faz uma última tentativa
+                ativo = false;
+            }
+            espera = Math.min(espera * 2, esperaMaximaMs);
+        }
+    }
+
+    // Banco indisponível, deadlock, timeout: a mesma gravação pode ter sucesso mais tarde.
+    // CannotCreateTransactionException é como a falha de conexão chega quando o banco cai
+    private static boolean transitoria(RuntimeException e) {
+        return e instanceof TransientDataAccessException
+                || e instanceof DataAccessResourceFailureException
+                || e instanceof RecoverableDataAccessException
+                || e instanceof CannotCreateTransactionException;
+    }
+
+    private void abandonar(List<Localizacao> lote, Exception erro) {
+        falhas.increment(lote.size());
+        logger.error("Lote de {} localizações descartado no encerramento: {}", lote.size(), erro.getMessage(), erro);
+        lote.forEach(this::liberar);
+    }
+
+    // Destino das linhas recusadas pelo banco: ficam só no log e na métrica de falhas
+    private void descartar(List<Localizacao> descartadas) {
+        if (descartadas.isEmpty()) {
+            return;
+        }
+        falhas.increment(descartadas.size());
+        descartadas.forEach(this::liberar);
+    }
+
+    // Retira a localização do controle de sequência para que o reenvio não seja tratado como duplicata
+    private void liberar(Localizacao localizacao) {
+        controleSequenciaLocalizacoes.desfazer(localizacao.getMotoristaId(),
+                localizacao.getTimestamp().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+    }
+}
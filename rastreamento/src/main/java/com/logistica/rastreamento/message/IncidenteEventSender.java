@@ -2,6 +2,8 @@ package com.logistica.rastreamento.message;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.logistica.rastreamento.dto.LocalizacaoDTO;
+import com.logistica.rastreamento.geo.CorredoresRotasIndex;
+import com.logistica.rastreamento.geo.EstimadorChegada;
 import com.logistica.rastreamento.model.Incidente;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -10,9 +12,12 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.time.Instant;
+import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static com.logistica.rastreamento.util.DistanciaUtils.calculateDistanceInKm;
 
@@ -21,45 +26,96 @@ public class IncidenteEventSender {
 
     private static final Logger logger = LoggerFactory.getLogger(IncidenteEventSender.class);
     private final RabbitTemplate rabbitTemplate;
+    private final EstimadorChegada estimadorChegada;
     @Value("${rabbitmq.exchange}")
     private String exchange;
 
-    public IncidenteEventSender(RabbitTemplate rabbitTemplate) {
+    public IncidenteEventSender(RabbitTemplate rabbitTemplate, EstimadorChegada estimadorChegada) {
         this.rabbitTemplate = rabbitTemplate;
+        this.estimadorChegada = estimadorChegada;
     }
 
-    public void enviarNotificacaoIncidenteReportado(Incidente incidente, List<LocalizacaoDTO> motoristasProximos) {
+    /**
+     * Envia ALERTA_INCIDENTE aos motoristas afetados: os cuja rota restante passa pelo incidente e,
+     * para pedidos sem rota indexada, os motoristas dentro do raio de impacto.
+     */
+    public void enviarNotificacaoIncidenteReportado(Incidente incidente, List<CorredoresRotasIndex.Afetado> afetadosNaRota,
+                                                    List<LocalizacaoDTO> motoristasProximos) {
         logger.debug("Enviando notificação de incidente reportado: {}", incidente);
 
         try {
+            Set<Long> notificados = new HashSet<>();
+            for (CorredoresRotasIndex.Afetado afetado : afetadosNaRota) {
+                if (notificados.add(afetado.motoristaId())) {
+                    Map<String, Object> dados = dadosAlerta(incidente, afetado.motoristaId(), afetado.pedidoId(),
+                            afetado.distanciaAtePontoKm(), afetado.distanciaDaRotaKm());
+                    dados.put("naRota", true);
+                    dados.put("distanciaDaRotaKm", afetado.distanciaDaRotaKm());
+                    enviarAlerta(afetado.motoristaId(), dados);
+                }
+            }
             var motoristasANotificacar = motoristasProximos.stream()
                     .filter(distinctByKey(LocalizacaoDTO::getMotoristaId))
+                    .filter(motorista -> !notificados.contains(motorista.getMotoristaId()))
                     .toList();
             for (LocalizacaoDTO motorista : motoristasANotificacar) {
-                Map<String, Object> notificacaoIndividual = new HashMap<>();
-                notificacaoIndividual.put("evento", "ALERTA_INCIDENTE");
-                notificacaoIndividual.put("origem", "RASTREAMENTO_SERVICE");
-                notificacaoIndividual.put("timestamp", Instant.now().toString());
-
-                Map<String, Object> dadosIndividuais = new HashMap<>();
-                dadosIndividuais.put("incidenteId", incidente.getId());
-                dadosIndividuais.put("motoristaId", motorista.getMotoristaId());
-                dadosIndividuais.put("tipo", incidente.getTipo().name());
-                dadosIndividuais.put("latitude", incidente.getLatitude());
-                dadosIndividuais.put("longitude", incidente.getLongitude());
-                dadosIndividuais.put("distanciaKm", calculateDistanceInKm(
-                        motorista.getLatitude(), motorista.getLongitude(),
-                        incidente.getLatitude(), incidente.getLongitude()));
-
-                notificacaoIndividual.put("dados", dadosIndividuais);
-
-                String routingKeyMotorista = "incidentes.alerta.motorista." + motorista.getMotoristaId();
-                rabbitTemplate.convertAndSend(exchange, routingKeyMotorista, notificacaoIndividual);
+                // Sem rota, não se sabe se o trajeto passa pelo incidente: conta como se passasse
+                Map<String, Object> dados = dadosAlerta(incidente, motorista.getMotoristaId(), motorista.getPedidoId(),
+                        calculateDistanceInKm(
+                                motorista.getLatitude(), motorista.getLongitude(),
+                                incidente.getLatitude(), incidente.getLongitude()), 0);
+                dados.put("naRota", false);
+                enviarAlerta(motorista.getMotoristaId(), dados);
             }
         } catch (Exception e) {
             logger.error("Erro ao enviar notificação de incidente: {}", e.getMessage());
         }
     }
+
+    private Map<String, Object> dadosAlerta(Incidente incidente, Long motoristaId, Long pedidoId,
+                                            double distanciaKm, double distanciaDaRotaKm) {
+        Map<String, Object> dadosIndividuais = new HashMap<>();
+        dadosIndividuais.put("incidenteId", incidente.getId());
+        dadosIndividuais.put("motoristaId", motoristaId);
+        dadosIndividuais.put("pedidoId", pedidoId);
+        dadosIndividuais.put("tipo", incidente.getTipo().name());
+        dadosIndividuais.put("latitude", incidente.getLatitude());
+        dadosIndividuais.put("longitude", incidente.getLongitude());
+        dadosIndividuais.put("distanciaKm", distanciaKm);
+        dadosIndividuais.put("atrasoEstimadoMinutos",
+                atrasoEstimadoMinutos(incidente, motoristaId, distanciaKm, distanciaDaRotaKm, LocalDateTime.now()));
+        return dadosIndividuais;
+    }
+
+    /**
+     * Atraso do motorista: o atraso padrão do tipo, reduzido conforme a rota passa mais longe
+     * do incidente (nulo na borda do raio de impacto), e zero se, na velocidade média atual do
+     * motorista, ele só chegará ao ponto depois que o incidente expirar.
+     */
+    int atrasoEstimadoMinutos(Incidente incidente, long motoristaId, double distanciaAtePontoKm,
+                              double distanciaDaRotaKm, LocalDateTime agora) {
+        double raioKm = incidente.getRaioImpactoKm() != null ? incidente.getRaioImpactoKm() : 0;
+        double fatorProximidade = raioKm > 0 ? Math.max(0, 1 - distanciaDaRotaKm / raioKm) : 1;
+
+        double minutosAtePonto = distanciaAtePontoKm / estimadorChegada.velocidadeMotoristaKmMin(motoristaId);
+        if (incidente.getDataExpiracao() != null
+                && !agora.plusSeconds((long) (minutosAtePonto * 60)).isBefore(incidente.getDataExpiracao())) {
+            return 0;
+        }
+        return (int) Math.round(incidente.getTipo().atrasoPadraoMinutos() * fatorProximidade);
+    }
+
+    private void enviarAlerta(Long motoristaId, Map<String, Object> dadosIndividuais) {
+        Map<String, Object> notificacaoIndividual = new HashMap<>();
+        notificacaoIndividual.put("evento", "ALERTA_INCIDENTE");
+        notificacaoIndividual.put("origem", "RASTREAMENTO_SERVICE");
+        notificacaoIndividual.put("timestamp", Instant.now().toString());
+        notificacaoIndividual.put("dados", dadosIndividuais);
+
+        String routingKeyMotorista = "incidentes.alerta.motorista." + motoristaId;
+        rabbitTemplate.convertAndSend(exchange, routingKeyMotorista, notificacaoIndividual);
+    }
+
     private static <T> java.util.function.Predicate<T> distinctByKey(java.util.function.Function<? super T, ?> keyExtractor) {
         java.util.Set<Object> seen = java.util.concurrent.ConcurrentHashMap.newKeySet();
         return t -> seen.add(keyExtractor.apply(t));
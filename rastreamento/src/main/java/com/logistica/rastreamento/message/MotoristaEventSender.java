@@ -1,33 +1,140 @@
 package com.logistica.rastreamento.message;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.logistica.rastreamento.dto.LocalizacaoDTO;
-import com.logistica.rastreamento.model.Incidente;
 import com.logistica.rastreamento.model.StatusVeiculo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import java.time.Instant;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Publica STATUS_VEICULO_ALTERADO apenas quando o status do veículo realmente muda.
+ *
+ * Mantém o último status publicado de cada motorista. Mudanças envolvendo DISPONIVEL são
+ * publicadas imediatamente; alternâncias entre PARADO e EM_MOVIMENTO só são publicadas
+ * depois que o novo status se mantém pela janela de debounce (confirmado por uma nova
+ * localização ou pela verificação periódica), o que absorve as oscilações no trânsito.
+ * Se a publicação falha, o estado volta ao anterior para que a transição seja tentada de novo.
+ */
 @Component
 public class MotoristaEventSender {
 
     private static final Logger logger = LoggerFactory.getLogger(MotoristaEventSender.class);
+
+    // Último status publicado e, se houver, o status candidato aguardando a janela de debounce
+    private record EstadoStatus(StatusVeiculo publicado, StatusVeiculo candidato, long candidatoDesde) {
+    }
+
     private final RabbitTemplate rabbitTemplate;
     @Value("${rabbitmq.exchange}")
     private String exchange;
+    private final long janelaDebounceNanos;
+    private final Map<Long, EstadoStatus> estados = new ConcurrentHashMap<>();
 
-    public MotoristaEventSender(RabbitTemplate rabbitTemplate) {
+    private final Counter emitidos;
+    private final Counter suprimidos;
+
+    public MotoristaEventSender(RabbitTemplate rabbitTemplate,
+                                MeterRegistry meterRegistry,
+                                @Value("${rastreamento.eventos.status-veiculo.janela-debounce-ms:10000}") long janelaDebounceMs) {
         this.rabbitTemplate = rabbitTemplate;
+        this.janelaDebounceNanos = TimeUnit.MILLISECONDS.toNanos(janelaDebounceMs);
+
+        meterRegistry.gaugeMapSize("rastreamento.eventos.status_veiculo.motoristas", Tags.empty(), estados);
+        this.emitidos = meterRegistry.counter("rastreamento.eventos.status_veiculo", "resultado", "emitidos");
+        this.suprimidos = meterRegistry.counter("rastreamento.eventos.status_veiculo", "resultado", "suprimidos");
     }
 
+    /**
+     * Informa o status observado na ingestão; o evento só é publicado se houver transição.
+     */
     public void enviarNotificacaoStatusMotorista(Long idMotorista, StatusVeiculo status) {
+        long agora = System.nanoTime();
+        boolean[] publicar = {false};
+        EstadoStatus[] estadoAnterior = {null};
+        EstadoStatus novo = estados.compute(idMotorista, (id, anterior) -> {
+            publicar[0] = false;
+            estadoAnterior[0] = anterior;
+            if (anterior == null || anterior.publicado() == null) {
+                publicar[0] = true;
+                return new EstadoStatus(status, null, 0);
+            }
+            if (anterior.publicado() == status) {
+                // Oscilação absorvida: voltou ao status publicado antes do fim da janela
+                return anterior.candidato() == null ? anterior : new EstadoStatus(status, null, 0);
+            }
+            if (!sujeitoADebounce(anterior.publicado(), status)) {
+                publicar[0] = true;
+                return new EstadoStatus(status, null, 0);
+            }
+            if (anterior.candidato() != status) {
+                return new EstadoStatus(anterior.publicado(), status, agora);
+            }
+            if (agora - anterior.candidatoDesde() >= janelaDebounceNanos) {
+                publicar[0] = true;
+                return new EstadoStatus(status, null, 0);
+            }
+            return anterior;
+        });
+
+        if (publicar[0]) {
+            publicarOuDesfazer(idMotorista, status, estadoAnterior[0], novo);
+        } else {
+            suprimidos.increment();
+        }
+    }
+
+    /**
+     * Publica o status imediatamente, sem debounce (mudanças confirmadas pelo motorista,
+     * como coleta e entrega).
+     */
+    public void forcarNotificacaoStatusMotorista(Long idMotorista, StatusVeiculo status) {
+        EstadoStatus novo = new EstadoStatus(status, null, 0);
+        EstadoStatus anterior = estados.put(idMotorista, novo);
+        publicarOuDesfazer(idMotorista, status, anterior, novo);
+    }
+
+    /**
+     * Publica os status candidatos que se mantiveram pela janela de debounce sem que
+     * chegasse nova localização do motorista.
+     */
+    @Scheduled(fixedDelayString = "${rastreamento.eventos.status-veiculo.intervalo-verificacao-ms:2000}")
+    public void publicarStatusConfirmados() {
+        long agora = System.nanoTime();
+        estados.forEach((idMotorista, estado) -> {
+            if (estado.candidato() == null || agora - estado.candidatoDesde() < janelaDebounceNanos) {
+                return;
+            }
+            EstadoStatus confirmado = new EstadoStatus(estado.candidato(), null, 0);
+            // Só publica se o estado não mudou desde a leitura
+            if (estados.replace(idMotorista, estado, confirmado)) {
+                publicarOuDesfazer(idMotorista, confirmado.publicado(), estado, confirmado);
+            }
+        });
+    }
+
+    private static boolean sujeitoADebounce(StatusVeiculo publicado, StatusVeiculo novo) {
+        return publicado != StatusVeiculo.DISPONIVEL && novo != StatusVeiculo.DISPONIVEL;
+    }
+
+    // Desfaz a transição só se nenhuma outra a substituiu enquanto a mensagem era enviada
+    private void publicarOuDesfazer(Long idMotorista, StatusVeiculo status, EstadoStatus anterior, EstadoStatus novo) {
+        if (!publicar(idMotorista, status)) {
+            estados.computeIfPresent(idMotorista, (id, atual) -> atual == novo ? anterior : atual);
+        }
+    }
+
+    private boolean publicar(Long idMotorista, StatusVeiculo status) {
         logger.debug("Enviando notificação de status {} para motorista reportado: {}", status.name(), idMotorista);
 
         try {
@@ -43,8 +150,11 @@ public class MotoristaEventSender {
 
             String routingKey = "motorista.status.atualizar";
             rabbitTemplate.convertAndSend(exchange, routingKey, mensagem);
+            emitidos.increment();
+            return true;
         } catch (Exception e) {
             logger.error("Erro ao enviar notificação de status do motorista: {}", e.getMessage());
+            return false;
         }
     }
 }
@@ -0,0 +1,53 @@
+package com.logistica.rastreamento.message;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Publica a chegada do motorista ao ponto de coleta (CHEGOU_ORIGEM) ou de entrega
+ * (CHEGOU_DESTINO) de um pedido, detectada pelas cercas virtuais na ingestão.
+ */
+@Component
+public class PedidoChegadaEventSender {
+
+    private static final Logger logger = LoggerFactory.getLogger(PedidoChegadaEventSender.class);
+    private final RabbitTemplate rabbitTemplate;
+    @Value("${rabbitmq.exchange}")
+    private String exchange;
+
+    public PedidoChegadaEventSender(RabbitTemplate rabbitTemplate) {
+        this.rabbitTemplate = rabbitTemplate;
+    }
+
+    public void enviarNotificacaoChegada(String evento, Long pedidoId, Long motoristaId,
+                                         Double latitude, Double longitude, double distanciaKm) {
+        logger.debug("Enviando evento {} do pedido {} (motorista {})", evento, pedidoId, motoristaId);
+
+        try {
+            Map<String, Object> mensagem = new HashMap<>();
+            mensagem.put("evento", evento);
+            mensagem.put("origem", "RASTREAMENTO_SERVICE");
+            mensagem.put("timestamp", Instant.now().toString());
+
+            Map<String, Object> dados = new HashMap<>();
+            dados.put("pedidoId", pedidoId);
+            dados.put("motoristaId", motoristaId);
+            dados.put("latitude", latitude);
+            dados.put("longitude", longitude);
+            dados.put("distanciaKm", distanciaKm);
+            mensagem.put("dados", dados);
+
+            String routingKey = "rastreamento.chegada." + evento.toLowerCase();
+            rabbitTemplate.convertAndSend(exchange, routingKey, mensagem);
+        } catch (Exception e) {
+            logger.error("Erro ao enviar evento de chegada do pedido {}: {}", pedidoId, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.logistica.rastreamento.message;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.logistica.rastreamento.cache.PedidoSnapshotCache;
+import com.logistica.rastreamento.geo.CercasVirtuaisPedidos;
+import com.logistica.rastreamento.geo.DetectorDesvioRota;
+import com.logistica.rastreamento.geo.EstimadorChegada;
+import com.logistica.rastreamento.model.StatusPedido;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.ExchangeTypes;
+import org.springframework.amqp.rabbit.annotation.Exchange;
+import org.springframework.amqp.rabbit.annotation.Queue;
+import org.springframework.amqp.rabbit.annotation.QueueBinding;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Mantém o PedidoSnapshotCache sincronizado com os eventos do microsserviço de pedidos.
+ * Cada instância usa uma fila anônima própria, para que todas recebam os eventos.
+ */
+@Component
+public class PedidoEventListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(PedidoEventListener.class);
+    private final PedidoSnapshotCache pedidoSnapshotCache;
+    private final CercasVirtuaisPedidos cercasVirtuaisPedidos;
+    private final EstimadorChegada estimadorChegada;
+    private final DetectorDesvioRota detectorDesvioRota;
+    private final ObjectMapper objectMapper;
+
+    public PedidoEventListener(PedidoSnapshotCache pedidoSnapshotCache, CercasVirtuaisPedidos cercasVirtuaisPedidos,
+                               EstimadorChegada estimadorChegada, DetectorDesvioRota detectorDesvioRota,
+                               ObjectMapper objectMapper) {
+        this.pedidoSnapshotCache = pedidoSnapshotCache;
+        this.objectMapper = objectMapper;
+        this.cercasVirtuaisPedidos = cercasVirtuaisPedidos;
+        this.estimadorChegada = estimadorChegada;
+        this.detectorDesvioRota = detectorDesvioRota;
+    }
+
+    @RabbitListener(bindings = @QueueBinding(
+            value = @Queue,
+            exchange = @Exchange(value = "${rabbitmq.exchange}", type = ExchangeTypes.TOPIC),
+            key = {"pedidos.status.*", "pedidos.pedido.*"}
+    ))
+    public void receberEventoPedido(Map<String, Object> evento) {
+        try {
+            String tipoEvento = (String) evento.get("evento");
+            Map<String, Object> dados = evento.get("dados") != null
+                    ? objectMapper.convertValue(evento.get("dados"), new TypeReference<Map<String, Object>>() {})
+                    : null;
+            if (dados == null || dados.get("pedidoId") == null) {
+                return;
+            }
+            Long pedidoId = Long.valueOf(dados.get("pedidoId").toString());
+            logger.debug("Recebido evento {} do pedido {}", tipoEvento, pedidoId);
+
+            switch (tipoEvento) {
+                case "STATUS_ATUALIZADO" -> {
+                    StatusPedido novoStatus = StatusPedido.valueOf(dados.get("novoStatus").toString());
+                    Long motoristaId = dados.get("motoristaId") != null
+                            ? Long.valueOf(dados.get("motoristaId").toString())
+                            : null;
+                    if (novoStatus == StatusPedido.AGUARDANDO_COLETA) {
+                        // O aceite calcula a rota motorista → coleta: recarrega o pedido no próximo uso
+                        pedidoSnapshotCache.invalidar(pedidoId);
+                    } else {
+                        pedidoSnapshotCache.atualizarStatus(pedidoId, novoStatus, motoristaId);
+                    }
+                    // O alvo da estimativa muda com o status (origem → destino)
+                    estimadorChegada.invalidar(pedidoId);
+                    if (novoStatus == StatusPedido.ENTREGUE || novoStatus == StatusPedido.CANCELADO) {
+                        cercasVirtuaisPedidos.remover(pedidoId);
+                        detectorDesvioRota.remover(pedidoId);
+                    }
+                }
+                case "PEDIDO_CANCELADO" -> {
+                    pedidoSnapshotCache.atualizarStatus(pedidoId, StatusPedido.CANCELADO, null);
+                    estimadorChegada.invalidar(pedidoId);
+                    cercasVirtuaisPedidos.remover(pedidoId);
+                    detectorDesvioRota.remover(pedidoId);
+                }
+                // Pedido recém-criado ainda não é rastreado; demais eventos apenas invalidam a cópia local
+                case "PEDIDO_CRIADO" -> { }
+                default -> pedidoSnapshotCache.invalidar(pedidoId);
+            }
+        } catch (Exception e) {
+            logger.error("Erro ao processar evento de pedido: {}", e.getMessage());
+        }
+    }
+}
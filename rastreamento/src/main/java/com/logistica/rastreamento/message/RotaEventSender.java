@@ -0,0 +1,58 @@
+package com.logistica.rastreamento.message;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Publica o desvio do motorista em relação à rota planejada do pedido (DESVIO_ROTA),
+ * detectado na ingestão, com a nova rota calculada quando disponível.
+ */
+@Component
+public class RotaEventSender {
+
+    private static final Logger logger = LoggerFactory.getLogger(RotaEventSender.class);
+    private final RabbitTemplate rabbitTemplate;
+    @Value("${rabbitmq.exchange}")
+    private String exchange;
+
+    public RotaEventSender(RabbitTemplate rabbitTemplate) {
+        this.rabbitTemplate = rabbitTemplate;
+    }
+
+    /**
+     * @param novaDistanciaKm distância da nova rota; null se a rota não pôde ser recalculada
+     */
+    public void enviarNotificacaoDesvioRota(Long pedidoId, Long motoristaId, Double latitude, Double longitude,
+                                            int leiturasForaDaRota, Double novaDistanciaKm) {
+        logger.debug("Enviando evento DESVIO_ROTA do pedido {} (motorista {})", pedidoId, motoristaId);
+
+        try {
+            Map<String, Object> mensagem = new HashMap<>();
+            mensagem.put("evento", "DESVIO_ROTA");
+            mensagem.put("origem", "RASTREAMENTO_SERVICE");
+            mensagem.put("timestamp", Instant.now().toString());
+
+            Map<String, Object> dados = new HashMap<>();
+            dados.put("pedidoId", pedidoId);
+            dados.put("motoristaId", motoristaId);
+            dados.put("latitude", latitude);
+            dados.put("longitude", longitude);
+            dados.put("leiturasForaDaRota", leiturasForaDaRota);
+            dados.put("rotaRecalculada", novaDistanciaKm != null);
+            dados.put("novaDistanciaKm", novaDistanciaKm);
+            mensagem.put("dados", dados);
+
+            String routingKey = "rastreamento.rota.desvio";
+            rabbitTemplate.convertAndSend(exchange, routingKey, mensagem);
+        } catch (Exception e) {
+            logger.error("Erro ao enviar evento de desvio de rota do pedido {}: {}", pedidoId, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.logistica.rastreamento.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Contadores diários de um motorista, incrementados a cada lote de localizações persistido.
+ * As estatísticas de um período são a soma das linhas dos dias correspondentes.
+ */
+@Entity
+@Table(name = "estatisticas_motorista_diarias", indexes = {
+        @Index(name = "idx_estatisticas_motorista_data", columnList = "motorista_id, data")
+})
+@IdClass(EstatisticaDiariaMotorista.Chave.class)
+@Getter
+@Setter
+public class EstatisticaDiariaMotorista {
+    @Id
+    private Long motoristaId;
+
+    @Id
+    private LocalDate data;
+
+    private Long totalRegistros;
+    private Double distanciaKm;
+    private Long movimentoSegundos;
+
+    // Contagem de registros por StatusVeiculo
+    private Long registrosDisponivel;
+    private Long registrosParado;
+    private Long registrosEmMovimento;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Chave implements Serializable {
+        private Long motoristaId;
+        private LocalDate data;
+    }
+}
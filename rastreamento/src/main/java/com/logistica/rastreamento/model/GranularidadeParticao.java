@@ -0,0 +1,44 @@
+package com.logistica.rastreamento.model;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Intervalo coberto por cada partição da tabela de localizações.
+ * O sufixo do nome da partição identifica o intervalo (ex.: localizacoes_p20240131 ou localizacoes_p202401).
+ */
+public enum GranularidadeParticao {
+    DIARIA(DateTimeFormatter.ofPattern("yyyyMMdd")),
+    MENSAL(DateTimeFormatter.ofPattern("yyyyMM"));
+
+    private final DateTimeFormatter formatoSufixo;
+
+    GranularidadeParticao(DateTimeFormatter formatoSufixo) {
+        this.formatoSufixo = formatoSufixo;
+    }
+
+    public LocalDate inicioDoPeriodo(LocalDate data) {
+        return this == DIARIA ? data : data.withDayOfMonth(1);
+    }
+
+    public LocalDate proximoPeriodo(LocalDate inicio) {
+        return this == DIARIA ? inicio.plusDays(1) : inicio.plusMonths(1);
+    }
+
+    public String sufixo(LocalDate inicio) {
+        return inicio.format(formatoSufixo);
+    }
+
+    /**
+     * Identifica a granularidade de uma partição existente pelo tamanho do sufixo.
+     */
+    public static GranularidadeParticao doSufixo(String sufixo) {
+        return sufixo.length() == 8 ? DIARIA : MENSAL;
+    }
+
+    public LocalDate inicioDoSufixo(String sufixo) {
+        return this == DIARIA
+                ? LocalDate.parse(sufixo, formatoSufixo)
+                : LocalDate.parse(sufixo + "01", DIARIA.formatoSufixo);
+    }
+}
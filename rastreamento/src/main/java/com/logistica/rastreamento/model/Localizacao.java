@@ -7,7 +7,10 @@ import lombok.Setter;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "localizacoes")
+@Table(name = "localizacoes", indexes = {
+        @Index(name = "idx_localizacoes_pedido_timestamp", columnList = "pedido_id, timestamp"),
+        @Index(name = "idx_localizacoes_motorista_timestamp", columnList = "motorista_id, timestamp")
+})
 @Getter
 @Setter
 public class Localizacao {
@@ -19,7 +22,10 @@ public class Localizacao {
     private Long motoristaId;
     private Double latitude;
     private Double longitude;
+    // Momento da leitura no dispositivo (ou do recebimento, quando o dispositivo não informa)
     private LocalDateTime timestamp;
+    // Momento em que o servidor recebeu a localização
+    private LocalDateTime recebidoEm;
 
     @Enumerated(EnumType.STRING)
     private StatusVeiculo statusVeiculo;
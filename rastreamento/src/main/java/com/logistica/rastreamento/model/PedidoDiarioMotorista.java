@@ -0,0 +1,43 @@
+package com.logistica.rastreamento.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Pedidos distintos atendidos por um motorista em cada dia (complementa EstatisticaDiariaMotorista).
+ */
+@Entity
+@Table(name = "pedidos_motorista_diarios")
+@IdClass(PedidoDiarioMotorista.Chave.class)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class PedidoDiarioMotorista {
+    @Id
+    private Long motoristaId;
+
+    @Id
+    private LocalDate data;
+
+    @Id
+    private Long pedidoId;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Chave implements Serializable {
+        private Long motoristaId;
+        private LocalDate data;
+        private Long pedidoId;
+    }
+}
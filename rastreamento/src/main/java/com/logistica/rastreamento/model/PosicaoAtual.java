@@ -0,0 +1,32 @@
+package com.logistica.rastreamento.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Última posição conhecida de cada motorista (uma linha por motorista).
+ * Mantida por upsert no caminho de ingestão para que as buscas por proximidade
+ * não precisem reconstruir a posição atual a partir do histórico de localizações.
+ */
+@Entity
+@Table(name = "posicao_atual", indexes = {
+        @Index(name = "idx_posicao_atual_lat_lon", columnList = "latitude, longitude"),
+        @Index(name = "idx_posicao_atual_pedido", columnList = "pedido_id")
+})
+@Getter
+@Setter
+public class PosicaoAtual {
+    @Id
+    private Long motoristaId;
+
+    private Long pedidoId;
+    private Double latitude;
+    private Double longitude;
+    private LocalDateTime timestamp;
+
+    @Enumerated(EnumType.STRING)
+    private StatusVeiculo statusVeiculo;
+}
@@ -0,0 +1,33 @@
+package com.logistica.rastreamento.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Resumo diário do trajeto de um motorista (por pedido), gerado a partir das
+ * localizações brutas antes que a partição correspondente seja descartada pela retenção.
+ */
+@Entity
+@Table(name = "resumo_trajetos", indexes = {
+        @Index(name = "idx_resumo_trajetos_motorista_data", columnList = "motorista_id, data"),
+        @Index(name = "idx_resumo_trajetos_pedido", columnList = "pedido_id")
+})
+@Getter
+@Setter
+public class ResumoTrajeto {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private Long motoristaId;
+    private Long pedidoId;
+    private LocalDate data;
+    private Integer quantidadePontos;
+    private Double distanciaKm;
+    private LocalDateTime inicio;
+    private LocalDateTime fim;
+}
@@ -1,6 +1,8 @@
 package com.logistica.rastreamento.model;
 
 public enum StatusPedido {
+    CRIADO,              // Pedido acabou de ser registrado
+    EM_PROCESSAMENTO,    // Aguardando aceite de um motorista
     AGUARDANDO_COLETA,   // Usado quando motorista é atribuído
     EM_ROTA,             // Não está sendo atualizado automaticamente
     ENTREGUE,            // Atualizado apenas manualmente
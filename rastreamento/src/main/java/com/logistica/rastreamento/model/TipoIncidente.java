@@ -1,9 +1,23 @@
 package com.logistica.rastreamento.model;
 
+/**
+ * Tipos de incidente, com o atraso típico (em minutos) que causam a um veículo cuja rota passa
+ * exatamente por eles. O atraso de cada motorista é derivado desse valor no alerta do incidente.
+ */
 public enum TipoIncidente {
-    OBRA,
-    BLOQUEIO,
-    ACIDENTE,
-    AVARIA,
-    OUTROS
+    OBRA(10),
+    BLOQUEIO(20),
+    ACIDENTE(15),
+    AVARIA(5),
+    OUTROS(5);
+
+    private final int atrasoPadraoMinutos;
+
+    TipoIncidente(int atrasoPadraoMinutos) {
+        this.atrasoPadraoMinutos = atrasoPadraoMinutos;
+    }
+
+    public int atrasoPadraoMinutos() {
+        return atrasoPadraoMinutos;
+    }
 }
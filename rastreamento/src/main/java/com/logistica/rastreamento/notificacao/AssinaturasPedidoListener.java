@@ -0,0 +1,8 @@
+package com.logistica.rastreamento.notificacao;
+
+/**
+ * Avisado quando um pedido passa a ter o primeiro observador local ou perde o último.
+ */
+public interface AssinaturasPedidoListener {
+    void aoAlterarAssinaturas(Long pedidoId);
+}
@@ -0,0 +1,216 @@
+package com.logistica.rastreamento.notificacao;
+
+import com.logistica.rastreamento.dto.LocalizacaoDTO;
+import com.logistica.rastreamento.service.LocalizacaoObserver;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Distribui as novas localizações aos observadores de cada pedido sem bloquear a ingestão.
+ * Cada observador tem uma caixa de uma posição em que a localização mais recente substitui
+ * a anterior ainda não entregue; a entrega roda em threads virtuais, uma por vez por observador,
+ * e respeita o controle de fluxo do observador. Observadores que ficam sem consumir por mais
+ * que o tempo configurado são removidos e encerrados.
+ */
+@Component
+public class DistribuidorLocalizacoes {
+
+    private static final Logger logger = LoggerFactory.getLogger(DistribuidorLocalizacoes.class);
+
+    private record Pendente(LocalizacaoDTO localizacao, long publicadaEmNanos) {
+    }
+
+    private static final class Assinante {
+        private final Long pedidoId;
+        private final LocalizacaoObserver observer;
+        private final AtomicReference<Pendente> caixa = new AtomicReference<>();
+        // Garante uma única entrega em andamento por assinante
+        private final AtomicBoolean agendado = new AtomicBoolean();
+        private volatile boolean ativo = true;
+        private volatile String motivoEncerramento;
+        // Instante (nanoTime) desde o qual há localização pendente que o observador não consumiu; 0 = em dia
+        private volatile long ocupadoDesde;
+
+        private Assinante(Long pedidoId, LocalizacaoObserver observer) {
+            this.pedidoId = pedidoId;
+            this.observer = observer;
+        }
+    }
+
+    private final Map<Long, Map<LocalizacaoObserver, Assinante>> assinantesPorPedido = new ConcurrentHashMap<>();
+    private final AtomicInteger totalAssinantes = new AtomicInteger();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final long tempoMaximoOcupadoNanos;
+
+    private final Counter descartadas;
+    private final Counter removidos;
+    private final Timer atraso;
+
+    private final ObjectProvider<AssinaturasPedidoListener> listeners;
+
+    public DistribuidorLocalizacoes(MeterRegistry meterRegistry,
+                                    ObjectProvider<AssinaturasPedidoListener> listeners,
+                                    @Value("${rastreamento.observadores.tempo-maximo-ocupado-ms:10000}") long tempoMaximoOcupadoMs) {
+        this.tempoMaximoOcupadoNanos = TimeUnit.MILLISECONDS.toNanos(tempoMaximoOcupadoMs);
+        this.listeners = listeners;
+
+        meterRegistry.gauge("rastreamento.observadores.assinantes", totalAssinantes);
+        this.descartadas = meterRegistry.counter("rastreamento.observadores.descartadas");
+        this.removidos = meterRegistry.counter("rastreamento.observadores.removidos");
+        this.atraso = Timer.builder("rastreamento.observadores.atraso")
+                .description("Tempo entre a publicação de uma localização e sua entrega ao observador")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void encerrar() {
+        executor.shutdownNow();
+    }
+
+    public void registrar(Long pedidoId, LocalizacaoObserver observer) {
+        Assinante assinante = new Assinante(pedidoId, observer);
+        observer.aoFicarPronto(() -> agendar(assinante));
+        boolean[] primeiro = {false};
+        // Inclusão e remoção atômicas por pedido, para não perder assinantes quando o mapa vazio é descartado
+        assinantesPorPedido.compute(pedidoId, (id, assinantes) -> {
+            primeiro[0] = assinantes == null;
+            Map<LocalizacaoObserver, Assinante> atuais = assinantes != null ? assinantes : new ConcurrentHashMap<>();
+            if (atuais.putIfAbsent(observer, assinante) == null) {
+                totalAssinantes.incrementAndGet();
+            }
+            return atuais;
+        });
+        if (primeiro[0]) {
+            listeners.forEach(listener -> listener.aoAlterarAssinaturas(pedidoId));
+        }
+    }
+
+    public void remover(Long pedidoId, LocalizacaoObserver observer) {
+        boolean[] ultimo = {false};
+        assinantesPorPedido.computeIfPresent(pedidoId, (id, assinantes) -> {
+            Assinante assinante = assinantes.remove(observer);
+            if (assinante != null) {
+                assinante.ativo = false;
+                totalAssinantes.decrementAndGet();
+            }
+            ultimo[0] = assinantes.isEmpty();
+            return ultimo[0] ? null : assinantes;
+        });
+        if (ultimo[0]) {
+            listeners.forEach(listener -> listener.aoAlterarAssinaturas(pedidoId));
+        }
+    }
+
+    public boolean possuiAssinantes(Long pedidoId) {
+        return assinantesPorPedido.containsKey(pedidoId);
+    }
+
+    public Set<Long> pedidosAssinados() {
+        return Set.copyOf(assinantesPorPedido.keySet());
+    }
+
+    /**
+     * Publica a localização para os observadores do pedido. Não bloqueia: se a localização
+     * anterior ainda não foi entregue a um observador, ela é substituída.
+     */
+    public void publicar(Long pedidoId, LocalizacaoDTO localizacao) {
+        Map<LocalizacaoObserver, Assinante> assinantes = assinantesPorPedido.get(pedidoId);
+        if (assinantes == null) {
+            return;
+        }
+        Pendente pendente = new Pendente(localizacao, System.nanoTime());
+        for (Assinante assinante : assinantes.values()) {
+            if (assinante.caixa.getAndSet(pendente) != null) {
+                descartadas.increment();
+            }
+            agendar(assinante);
+        }
+    }
+
+    private void agendar(Assinante assinante) {
+        if (assinante.agendado.compareAndSet(false, true)) {
+            executor.execute(() -> entregar(assinante));
+        }
+    }
+
+    private void entregar(Assinante assinante) {
+        try {
+            Pendente pendente;
+            while (assinante.ativo && assinante.observer.prontoParaReceber()
+                    && (pendente = assinante.caixa.getAndSet(null)) != null) {
+                assinante.ocupadoDesde = System.nanoTime();
+                assinante.observer.onNovaLocalizacao(pendente.localizacao());
+                assinante.ocupadoDesde = 0;
+                atraso.record(System.nanoTime() - pendente.publicadaEmNanos(), TimeUnit.NANOSECONDS);
+            }
+            // Não pronto com localização pendente: a entrega continua no aviso de prontidão
+            if (assinante.ativo && assinante.caixa.get() != null && assinante.ocupadoDesde == 0) {
+                assinante.ocupadoDesde = System.nanoTime();
+            }
+        } catch (Exception e) {
+            logger.warn("Erro ao notificar observador do pedido {}: {}", assinante.pedidoId, e.getMessage());
+            remover(assinante.pedidoId, assinante.observer);
+        } finally {
+            if (!assinante.ativo) {
+                // O assinante permanece "agendado" para não receber novas entregas
+                finalizar(assinante);
+            } else {
+                assinante.agendado.set(false);
+                // Uma publicação concorrente pode ter encontrado a entrega ainda em andamento
+                if (assinante.caixa.get() != null && assinante.observer.prontoParaReceber()) {
+                    agendar(assinante);
+                }
+            }
+        }
+    }
+
+    private void finalizar(Assinante assinante) {
+        String motivo = assinante.motivoEncerramento;
+        if (motivo == null) {
+            return;
+        }
+        assinante.motivoEncerramento = null;
+        try {
+            assinante.observer.encerrar(motivo);
+        } catch (Exception e) {
+            logger.debug("Erro ao encerrar observador do pedido {}: {}", assinante.pedidoId, e.getMessage());
+        }
+    }
+
+    /**
+     * Remove os observadores que estão há mais tempo que o limite sem consumir as notificações.
+     */
+    @Scheduled(fixedDelayString = "${rastreamento.observadores.intervalo-verificacao-ms:1000}")
+    public void removerConsumidoresLentos() {
+        long agora = System.nanoTime();
+        assinantesPorPedido.values().forEach(assinantes -> assinantes.values().forEach(assinante -> {
+            long ocupadoDesde = assinante.ocupadoDesde;
+            if (ocupadoDesde != 0 && agora - ocupadoDesde > tempoMaximoOcupadoNanos) {
+                logger.warn("Observador do pedido {} removido por não consumir as localizações", assinante.pedidoId);
+                assinante.motivoEncerramento = "Consumidor lento: localizações não consumidas a tempo";
+                remover(assinante.pedidoId, assinante.observer);
+                removidos.increment();
+                // Se não houver entrega em andamento, o encerramento é feito por uma nova tarefa
+                agendar(assinante);
+            }
+        }));
+    }
+}
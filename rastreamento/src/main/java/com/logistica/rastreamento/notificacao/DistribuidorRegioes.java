@@ -0,0 +1,327 @@
+package com.logistica.rastreamento.notificacao;
+
+import com.logistica.rastreamento.cache.UltimaPosicao;
+import com.logistica.rastreamento.cache.UltimaPosicaoCache;
+import com.logistica.rastreamento.dto.AtualizacaoRegiaoDTO;
+import com.logistica.rastreamento.exception.OperacaoInvalidaException;
+import com.logistica.rastreamento.geo.RetanguloGeografico;
+import com.logistica.rastreamento.service.RegiaoObserver;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Distribui as posições dos veículos aos observadores de regiões (painéis de operação).
+ *
+ * As assinaturas são indexadas por uma grade de células: cada posição ingerida é comparada
+ * apenas com as assinaturas que cobrem a célula atual do motorista e a célula anterior
+ * (para detectar a saída da região). As alterações são agregadas por assinatura, mantendo
+ * só a posição mais recente de cada veículo, e enviadas em quadros numa taxa máxima.
+ * Motoristas sem localização há mais que a idade máxima são removidos periodicamente e
+ * saem das regiões em que estavam.
+ */
+@Component
+public class DistribuidorRegioes {
+
+    private static final Logger logger = LoggerFactory.getLogger(DistribuidorRegioes.class);
+    private static final double KM_POR_GRAU_LATITUDE = 111.32;
+
+    /**
+     * Assinatura de uma região. O estado é protegido pelo próprio monitor; os quadros são
+     * sempre montados e enviados pela thread do agendador.
+     */
+    private static final class Assinatura {
+        private final RetanguloGeografico regiao;
+        private final RegiaoObserver observer;
+        private final List<Long> celulas;
+        // Veículos dentro da região e a última posição conhecida de cada um
+        private final Map<Long, UltimaPosicao> dentro = new HashMap<>();
+        private final Map<Long, UltimaPosicao> pendentes = new HashMap<>();
+        private final Set<Long> entraram = new HashSet<>();
+        private final Set<Long> sairam = new HashSet<>();
+        private boolean inicial = true;
+        // Só envia quadros depois de carregado o snapshot, para que o quadro inicial seja completo
+        private volatile boolean carregada;
+        // Instante (nanoTime) desde o qual há quadro pendente que o observador não consumiu; 0 = em dia
+        private long ocupadoDesde;
+
+        private Assinatura(RetanguloGeografico regiao, RegiaoObserver observer, List<Long> celulas) {
+            this.regiao = regiao;
+            this.observer = observer;
+            this.celulas = celulas;
+        }
+
+        private synchronized void registrar(UltimaPosicao posicao) {
+            long motoristaId = posicao.motoristaId();
+            UltimaPosicao anterior = dentro.get(motoristaId);
+            if (anterior != null && posicao.timestamp().isBefore(anterior.timestamp())) {
+                return;
+            }
+            if (regiao.contem(posicao.latitude(), posicao.longitude())) {
+                // Saiu e voltou no mesmo quadro: para o cliente é apenas uma atualização
+                if (anterior == null && !sairam.remove(motoristaId)) {
+                    entraram.add(motoristaId);
+                }
+                dentro.put(motoristaId, posicao);
+                pendentes.put(motoristaId, posicao);
+            } else if (anterior != null) {
+                dentro.remove(motoristaId);
+                pendentes.remove(motoristaId);
+                // Entrou e saiu no mesmo quadro: o cliente nunca o viu
+                if (!entraram.remove(motoristaId)) {
+                    sairam.add(motoristaId);
+                }
+            }
+        }
+
+        private synchronized void expirar(long motoristaId) {
+            if (dentro.remove(motoristaId) == null) {
+                return;
+            }
+            pendentes.remove(motoristaId);
+            if (!entraram.remove(motoristaId)) {
+                sairam.add(motoristaId);
+            }
+        }
+
+        private synchronized boolean possuiPendencias() {
+            return carregada && (inicial || !pendentes.isEmpty() || !sairam.isEmpty());
+        }
+
+        private synchronized AtualizacaoRegiaoDTO drenar() {
+            List<UltimaPosicao> novos = new ArrayList<>(entraram.size());
+            List<UltimaPosicao> atualizados = new ArrayList<>(pendentes.size());
+            for (UltimaPosicao posicao : pendentes.values()) {
+                (entraram.contains(posicao.motoristaId()) ? novos : atualizados).add(posicao);
+            }
+            AtualizacaoRegiaoDTO quadro = new AtualizacaoRegiaoDTO(inicial, novos, atualizados, new ArrayList<>(sairam));
+            pendentes.clear();
+            entraram.clear();
+            sairam.clear();
+            inicial = false;
+            return quadro;
+        }
+    }
+
+    // Célula da última posição do motorista e o horário dessa posição
+    private record CelulaMotorista(long celula, LocalDateTime timestamp) {
+    }
+
+    private final UltimaPosicaoCache ultimaPosicaoCache;
+    private final double tamanhoCelulaGraus;
+    private final int maxCelulasPorAssinatura;
+    private final long tempoMaximoOcupadoNanos;
+    private final long intervaloQuadroMs;
+    private final Duration idadeMaxima;
+    private final Map<Long, Set<Assinatura>> assinaturasPorCelula = new ConcurrentHashMap<>();
+    private final Map<RegiaoObserver, Assinatura> assinaturas = new ConcurrentHashMap<>();
+    // Última célula de cada motorista, para avisar a saída às assinaturas da célula anterior
+    private final Map<Long, CelulaMotorista> celulaPorMotorista = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService agendador = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "rastreamento-regioes");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Counter quadros;
+    private final Counter removidos;
+
+    public DistribuidorRegioes(UltimaPosicaoCache ultimaPosicaoCache,
+                               MeterRegistry meterRegistry,
+                               @Value("${rastreamento.regioes.tamanho-celula-km:5.0}") double tamanhoCelulaKm,
+                               @Value("${rastreamento.regioes.max-celulas:10000}") int maxCelulasPorAssinatura,
+                               @Value("${rastreamento.regioes.max-quadros-por-segundo:4}") int maxQuadrosPorSegundo,
+                               @Value("${rastreamento.observadores.tempo-maximo-ocupado-ms:10000}") long tempoMaximoOcupadoMs,
+                               @Value("${rastreamento.regioes.idade-maxima-segundos:600}") long idadeMaximaSegundos) {
+        this.ultimaPosicaoCache = ultimaPosicaoCache;
+        this.tamanhoCelulaGraus = tamanhoCelulaKm / KM_POR_GRAU_LATITUDE;
+        this.maxCelulasPorAssinatura = maxCelulasPorAssinatura;
+        this.tempoMaximoOcupadoNanos = TimeUnit.MILLISECONDS.toNanos(tempoMaximoOcupadoMs);
+        this.idadeMaxima = Duration.ofSeconds(idadeMaximaSegundos);
+
+        meterRegistry.gaugeMapSize("rastreamento.regioes.assinaturas", Tags.empty(), assinaturas);
+        meterRegistry.gaugeMapSize("rastreamento.regioes.motoristas", Tags.empty(), celulaPorMotorista);
+        this.quadros = meterRegistry.counter("rastreamento.regioes.quadros");
+        this.removidos = meterRegistry.counter("rastreamento.regioes.removidos");
+        this.intervaloQuadroMs = Math.max(1000L / Math.max(maxQuadrosPorSegundo, 1), 1);
+    }
+
+    @PostConstruct
+    public void iniciar() {
+        agendador.scheduleWithFixedDelay(this::enviarQuadros, intervaloQuadroMs, intervaloQuadroMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void encerrar() {
+        agendador.shutdownNow();
+    }
+
+    /**
+     * Registra o observador da região. O primeiro quadro enviado traz os veículos que já
+     * estão dentro dela, a partir do cache de posições.
+     */
+    public void registrar(RetanguloGeografico regiao, RegiaoObserver observer) {
+        int latMin = indice(regiao.latitudeMin());
+        int latMax = indice(regiao.latitudeMax());
+        int lonMin = indice(regiao.longitudeMin());
+        int lonMax = indice(regiao.longitudeMax());
+        long quantidadeCelulas = (long) (latMax - latMin + 1) * (lonMax - lonMin + 1);
+        if (quantidadeCelulas > maxCelulasPorAssinatura) {
+            throw new OperacaoInvalidaException("Região muito grande: cobre " + quantidadeCelulas
+                    + " células, o máximo é " + maxCelulasPorAssinatura);
+        }
+
+        List<Long> celulas = new ArrayList<>((int) quantidadeCelulas);
+        for (int i = latMin; i <= latMax; i++) {
+            for (int j = lonMin; j <= lonMax; j++) {
+                celulas.add(chave(i, j));
+            }
+        }
+        Assinatura assinatura = new Assinatura(regiao, observer, celulas);
+        if (assinaturas.putIfAbsent(observer, assinatura) != null) {
+            return;
+        }
+        // Inclusão e remoção usam compute para não perder assinaturas quando uma célula é esvaziada em paralelo
+        for (Long celula : celulas) {
+            assinaturasPorCelula.compute(celula, (c, conjunto) -> {
+                Set<Assinatura> atual = conjunto != null ? conjunto : ConcurrentHashMap.newKeySet();
+                atual.add(assinatura);
+                return atual;
+            });
+        }
+
+        // Registrada antes do snapshot para não perder posições ingeridas durante a varredura
+        for (UltimaPosicao posicao : ultimaPosicaoCache.motoristas()) {
+            if (regiao.contem(posicao.latitude(), posicao.longitude())) {
+                assinatura.registrar(posicao);
+            }
+        }
+        assinatura.carregada = true;
+    }
+
+    public void remover(RegiaoObserver observer) {
+        Assinatura assinatura = assinaturas.remove(observer);
+        if (assinatura == null) {
+            return;
+        }
+        for (Long celula : assinatura.celulas) {
+            assinaturasPorCelula.computeIfPresent(celula, (c, conjunto) -> {
+                conjunto.remove(assinatura);
+                return conjunto.isEmpty() ? null : conjunto;
+            });
+        }
+    }
+
+    /**
+     * Compara a nova posição do motorista com as assinaturas que cobrem sua célula atual
+     * e a anterior. Chamado pelo caminho de ingestão; não bloqueia.
+     */
+    public void publicar(UltimaPosicao posicao) {
+        long celula = chave(indice(posicao.latitude()), indice(posicao.longitude()));
+        CelulaMotorista anterior = celulaPorMotorista.put(posicao.motoristaId(),
+                new CelulaMotorista(celula, posicao.timestamp()));
+        if (assinaturas.isEmpty()) {
+            return;
+        }
+        Set<Assinatura> atuais = assinaturasPorCelula.get(celula);
+        if (atuais != null) {
+            atuais.forEach(assinatura -> assinatura.registrar(posicao));
+        }
+        if (anterior != null && anterior.celula() != celula) {
+            Set<Assinatura> anteriores = assinaturasPorCelula.get(anterior.celula());
+            if (anteriores != null) {
+                for (Assinatura assinatura : anteriores) {
+                    if (atuais == null || !atuais.contains(assinatura)) {
+                        assinatura.registrar(posicao);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove os motoristas sem localização há mais que a idade máxima; as assinaturas da
+     * célula em que estavam recebem a saída deles no próximo quadro.
+     */
+    @Scheduled(fixedDelayString = "${rastreamento.regioes.intervalo-limpeza-ms:60000}")
+    public void removerDesatualizados() {
+        LocalDateTime limite = LocalDateTime.now().minus(idadeMaxima);
+        for (Long id : celulaPorMotorista.keySet()) {
+            celulaPorMotorista.computeIfPresent(id, (motoristaId, atual) -> {
+                if (!atual.timestamp().isBefore(limite)) {
+                    return atual;
+                }
+                Set<Assinatura> conjunto = assinaturasPorCelula.get(atual.celula());
+                if (conjunto != null) {
+                    conjunto.forEach(assinatura -> assinatura.expirar(motoristaId));
+                }
+                return null;
+            });
+        }
+    }
+
+    private void enviarQuadros() {
+        long agora = System.nanoTime();
+        for (Assinatura assinatura : assinaturas.values()) {
+            try {
+                if (!assinatura.possuiPendencias()) {
+                    continue;
+                }
+                if (!assinatura.observer.prontoParaReceber()) {
+                    if (assinatura.ocupadoDesde == 0) {
+                        assinatura.ocupadoDesde = agora;
+                    } else if (agora - assinatura.ocupadoDesde > tempoMaximoOcupadoNanos) {
+                        logger.warn("Observador de região removido por não consumir os quadros");
+                        removidos.increment();
+                        desconectar(assinatura, "Consumidor lento: quadros não consumidos a tempo");
+                    }
+                    continue;
+                }
+                assinatura.ocupadoDesde = 0;
+                assinatura.observer.onAtualizacao(assinatura.drenar());
+                quadros.increment();
+            } catch (Exception e) {
+                logger.warn("Erro ao enviar quadro ao observador de região: {}", e.getMessage());
+                desconectar(assinatura, "Erro ao enviar quadro: " + e.getMessage());
+            }
+        }
+    }
+
+    // Remove a assinatura e encerra o stream, para que o cliente saiba que deixou de receber quadros
+    private void desconectar(Assinatura assinatura, String motivo) {
+        remover(assinatura.observer);
+        try {
+            assinatura.observer.encerrar(motivo);
+        } catch (Exception e) {
+            logger.debug("Erro ao encerrar observador de região: {}", e.getMessage());
+        }
+    }
+
+    private int indice(double coordenada) {
+        return (int) Math.floor(coordenada / tamanhoCelulaGraus);
+    }
+
+    private static long chave(int indiceLat, int indiceLon) {
+        return ((long) indiceLat << 32) | (indiceLon & 0xFFFFFFFFL);
+    }
+}
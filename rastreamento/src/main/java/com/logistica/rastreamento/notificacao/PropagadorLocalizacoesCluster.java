@@ -0,0 +1,263 @@
+package com.logistica.rastreamento.notificacao;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.logistica.rastreamento.cache.UltimaPosicao;
+import com.logistica.rastreamento.cache.UltimaPosicaoCache;
+import com.logistica.rastreamento.dto.LocalizacaoDTO;
+import com.logistica.rastreamento.geo.MotoristasDisponiveisIndex;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.AnonymousQueue;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.DirectExchange;
+import org.springframework.amqp.core.FanoutExchange;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageDeliveryMode;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Propaga as localizações entre as instâncias do rastreamento, para que um cliente
+ * conectado a uma instância receba as localizações ingeridas por qualquer outra.
+ *
+ * Cada localização de pedido é publicada num exchange direct com o id do pedido como
+ * routing key. Cada instância tem uma fila anônima própria, vinculada apenas aos pedidos
+ * com observadores locais; os vínculos são criados e removidos conforme os observadores
+ * entram e saem. Mensagens publicadas pela própria instância são ignoradas, pois já foram
+ * entregues localmente.
+ *
+ * Além disso, a posição de cada localização nova (com ou sem pedido) é publicada num exchange
+ * fanout recebido por todas as instâncias, que a aplicam ao cache de posições, ao índice de
+ * motoristas disponíveis e ao distribuidor de regiões; posições mais antigas que a já
+ * conhecida são descartadas.
+ *
+ * O restante do estado por motorista continua local à instância que recebe as localizações
+ * dele e pressupõe que elas cheguem sempre à mesma instância (roteamento por motorista no
+ * balanceador): o controle de sequência (duplicatas), o filtro de trajetória, o agregador de
+ * estatísticas, a velocidade média e o progresso na rota do estimador de chegada, o detector
+ * de desvio, os eventos das cercas virtuais e o debounce de status do motorista.
+ */
+@Component
+public class PropagadorLocalizacoesCluster implements AssinaturasPedidoListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(PropagadorLocalizacoesCluster.class);
+    private static final String CABECALHO_ORIGEM = "rastreamento-origem";
+
+    private final DistribuidorLocalizacoes distribuidorLocalizacoes;
+    private final UltimaPosicaoCache ultimaPosicaoCache;
+    private final MotoristasDisponiveisIndex motoristasDisponiveisIndex;
+    private final DistribuidorRegioes distribuidorRegioes;
+    private final RabbitTemplate rabbitTemplate;
+    private final AmqpAdmin amqpAdmin;
+    private final ConnectionFactory connectionFactory;
+    private final ObjectMapper objectMapper;
+    private final boolean habilitado;
+    private final String exchange;
+    private final String exchangePosicoes;
+    private final String instancia = UUID.randomUUID().toString();
+    private final AnonymousQueue fila = new AnonymousQueue();
+    // Pedidos vinculados à fila desta instância; acessado apenas pela thread de vínculos
+    private final Set<Long> pedidosVinculados = new HashSet<>();
+    private final ExecutorService executorVinculos = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "rastreamento-cluster-vinculos");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private SimpleMessageListenerContainer container;
+
+    private final Counter publicadas;
+    private final Counter recebidas;
+    private final Counter posicoesPublicadas;
+    private final Counter posicoesRecebidas;
+
+    public PropagadorLocalizacoesCluster(DistribuidorLocalizacoes distribuidorLocalizacoes,
+                                         UltimaPosicaoCache ultimaPosicaoCache,
+                                         MotoristasDisponiveisIndex motoristasDisponiveisIndex,
+                                         DistribuidorRegioes distribuidorRegioes,
+                                         RabbitTemplate rabbitTemplate,
+                                         AmqpAdmin amqpAdmin,
+                                         ConnectionFactory connectionFactory,
+                                         ObjectMapper objectMapper,
+                                         MeterRegistry meterRegistry,
+                                         @Value("${rastreamento.cluster.habilitado:false}") boolean habilitado,
+                                         @Value("${rastreamento.cluster.exchange:rastreamento.localizacoes}") String exchange,
+                                         @Value("${rastreamento.cluster.exchange-posicoes:rastreamento.posicoes}") String exchangePosicoes) {
+        this.distribuidorLocalizacoes = distribuidorLocalizacoes;
+        this.ultimaPosicaoCache = ultimaPosicaoCache;
+        this.motoristasDisponiveisIndex = motoristasDisponiveisIndex;
+        this.distribuidorRegioes = distribuidorRegioes;
+        this.rabbitTemplate = rabbitTemplate;
+        this.amqpAdmin = amqpAdmin;
+        this.connectionFactory = connectionFactory;
+        this.objectMapper = objectMapper;
+        this.habilitado = habilitado;
+        this.exchange = exchange;
+        this.exchangePosicoes = exchangePosicoes;
+
+        this.publicadas = meterRegistry.counter("rastreamento.cluster.localizacoes", "direcao", "publicadas");
+        this.recebidas = meterRegistry.counter("rastreamento.cluster.localizacoes", "direcao", "recebidas");
+        this.posicoesPublicadas = meterRegistry.counter("rastreamento.cluster.posicoes", "direcao", "publicadas");
+        this.posicoesRecebidas = meterRegistry.counter("rastreamento.cluster.posicoes", "direcao", "recebidas");
+    }
+
+    public boolean habilitado() {
+        return habilitado;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void iniciar() {
+        if (!habilitado) {
+            return;
+        }
+        // A fila anônima é exclusiva da conexão: após uma reconexão, fila e vínculos são recriados
+        connectionFactory.addConnectionListener(conexao -> executorVinculos.execute(this::declararTopologia));
+        executorVinculos.execute(this::declararTopologia);
+
+        container = new SimpleMessageListenerContainer(connectionFactory);
+        container.setQueues(fila);
+        container.setMissingQueuesFatal(false);
+        container.setMessageListener(this::receber);
+        container.start();
+        logger.info("Propagação de localizações entre instâncias habilitada (instância {}, fila {})", instancia, fila.getName());
+    }
+
+    @PreDestroy
+    public void encerrar() {
+        if (container != null) {
+            container.stop();
+        }
+        executorVinculos.shutdownNow();
+    }
+
+    /**
+     * Publica a localização para as demais instâncias. Não falha o caminho de ingestão
+     * se o broker estiver indisponível.
+     */
+    public void propagar(Long pedidoId, LocalizacaoDTO localizacao) {
+        if (!habilitado) {
+            return;
+        }
+        try {
+            rabbitTemplate.send(exchange, pedidoId.toString(), mensagem(localizacao));
+            publicadas.increment();
+        } catch (Exception e) {
+            logger.error("Erro ao propagar localização do pedido {}: {}", pedidoId, e.getMessage());
+        }
+    }
+
+    /**
+     * Publica a nova posição do motorista para o estado em memória das demais instâncias.
+     * Não falha o caminho de ingestão se o broker estiver indisponível.
+     */
+    public void propagarPosicao(UltimaPosicao posicao) {
+        if (!habilitado) {
+            return;
+        }
+        try {
+            rabbitTemplate.send(exchangePosicoes, "", mensagem(posicao));
+            posicoesPublicadas.increment();
+        } catch (Exception e) {
+            logger.error("Erro ao propagar posição do motorista {}: {}", posicao.motoristaId(), e.getMessage());
+        }
+    }
+
+    @Override
+    public void aoAlterarAssinaturas(Long pedidoId) {
+        if (habilitado) {
+            executorVinculos.execute(() -> sincronizarVinculo(pedidoId));
+        }
+    }
+
+    private void receber(Message mensagem) {
+        if (instancia.equals(mensagem.getMessageProperties().getHeader(CABECALHO_ORIGEM))) {
+            return;
+        }
+        if (exchangePosicoes.equals(mensagem.getMessageProperties().getReceivedExchange())) {
+            receberPosicao(mensagem);
+            return;
+        }
+        try {
+            LocalizacaoDTO localizacao = objectMapper.readValue(mensagem.getBody(), LocalizacaoDTO.class);
+            recebidas.increment();
+            distribuidorLocalizacoes.publicar(localizacao.getPedidoId(), localizacao);
+        } catch (Exception e) {
+            logger.error("Erro ao processar localização propagada: {}", e.getMessage());
+        }
+    }
+
+    // Só a posição mais recente do motorista chega ao índice e às regiões
+    private void receberPosicao(Message mensagem) {
+        try {
+            UltimaPosicao posicao = objectMapper.readValue(mensagem.getBody(), UltimaPosicao.class);
+            posicoesRecebidas.increment();
+            if (ultimaPosicaoCache.registrarSeMaisRecente(posicao)) {
+                motoristasDisponiveisIndex.atualizar(posicao);
+                distribuidorRegioes.publicar(posicao);
+            }
+        } catch (Exception e) {
+            logger.error("Erro ao processar posição propagada: {}", e.getMessage());
+        }
+    }
+
+    private Message mensagem(Object conteudo) throws JsonProcessingException {
+        MessageProperties propriedades = new MessageProperties();
+        propriedades.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+        propriedades.setDeliveryMode(MessageDeliveryMode.NON_PERSISTENT);
+        propriedades.setHeader(CABECALHO_ORIGEM, instancia);
+        return new Message(objectMapper.writeValueAsBytes(conteudo), propriedades);
+    }
+
+    /**
+     * Cria ou remove o vínculo do pedido conforme o estado atual dos observadores locais.
+     * Executado sempre na mesma thread, o que torna as alterações sequenciais e idempotentes.
+     */
+    private void sincronizarVinculo(Long pedidoId) {
+        boolean possuiAssinantes = distribuidorLocalizacoes.possuiAssinantes(pedidoId);
+        try {
+            if (possuiAssinantes && !pedidosVinculados.contains(pedidoId)) {
+                amqpAdmin.declareBinding(vinculo(pedidoId));
+                pedidosVinculados.add(pedidoId);
+            } else if (!possuiAssinantes && pedidosVinculados.contains(pedidoId)) {
+                amqpAdmin.removeBinding(vinculo(pedidoId));
+                pedidosVinculados.remove(pedidoId);
+            }
+        } catch (Exception e) {
+            logger.error("Erro ao atualizar vínculo do pedido {}: {}", pedidoId, e.getMessage());
+        }
+    }
+
+    private void declararTopologia() {
+        try {
+            amqpAdmin.declareExchange(new DirectExchange(exchange, true, false));
+            amqpAdmin.declareExchange(new FanoutExchange(exchangePosicoes, true, false));
+            amqpAdmin.declareQueue(fila);
+            amqpAdmin.declareBinding(BindingBuilder.bind(fila).to(new FanoutExchange(exchangePosicoes)));
+            pedidosVinculados.clear();
+            distribuidorLocalizacoes.pedidosAssinados().forEach(this::sincronizarVinculo);
+        } catch (Exception e) {
+            logger.error("Erro ao declarar fila de propagação de localizações: {}", e.getMessage());
+        }
+    }
+
+    private Binding vinculo(Long pedidoId) {
+        return BindingBuilder.bind(fila).to(new DirectExchange(exchange)).with(pedidoId.toString());
+    }
+}
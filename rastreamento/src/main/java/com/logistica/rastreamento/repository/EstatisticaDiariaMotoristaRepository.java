@@ -0,0 +1,57 @@
+package com.logistica.rastreamento.repository;
+
+import com.logistica.rastreamento.model.EstatisticaDiariaMotorista;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface EstatisticaDiariaMotoristaRepository
+        extends JpaRepository<EstatisticaDiariaMotorista, EstatisticaDiariaMotorista.Chave> {
+
+    List<EstatisticaDiariaMotorista> findByMotoristaIdAndDataBetween(Long motoristaId, LocalDate inicio, LocalDate fim);
+
+    /**
+     * Gera os contadores diários a partir do histórico anterior a {@code corte}
+     * (usado quando a tabela ainda está vazia). O tempo em movimento soma os intervalos
+     * entre registros EM_MOVIMENTO consecutivos do motorista, como no cálculo original.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO estatisticas_motorista_diarias (motorista_id, data, total_registros, distancia_km, " +
+            "movimento_segundos, registros_disponivel, registros_parado, registros_em_movimento) " +
+            "SELECT motorista_id, CAST(timestamp AS date), COUNT(*), COALESCE(SUM(trecho_km), 0), " +
+            "   COALESCE(SUM(movimento_s), 0), " +
+            "   COUNT(*) FILTER (WHERE status_veiculo = 'DISPONIVEL'), " +
+            "   COUNT(*) FILTER (WHERE status_veiculo = 'PARADO'), " +
+            "   COUNT(*) FILTER (WHERE status_veiculo = 'EM_MOVIMENTO') " +
+            "FROM (" +
+            "   SELECT motorista_id, timestamp, status_veiculo, " +
+            "       6371 * 2 * asin(sqrt(LEAST(1.0, " +
+            "           power(sin(radians(latitude - lag(latitude) OVER m) / 2), 2) + " +
+            "           cos(radians(lag(latitude) OVER m)) * cos(radians(latitude)) * " +
+            "           power(sin(radians(longitude - lag(longitude) OVER m) / 2), 2)))) AS trecho_km, " +
+            "       CASE WHEN status_veiculo = 'EM_MOVIMENTO' " +
+            "           THEN EXTRACT(EPOCH FROM timestamp - lag(timestamp) OVER s) END AS movimento_s " +
+            "   FROM localizacoes " +
+            "   WHERE timestamp < ?1 " +
+            "   WINDOW m AS (PARTITION BY motorista_id ORDER BY timestamp), " +
+            "          s AS (PARTITION BY motorista_id, status_veiculo ORDER BY timestamp)" +
+            ") t " +
+            "GROUP BY motorista_id, CAST(timestamp AS date) " +
+            "ON CONFLICT (motorista_id, data) DO UPDATE SET " +
+            "total_registros = estatisticas_motorista_diarias.total_registros + EXCLUDED.total_registros, " +
+            "distancia_km = estatisticas_motorista_diarias.distancia_km + EXCLUDED.distancia_km, " +
+            "movimento_segundos = estatisticas_motorista_diarias.movimento_segundos + EXCLUDED.movimento_segundos, " +
+            "registros_disponivel = estatisticas_motorista_diarias.registros_disponivel + EXCLUDED.registros_disponivel, " +
+            "registros_parado = estatisticas_motorista_diarias.registros_parado + EXCLUDED.registros_parado, " +
+            "registros_em_movimento = estatisticas_motorista_diarias.registros_em_movimento + EXCLUDED.registros_em_movimento",
+            nativeQuery = true)
+    int preencherAPartirDoHistorico(LocalDateTime corte);
+}
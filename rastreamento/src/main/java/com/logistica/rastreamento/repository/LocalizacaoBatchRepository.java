@@ -0,0 +1,140 @@
+package com.logistica.rastreamento.repository;
+
+import com.logistica.rastreamento.ingest.EstatisticasMotoristaAgregador;
+import com.logistica.rastreamento.model.EstatisticaDiariaMotorista;
+import com.logistica.rastreamento.model.Localizacao;
+import com.logistica.rastreamento.model.PedidoDiarioMotorista;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Persistência em lote das localizações via JDBC.
+ * O JPA não consegue agrupar INSERTs de entidades com GenerationType.IDENTITY,
+ * por isso a ingestão usa este repositório em vez do LocalizacaoRepository.
+ * Também mantém, por upsert, a tabela posicao_atual (uma linha por motorista)
+ * e as estatísticas diárias dos motoristas.
+ */
+@Repository
+public class LocalizacaoBatchRepository {
+
+    // Compartilhado: só aguarda o preenchimento inicial das estatísticas (PreenchimentoEstatisticasRepository)
+    private static final String LOCK_PREENCHIMENTO =
+            "SELECT pg_advisory_xact_lock_shared(hashtext('estatisticas_motorista_preenchimento'))";
+
+    private static final String INSERT_LOCALIZACAO =
+            "INSERT INTO localizacoes (pedido_id, motorista_id, latitude, longitude, timestamp, status_veiculo, recebido_em) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    // Só sobrescreve a posição atual se a nova for mais recente (lotes podem chegar fora de ordem)
+    private static final String UPSERT_POSICAO_ATUAL =
+            "INSERT INTO posicao_atual (pedido_id, motorista_id, latitude, longitude, timestamp, status_veiculo) " +
+                    "VALUES (?, ?, ?, ?, ?, ?) " +
+                    "ON CONFLICT (motorista_id) DO UPDATE SET " +
+                    "pedido_id = EXCLUDED.pedido_id, latitude = EXCLUDED.latitude, longitude = EXCLUDED.longitude, " +
+                    "timestamp = EXCLUDED.timestamp, status_veiculo = EXCLUDED.status_veiculo " +
+                    "WHERE posicao_atual.timestamp <= EXCLUDED.timestamp";
+
+    // Os contadores diários são somados aos já existentes
+    private static final String UPSERT_ESTATISTICA_DIARIA =
+            "INSERT INTO estatisticas_motorista_diarias (motorista_id, data, total_registros, distancia_km, " +
+                    "movimento_segundos, registros_disponivel, registros_parado, registros_em_movimento) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?) " +
+                    "ON CONFLICT (motorista_id, data) DO UPDATE SET " +
+                    "total_registros = estatisticas_motorista_diarias.total_registros + EXCLUDED.total_registros, " +
+                    "distancia_km = estatisticas_motorista_diarias.distancia_km + EXCLUDED.distancia_km, " +
+                    "movimento_segundos = estatisticas_motorista_diarias.movimento_segundos + EXCLUDED.movimento_segundos, " +
+                    "registros_disponivel = estatisticas_motorista_diarias.registros_disponivel + EXCLUDED.registros_disponivel, " +
+                    "registros_parado = estatisticas_motorista_diarias.registros_parado + EXCLUDED.registros_parado, " +
+                    "registros_em_movimento = estatisticas_motorista_diarias.registros_em_movimento + EXCLUDED.registros_em_movimento";
+
+    private static final String INSERT_PEDIDO_DIARIO =
+            "INSERT INTO pedidos_motorista_diarios (motorista_id, data, pedido_id) VALUES (?, ?, ?) " +
+                    "ON CONFLICT DO NOTHING";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public LocalizacaoBatchRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Insere o lote no histórico e atualiza, na mesma transação, a posição atual
+     * e as estatísticas diárias dos motoristas.
+     */
+    @Transactional
+    public void inserirEmLote(List<Localizacao> localizacoes, EstatisticasMotoristaAgregador.Incrementos estatisticas) {
+        jdbcTemplate.execute(LOCK_PREENCHIMENTO);
+        jdbcTemplate.batchUpdate(INSERT_LOCALIZACAO, localizacoes, localizacoes.size(), (ps, localizacao) -> {
+            preencher(ps, localizacao);
+            ps.setObject(7, localizacao.getRecebidoEm());
+        });
+        atualizarPosicoesAtuais(localizacoes);
+        atualizarEstatisticas(estatisticas);
+    }
+
+    /**
+     * Aplica só os incrementos das estatísticas diárias, para quando as localizações
+     * do lote precisaram ser gravadas separadamente.
+     */
+    @Transactional
+    public void gravarEstatisticas(EstatisticasMotoristaAgregador.Incrementos estatisticas) {
+        jdbcTemplate.execute(LOCK_PREENCHIMENTO);
+        atualizarEstatisticas(estatisticas);
+    }
+
+    private void atualizarPosicoesAtuais(List<Localizacao> localizacoes) {
+        // Uma linha por motorista (o ON CONFLICT não pode afetar a mesma linha duas vezes), em ordem
+        // de motorista para que instâncias concorrentes travem as linhas na mesma sequência
+        Map<Long, Localizacao> ultimas = new TreeMap<>();
+        for (Localizacao localizacao : localizacoes) {
+            ultimas.merge(localizacao.getMotoristaId(), localizacao,
+                    (atual, nova) -> nova.getTimestamp().isBefore(atual.getTimestamp()) ? atual : nova);
+        }
+        List<Localizacao> posicoes = new ArrayList<>(ultimas.values());
+        jdbcTemplate.batchUpdate(UPSERT_POSICAO_ATUAL, posicoes, posicoes.size(), this::preencher);
+    }
+
+    private void atualizarEstatisticas(EstatisticasMotoristaAgregador.Incrementos estatisticas) {
+        // Ordenados pela chave, pelo mesmo motivo das posições atuais
+        List<EstatisticaDiariaMotorista> dias = estatisticas.dias().stream()
+                .sorted(Comparator.comparing(EstatisticaDiariaMotorista::getMotoristaId)
+                        .thenComparing(EstatisticaDiariaMotorista::getData))
+                .toList();
+        jdbcTemplate.batchUpdate(UPSERT_ESTATISTICA_DIARIA, dias, dias.size(), (ps, dia) -> {
+            ps.setLong(1, dia.getMotoristaId());
+            ps.setObject(2, dia.getData());
+            ps.setLong(3, dia.getTotalRegistros());
+            ps.setDouble(4, dia.getDistanciaKm());
+            ps.setLong(5, dia.getMovimentoSegundos());
+            ps.setLong(6, dia.getRegistrosDisponivel());
+            ps.setLong(7, dia.getRegistrosParado());
+            ps.setLong(8, dia.getRegistrosEmMovimento());
+        });
+
+        List<PedidoDiarioMotorista> pedidos = new ArrayList<>(estatisticas.pedidos());
+        jdbcTemplate.batchUpdate(INSERT_PEDIDO_DIARIO, pedidos, pedidos.size(), (ps, pedido) -> {
+            ps.setLong(1, pedido.getMotoristaId());
+            ps.setObject(2, pedido.getData());
+            ps.setLong(3, pedido.getPedidoId());
+        });
+    }
+
+    private void preencher(PreparedStatement ps, Localizacao localizacao) throws SQLException {
+        ps.setObject(1, localizacao.getPedidoId(), Types.BIGINT);
+        ps.setLong(2, localizacao.getMotoristaId());
+        ps.setDouble(3, localizacao.getLatitude());
+        ps.setDouble(4, localizacao.getLongitude());
+        ps.setObject(5, localizacao.getTimestamp());
+        ps.setString(6, localizacao.getStatusVeiculo().name());
+    }
+}
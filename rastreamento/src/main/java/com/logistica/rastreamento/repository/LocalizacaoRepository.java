@@ -1,13 +1,20 @@
 package com.logistica.rastreamento.repository;
 
 import com.logistica.rastreamento.model.Localizacao;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
 
 @Repository
 public interface LocalizacaoRepository extends JpaRepository<Localizacao, Long> {
@@ -16,56 +23,33 @@ public interface LocalizacaoRepository extends JpaRepository<Localizacao, Long>
 
     List<Localizacao> findByPedidoIdOrderByTimestampDesc(Long pedidoId);
 
-    @Query(value = "SELECT * FROM localizacoes l " +
-            "WHERE l.id IN (SELECT MAX(id) FROM localizacoes GROUP BY pedido_id) " +
-            "AND (6371 * acos(cos(radians(?1)) * cos(radians(l.latitude)) * " +
-            "cos(radians(l.longitude) - radians(?2)) + sin(radians(?1)) * " +
-            "sin(radians(l.latitude)))) < ?3", nativeQuery = true)
-    List<Localizacao> encontrarEntregasProximas(Double latitude, Double longitude, Double raioKm);
+    // Limite inferior no timestamp permite ao Postgres ignorar as partições anteriores ao pedido
+    List<Localizacao> findByPedidoIdAndTimestampGreaterThanEqualOrderByTimestampDesc(Long pedidoId, LocalDateTime desde);
+
+    // Paginação por chave: primeira página e páginas seguintes a partir do cursor (timestamp, id)
+    List<Localizacao> findByPedidoIdAndTimestampGreaterThanEqualOrderByTimestampDescIdDesc(
+            Long pedidoId, LocalDateTime desde, Pageable pagina);
+
+    @Query("SELECT l FROM Localizacao l WHERE l.pedidoId = :pedidoId AND l.timestamp >= :desde " +
+            "AND (l.timestamp < :timestamp OR (l.timestamp = :timestamp AND l.id < :id)) " +
+            "ORDER BY l.timestamp DESC, l.id DESC")
+    List<Localizacao> buscarHistoricoAposCursor(@Param("pedidoId") Long pedidoId,
+                                                @Param("desde") LocalDateTime desde,
+                                                @Param("timestamp") LocalDateTime timestamp,
+                                                @Param("id") Long id,
+                                                Pageable pagina);
 
+    // Leitura em cursor do banco (fetch size), para transmitir históricos longos sem carregá-los inteiros
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    Stream<Localizacao> streamByPedidoIdAndTimestampGreaterThanEqualOrderByTimestampDescIdDesc(Long pedidoId, LocalDateTime desde);
 
     List<Localizacao> findByMotoristaIdAndTimestampBetweenOrderByTimestamp(
             Long motoristaId, LocalDateTime inicio, LocalDateTime fim);
 
     Optional<Localizacao> findTopByMotoristaIdOrderByTimestampDesc(Long motoristaId);
 
-    /*    @Query(value =
-                "WITH ultimas_localizacoes AS (" +
-                        "   SELECT DISTINCT ON (motorista_id) * " +
-                        "   FROM localizacoes " +
-                        "   ORDER BY motorista_id, timestamp DESC" +
-                        ") " +
-                        "SELECT l.*, " +
-                        "   (6371 * acos(cos(radians(?1)) * cos(radians(l.latitude)) * " +
-                        "   cos(radians(l.longitude) - radians(?2)) + sin(radians(?1)) * " +
-                        "   sin(radians(l.latitude)))) AS distancia " +
-                        "FROM ultimas_localizacoes l " +
-                        "WHERE l.status_veiculo = 'DISPONIVEL' " +
-                        "AND (6371 * acos(cos(radians(?1)) * cos(radians(l.latitude)) * " +
-                        "   cos(radians(l.longitude) - radians(?2)) + sin(radians(?1)) * " +
-                        "   sin(radians(l.latitude)))) < ?3 " +
-                        "ORDER BY distancia",
-                nativeQuery = true)
-        List<Object[]> encontrarMotoristasProximos(Double latitude, Double longitude, Double raioKm);*/
-    @Query(value =
-            "WITH ultimas_localizacoes AS (" +
-                    "   SELECT DISTINCT ON (motorista_id) * " +
-                    "   FROM localizacoes " +
-                    "   ORDER BY motorista_id, timestamp DESC" +
-                    ") " +
-                    "SELECT l.motorista_id, l.latitude, l.longitude, l.timestamp," +
-                    "   (6371 * acos(cos(radians(?1)) * cos(radians(l.latitude)) * " +
-                    "   cos(radians(l.longitude) - radians(?2)) + sin(radians(?1)) * " +
-                    "   sin(radians(l.latitude)))) AS distancia " +
-                    "FROM ultimas_localizacoes l " +
-                    "WHERE l.status_veiculo = 'DISPONIVEL' " +
-                    "AND (6371 * acos(cos(radians(?1)) * cos(radians(l.latitude)) * " +
-                    "   cos(radians(l.longitude) - radians(?2)) + sin(radians(?1)) * " +
-                    "   sin(radians(l.latitude)))) < ?3 " +
-                    "ORDER BY distancia",
-            nativeQuery = true)
-    List<Object[]> encontrarMotoristasProximos(Double latitude, Double longitude, Double raioKm);
-
+    @Query(value = "SELECT DISTINCT ON (pedido_id) * FROM localizacoes " +
+            "WHERE pedido_id IS NOT NULL AND timestamp >= ?1 " +
+            "ORDER BY pedido_id, timestamp DESC", nativeQuery = true)
+    List<Localizacao> findUltimasPorPedidoDesde(LocalDateTime desde);
 }
-
-
@@ -0,0 +1,187 @@
+package com.logistica.rastreamento.repository;
+
+import com.logistica.rastreamento.model.GranularidadeParticao;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Operações de DDL do particionamento da tabela localizacoes por intervalo de timestamp (PostgreSQL).
+ * As partições seguem o padrão localizacoes_p{yyyyMMdd|yyyyMM}; registros fora de qualquer
+ * intervalo caem na partição padrão e são movidos quando a partição correspondente é criada;
+ * os anteriores à retenção, que nunca ganham partição, são resumidos e removidos dela.
+ */
+@Repository
+public class ParticaoLocalizacaoRepository {
+
+    public static final String TABELA = "localizacoes";
+    public static final String TABELA_LEGADA = "localizacoes_legado";
+    private static final String PARTICAO_PADRAO = "localizacoes_padrao";
+    private static final String PREFIXO_PARTICAO = "localizacoes_p";
+    private static final String SEQUENCIA_ID = "localizacoes_particionada_id_seq";
+
+    // Serializa as operações de DDL entre instâncias do serviço
+    private static final String LOCK_PARTICOES = "SELECT pg_advisory_xact_lock(hashtext('localizacoes_particoes'))";
+
+    private static final String CONSOLIDAR_PARTICAO =
+            "INSERT INTO resumo_trajetos (motorista_id, pedido_id, data, quantidade_pontos, distancia_km, inicio, fim) " +
+            "SELECT motorista_id, pedido_id, dia, COUNT(*), COALESCE(SUM(trecho_km), 0), MIN(timestamp), MAX(timestamp) " +
+            "FROM (" +
+            "   SELECT motorista_id, pedido_id, timestamp, CAST(timestamp AS date) AS dia, " +
+            "       6371 * 2 * asin(sqrt(LEAST(1.0, " +
+            "           power(sin(radians(latitude - lag(latitude) OVER w) / 2), 2) + " +
+            "           cos(radians(lag(latitude) OVER w)) * cos(radians(latitude)) * " +
+            "           power(sin(radians(longitude - lag(longitude) OVER w) / 2), 2)))) AS trecho_km " +
+            "   FROM %s " +
+            "   WINDOW w AS (PARTITION BY motorista_id, pedido_id, CAST(timestamp AS date) ORDER BY timestamp)" +
+            ") t " +
+            "GROUP BY motorista_id, pedido_id, dia";
+
+    public record Particao(String nome, LocalDate inicio, LocalDate fim) {
+        public boolean sobrepoe(LocalDate outroInicio, LocalDate outroFim) {
+            return inicio.isBefore(outroFim) && outroInicio.isBefore(fim);
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ParticaoLocalizacaoRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public static String nomeParticao(GranularidadeParticao granularidade, LocalDate inicio) {
+        return PREFIXO_PARTICAO + granularidade.sufixo(inicio);
+    }
+
+    public boolean tabelaParticionada() {
+        List<String> tipo = jdbcTemplate.queryForList(
+                "SELECT c.relkind::text FROM pg_class c WHERE c.oid = to_regclass(?)", String.class, TABELA);
+        return !tipo.isEmpty() && "p".equals(tipo.get(0));
+    }
+
+    /**
+     * Substitui a tabela comum localizacoes por uma tabela particionada com os mesmos dados.
+     * A tabela original é mantida como localizacoes_legado para conferência e pode ser removida depois.
+     *
+     * @param ate início do período atual; partições a partir dele são criadas pelo agendador
+     * @return false se outra instância já fez a conversão
+     */
+    @Transactional
+    public boolean converterParaParticionada(GranularidadeParticao granularidade, LocalDate ate) {
+        jdbcTemplate.execute(LOCK_PARTICOES);
+        if (tabelaParticionada()) {
+            return false;
+        }
+        jdbcTemplate.execute("LOCK TABLE " + TABELA + " IN ACCESS EXCLUSIVE MODE");
+        jdbcTemplate.execute("ALTER TABLE " + TABELA + " RENAME TO " + TABELA_LEGADA);
+        // Libera os nomes dos índices declarados na entidade para a nova tabela
+        jdbcTemplate.execute("ALTER INDEX IF EXISTS idx_localizacoes_pedido_timestamp RENAME TO idx_localizacoes_legado_pedido_timestamp");
+        jdbcTemplate.execute("ALTER INDEX IF EXISTS idx_localizacoes_motorista_timestamp RENAME TO idx_localizacoes_legado_motorista_timestamp");
+
+        jdbcTemplate.execute("CREATE SEQUENCE IF NOT EXISTS " + SEQUENCIA_ID);
+        jdbcTemplate.execute("CREATE TABLE " + TABELA + " (" +
+                "id bigint NOT NULL DEFAULT nextval('" + SEQUENCIA_ID + "'), " +
+                "pedido_id bigint, " +
+                "motorista_id bigint, " +
+                "latitude double precision, " +
+                "longitude double precision, " +
+                "timestamp timestamp(6) NOT NULL, " +
+                "status_veiculo varchar(255), " +
+                "recebido_em timestamp(6), " +
+                "CONSTRAINT localizacoes_particionada_pkey PRIMARY KEY (id, timestamp)" +
+                ") PARTITION BY RANGE (timestamp)");
+        jdbcTemplate.execute("ALTER SEQUENCE " + SEQUENCIA_ID + " OWNED BY " + TABELA + ".id");
+        jdbcTemplate.execute("CREATE TABLE " + PARTICAO_PADRAO + " PARTITION OF " + TABELA + " DEFAULT");
+
+        LocalDate primeiroDia = jdbcTemplate.queryForObject(
+                "SELECT CAST(MIN(timestamp) AS date) FROM " + TABELA_LEGADA, LocalDate.class);
+        if (primeiroDia != null) {
+            for (LocalDate inicio = granularidade.inicioDoPeriodo(primeiroDia); inicio.isBefore(ate);
+                 inicio = granularidade.proximoPeriodo(inicio)) {
+                LocalDate fim = granularidade.proximoPeriodo(inicio);
+                jdbcTemplate.execute("CREATE TABLE " + nomeParticao(granularidade, inicio) + " PARTITION OF " + TABELA +
+                        " FOR VALUES FROM ('" + inicio + "') TO ('" + fim + "')");
+            }
+        }
+
+        jdbcTemplate.update("INSERT INTO " + TABELA + " (id, pedido_id, motorista_id, latitude, longitude, timestamp, status_veiculo, recebido_em) " +
+                "SELECT id, pedido_id, motorista_id, latitude, longitude, timestamp, status_veiculo, recebido_em " +
+                "FROM " + TABELA_LEGADA + " WHERE timestamp IS NOT NULL");
+        jdbcTemplate.execute("SELECT setval('" + SEQUENCIA_ID + "', COALESCE((SELECT MAX(id) FROM " + TABELA_LEGADA + "), 0) + 1, false)");
+
+        // Índices particionados: criados automaticamente em cada partição, atual e futura
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_localizacoes_pedido_timestamp ON " + TABELA + " (pedido_id, timestamp)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_localizacoes_motorista_timestamp ON " + TABELA + " (motorista_id, timestamp)");
+        return true;
+    }
+
+    public List<Particao> listarParticoes() {
+        return jdbcTemplate.queryForList(
+                        "SELECT c.relname::text FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+                        "WHERE i.inhparent = to_regclass(?) AND c.relname ~ '^localizacoes_p[0-9]+$' " +
+                        "ORDER BY c.relname", String.class, TABELA)
+                .stream()
+                .map(nome -> {
+                    String sufixo = nome.substring(PREFIXO_PARTICAO.length());
+                    GranularidadeParticao granularidade = GranularidadeParticao.doSufixo(sufixo);
+                    LocalDate inicio = granularidade.inicioDoSufixo(sufixo);
+                    return new Particao(nome, inicio, granularidade.proximoPeriodo(inicio));
+                })
+                .toList();
+    }
+
+    /**
+     * Cria a partição [inicio, fim), movendo para ela os registros que estiverem na partição padrão.
+     *
+     * @return false se já existir uma partição com esse nome
+     */
+    @Transactional
+    public boolean criarParticao(String nome, LocalDate inicio, LocalDate fim) {
+        jdbcTemplate.execute(LOCK_PARTICOES);
+        if (jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, nome)) {
+            return false;
+        }
+        jdbcTemplate.execute("CREATE TABLE " + nome + " (LIKE " + TABELA + " INCLUDING DEFAULTS)");
+        jdbcTemplate.update("WITH movidas AS (DELETE FROM " + PARTICAO_PADRAO + " WHERE timestamp >= ? AND timestamp < ? RETURNING *) " +
+                "INSERT INTO " + nome + " SELECT * FROM movidas", inicio.atStartOfDay(), fim.atStartOfDay());
+        jdbcTemplate.execute("ALTER TABLE " + TABELA + " ATTACH PARTITION " + nome +
+                " FOR VALUES FROM ('" + inicio + "') TO ('" + fim + "')");
+        return true;
+    }
+
+    /**
+     * Gera os resumos de trajeto da partição e a remove, na mesma transação.
+     *
+     * @return quantidade de resumos gerados
+     */
+    @Transactional
+    public int consolidarEDescartar(String nome) {
+        jdbcTemplate.execute(LOCK_PARTICOES);
+        if (!jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, nome)) {
+            return 0;
+        }
+        int resumos = jdbcTemplate.update(CONSOLIDAR_PARTICAO.formatted(nome));
+        jdbcTemplate.execute("DROP TABLE " + nome);
+        return resumos;
+    }
+
+    /**
+     * Gera os resumos de trajeto das localizações da partição padrão anteriores a {@code limite}
+     * e as remove no mesmo comando, sem perder as que chegarem durante a consolidação.
+     *
+     * @return quantidade de resumos gerados
+     */
+    @Transactional
+    public int consolidarEDescartarPadrao(LocalDate limite) {
+        jdbcTemplate.execute(LOCK_PARTICOES);
+        return jdbcTemplate.update("WITH removidas AS (DELETE FROM " + PARTICAO_PADRAO + " WHERE timestamp < ? RETURNING *) " +
+                CONSOLIDAR_PARTICAO.formatted("removidas"), limite.atStartOfDay());
+    }
+
+    public long contarNaParticaoPadrao() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + PARTICAO_PADRAO, Long.class);
+    }
+}
@@ -0,0 +1,32 @@
+package com.logistica.rastreamento.repository;
+
+import com.logistica.rastreamento.model.PedidoDiarioMotorista;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Set;
+
+@Repository
+public interface PedidoDiarioMotoristaRepository
+        extends JpaRepository<PedidoDiarioMotorista, PedidoDiarioMotorista.Chave> {
+
+    @Query("SELECT DISTINCT p.pedidoId FROM PedidoDiarioMotorista p " +
+            "WHERE p.motoristaId = :motoristaId AND p.data BETWEEN :inicio AND :fim")
+    Set<Long> buscarPedidosAtendidos(@Param("motoristaId") Long motoristaId,
+                                     @Param("inicio") LocalDate inicio,
+                                     @Param("fim") LocalDate fim);
+
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO pedidos_motorista_diarios (motorista_id, data, pedido_id) " +
+            "SELECT DISTINCT motorista_id, CAST(timestamp AS date), pedido_id FROM localizacoes " +
+            "WHERE pedido_id IS NOT NULL AND timestamp < ?1 " +
+            "ON CONFLICT DO NOTHING", nativeQuery = true)
+    int preencherAPartirDoHistorico(LocalDateTime corte);
+}
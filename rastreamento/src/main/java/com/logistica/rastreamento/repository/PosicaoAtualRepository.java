@@ -0,0 +1,63 @@
+package com.logistica.rastreamento.repository;
+
+import com.logistica.rastreamento.model.PosicaoAtual;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface PosicaoAtualRepository extends JpaRepository<PosicaoAtual, Long> {
+
+    // Filtro por retângulo envolvente (usa o índice de latitude/longitude) antes do cálculo trigonométrico.
+    // A meia largura em longitude é asin(sen r / cos lat), com o cosseno limitado como na GradeEspacial
+    // para não dividir por zero nos polos; o intervalo é repetido deslocado de ±360° para cruzar o
+    // antimeridiano, e um círculo que alcança um polo abrange todas as longitudes.
+    String RAIO_GRAUS = "degrees(?3 / 6371.0)";
+
+    String MEIA_LARGURA_LONGITUDE =
+            "degrees(asin(LEAST(1.0, sin(?3 / 6371.0) / GREATEST(cos(radians(?1)), 0.01))))";
+
+    String FILTRO_RETANGULO =
+            "p.latitude BETWEEN ?1 - " + RAIO_GRAUS + " AND ?1 + " + RAIO_GRAUS + " " +
+            "AND (abs(?1) + " + RAIO_GRAUS + " >= 90 " +
+            "OR p.longitude BETWEEN ?2 - " + MEIA_LARGURA_LONGITUDE + " AND ?2 + " + MEIA_LARGURA_LONGITUDE + " " +
+            "OR p.longitude BETWEEN ?2 - 360 - " + MEIA_LARGURA_LONGITUDE + " AND ?2 - 360 + " + MEIA_LARGURA_LONGITUDE + " " +
+            "OR p.longitude BETWEEN ?2 + 360 - " + MEIA_LARGURA_LONGITUDE + " AND ?2 + 360 + " + MEIA_LARGURA_LONGITUDE + ") ";
+
+    String DISTANCIA_KM =
+            "(6371 * acos(LEAST(1.0, cos(radians(?1)) * cos(radians(p.latitude)) * " +
+            "cos(radians(p.longitude) - radians(?2)) + sin(radians(?1)) * " +
+            "sin(radians(p.latitude)))))";
+
+    @Query(value = "SELECT * FROM posicao_atual p " +
+            "WHERE p.pedido_id IS NOT NULL " +
+            "AND " + FILTRO_RETANGULO +
+            "AND " + DISTANCIA_KM + " < ?3", nativeQuery = true)
+    List<PosicaoAtual> encontrarEntregasProximas(Double latitude, Double longitude, Double raioKm);
+
+    @Query(value = "SELECT c.motorista_id, c.latitude, c.longitude, c.timestamp, c.distancia FROM (" +
+            "   SELECT p.motorista_id, p.latitude, p.longitude, p.timestamp, " + DISTANCIA_KM + " AS distancia " +
+            "   FROM posicao_atual p " +
+            "   WHERE p.status_veiculo = 'DISPONIVEL' " +
+            "   AND " + FILTRO_RETANGULO +
+            ") c " +
+            "WHERE c.distancia < ?3 " +
+            "ORDER BY c.distancia",
+            nativeQuery = true)
+    List<Object[]> encontrarMotoristasProximos(Double latitude, Double longitude, Double raioKm);
+
+    /**
+     * Preenche a tabela a partir do histórico (usado quando a tabela ainda está vazia).
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO posicao_atual (motorista_id, pedido_id, latitude, longitude, timestamp, status_veiculo) " +
+            "SELECT DISTINCT ON (motorista_id) motorista_id, pedido_id, latitude, longitude, timestamp, status_veiculo " +
+            "FROM localizacoes ORDER BY motorista_id, timestamp DESC " +
+            "ON CONFLICT (motorista_id) DO NOTHING", nativeQuery = true)
+    int preencherAPartirDoHistorico();
+}
@@ -0,0 +1,51 @@
+package com.logistica.rastreamento.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+/**
+ * Preenchimento inicial das estatísticas diárias dos motoristas a partir do histórico.
+ * A verificação da tabela vazia e o preenchimento rodam na mesma transação, sob um lock
+ * consultivo: instâncias que iniciam juntas aguardam a primeira e encontram a tabela já
+ * preenchida, sem contar o histórico duas vezes. A gravação dos lotes da ingestão toma o
+ * mesmo lock em modo compartilhado, para que nenhum lote seja confirmado entre a
+ * verificação e o preenchimento.
+ */
+@Repository
+public class PreenchimentoEstatisticasRepository {
+
+    private static final String LOCK_PREENCHIMENTO =
+            "SELECT pg_advisory_xact_lock(hashtext('estatisticas_motorista_preenchimento'))";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EstatisticaDiariaMotoristaRepository estatisticaDiariaMotoristaRepository;
+    private final PedidoDiarioMotoristaRepository pedidoDiarioMotoristaRepository;
+
+    public PreenchimentoEstatisticasRepository(JdbcTemplate jdbcTemplate,
+                                               EstatisticaDiariaMotoristaRepository estatisticaDiariaMotoristaRepository,
+                                               PedidoDiarioMotoristaRepository pedidoDiarioMotoristaRepository) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.estatisticaDiariaMotoristaRepository = estatisticaDiariaMotoristaRepository;
+        this.pedidoDiarioMotoristaRepository = pedidoDiarioMotoristaRepository;
+    }
+
+    /**
+     * Se a tabela de estatísticas estiver vazia, preenche-a com o histórico anterior a
+     * {@code corte}.
+     *
+     * @return true se o preenchimento foi feito por esta chamada
+     */
+    @Transactional
+    public boolean preencherSeVazia(LocalDateTime corte) {
+        jdbcTemplate.execute(LOCK_PREENCHIMENTO);
+        if (estatisticaDiariaMotoristaRepository.count() > 0) {
+            return false;
+        }
+        estatisticaDiariaMotoristaRepository.preencherAPartirDoHistorico(corte);
+        pedidoDiarioMotoristaRepository.preencherAPartirDoHistorico(corte);
+        return true;
+    }
+}
@@ -0,0 +1,103 @@
+package com.logistica.rastreamento.repository;
+
+import com.logistica.rastreamento.model.StatusVeiculo;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Leitura em cursor das localizações de toda a frota para o relatório de estatísticas.
+ * Lê apenas as colunas necessárias, ordenadas por motorista, e entrega o trajeto de cada
+ * motorista em arrays primitivos assim que o próximo motorista começa, sem materializar entidades.
+ */
+@Repository
+public class RelatorioFrotaRepository {
+
+    private static final int TAMANHO_FETCH = 5000;
+
+    private static final String SELECT_TRAJETOS =
+            "SELECT motorista_id, pedido_id, latitude, longitude, timestamp, status_veiculo FROM localizacoes " +
+                    "WHERE timestamp BETWEEN ? AND ? ORDER BY motorista_id, timestamp";
+
+    private static final StatusVeiculo[] STATUS = StatusVeiculo.values();
+
+    /**
+     * Localizações de um motorista no período, em ordem de timestamp.
+     * Pedido 0 indica localização sem pedido; o status é o ordinal de StatusVeiculo.
+     */
+    public static final class Trajeto {
+        private final long motoristaId;
+        private int tamanho;
+        private long[] pedidos = new long[64];
+        private double[] latitudes = new double[64];
+        private double[] longitudes = new double[64];
+        private long[] timestampsMs = new long[64];
+        private byte[] status = new byte[64];
+
+        private Trajeto(long motoristaId) {
+            this.motoristaId = motoristaId;
+        }
+
+        private void adicionar(long pedido, double latitude, double longitude, long timestampMs, byte statusVeiculo) {
+            if (tamanho == latitudes.length) {
+                int capacidade = tamanho * 2;
+                pedidos = Arrays.copyOf(pedidos, capacidade);
+                latitudes = Arrays.copyOf(latitudes, capacidade);
+                longitudes = Arrays.copyOf(longitudes, capacidade);
+                timestampsMs = Arrays.copyOf(timestampsMs, capacidade);
+                status = Arrays.copyOf(status, capacidade);
+            }
+            pedidos[tamanho] = pedido;
+            latitudes[tamanho] = latitude;
+            longitudes[tamanho] = longitude;
+            timestampsMs[tamanho] = timestampMs;
+            status[tamanho] = statusVeiculo;
+            tamanho++;
+        }
+
+        public long motoristaId() { return motoristaId; }
+        public int tamanho() { return tamanho; }
+        public long pedido(int i) { return pedidos[i]; }
+        // Arrays internos (válidos até tamanho()), para as funções em lote de DistanciaUtils
+        public double[] latitudes() { return latitudes; }
+        public double[] longitudes() { return longitudes; }
+        public long timestampMs(int i) { return timestampsMs[i]; }
+        public StatusVeiculo status(int i) { return STATUS[status[i]]; }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public RelatorioFrotaRepository(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        // O driver do Postgres só usa cursor (fetch size) dentro de uma transação
+        this.jdbcTemplate.setFetchSize(TAMANHO_FETCH);
+    }
+
+    @Transactional(readOnly = true)
+    public void percorrerTrajetos(LocalDateTime inicio, LocalDateTime fim, Consumer<Trajeto> consumidor) {
+        Trajeto[] atual = new Trajeto[1];
+        jdbcTemplate.query(SELECT_TRAJETOS, rs -> {
+            long motoristaId = rs.getLong(1);
+            if (atual[0] == null || atual[0].motoristaId != motoristaId) {
+                if (atual[0] != null) {
+                    consumidor.accept(atual[0]);
+                }
+                atual[0] = new Trajeto(motoristaId);
+            }
+            atual[0].adicionar(
+                    rs.getLong(2),
+                    rs.getDouble(3),
+                    rs.getDouble(4),
+                    rs.getTimestamp(5).getTime(),
+                    (byte) StatusVeiculo.valueOf(rs.getString(6)).ordinal());
+        }, inicio, fim);
+        if (atual[0] != null) {
+            consumidor.accept(atual[0]);
+        }
+    }
+}
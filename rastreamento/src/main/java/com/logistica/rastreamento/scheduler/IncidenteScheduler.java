@@ -10,6 +10,10 @@ import org.springframework.stereotype.Component;
 import java.time.LocalDateTime;
 import java.util.List;
 
+/**
+ * Desativação periódica dos incidentes expirados. A expiração normal é feita no segundo exato
+ * pelo IncidentesAtivosIndex; este job cobre incidentes que nenhuma instância tinha indexado.
+ */
 @Component
 public class IncidenteScheduler {
 
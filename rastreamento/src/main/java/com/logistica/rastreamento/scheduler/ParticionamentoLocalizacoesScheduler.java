@@ -0,0 +1,125 @@
+package com.logistica.rastreamento.scheduler;
+
+import com.logistica.rastreamento.model.GranularidadeParticao;
+import com.logistica.rastreamento.repository.ParticaoLocalizacaoRepository;
+import com.logistica.rastreamento.repository.ParticaoLocalizacaoRepository.Particao;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Mantém a tabela localizacoes particionada por tempo quando o modo particionado está habilitado:
+ * converte a tabela na primeira inicialização, cria as partições futuras e aplica a retenção,
+ * resumindo as localizações antigas em resumo_trajetos antes de descartar cada partição (e as
+ * da partição padrão anteriores ao limite). Localizações que continuam na partição padrão são
+ * sinalizadas no log, pois indicam períodos sem partição.
+ */
+@Component
+public class ParticionamentoLocalizacoesScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParticionamentoLocalizacoesScheduler.class);
+
+    private final ParticaoLocalizacaoRepository particaoLocalizacaoRepository;
+    private final boolean habilitado;
+    private final GranularidadeParticao granularidade;
+    private final int particoesFuturas;
+    private final int retencaoDias;
+
+    public ParticionamentoLocalizacoesScheduler(ParticaoLocalizacaoRepository particaoLocalizacaoRepository,
+                                                @Value("${rastreamento.particionamento.habilitado:false}") boolean habilitado,
+                                                @Value("${rastreamento.particionamento.granularidade:DIARIA}") GranularidadeParticao granularidade,
+                                                @Value("${rastreamento.particionamento.particoes-futuras:7}") int particoesFuturas,
+                                                @Value("${rastreamento.particionamento.retencao-dias:90}") int retencaoDias) {
+        this.particaoLocalizacaoRepository = particaoLocalizacaoRepository;
+        this.habilitado = habilitado;
+        this.granularidade = granularidade;
+        this.particoesFuturas = particoesFuturas;
+        this.retencaoDias = retencaoDias;
+    }
+
+    // Executa antes do aquecimento dos caches, que já leem a tabela convertida
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(-1)
+    public void inicializar() {
+        if (!habilitado) {
+            return;
+        }
+        try {
+            if (!particaoLocalizacaoRepository.tabelaParticionada()) {
+                logger.info("Convertendo a tabela {} para particionamento {}", ParticaoLocalizacaoRepository.TABELA, granularidade);
+                if (particaoLocalizacaoRepository.converterParaParticionada(granularidade, granularidade.inicioDoPeriodo(LocalDate.now()))) {
+                    logger.info("Tabela convertida; dados originais mantidos em {}", ParticaoLocalizacaoRepository.TABELA_LEGADA);
+                }
+            }
+            criarParticoesFuturas();
+        } catch (Exception e) {
+            logger.error("Erro ao inicializar o particionamento de localizações: {}", e.getMessage(), e);
+        }
+    }
+
+    @Scheduled(cron = "${rastreamento.particionamento.cron:0 15 0 * * *}")
+    public void manterParticoes() {
+        if (!habilitado) {
+            return;
+        }
+        try {
+            criarParticoesFuturas();
+            aplicarRetencao();
+            verificarParticaoPadrao();
+        } catch (Exception e) {
+            logger.error("Erro na manutenção das partições de localizações: {}", e.getMessage(), e);
+        }
+    }
+
+    private void criarParticoesFuturas() {
+        List<Particao> existentes = particaoLocalizacaoRepository.listarParticoes();
+        LocalDate inicio = granularidade.inicioDoPeriodo(LocalDate.now());
+        for (int i = 0; i <= particoesFuturas; i++) {
+            LocalDate fim = granularidade.proximoPeriodo(inicio);
+            LocalDate inicioPeriodo = inicio;
+            // Após troca de granularidade, períodos já cobertos por partições antigas são mantidos
+            if (existentes.stream().noneMatch(p -> p.sobrepoe(inicioPeriodo, fim))) {
+                String nome = ParticaoLocalizacaoRepository.nomeParticao(granularidade, inicio);
+                if (particaoLocalizacaoRepository.criarParticao(nome, inicio, fim)) {
+                    logger.info("Partição {} criada", nome);
+                }
+            }
+            inicio = fim;
+        }
+    }
+
+    private void aplicarRetencao() {
+        if (retencaoDias <= 0) {
+            return;
+        }
+        LocalDate limite = LocalDate.now().minusDays(retencaoDias);
+        for (Particao particao : particaoLocalizacaoRepository.listarParticoes()) {
+            if (!particao.fim().isAfter(limite)) {
+                int resumos = particaoLocalizacaoRepository.consolidarEDescartar(particao.nome());
+                logger.info("Partição {} descartada após gerar {} resumos de trajeto", particao.nome(), resumos);
+            }
+        }
+        // Localizações anteriores à primeira partição (ou muito atrasadas) ficam na partição padrão
+        int resumos = particaoLocalizacaoRepository.consolidarEDescartarPadrao(limite);
+        if (resumos > 0) {
+            logger.info("Localizações anteriores a {} removidas da partição padrão após gerar {} resumos de trajeto",
+                    limite, resumos);
+        }
+    }
+
+    private void verificarParticaoPadrao() {
+        long localizacoes = particaoLocalizacaoRepository.contarNaParticaoPadrao();
+        if (localizacoes > 0) {
+            logger.warn("{} localizações na partição padrão: há períodos sem partição (verifique particoes-futuras e o relógio dos dispositivos)",
+                    localizacoes);
+        }
+    }
+}
@@ -5,7 +5,30 @@ import com.logistica.rastreamento.dto.LocalizacaoDTO;
 /**
  * Interface para observadores de localização
  * Implementa o padrão Observer para notificações em tempo real
+ *
+ * As notificações são entregues pelo DistribuidorLocalizacoes, fora da thread de ingestão.
+ * Observadores com controle de fluxo (ex.: streams gRPC) podem sinalizar quando estão
+ * prontos para receber; enquanto não estiverem, apenas a localização mais recente é mantida.
  */
 public interface LocalizacaoObserver {
     void onNovaLocalizacao(LocalizacaoDTO localizacao);
-}
\ No newline at end of file
+
+    /**
+     * Indica se o observador pode receber uma nova localização sem acumular dados em buffer.
+     */
+    default boolean prontoParaReceber() {
+        return true;
+    }
+
+    /**
+     * Registra a ação a executar quando o observador voltar a ficar pronto para receber.
+     */
+    default void aoFicarPronto(Runnable acao) {
+    }
+
+    /**
+     * Chamado quando o observador é removido por não consumir as notificações a tempo.
+     */
+    default void encerrar(String motivo) {
+    }
+}
@@ -1,52 +1,172 @@
 package com.logistica.rastreamento.service;
 
 import com.logistica.rastreamento.dto.AtualizarStatusRequest;
+import com.logistica.rastreamento.exception.RecursoNaoEncontradoException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PreDestroy;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.Timeout;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Cliente do microsserviço de pedidos.
+ *
+ * As consultas de pedidos são assíncronas e coalescidas: chamadas simultâneas para o mesmo
+ * id compartilham a mesma requisição em andamento, e os ids pedidos dentro de uma janela
+ * curta são agrupados numa única consulta em lote (GET /api/pedidos/lote). As conexões
+ * HTTP vêm de um pool limitado, com timeouts de conexão e de resposta.
+ */
 @Service
 public class PedidoServiceClient {
 
+    private static final ParameterizedTypeReference<List<Map<String, Object>>> LISTA_PEDIDOS =
+            new ParameterizedTypeReference<>() {
+            };
+
     private final RestTemplate restTemplate;
+    private final PoolingHttpClientConnectionManager gerenciadorConexoes;
     private final String pedidoServiceUrl;
     private final String secretHeaderName;
     private final String secretHeaderValue;
+    private final long janelaLoteMs;
+    private final int tamanhoMaximoLote;
+
+    // Consultas em andamento por id; a entrada é removida quando a consulta termina
+    private final Map<Long, CompletableFuture<Object>> emAndamento = new ConcurrentHashMap<>();
+    // Consultas aguardando o envio do próximo lote, protegidas pelo monitor de loteLock
+    private final Object loteLock = new Object();
+    private Map<Long, CompletableFuture<Object>> pendentes = new HashMap<>();
+    private boolean loteAgendado;
+
+    private final ScheduledExecutorService agendador = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "pedido-client-lotes");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // As requisições bloqueiam em threads virtuais; o pool de conexões limita a concorrência real
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final Counter coalescidas;
+    private final Counter lotes;
 
     public PedidoServiceClient(@Value("${services.pedido.url}") String pedidoServiceUrl,
                                @Value("${security.internal.header-name:X-Internal-Auth}") String secretHeaderName,
-                               @Value("${security.internal.header-value}") String secretHeaderValue) {
-        HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory();
+                               @Value("${security.internal.header-value}") String secretHeaderValue,
+                               @Value("${services.pedido.max-conexoes:50}") int maxConexoes,
+                               @Value("${services.pedido.timeout-conexao-ms:1000}") long timeoutConexaoMs,
+                               @Value("${services.pedido.timeout-resposta-ms:3000}") long timeoutRespostaMs,
+                               @Value("${services.pedido.janela-lote-ms:5}") long janelaLoteMs,
+                               @Value("${services.pedido.tamanho-maximo-lote:100}") int tamanhoMaximoLote,
+                               MeterRegistry meterRegistry) {
+        this.gerenciadorConexoes = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConexoes)
+                .setMaxConnPerRoute(maxConexoes)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(timeoutConexaoMs))
+                        .setSocketTimeout(Timeout.ofMilliseconds(timeoutRespostaMs))
+                        .build())
+                .build();
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(timeoutConexaoMs))
+                .setResponseTimeout(Timeout.ofMilliseconds(timeoutRespostaMs))
+                .build();
+        HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory(
+                HttpClients.custom()
+                        .setConnectionManager(gerenciadorConexoes)
+                        .setDefaultRequestConfig(requestConfig)
+                        .build());
         this.restTemplate = new RestTemplate(requestFactory);
         this.secretHeaderName = secretHeaderName;
         this.secretHeaderValue = secretHeaderValue;
         this.pedidoServiceUrl = pedidoServiceUrl;
+        this.janelaLoteMs = janelaLoteMs;
+        this.tamanhoMaximoLote = tamanhoMaximoLote;
+
+        meterRegistry.gaugeMapSize("rastreamento.cliente_pedido.em_andamento", Tags.empty(), emAndamento);
+        this.coalescidas = meterRegistry.counter("rastreamento.cliente_pedido.coalescidas");
+        this.lotes = meterRegistry.counter("rastreamento.cliente_pedido.lotes");
     }
 
+    @PreDestroy
+    public void encerrar() {
+        agendador.shutdownNow();
+        executor.shutdownNow();
+        gerenciadorConexoes.close();
+    }
 
-    public Object buscarPedidoPorId(Long id) {
-        HttpHeaders headers = new HttpHeaders();
-        headers.set(secretHeaderName, secretHeaderValue);
-        HttpEntity<String> entity = new HttpEntity<>(headers);
+    /**
+     * Consulta o pedido sem bloquear. Se já houver consulta em andamento para o id, retorna a
+     * mesma; senão o id entra no próximo lote. Pedidos inexistentes completam o future com
+     * RecursoNaoEncontradoException.
+     */
+    public CompletableFuture<Object> buscarPedidoAsync(Long id) {
+        CompletableFuture<Object> novo = new CompletableFuture<>();
+        CompletableFuture<Object> existente = emAndamento.putIfAbsent(id, novo);
+        if (existente != null) {
+            coalescidas.increment();
+            return existente;
+        }
+        novo.whenComplete((pedido, erro) -> emAndamento.remove(id, novo));
 
-        return restTemplate.exchange(
-                pedidoServiceUrl + "/api/pedidos/{id}",
-                HttpMethod.GET,
-                entity,
-                Object.class,
-                id
-        ).getBody();
+        Map<Long, CompletableFuture<Object>> loteCheio = null;
+        synchronized (loteLock) {
+            pendentes.put(id, novo);
+            if (pendentes.size() >= tamanhoMaximoLote) {
+                loteCheio = pendentes;
+                pendentes = new HashMap<>();
+            } else if (!loteAgendado) {
+                loteAgendado = true;
+                agendador.schedule(this::enviarPendentes, janelaLoteMs, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (loteCheio != null) {
+            enviar(loteCheio);
+        }
+        return novo;
+    }
+
+    /**
+     * Versão bloqueante de {@link #buscarPedidoAsync(Long)}, mantida para os chamadores síncronos.
+     */
+    public Object buscarPedidoPorId(Long id) {
+        try {
+            return buscarPedidoAsync(id).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw e;
+        }
     }
 
     public void atualizarStatusPedido(Long id, AtualizarStatusRequest request) {
-        HttpHeaders headers = new HttpHeaders();
-        headers.set(secretHeaderName, secretHeaderValue);
-        HttpEntity<AtualizarStatusRequest> entity = new HttpEntity<>(request, headers);
+        HttpEntity<AtualizarStatusRequest> entity = new HttpEntity<>(request, cabecalhos());
 
         restTemplate.exchange(
                 pedidoServiceUrl + "/api/pedidos/{id}/status",
@@ -56,4 +176,96 @@ public class PedidoServiceClient {
                 id
         );
     }
+
+    /**
+     * Solicita ao serviço de pedidos uma nova rota a partir da posição do motorista, sem
+     * bloquear quem chama. Retorna o pedido atualizado, com a nova rota.
+     */
+    public CompletableFuture<Object> recalcularRotaAsync(Long id, double latitude, double longitude) {
+        return CompletableFuture.supplyAsync(() -> restTemplate.exchange(
+                pedidoServiceUrl + "/api/pedidos/{id}/rota/recalcular?latitude={latitude}&longitude={longitude}",
+                HttpMethod.POST,
+                new HttpEntity<>(cabecalhos()),
+                Object.class,
+                id,
+                latitude,
+                longitude
+        ).getBody(), executor);
+    }
+
+    private void enviarPendentes() {
+        Map<Long, CompletableFuture<Object>> lote;
+        synchronized (loteLock) {
+            lote = pendentes;
+            pendentes = new HashMap<>();
+            loteAgendado = false;
+        }
+        if (!lote.isEmpty()) {
+            enviar(lote);
+        }
+    }
+
+    private void enviar(Map<Long, CompletableFuture<Object>> lote) {
+        executor.execute(() -> {
+            try {
+                Map<Long, Object> encontrados = lote.size() == 1
+                        ? buscarUm(lote.keySet().iterator().next())
+                        : buscarLote(lote.keySet());
+                lote.forEach((id, future) -> {
+                    Object pedido = encontrados.get(id);
+                    if (pedido != null) {
+                        future.complete(pedido);
+                    } else {
+                        future.completeExceptionally(new RecursoNaoEncontradoException("Pedido " + id + " não encontrado"));
+                    }
+                });
+            } catch (Exception e) {
+                lote.values().forEach(future -> future.completeExceptionally(e));
+            }
+        });
+    }
+
+    private Map<Long, Object> buscarUm(Long id) {
+        try {
+            Object pedido = restTemplate.exchange(
+                    pedidoServiceUrl + "/api/pedidos/{id}",
+                    HttpMethod.GET,
+                    new HttpEntity<>(cabecalhos()),
+                    Object.class,
+                    id
+            ).getBody();
+            return pedido != null ? Map.of(id, pedido) : Map.of();
+        } catch (HttpClientErrorException.NotFound e) {
+            return Map.of();
+        }
+    }
+
+    private Map<Long, Object> buscarLote(Iterable<Long> ids) {
+        lotes.increment();
+        String url = UriComponentsBuilder.fromHttpUrl(pedidoServiceUrl + "/api/pedidos/lote")
+                .queryParam("ids", ids)
+                .toUriString();
+        List<Map<String, Object>> pedidos = restTemplate.exchange(
+                url,
+                HttpMethod.GET,
+                new HttpEntity<>(cabecalhos()),
+                LISTA_PEDIDOS
+        ).getBody();
+
+        Map<Long, Object> encontrados = new HashMap<>();
+        if (pedidos != null) {
+            for (Map<String, Object> pedido : pedidos) {
+                if (pedido.get("id") instanceof Number id) {
+                    encontrados.put(id.longValue(), pedido);
+                }
+            }
+        }
+        return encontrados;
+    }
+
+    private HttpHeaders cabecalhos() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(secretHeaderName, secretHeaderValue);
+        return headers;
+    }
 }
@@ -1,16 +1,24 @@
 package com.logistica.rastreamento.service;
 
+import com.logistica.rastreamento.cache.PedidoSnapshot;
 import com.logistica.rastreamento.dto.AtualizacaoLocalizacaoDTO;
+import com.logistica.rastreamento.dto.CursorHistorico;
 import com.logistica.rastreamento.dto.LocalizacaoDTO;
 import com.logistica.rastreamento.dto.MotoristaProximoDTO;
+import com.logistica.rastreamento.dto.PaginaHistoricoDTO;
+import com.logistica.rastreamento.dto.ResumoIngestaoDTO;
+import com.logistica.rastreamento.geo.RetanguloGeografico;
 
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 public interface RastreamentoService {
     boolean atualizarLocalizacao(AtualizacaoLocalizacaoDTO dto);
 
+    ResumoIngestaoDTO atualizarLocalizacoes(List<AtualizacaoLocalizacaoDTO> dtos);
+
     List<MotoristaProximoDTO> buscarMotoristasProximos(Double latitude, Double longitude, Double raioKm);
 
     boolean confirmarColetaPedido(Long pedidoId, Long motoristaId);
@@ -25,7 +33,22 @@ public interface RastreamentoService {
 
     void removerObservador(Long pedidoId, LocalizacaoObserver observer);
 
+    void registrarObservadorRegiao(RetanguloGeografico regiao, RegiaoObserver observer);
+
+    void removerObservadorRegiao(RegiaoObserver observer);
+
     List<LocalizacaoDTO> buscarHistoricoLocalizacoes(Long pedidoId);
 
+    List<LocalizacaoDTO> buscarHistoricoLocalizacoes(Long pedidoId, Double toleranciaMetros, Integer maxPontos);
+
+    PaginaHistoricoDTO buscarHistoricoPaginado(Long pedidoId, CursorHistorico cursor, int limite);
+
+    /**
+     * Pedido cujo histórico será consultado; lança RecursoNaoEncontradoException se não existir.
+     */
+    PedidoSnapshot buscarPedidoDoHistorico(Long pedidoId);
+
+    void transmitirHistoricoLocalizacoes(PedidoSnapshot pedido, Consumer<LocalizacaoDTO> consumidor);
+
     Map<String, Object> calcularEstatisticasMotorista(Long motoristaId, LocalDate dataInicio, LocalDate dataFim);
 }
@@ -0,0 +1,26 @@
+package com.logistica.rastreamento.service;
+
+import com.logistica.rastreamento.dto.AtualizacaoRegiaoDTO;
+
+/**
+ * Observador das posições dos veículos dentro de uma região.
+ * Recebe quadros agregados, no máximo na taxa configurada para o DistribuidorRegioes.
+ */
+public interface RegiaoObserver {
+    void onAtualizacao(AtualizacaoRegiaoDTO atualizacao);
+
+    /**
+     * Indica se o observador pode receber um novo quadro; enquanto não puder,
+     * as alterações continuam sendo agregadas.
+     */
+    default boolean prontoParaReceber() {
+        return true;
+    }
+
+    /**
+     * Chamado quando o observador é removido por não consumir os quadros a tempo ou por
+     * erro na entrega de um quadro.
+     */
+    default void encerrar(String motivo) {
+    }
+}
@@ -0,0 +1,13 @@
+package com.logistica.rastreamento.service;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.function.Consumer;
+
+public interface RelatorioFrotaService {
+    /**
+     * Calcula as estatísticas de todos os motoristas com registros no período, entregando
+     * ao consumidor o resultado de cada motorista assim que fica pronto (em qualquer ordem).
+     */
+    void gerarEstatisticasFrota(LocalDate dataInicio, LocalDate dataFim, Consumer<Map<String, Object>> consumidor);
+}
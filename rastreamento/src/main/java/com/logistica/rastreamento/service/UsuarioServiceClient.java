@@ -1,15 +1,25 @@
 package com.logistica.rastreamento.service;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestTemplate;
 
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 @Component
 public class UsuarioServiceClient {
 
+    private static final ParameterizedTypeReference<List<Map<String, Object>>> LISTA_USUARIOS =
+            new ParameterizedTypeReference<>() {
+            };
+
     private final RestTemplate restTemplate;
     private final String usuarioServiceUrl;
     private final String secretHeaderName;
@@ -39,6 +49,31 @@ public class UsuarioServiceClient {
                 id
         ).getBody();
     }
-}
 
+    /**
+     * Ids dos motoristas com o status informado, numa única consulta ao serviço de usuários.
+     */
+    public Set<Long> buscarIdsMotoristasPorStatus(String status) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(secretHeaderName, secretHeaderValue);
+        HttpEntity<String> entity = new HttpEntity<>(headers);
+
+        List<Map<String, Object>> motoristas = restTemplate.exchange(
+                usuarioServiceUrl + "/api/usuarios/motoristas/status/{status}",
+                HttpMethod.GET,
+                entity,
+                LISTA_USUARIOS,
+                status
+        ).getBody();
 
+        Set<Long> ids = new HashSet<>();
+        if (motoristas != null) {
+            for (Map<String, Object> motorista : motoristas) {
+                if (motorista.get("id") instanceof Number id) {
+                    ids.add(id.longValue());
+                }
+            }
+        }
+        return ids;
+    }
+}
@@ -3,7 +3,11 @@ package com.logistica.rastreamento.service.impl;
 import com.logistica.rastreamento.dto.IncidenteRequest;
 import com.logistica.rastreamento.dto.IncidenteResponse;
 import com.logistica.rastreamento.dto.LocalizacaoDTO;
+import com.logistica.rastreamento.exception.OperacaoInvalidaException;
 import com.logistica.rastreamento.exception.RecursoNaoEncontradoException;
+import com.logistica.rastreamento.geo.CorredoresRotasIndex;
+import com.logistica.rastreamento.geo.GradeEspacial;
+import com.logistica.rastreamento.geo.IncidentesAtivosIndex;
 import com.logistica.rastreamento.message.IncidenteEventSender;
 import com.logistica.rastreamento.model.Incidente;
 import com.logistica.rastreamento.repository.IncidenteRepository;
@@ -18,21 +22,26 @@ import java.util.stream.Collectors;
 
 @Service
 public class IncidenteServiceImpl implements IncidenteService {
-    // TODO CRIAR CRON JOB PARA DESATIVAR INCIDENTE EXPIRADO
     private final IncidenteRepository incidenteRepository;
     private final RastreamentoService rastreamentoService;
     private final IncidenteEventSender incidenteEventSender;
     private final UsuarioServiceClient usuarioServiceClient;
+    private final IncidentesAtivosIndex incidentesAtivosIndex;
+    private final CorredoresRotasIndex corredoresRotasIndex;
 
     public IncidenteServiceImpl(
             IncidenteRepository incidenteRepository,
             RastreamentoService rastreamentoService,
             IncidenteEventSender incidenteEventSender,
-            UsuarioServiceClient usuarioServiceClient) {
+            UsuarioServiceClient usuarioServiceClient,
+            IncidentesAtivosIndex incidentesAtivosIndex,
+            CorredoresRotasIndex corredoresRotasIndex) {
         this.incidenteRepository = incidenteRepository;
         this.rastreamentoService = rastreamentoService;
         this.incidenteEventSender = incidenteEventSender;
         this.usuarioServiceClient = usuarioServiceClient;
+        this.incidentesAtivosIndex = incidentesAtivosIndex;
+        this.corredoresRotasIndex = corredoresRotasIndex;
     }
 
     @Override
@@ -56,31 +65,44 @@ public class IncidenteServiceImpl implements IncidenteService {
                 ? request.getDuracaoHoras() : 24;
         incidente.setDataExpiracao(LocalDateTime.now().plusHours(duracao));
 
-        // Define raio de impacto (padrão: 5km se não informado)
+        // Define raio de impacto (padrão: 5km se não informado; no máximo o alcance dos índices)
         double raioImpacto = (request.getRaioImpactoKm() != null && request.getRaioImpactoKm() > 0)
-                ? request.getRaioImpactoKm() : 5.0;
+                ? Math.min(request.getRaioImpactoKm(), GradeEspacial.RAIO_MAXIMO_KM) : 5.0;
         incidente.setRaioImpactoKm(raioImpacto);
 
         incidente.setAtivo(true);
 
         Incidente incidenteSalvo = incidenteRepository.save(incidente);
+        incidentesAtivosIndex.adicionar(incidenteSalvo);
 
-        // Buscar motoristas próximos para notificar
-        List<LocalizacaoDTO> motoristasProximos = rastreamentoService.buscarEntregasProximas(
+        // Motoristas cuja rota restante passa pelo incidente
+        List<CorredoresRotasIndex.Afetado> afetadosNaRota = corredoresRotasIndex.buscarAfetados(
                 incidente.getLatitude(),
                 incidente.getLongitude(),
                 incidente.getRaioImpactoKm()
         );
 
+        // Pedidos sem rota indexada: motoristas dentro do raio de impacto
+        List<LocalizacaoDTO> motoristasProximos = rastreamentoService.buscarEntregasProximas(
+                incidente.getLatitude(),
+                incidente.getLongitude(),
+                incidente.getRaioImpactoKm()
+        ).stream()
+                .filter(motorista -> motorista.getPedidoId() == null
+                        || !corredoresRotasIndex.contem(motorista.getPedidoId()))
+                .toList();
+
         // Enviar notificações via RabbitMQ
-        incidenteEventSender.enviarNotificacaoIncidenteReportado(incidenteSalvo, motoristasProximos);
+        incidenteEventSender.enviarNotificacaoIncidenteReportado(incidenteSalvo, afetadosNaRota, motoristasProximos);
 
         return mapToIncidenteResponse(incidenteSalvo);
     }
 
     @Override
     public List<IncidenteResponse> listarIncidentesAtivos() {
-        List<Incidente> incidentes = incidenteRepository.findByAtivoTrueAndDataExpiracaoAfter(LocalDateTime.now());
+        List<Incidente> incidentes = incidentesAtivosIndex.aquecido()
+                ? incidentesAtivosIndex.listarAtivos()
+                : incidenteRepository.findByAtivoTrueAndDataExpiracaoAfter(LocalDateTime.now());
         return incidentes.stream()
                 .map(this::mapToIncidenteResponse)
                 .collect(Collectors.toList());
@@ -88,8 +110,13 @@ public class IncidenteServiceImpl implements IncidenteService {
 
     @Override
     public List<IncidenteResponse> buscarIncidentesProximos(Double latitude, Double longitude, Double raioKm) {
-        List<Incidente> incidentes = incidenteRepository.findIncidentesProximos(
-                LocalDateTime.now(), latitude, longitude, raioKm);
+        // Raios muito grandes são limitados pela própria grade do índice
+        if (!(raioKm > 0) || raioKm.isInfinite()) {
+            throw new OperacaoInvalidaException("Raio de busca deve ser um número positivo");
+        }
+        List<Incidente> incidentes = incidentesAtivosIndex.aquecido()
+                ? incidentesAtivosIndex.buscarNoRaio(latitude, longitude, raioKm)
+                : incidenteRepository.findIncidentesProximos(LocalDateTime.now(), latitude, longitude, raioKm);
         return incidentes.stream()
                 .map(this::mapToIncidenteResponse)
                 .collect(Collectors.toList());
@@ -108,6 +135,7 @@ public class IncidenteServiceImpl implements IncidenteService {
                 .orElseThrow(() -> new RecursoNaoEncontradoException("Incidente não encontrado"));
         incidente.setAtivo(false);
         incidenteRepository.save(incidente);
+        incidentesAtivosIndex.remover(id);
     }
 
     private IncidenteResponse mapToIncidenteResponse(Incidente incidente) {
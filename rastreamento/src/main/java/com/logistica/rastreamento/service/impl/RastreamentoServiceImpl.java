@@ -1,29 +1,62 @@
 package com.logistica.rastreamento.service.impl;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.logistica.rastreamento.cache.PedidoSnapshot;
+import com.logistica.rastreamento.cache.PedidoSnapshotCache;
+import com.logistica.rastreamento.cache.UltimaPosicao;
+import com.logistica.rastreamento.cache.UltimaPosicaoCache;
 import com.logistica.rastreamento.dto.*;
 import com.logistica.rastreamento.exception.OperacaoInvalidaException;
+import com.logistica.rastreamento.geo.CercasVirtuaisPedidos;
+import com.logistica.rastreamento.geo.DetectorDesvioRota;
+import com.logistica.rastreamento.geo.EstimadorChegada;
+import com.logistica.rastreamento.geo.EstimadorChegada.Estimativa;
+import com.logistica.rastreamento.geo.MotoristasDisponiveisIndex;
+import com.logistica.rastreamento.geo.RetanguloGeografico;
 import com.logistica.rastreamento.exception.RecursoNaoEncontradoException;
+import com.logistica.rastreamento.ingest.ControleSequenciaLocalizacoes;
+import com.logistica.rastreamento.ingest.ControleSequenciaLocalizacoes.Classificacao;
+import com.logistica.rastreamento.ingest.FiltroTrajetoria;
+import com.logistica.rastreamento.ingest.LocalizacaoIngestBuffer;
 import com.logistica.rastreamento.message.MotoristaEventSender;
+import com.logistica.rastreamento.model.EstatisticaDiariaMotorista;
+import com.logistica.rastreamento.notificacao.DistribuidorLocalizacoes;
+import com.logistica.rastreamento.notificacao.DistribuidorRegioes;
+import com.logistica.rastreamento.notificacao.PropagadorLocalizacoesCluster;
 import com.logistica.rastreamento.model.Localizacao;
+import com.logistica.rastreamento.model.PosicaoAtual;
 import com.logistica.rastreamento.model.StatusPedido;
 import com.logistica.rastreamento.model.StatusVeiculo;
+import com.logistica.rastreamento.repository.EstatisticaDiariaMotoristaRepository;
 import com.logistica.rastreamento.repository.LocalizacaoRepository;
+import com.logistica.rastreamento.repository.PedidoDiarioMotoristaRepository;
+import com.logistica.rastreamento.repository.PosicaoAtualRepository;
 import com.logistica.rastreamento.service.LocalizacaoObserver;
 import com.logistica.rastreamento.service.PedidoServiceClient;
 import com.logistica.rastreamento.service.RastreamentoService;
+import com.logistica.rastreamento.service.RegiaoObserver;
 import com.logistica.rastreamento.service.UsuarioServiceClient;
+import com.logistica.rastreamento.util.SimplificadorTrajetoria;
+import jakarta.persistence.EntityManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.sql.Timestamp;
 import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.logistica.rastreamento.util.DistanciaUtils.calculateDistanceInKm;
 
@@ -31,88 +64,258 @@ import static com.logistica.rastreamento.util.DistanciaUtils.calculateDistanceIn
 public class RastreamentoServiceImpl implements RastreamentoService {
 
     private static final Logger logger = LoggerFactory.getLogger(RastreamentoServiceImpl.class);
+    private static final LocalDateTime INICIO_HISTORICO_DESCONHECIDO = LocalDateTime.of(1970, 1, 1, 0, 0);
+    // Horários de dispositivo acima desse valor estão em milissegundos (1e12 s ainda está no futuro distante)
+    private static final long EPOCH_MILISSEGUNDOS_MINIMO = 1_000_000_000_000L;
     private final LocalizacaoRepository localizacaoRepository;
+    private final PosicaoAtualRepository posicaoAtualRepository;
+    private final EstatisticaDiariaMotoristaRepository estatisticaDiariaMotoristaRepository;
+    private final PedidoDiarioMotoristaRepository pedidoDiarioMotoristaRepository;
+    private final LocalizacaoIngestBuffer localizacaoIngestBuffer;
+    private final FiltroTrajetoria filtroTrajetoria;
+    private final UltimaPosicaoCache ultimaPosicaoCache;
+    private final PedidoSnapshotCache pedidoSnapshotCache;
+    private final MotoristasDisponiveisIndex motoristasDisponiveisIndex;
+    private final boolean indiceEspacialHabilitado;
     private final PedidoServiceClient pedidoServiceClient;
     private final UsuarioServiceClient usuarioServiceClient;
     private final MotoristaEventSender motoristaEventSender;
     private final ObjectMapper objectMapper;
-    private final Map<Long, List<LocalizacaoObserver>> observadores = new ConcurrentHashMap<>();
-
-    public RastreamentoServiceImpl(LocalizacaoRepository localizacaoRepository,
-                                   PedidoServiceClient pedidoServiceClient, UsuarioServiceClient usuarioServiceClient, MotoristaEventSender motoristaEventSender, ObjectMapper objectMapper) {
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+    private final DistribuidorLocalizacoes distribuidorLocalizacoes;
+    private final PropagadorLocalizacoesCluster propagadorLocalizacoesCluster;
+    private final DistribuidorRegioes distribuidorRegioes;
+    private final CercasVirtuaisPedidos cercasVirtuaisPedidos;
+    private final EstimadorChegada estimadorChegada;
+    private final DetectorDesvioRota detectorDesvioRota;
+    private final ControleSequenciaLocalizacoes controleSequenciaLocalizacoes;
+    private final Duration toleranciaHorarioFuturo;
+    private final Duration idadeMaximaLocalizacao;
+
+    public RastreamentoServiceImpl(LocalizacaoRepository localizacaoRepository, PosicaoAtualRepository posicaoAtualRepository,
+                                   EstatisticaDiariaMotoristaRepository estatisticaDiariaMotoristaRepository,
+                                   PedidoDiarioMotoristaRepository pedidoDiarioMotoristaRepository,
+                                   LocalizacaoIngestBuffer localizacaoIngestBuffer, FiltroTrajetoria filtroTrajetoria,
+                                   UltimaPosicaoCache ultimaPosicaoCache, PedidoSnapshotCache pedidoSnapshotCache,
+                                   MotoristasDisponiveisIndex motoristasDisponiveisIndex,
+                                   @Value("${rastreamento.indice-espacial.habilitado:true}") boolean indiceEspacialHabilitado,
+                                   PedidoServiceClient pedidoServiceClient, UsuarioServiceClient usuarioServiceClient, MotoristaEventSender motoristaEventSender, ObjectMapper objectMapper,
+                                   TransactionTemplate transactionTemplate, EntityManager entityManager,
+                                   DistribuidorLocalizacoes distribuidorLocalizacoes,
+                                   PropagadorLocalizacoesCluster propagadorLocalizacoesCluster,
+                                   DistribuidorRegioes distribuidorRegioes,
+                                   CercasVirtuaisPedidos cercasVirtuaisPedidos,
+                                   EstimadorChegada estimadorChegada,
+                                   DetectorDesvioRota detectorDesvioRota,
+                                   ControleSequenciaLocalizacoes controleSequenciaLocalizacoes,
+                                   @Value("${rastreamento.ingest.sequencia.tolerancia-futuro-segundos:60}") long toleranciaFuturoSegundos,
+                                   @Value("${rastreamento.ingest.sequencia.idade-maxima-horas:72}") long idadeMaximaHoras) {
         this.localizacaoRepository = localizacaoRepository;
+        this.posicaoAtualRepository = posicaoAtualRepository;
+        this.estatisticaDiariaMotoristaRepository = estatisticaDiariaMotoristaRepository;
+        this.pedidoDiarioMotoristaRepository = pedidoDiarioMotoristaRepository;
+        this.localizacaoIngestBuffer = localizacaoIngestBuffer;
+        this.filtroTrajetoria = filtroTrajetoria;
+        this.ultimaPosicaoCache = ultimaPosicaoCache;
+        this.pedidoSnapshotCache = pedidoSnapshotCache;
+        this.motoristasDisponiveisIndex = motoristasDisponiveisIndex;
+        this.indiceEspacialHabilitado = indiceEspacialHabilitado;
         this.pedidoServiceClient = pedidoServiceClient;
         this.usuarioServiceClient = usuarioServiceClient;
         this.motoristaEventSender = motoristaEventSender;
         this.objectMapper = objectMapper;
+        this.transactionTemplate = transactionTemplate;
+        this.entityManager = entityManager;
+        this.distribuidorLocalizacoes = distribuidorLocalizacoes;
+        this.propagadorLocalizacoesCluster = propagadorLocalizacoesCluster;
+        this.distribuidorRegioes = distribuidorRegioes;
+        this.cercasVirtuaisPedidos = cercasVirtuaisPedidos;
+        this.estimadorChegada = estimadorChegada;
+        this.detectorDesvioRota = detectorDesvioRota;
+        this.controleSequenciaLocalizacoes = controleSequenciaLocalizacoes;
+        this.toleranciaHorarioFuturo = Duration.ofSeconds(toleranciaFuturoSegundos);
+        this.idadeMaximaLocalizacao = Duration.ofHours(idadeMaximaHoras);
     }
 
     @Override
     public boolean atualizarLocalizacao(AtualizacaoLocalizacaoDTO dto) {
         try {
-            //atualizar localização motorista primeiro acesso
-            if (dto.getPedidoId() == null) {
-                Localizacao localizacao = new Localizacao();
-                localizacao.setMotoristaId(dto.getMotoristaId());
-                localizacao.setPedidoId(null);
-                localizacao.setLatitude(dto.getLatitude());
-                localizacao.setLongitude(dto.getLongitude());
-                localizacao.setTimestamp(LocalDateTime.now());
+            Registro registro = registrarLocalizacao(dto);
+            if (registro.classificacao() == Classificacao.DUPLICADA) {
+                // Reenvio de uma localização já recebida: confirma sem registrar novamente
+                return true;
+            }
+            if (registro.localizacao() == null) {
+                return false;
+            }
+            if (registro.classificacao() == Classificacao.NOVA) {
+                notificarNovaLocalizacao(registro.localizacao());
+            }
+            return true;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
 
-                // Quando não há pedido, o veículo está disponível
-                localizacao.setStatusVeiculo(StatusVeiculo.DISPONIVEL);
+    @Override
+    public ResumoIngestaoDTO atualizarLocalizacoes(List<AtualizacaoLocalizacaoDTO> dtos) {
+        ResumoIngestaoDTO resumo = new ResumoIngestaoDTO();
+        // Em lote, apenas a localização mais recente de cada motorista gera notificações
+        Map<Long, Localizacao> ultimasPorMotorista = new LinkedHashMap<>();
+
+        // Processadas na ordem do dispositivo, para que lotes embaralhados não sejam tratados como atrasados
+        List<AtualizacaoLocalizacaoDTO> ordenadas = dtos.stream()
+                .sorted(Comparator.comparing(AtualizacaoLocalizacaoDTO::getTimestamp,
+                        Comparator.nullsLast(Comparator.naturalOrder())))
+                .toList();
+        for (AtualizacaoLocalizacaoDTO dto : ordenadas) {
+            try {
+                Registro registro = registrarLocalizacao(dto);
+                if (registro.classificacao() == Classificacao.DUPLICADA) {
+                    resumo.setDuplicadas(resumo.getDuplicadas() + 1);
+                    continue;
+                }
+                if (registro.localizacao() == null) {
+                    resumo.setRejeitadas(resumo.getRejeitadas() + 1);
+                    continue;
+                }
+                resumo.setAceitas(resumo.getAceitas() + 1);
+                if (registro.classificacao() == Classificacao.NOVA) {
+                    ultimasPorMotorista.put(registro.localizacao().getMotoristaId(), registro.localizacao());
+                }
+            } catch (Exception e) {
+                logger.error("Erro ao registrar localização do motorista {}: {}", dto.getMotoristaId(), e.getMessage());
+                resumo.setRejeitadas(resumo.getRejeitadas() + 1);
+            }
+        }
 
-                localizacaoRepository.save(localizacao);
-                motoristaEventSender.enviarNotificacaoStatusMotorista(dto.getMotoristaId(), StatusVeiculo.DISPONIVEL);
+        ultimasPorMotorista.values().forEach(this::notificarNovaLocalizacao);
+        return resumo;
+    }
 
-                return true;
-            }
-            // Buscar pedido atual
-            var pedido = objectMapper.convertValue(pedidoServiceClient.buscarPedidoPorId(dto.getPedidoId()), PedidoDTO.class);
-
-            // Salvar localização
-            Localizacao localizacao = new Localizacao();
-            localizacao.setPedidoId(dto.getPedidoId());
-            localizacao.setMotoristaId(dto.getMotoristaId());
-            localizacao.setLatitude(dto.getLatitude());
-            localizacao.setLongitude(dto.getLongitude());
-            localizacao.setTimestamp(LocalDateTime.now());
-
-            // Determinar status do veículo baseado na localização
-            StatusVeiculo novoStatusVeiculo = determinarStatusVeiculo(
-                    localizacao,
-                    StatusPedido.valueOf(pedido.getStatus())
-            );
+    /**
+     * Resultado do registro de uma localização: a localização é null quando ela não foi aceita
+     * (dados inválidos, duplicada, fora da janela de reordenação ou fila cheia).
+     */
+    private record Registro(Localizacao localizacao, Classificacao classificacao) {
+    }
 
-            // Salvar novo status
-            localizacao.setStatusVeiculo(novoStatusVeiculo);
-            localizacaoRepository.save(localizacao);
+    /**
+     * Classifica a localização pelo horário do dispositivo, determina o status do veículo e a
+     * coloca na fila de persistência. Apenas localizações novas atualizam o estado em memória
+     * (posições, cercas); as atrasadas são apenas persistidas.
+     */
+    private Registro registrarLocalizacao(AtualizacaoLocalizacaoDTO dto) {
+        if (dto.getMotoristaId() == null || !coordenadasValidas(dto.getLatitude(), dto.getLongitude())) {
+            return new Registro(null, null);
+        }
 
-            // Notificar service de usuarios
-            motoristaEventSender.enviarNotificacaoStatusMotorista(dto.getMotoristaId(), novoStatusVeiculo);
+        LocalDateTime recebidoEm = LocalDateTime.now();
+        LocalDateTime horario = horarioDaLeitura(dto.getTimestamp(), recebidoEm);
+        if (horario == null) {
+            return new Registro(null, null);
+        }
+        long horarioMs = horario.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        Classificacao classificacao = controleSequenciaLocalizacoes.classificar(
+                dto.getMotoristaId(), horarioMs, dto.getTimestamp() != null);
+        if (classificacao == Classificacao.DUPLICADA || classificacao == Classificacao.FORA_DA_JANELA) {
+            return new Registro(null, classificacao);
+        }
+        boolean nova = classificacao == Classificacao.NOVA;
 
-            // Notificar observadores
-            if (observadores.containsKey(dto.getPedidoId())) {
-                LocalizacaoDTO novaLocalizacao = converterParaDTO(localizacao);
+        Localizacao localizacao = new Localizacao();
+        localizacao.setPedidoId(dto.getPedidoId());
+        localizacao.setMotoristaId(dto.getMotoristaId());
+        localizacao.setLatitude(dto.getLatitude());
+        localizacao.setLongitude(dto.getLongitude());
+        localizacao.setTimestamp(horario);
+        localizacao.setRecebidoEm(recebidoEm);
 
-                List<LocalizacaoObserver> observadoresANotificar = new ArrayList<>(observadores.get(dto.getPedidoId()));
-                for (LocalizacaoObserver observer : observadoresANotificar) {
-                    try {
-                        observer.onNovaLocalizacao(novaLocalizacao);
-                    } catch (Exception e) {
-                        logger.error("Erro ao notificar observador: {}", e.getMessage());
-                    }
-                }
+        try {
+            //atualizar localização motorista primeiro acesso
+            PedidoSnapshot pedido = null;
+            if (dto.getPedidoId() == null) {
+                // Quando não há pedido, o veículo está disponível
+                localizacao.setStatusVeiculo(StatusVeiculo.DISPONIVEL);
+            } else {
+                // Buscar pedido atual
+                pedido = pedidoSnapshotCache.buscar(dto.getPedidoId());
+
+                // Determinar status do veículo baseado na localização
+                localizacao.setStatusVeiculo(nova
+                        ? determinarStatusVeiculo(localizacao, pedido.status())
+                        : determinarStatusVeiculoAtrasada(localizacao, pedido.status()));
+            }
 
+            // Salvar localização (persistência assíncrona em lote), exceto as previsíveis pelo filtro de trajetória
+            boolean persistir = !nova || filtroTrajetoria.devePersistir(localizacao);
+            if (persistir && !localizacaoIngestBuffer.enfileirar(localizacao)) {
+                controleSequenciaLocalizacoes.desfazer(dto.getMotoristaId(), horarioMs);
+                return new Registro(null, classificacao);
             }
+            if (persistir && nova) {
+                // Só depois de enfileirada a localização vira referência do filtro
+                filtroTrajetoria.registrarPersistida(localizacao);
+            }
+            if (nova) {
+                atualizarPosicaoEmMemoria(localizacao);
+                Estimativa estimativa = estimadorChegada.atualizar(localizacao, pedido);
+                if (pedido != null) {
+                    cercasVirtuaisPedidos.avaliar(localizacao, pedido);
+                    detectorDesvioRota.avaliar(localizacao, pedido, estimativa);
+                }
+            }
+            return new Registro(localizacao, classificacao);
+        } catch (RuntimeException e) {
+            // Não registrada: o reenvio não deve ser tratado como duplicata
+            controleSequenciaLocalizacoes.desfazer(dto.getMotoristaId(), horarioMs);
+            throw e;
+        }
+    }
 
-            return true;
-        } catch (Exception e) {
-            e.printStackTrace();
-            return false;
+    /**
+     * Converte o horário informado pelo dispositivo (epoch em segundos ou milissegundos).
+     * Horários no futuro além da tolerância são substituídos pelo horário de recebimento;
+     * horários mais antigos que a idade máxima invalidam a localização (retorna null).
+     */
+    private LocalDateTime horarioDaLeitura(Long timestampDispositivo, LocalDateTime recebidoEm) {
+        if (timestampDispositivo == null) {
+            return recebidoEm;
+        }
+        Instant instante = timestampDispositivo > EPOCH_MILISSEGUNDOS_MINIMO
+                ? Instant.ofEpochMilli(timestampDispositivo)
+                : Instant.ofEpochSecond(timestampDispositivo);
+        LocalDateTime horario = LocalDateTime.ofInstant(instante, ZoneId.systemDefault());
+        if (horario.isAfter(recebidoEm.plus(toleranciaHorarioFuturo))) {
+            return recebidoEm;
+        }
+        if (horario.isBefore(recebidoEm.minus(idadeMaximaLocalizacao))) {
+            return null;
         }
+        return horario;
     }
 
+    private void notificarNovaLocalizacao(Localizacao localizacao) {
+        // Notificar service de usuarios (o sender publica apenas as mudanças de status)
+        motoristaEventSender.enviarNotificacaoStatusMotorista(localizacao.getMotoristaId(), localizacao.getStatusVeiculo());
+
+        // Notificar observadores locais (entrega assíncrona pelo distribuidor) e das demais instâncias
+        Long pedidoId = localizacao.getPedidoId();
+        if (pedidoId != null && (distribuidorLocalizacoes.possuiAssinantes(pedidoId)
+                || propagadorLocalizacoesCluster.habilitado())) {
+            LocalizacaoDTO novaLocalizacao = converterParaDTO(localizacao);
+            distribuidorLocalizacoes.publicar(pedidoId, novaLocalizacao);
+            propagadorLocalizacoesCluster.propagar(pedidoId, novaLocalizacao);
+        }
+    }
+
+    private static boolean coordenadasValidas(Double latitude, Double longitude) {
+        return latitude != null && longitude != null
+                && latitude >= -90 && latitude <= 90
+                && longitude >= -180 && longitude <= 180;
+    }
 
     private StatusVeiculo determinarStatusVeiculo(Localizacao localizacaoAtual, StatusPedido statusPedido) {
         // Se não há pedido ativo (status ENTREGUE ou CANCELADO), motorista está disponível
@@ -130,99 +333,118 @@ public class RastreamentoServiceImpl implements RastreamentoService {
         return StatusVeiculo.EM_MOVIMENTO;
     }
 
+    /**
+     * Status de uma localização atrasada. A posição em cache é posterior a ela, então a
+     * comparação de verificarSeEstaParado não se aplica; a localização herda o status da
+     * vizinha mais recente, que está a no máximo a janela de reordenação de distância.
+     */
+    private StatusVeiculo determinarStatusVeiculoAtrasada(Localizacao localizacao, StatusPedido statusPedido) {
+        if (statusPedido == StatusPedido.ENTREGUE || statusPedido == StatusPedido.CANCELADO) {
+            return StatusVeiculo.DISPONIVEL;
+        }
+        return ultimaPosicaoCache.buscarPorMotorista(localizacao.getMotoristaId())
+                .map(UltimaPosicao::statusVeiculo)
+                .filter(status -> status != StatusVeiculo.DISPONIVEL)
+                .orElse(StatusVeiculo.EM_MOVIMENTO);
+    }
+
     @Override
     public List<MotoristaProximoDTO> buscarMotoristasProximos(Double latitude, Double longitude, Double raioKm) {
+        if (!(raioKm > 0) || raioKm.isInfinite()) {
+            throw new OperacaoInvalidaException("Raio de busca deve ser um número positivo");
+        }
         // Obter localizações próximas com veículos disponíveis
-        var resultados = localizacaoRepository.encontrarMotoristasProximos(latitude, longitude, raioKm);
-        logger.info("Resultados encontrados: {}", resultados);
+        List<MotoristaProximoDTO> candidatos = indiceEspacialHabilitado
+                ? buscarMotoristasProximosNoIndice(latitude, longitude, raioKm)
+                : buscarMotoristasProximosNoBanco(latitude, longitude, raioKm);
+        logger.info("Resultados encontrados: {}", candidatos.size());
+
+        if (candidatos.isEmpty()) {
+            return candidatos;
+        }
+
+        // Filtrar apenas motoristas com status DISPONIVEL no serviço de usuários (uma consulta para todos)
+        Set<Long> disponiveis = motoristasDisponiveisNoCadastro();
+        return candidatos.stream()
+                .filter(candidato -> disponiveis.contains(candidato.getMotoristaId()))
+                .collect(Collectors.toList());
+    }
 
-        // Filtrar apenas motoristas com status DISPONIVEL no serviço de usuários
-        return resultados.stream()
+    private List<MotoristaProximoDTO> buscarMotoristasProximosNoIndice(Double latitude, Double longitude, Double raioKm) {
+        return motoristasDisponiveisIndex.buscarNoRaio(latitude, longitude, raioKm).stream()
                 .map(resultado -> {
-                    try {
-                        // Mapeando os campos individuais do array baseado no formato que você identificou
-                        Long motoristaId = (Long) resultado[0];
-                        Double lat = (Double) resultado[1];
-                        Double lon = (Double) resultado[2];
-                        Timestamp timestamp = (Timestamp) resultado[3];
-                        Double distancia = (Double) resultado[4];
-
-                        // Verificar status do motorista
-                        Object motoristaObj = usuarioServiceClient.buscarUsuarioPorTipoEId("motoristas", motoristaId);
-
-                        // Convertemos para Map para acessar campos
-                        Map<String, Object> motorista;
-                        if (motoristaObj instanceof Map) {
-                            motorista = (Map<String, Object>) motoristaObj;
-                        } else {
-                            motorista = objectMapper.convertValue(motoristaObj, Map.class);
-                        }
-
-                        String statusMotorista = (String) motorista.get("status");
-                        if (!"DISPONIVEL".equals(statusMotorista)) {
-                            return null; // Ignorar se motorista não estiver disponível
-                        }
-
-                        // Criar DTO apenas para motoristas disponíveis
-                        MotoristaProximoDTO dto = new MotoristaProximoDTO();
-                        dto.setMotoristaId(motoristaId);
-                        dto.setLatitude(lat);
-                        dto.setLongitude(lon);
-                        dto.setDistanciaKm(distancia);
-                        dto.setUltimaAtualizacao(timestamp.toLocalDateTime());
-                        return dto;
-                    } catch (Exception e) {
-                        logger.error("Erro ao processar motorista: {}", e.getMessage(), e);
-                        return null;
-                    }
+                    MotoristaProximoDTO dto = new MotoristaProximoDTO();
+                    dto.setMotoristaId(resultado.id());
+                    dto.setLatitude(resultado.latitude());
+                    dto.setLongitude(resultado.longitude());
+                    dto.setDistanciaKm(resultado.distanciaKm());
+                    ultimaPosicaoCache.buscarPorMotorista(resultado.id())
+                            .ifPresent(posicao -> dto.setUltimaAtualizacao(posicao.timestamp()));
+                    return dto;
                 })
-                .filter(Objects::nonNull)
                 .collect(Collectors.toList());
     }
 
+    private List<MotoristaProximoDTO> buscarMotoristasProximosNoBanco(Double latitude, Double longitude, Double raioKm) {
+        return posicaoAtualRepository.encontrarMotoristasProximos(latitude, longitude, raioKm).stream()
+                .map(resultado -> {
+                    // Mapeando os campos individuais do array baseado no formato que você identificou
+                    MotoristaProximoDTO dto = new MotoristaProximoDTO();
+                    dto.setMotoristaId((Long) resultado[0]);
+                    dto.setLatitude((Double) resultado[1]);
+                    dto.setLongitude((Double) resultado[2]);
+                    dto.setUltimaAtualizacao(((Timestamp) resultado[3]).toLocalDateTime());
+                    dto.setDistanciaKm((Double) resultado[4]);
+                    return dto;
+                })
+                .collect(Collectors.toList());
+    }
+
+    private Set<Long> motoristasDisponiveisNoCadastro() {
+        try {
+            return usuarioServiceClient.buscarIdsMotoristasPorStatus("DISPONIVEL");
+        } catch (Exception e) {
+            logger.error("Erro ao consultar motoristas disponíveis: {}", e.getMessage(), e);
+            return Set.of();
+        }
+    }
 
     @Override
     public boolean confirmarColetaPedido(Long pedidoId, Long motoristaId) {
         try {
             // Buscar pedido e verificar status atual
-            var pedido = objectMapper.convertValue(pedidoServiceClient.buscarPedidoPorId(pedidoId), PedidoDTO.class);
+            PedidoSnapshot pedido = pedidoSnapshotCache.buscar(pedidoId);
 
-            if (!StatusPedido.valueOf(pedido.getStatus()).equals(StatusPedido.AGUARDANDO_COLETA)) {
+            if (pedido.status() != StatusPedido.AGUARDANDO_COLETA) {
                 throw new OperacaoInvalidaException("Pedido não está aguardando coleta");
             }
 
             // Verificar se motorista está atribuído ao pedido
-            if (!pedido.getMotoristaId().equals(motoristaId)) {
+            if (!motoristaId.equals(pedido.motoristaId())) {
                 throw new OperacaoInvalidaException("Motorista não está atribuído a este pedido");
             }
 
-            // Buscar última localização do motorista
-            Localizacao ultimaLocalizacao = localizacaoRepository
-                    .findTopByMotoristaIdOrderByTimestampDesc(motoristaId)
-                    .orElseThrow(() -> new RecursoNaoEncontradoException("Localização não encontrada"));
-
-            // Calcular distância até o ponto de origem
-            double distanciaOrigem = calculateDistanceInKm(
-                    ultimaLocalizacao.getLatitude(), ultimaLocalizacao.getLongitude(),
-                    pedido.getOrigemLatitude(), pedido.getOrigemLongitude()
-            );
-
-            // Verificar se está próximo o suficiente (menos de 1 km)
-            if (distanciaOrigem > 1.0) {
+            // Verificar pela cerca virtual se está próximo o suficiente do ponto de coleta
+            if (!cercasVirtuaisPedidos.motoristaNoAlvo(pedido, motoristaId, CercasVirtuaisPedidos.Alvo.ORIGEM)) {
                 throw new OperacaoInvalidaException("Motorista deve estar próximo ao ponto de coleta");
             }
 
+            // Buscar última localização do motorista
+            UltimaPosicao ultimaLocalizacao = ultimaPosicaoCache.buscarPorMotorista(motoristaId)
+                    .orElseThrow(() -> new RecursoNaoEncontradoException("Localização não encontrada"));
+
             // Atualizar status do pedido para EM_ROTA
             pedidoServiceClient.atualizarStatusPedido(
                     pedidoId,
                     new AtualizarStatusRequest(StatusPedido.EM_ROTA)
             );
+            pedidoSnapshotCache.atualizarStatus(pedidoId, StatusPedido.EM_ROTA, motoristaId);
+            estimadorChegada.invalidar(pedidoId);
 
             // Atualizar status do veículo para EM_MOVIMENTO
-            ultimaLocalizacao.setStatusVeiculo(StatusVeiculo.EM_MOVIMENTO);
-            localizacaoRepository.save(ultimaLocalizacao);
+            registrarMudancaStatus(ultimaLocalizacao, pedidoId, StatusVeiculo.EM_MOVIMENTO);
 
-            motoristaEventSender.enviarNotificacaoStatusMotorista(motoristaId, StatusVeiculo.EM_MOVIMENTO);
+            motoristaEventSender.forcarNotificacaoStatusMotorista(motoristaId, StatusVeiculo.EM_MOVIMENTO);
 
             return true;
         } catch (Exception e) {
@@ -235,39 +457,35 @@ public class RastreamentoServiceImpl implements RastreamentoService {
     public boolean confirmarEntregaPedido(Long pedidoId, Long motoristaId) {
         try {
             // Buscar pedido atual
-            var pedido = objectMapper.convertValue(pedidoServiceClient.buscarPedidoPorId(pedidoId), PedidoDTO.class);
+            PedidoSnapshot pedido = pedidoSnapshotCache.buscar(pedidoId);
 
-            if (!StatusPedido.valueOf(pedido.getStatus()).equals(StatusPedido.EM_ROTA)) {
+            if (pedido.status() != StatusPedido.EM_ROTA) {
                 throw new OperacaoInvalidaException("Pedido não está em rota");
             }
 
-            // Buscar última localização do motorista
-            Localizacao ultimaLocalizacao = localizacaoRepository
-                    .findTopByMotoristaIdOrderByTimestampDesc(motoristaId)
-                    .orElseThrow(() -> new RecursoNaoEncontradoException("Localização não encontrada"));
-
-            // Calcular distância até o ponto de destino
-            double distanciaDestino = calculateDistanceInKm(
-                    ultimaLocalizacao.getLatitude(), ultimaLocalizacao.getLongitude(),
-                    pedido.getDestinoLatitude(), pedido.getDestinoLongitude()
-            );
-
-            // Verificar se está próximo o suficiente (menos de 1 km)
-            if (distanciaDestino > 1.0) {
+            // Verificar pela cerca virtual se está próximo o suficiente do ponto de entrega
+            if (!cercasVirtuaisPedidos.motoristaNoAlvo(pedido, motoristaId, CercasVirtuaisPedidos.Alvo.DESTINO)) {
                 throw new OperacaoInvalidaException("Motorista deve estar próximo ao ponto de entrega");
             }
 
+            // Buscar última localização do motorista
+            UltimaPosicao ultimaLocalizacao = ultimaPosicaoCache.buscarPorMotorista(motoristaId)
+                    .orElseThrow(() -> new RecursoNaoEncontradoException("Localização não encontrada"));
+
             // Atualizar status do pedido para ENTREGUE
             pedidoServiceClient.atualizarStatusPedido(
                     pedidoId,
                     new AtualizarStatusRequest(StatusPedido.ENTREGUE)
             );
+            pedidoSnapshotCache.atualizarStatus(pedidoId, StatusPedido.ENTREGUE, motoristaId);
+            estimadorChegada.invalidar(pedidoId);
+            cercasVirtuaisPedidos.remover(pedidoId);
+            detectorDesvioRota.remover(pedidoId);
 
             // Atualizar status do veículo para DISPONÍVEL
-            ultimaLocalizacao.setStatusVeiculo(StatusVeiculo.DISPONIVEL);
-            localizacaoRepository.save(ultimaLocalizacao);
+            registrarMudancaStatus(ultimaLocalizacao, pedidoId, StatusVeiculo.DISPONIVEL);
 
-            motoristaEventSender.enviarNotificacaoStatusMotorista(motoristaId, StatusVeiculo.DISPONIVEL);
+            motoristaEventSender.forcarNotificacaoStatusMotorista(motoristaId, StatusVeiculo.DISPONIVEL);
 
             return true;
         } catch (Exception e) {
@@ -276,26 +494,48 @@ public class RastreamentoServiceImpl implements RastreamentoService {
         }
     }
 
+    // Os registros não alteram linhas existentes: a mudança de status é gravada como uma nova localização
+    private void registrarMudancaStatus(UltimaPosicao ultimaPosicao, Long pedidoId, StatusVeiculo novoStatus) {
+        Localizacao localizacao = ultimaPosicao.paraLocalizacao();
+        localizacao.setPedidoId(pedidoId);
+        localizacao.setTimestamp(LocalDateTime.now());
+        localizacao.setRecebidoEm(localizacao.getTimestamp());
+        localizacao.setStatusVeiculo(novoStatus);
+
+        if (!localizacaoIngestBuffer.enfileirar(localizacao)) {
+            throw new OperacaoInvalidaException("Não foi possível registrar a mudança de status do veículo");
+        }
+        atualizarPosicaoEmMemoria(localizacao);
+    }
+
+    // Mantém o cache de posições e o índice espacial coerentes com a localização ingerida, aqui e nas demais instâncias
+    private void atualizarPosicaoEmMemoria(Localizacao localizacao) {
+        UltimaPosicao posicao = ultimaPosicaoCache.registrar(localizacao);
+        motoristasDisponiveisIndex.atualizar(posicao);
+        distribuidorRegioes.publicar(posicao);
+        propagadorLocalizacoesCluster.propagarPosicao(posicao);
+    }
+
     private boolean verificarSeEstaParado(Localizacao localizacaoAtual) {
         // Buscar última localização registrada
-        Optional<Localizacao> ultimaLocalizacaoOpt = localizacaoRepository
-                .findTopByMotoristaIdOrderByTimestampDesc(localizacaoAtual.getMotoristaId());
+        Optional<UltimaPosicao> ultimaLocalizacaoOpt = ultimaPosicaoCache
+                .buscarPorMotorista(localizacaoAtual.getMotoristaId());
 
         if (!ultimaLocalizacaoOpt.isPresent()) {
             return false; // Primeira localização, considerar em movimento
         }
 
-        Localizacao ultimaLocalizacao = ultimaLocalizacaoOpt.get();
+        UltimaPosicao ultimaLocalizacao = ultimaLocalizacaoOpt.get();
 
         // Calcular distância entre localizações
         double distancia = calculateDistanceInKm(
                 localizacaoAtual.getLatitude(), localizacaoAtual.getLongitude(),
-                ultimaLocalizacao.getLatitude(), ultimaLocalizacao.getLongitude()
+                ultimaLocalizacao.latitude(), ultimaLocalizacao.longitude()
         );
 
         // Calcular tempo entre as leituras
         long segundosEntreLeituras = Duration.between(
-                ultimaLocalizacao.getTimestamp(),
+                ultimaLocalizacao.timestamp(),
                 localizacaoAtual.getTimestamp()
         ).getSeconds();
 
@@ -305,47 +545,133 @@ public class RastreamentoServiceImpl implements RastreamentoService {
 
     @Override
     public LocalizacaoDTO consultarLocalizacaoAtual(Long pedidoId) {
-        Localizacao localizacao = localizacaoRepository.findTopByPedidoIdOrderByTimestampDesc(pedidoId)
+        UltimaPosicao posicao = ultimaPosicaoCache.buscarPorPedido(pedidoId)
                 .orElseThrow(() -> new RecursoNaoEncontradoException("Não há registros de localização para o pedido: " + pedidoId));
 
-        return converterParaDTO(localizacao);
+        return converterParaDTO(posicao.paraLocalizacao());
     }
 
     @Override
     public List<LocalizacaoDTO> buscarEntregasProximas(Double latitude, Double longitude, Double raioKm) {
-        List<Localizacao> localizacoes = localizacaoRepository.encontrarEntregasProximas(latitude, longitude, raioKm);
+        List<PosicaoAtual> posicoes = posicaoAtualRepository.encontrarEntregasProximas(latitude, longitude, raioKm);
 
-        return localizacoes.stream()
-                .map(this::converterParaDTO)
+        return posicoes.stream()
+                .map(posicao -> converterParaDTO(UltimaPosicao.de(posicao).paraLocalizacao()))
                 .collect(Collectors.toList());
     }
 
     @Override
     public void registrarObservador(Long pedidoId, LocalizacaoObserver observer) {
-        observadores.computeIfAbsent(pedidoId, k -> new ArrayList<>()).add(observer);
+        distribuidorLocalizacoes.registrar(pedidoId, observer);
     }
 
     @Override
     public void removerObservador(Long pedidoId, LocalizacaoObserver observer) {
-        if (observadores.containsKey(pedidoId)) {
-            observadores.get(pedidoId).remove(observer);
-        }
+        distribuidorLocalizacoes.remover(pedidoId, observer);
+    }
+
+    @Override
+    public void registrarObservadorRegiao(RetanguloGeografico regiao, RegiaoObserver observer) {
+        distribuidorRegioes.registrar(regiao, observer);
+    }
+
+    @Override
+    public void removerObservadorRegiao(RegiaoObserver observer) {
+        distribuidorRegioes.remover(observer);
     }
 
     @Override
     public List<LocalizacaoDTO> buscarHistoricoLocalizacoes(Long pedidoId) {
+        return buscarHistoricoLocalizacoes(pedidoId, null, null);
+    }
+
+    @Override
+    public List<LocalizacaoDTO> buscarHistoricoLocalizacoes(Long pedidoId, Double toleranciaMetros, Integer maxPontos) {
+        PedidoSnapshot pedido = buscarPedidoDoHistorico(pedidoId);
+
+        List<Localizacao> localizacoes = localizacaoRepository.findByPedidoIdAndTimestampGreaterThanEqualOrderByTimestampDesc(
+                pedidoId, inicioDoHistorico(pedido));
+
+        // Simplificação antes da conversão, para não calcular distância e tempo de pontos descartados
+        if (toleranciaMetros != null || maxPontos != null) {
+            localizacoes = simplificarTrajetoria(localizacoes,
+                    toleranciaMetros != null ? toleranciaMetros : 0,
+                    maxPontos != null ? maxPontos : 0);
+        }
+
+        return localizacoes.stream()
+                .map(localizacao -> converterParaDTO(localizacao, pedido))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public PaginaHistoricoDTO buscarHistoricoPaginado(Long pedidoId, CursorHistorico cursor, int limite) {
+        PedidoSnapshot pedido = buscarPedidoDoHistorico(pedidoId);
+        Pageable pagina = PageRequest.of(0, limite);
+
+        List<Localizacao> localizacoes = cursor == null
+                ? localizacaoRepository.findByPedidoIdAndTimestampGreaterThanEqualOrderByTimestampDescIdDesc(
+                        pedidoId, inicioDoHistorico(pedido), pagina)
+                : localizacaoRepository.buscarHistoricoAposCursor(
+                        pedidoId, inicioDoHistorico(pedido), cursor.timestamp(), cursor.id(), pagina);
+
+        CursorHistorico proximoCursor = null;
+        if (localizacoes.size() == limite) {
+            Localizacao ultima = localizacoes.get(localizacoes.size() - 1);
+            proximoCursor = new CursorHistorico(ultima.getTimestamp(), ultima.getId());
+        }
+
+        List<LocalizacaoDTO> dtos = localizacoes.stream()
+                .map(localizacao -> converterParaDTO(localizacao, pedido))
+                .collect(Collectors.toList());
+        return new PaginaHistoricoDTO(dtos, proximoCursor);
+    }
+
+    @Override
+    public void transmitirHistoricoLocalizacoes(PedidoSnapshot pedido, Consumer<LocalizacaoDTO> consumidor) {
+        Long pedidoId = pedido.id();
+
+        // O Stream do JPA exige a transação (e a conexão) abertas até o fim da leitura
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<Localizacao> localizacoes = localizacaoRepository
+                    .streamByPedidoIdAndTimestampGreaterThanEqualOrderByTimestampDescIdDesc(pedidoId, inicioDoHistorico(pedido))) {
+                localizacoes.forEach(localizacao -> {
+                    // Evita que o contexto de persistência acumule todas as entidades lidas
+                    entityManager.detach(localizacao);
+                    consumidor.accept(converterParaDTO(localizacao, pedido));
+                });
+            }
+        });
+    }
+
+    @Override
+    public PedidoSnapshot buscarPedidoDoHistorico(Long pedidoId) {
         // Verificar se o pedido existe
         try {
-            pedidoServiceClient.buscarPedidoPorId(pedidoId);
+            return pedidoSnapshotCache.buscar(pedidoId);
         } catch (Exception e) {
             throw new RecursoNaoEncontradoException("Pedido não encontrado ou serviço indisponível");
         }
+    }
 
-        List<Localizacao> localizacoes = localizacaoRepository.findByPedidoIdOrderByTimestampDesc(pedidoId);
+    // Localizações do pedido não são anteriores à sua criação; o limite permite ignorar partições antigas
+    private static LocalDateTime inicioDoHistorico(PedidoSnapshot pedido) {
+        return pedido.dataCriacao() != null ? pedido.dataCriacao() : INICIO_HISTORICO_DESCONHECIDO;
+    }
 
-        return localizacoes.stream()
-                .map(this::converterParaDTO)
-                .collect(Collectors.toList());
+    private static List<Localizacao> simplificarTrajetoria(List<Localizacao> localizacoes, double toleranciaMetros, int maxPontos) {
+        double[] latitudes = new double[localizacoes.size()];
+        double[] longitudes = new double[localizacoes.size()];
+        for (int i = 0; i < localizacoes.size(); i++) {
+            latitudes[i] = localizacoes.get(i).getLatitude();
+            longitudes[i] = localizacoes.get(i).getLongitude();
+        }
+        int[] mantidos = SimplificadorTrajetoria.simplificar(latitudes, longitudes, toleranciaMetros, maxPontos);
+        List<Localizacao> simplificada = new ArrayList<>(mantidos.length);
+        for (int indice : mantidos) {
+            simplificada.add(localizacoes.get(indice));
+        }
+        return simplificada;
     }
 
     @Override
@@ -357,16 +683,14 @@ public class RastreamentoServiceImpl implements RastreamentoService {
             throw new RecursoNaoEncontradoException("Motorista não encontrado ou serviço indisponível");
         }
 
-        // Converter datas para LocalDateTime para pesquisa completa do dia
-        LocalDateTime inicio = dataInicio.atStartOfDay();
-        LocalDateTime fim = dataFim.atTime(23, 59, 59);
+        // Somar os contadores diários do período (uma linha por dia com registros)
+        List<EstatisticaDiariaMotorista> dias = estatisticaDiariaMotoristaRepository.findByMotoristaIdAndDataBetween(
+                motoristaId, dataInicio, dataFim);
 
-        // Buscar todas as localizações do motorista no período
-        List<Localizacao> localizacoes = localizacaoRepository.findByMotoristaIdAndTimestampBetweenOrderByTimestamp(
-                motoristaId, inicio, fim);
+        long totalRegistros = dias.stream().mapToLong(EstatisticaDiariaMotorista::getTotalRegistros).sum();
 
         // Caso não existam registros no período
-        if (localizacoes.isEmpty()) {
+        if (totalRegistros == 0) {
             Map<String, Object> estatisticasVazias = new HashMap<>();
             estatisticasVazias.put("mensagem", "Não há registros de localização para este motorista no período especificado");
             estatisticasVazias.put("totalRegistros", 0);
@@ -377,15 +701,14 @@ public class RastreamentoServiceImpl implements RastreamentoService {
         Map<String, Object> estatisticas = new HashMap<>();
 
         // 1. Total de registros
-        int totalRegistros = localizacoes.size();
-        estatisticas.put("totalRegistros", totalRegistros);
+        estatisticas.put("totalRegistros", (int) totalRegistros);
 
         // 2. Distância total percorrida
-        double distanciaTotal = calcularDistanciaTotal(localizacoes);
+        double distanciaTotal = dias.stream().mapToDouble(EstatisticaDiariaMotorista::getDistanciaKm).sum();
         estatisticas.put("distanciaTotalKm", Math.round(distanciaTotal * 10) / 10.0);
 
         // 3. Tempo total em movimento
-        long tempoEmMovimentoMinutos = calcularTempoEmMovimento(localizacoes);
+        long tempoEmMovimentoMinutos = dias.stream().mapToLong(EstatisticaDiariaMotorista::getMovimentoSegundos).sum() / 60;
         estatisticas.put("tempoEmMovimentoMinutos", tempoEmMovimentoMinutos);
 
         // 4. Velocidade média em km/h (apenas quando em movimento)
@@ -395,83 +718,44 @@ public class RastreamentoServiceImpl implements RastreamentoService {
         estatisticas.put("velocidadeMediaKmH", Math.round(velocidadeMedia * 10) / 10.0);
 
         // 5. Contagem por status do veículo
-        Map<StatusVeiculo, Long> contagemPorStatus = localizacoes.stream()
-                .collect(Collectors.groupingBy(Localizacao::getStatusVeiculo, Collectors.counting()));
+        Map<StatusVeiculo, Long> contagemPorStatus = new EnumMap<>(StatusVeiculo.class);
+        adicionarContagem(contagemPorStatus, StatusVeiculo.DISPONIVEL, dias, EstatisticaDiariaMotorista::getRegistrosDisponivel);
+        adicionarContagem(contagemPorStatus, StatusVeiculo.PARADO, dias, EstatisticaDiariaMotorista::getRegistrosParado);
+        adicionarContagem(contagemPorStatus, StatusVeiculo.EM_MOVIMENTO, dias, EstatisticaDiariaMotorista::getRegistrosEmMovimento);
         estatisticas.put("contagemPorStatus", contagemPorStatus);
 
         // 6. Pedidos únicos atendidos no período
-        Set<Long> pedidosUnicos = localizacoes.stream()
-                .map(Localizacao::getPedidoId)
-                .collect(Collectors.toSet());
+        Set<Long> pedidosUnicos = pedidoDiarioMotoristaRepository.buscarPedidosAtendidos(motoristaId, dataInicio, dataFim);
         estatisticas.put("pedidosAtendidos", pedidosUnicos.size());
         estatisticas.put("listaPedidosAtendidos", pedidosUnicos);
 
         return estatisticas;
     }
 
-    // Método auxiliar para calcular a distância total entre pontos consecutivos
-    private double calcularDistanciaTotal(List<Localizacao> localizacoes) {
-        double distanciaTotal = 0.0;
-
-        for (int i = 0; i < localizacoes.size() - 1; i++) {
-            Localizacao pontoA = localizacoes.get(i);
-            Localizacao pontoB = localizacoes.get(i + 1);
-
-            // Calcula distância usando Haversine
-            double latA = pontoA.getLatitude();
-            double lonA = pontoA.getLongitude();
-            double latB = pontoB.getLatitude();
-            double lonB = pontoB.getLongitude();
-
-            // Raio médio da Terra em km
-            final double R = 6371.0;
-
-            // Conversão para radianos
-            double latDistance = Math.toRadians(latB - latA);
-            double lonDistance = Math.toRadians(lonB - lonA);
-
-            // Fórmula de Haversine
-            double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
-                    + Math.cos(Math.toRadians(latA)) * Math.cos(Math.toRadians(latB))
-                    * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
-
-            double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-
-            // Adicionar ao total
-            distanciaTotal += R * c;
+    // Mantém apenas os status com registros, como no agrupamento original
+    private static void adicionarContagem(Map<StatusVeiculo, Long> contagem, StatusVeiculo status,
+                                          List<EstatisticaDiariaMotorista> dias,
+                                          ToLongFunction<EstatisticaDiariaMotorista> contador) {
+        long total = dias.stream().mapToLong(contador).sum();
+        if (total > 0) {
+            contagem.put(status, total);
         }
-
-        return distanciaTotal;
     }
 
-    // Método auxiliar para calcular tempo em movimento (em minutos)
-    private long calcularTempoEmMovimento(List<Localizacao> localizacoes) {
-        long tempoTotalMinutos = 0;
-
-        // Filtrar apenas localizações com status EM_MOVIMENTO
-        List<Localizacao> emMovimento = localizacoes.stream()
-                .filter(loc -> loc.getStatusVeiculo() == StatusVeiculo.EM_MOVIMENTO)
-                .sorted(Comparator.comparing(Localizacao::getTimestamp))
-                .collect(Collectors.toList());
-
-        // Caso não haja registros em movimento
-        if (emMovimento.isEmpty()) {
-            return 0;
-        }
-
-        // Para um cálculo mais preciso, precisaríamos agrupar períodos contínuos
-        for (int i = 0; i < emMovimento.size() - 1; i++) {
-            LocalDateTime inicio = emMovimento.get(i).getTimestamp();
-            LocalDateTime fim = emMovimento.get(i + 1).getTimestamp();
-
-            // Adicionar diferença em minutos
-            tempoTotalMinutos += Duration.between(inicio, fim).toMinutes();
+    private LocalizacaoDTO converterParaDTO(Localizacao localizacao) {
+        // A estimativa da última localização do pedido já está calculada; as demais consultam o pedido
+        Estimativa estimativa = estimadorChegada.estimativaAtual(localizacao);
+        if (estimativa == null && localizacao.getPedidoId() != null) {
+            estimativa = estimadorChegada.estimar(localizacao, pedidoSnapshotCache.buscar(localizacao.getPedidoId()));
         }
+        return converterParaDTO(localizacao, estimativa);
+    }
 
-        return tempoTotalMinutos;
+    private LocalizacaoDTO converterParaDTO(Localizacao localizacao, PedidoSnapshot pedido) {
+        return converterParaDTO(localizacao, estimadorChegada.estimar(localizacao, pedido));
     }
 
-    private LocalizacaoDTO converterParaDTO(Localizacao localizacao) {
+    private LocalizacaoDTO converterParaDTO(Localizacao localizacao, Estimativa estimativa) {
         LocalizacaoDTO dto = new LocalizacaoDTO();
         dto.setPedidoId(localizacao.getPedidoId());
         dto.setMotoristaId(localizacao.getMotoristaId());
@@ -480,85 +764,11 @@ public class RastreamentoServiceImpl implements RastreamentoService {
         dto.setTimestamp(localizacao.getTimestamp());
         dto.setStatusVeiculo(localizacao.getStatusVeiculo().name());
 
-        // Calcular distância e tempo restante (poderia ser obtido de um serviço externo)
-        dto.setDistanciaDestinoKm(calcularDistanciaDestino(localizacao));
-        dto.setTempoEstimadoMinutos(calcularTempoRestante(localizacao));
+        // Distância e tempo restante vêm do estimador (sem pedido, zero)
+        dto.setDistanciaDestinoKm(estimativa != null ? estimativa.distanciaKm() : 0.0);
+        dto.setTempoEstimadoMinutos(estimativa != null ? estimativa.tempoMinutos() : 0);
+        dto.setForaDaRota(estimativa != null ? estimativa.foraDaRota() : null);
 
         return dto;
     }
-
-    // TODO colocar diferença entre quando está para rota de origem x rota de destino
-    private double calcularDistanciaDestino(Localizacao localizacao) {
-        // Obtém detalhes do pedido do microsserviço de pedidos
-        Long pedidoId = localizacao.getPedidoId();
-        if (pedidoId == null) return 0.0;
-        var pedido = objectMapper.convertValue(pedidoServiceClient.buscarPedidoPorId(localizacao.getPedidoId()), PedidoDTO.class);
-
-        // Localização atual do motorista
-        double latAtual = localizacao.getLatitude();
-        double lonAtual = localizacao.getLongitude();
-
-        // Determinar o ponto alvo com base no status do pedido
-        double latAlvo, lonAlvo;
-
-        if (StatusPedido.valueOf(pedido.getStatus()) == StatusPedido.AGUARDANDO_COLETA) {
-            // Se está aguardando coleta, calcular distância até o ponto de coleta (origem)
-            latAlvo = pedido.getOrigemLatitude();
-            lonAlvo = pedido.getOrigemLongitude();
-        } else {
-            // Se já coletou (EM_ROTA), calcular distância até o destino final
-            latAlvo = pedido.getDestinoLatitude();
-            lonAlvo = pedido.getDestinoLongitude();
-        }
-        return calculateDistanceInKm(latAlvo, lonAlvo, latAtual, lonAtual);
-    }
-
-    private int calcularTempoRestante(Localizacao localizacao) {
-        // Obtém detalhes do pedido do microsserviço de pedidos
-        Long pedidoId = localizacao.getPedidoId();
-        if (pedidoId == null) return 0;
-        var pedido = objectMapper.convertValue(pedidoServiceClient.buscarPedidoPorId(localizacao.getPedidoId()), PedidoDTO.class);
-
-        // Status atual do pedido
-        StatusPedido statusPedido = StatusPedido.valueOf(pedido.getStatus());
-
-        // Calcula distância até o ponto alvo (origem ou destino)
-        double distanciaRestante = calcularDistanciaDestino(localizacao);
-
-        // Se não houver mais distância, tempo é zero
-        if (distanciaRestante <= 0.1) {
-            return 0;
-        }
-
-        // Calcular tempo restante com base no status
-        if (statusPedido == StatusPedido.AGUARDANDO_COLETA) {
-            // Para fase de coleta, calcular distância até o ponto de coleta (origem)
-            double latAtual = localizacao.getLatitude();
-            double lonAtual = localizacao.getLongitude();
-            double latColeta = pedido.getOrigemLatitude();
-            double lonColeta = pedido.getOrigemLongitude();
-
-            // Calcular distância usando Haversine
-            double distanciaAteColeta = calculateDistanceInKm(latAtual, lonAtual, latColeta, lonColeta);
-
-            // Se não houver mais distância, tempo é zero
-            if (distanciaAteColeta <= 0.1) {
-                return 0;
-            }
-
-            // Calcular tempo estimado usando velocidade média urbana (30 km/h = 0.5 km/min)
-            double velocidadeMedia = 0.5; // km/min
-            return (int) Math.ceil(distanciaAteColeta / velocidadeMedia);
-        } else {
-            // Para pedidos em rota, usar distância e tempo do pedido original
-            int tempoTotalEstimado = pedido.getTempoEstimadoMinutos();
-            double distanciaTotal = pedido.getDistanciaKm();
-
-            // Velocidade média do trajeto origem → destino
-            double velocidadeMedia = distanciaTotal / tempoTotalEstimado;
-
-            // Tempo restante até o destino
-            return (int) Math.ceil(distanciaRestante / velocidadeMedia);
-        }
-    }
 }
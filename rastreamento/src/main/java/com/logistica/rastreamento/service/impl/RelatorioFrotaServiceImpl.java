@@ -0,0 +1,133 @@
+package com.logistica.rastreamento.service.impl;
+
+import com.logistica.rastreamento.model.StatusVeiculo;
+import com.logistica.rastreamento.repository.RelatorioFrotaRepository;
+import com.logistica.rastreamento.repository.RelatorioFrotaRepository.Trajeto;
+import com.logistica.rastreamento.service.RelatorioFrotaService;
+import com.logistica.rastreamento.util.DistanciaUtils;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Relatório de estatísticas de toda a frota. A leitura do banco (uma única consulta ordenada
+ * por motorista) alimenta um ForkJoinPool que calcula cada motorista em paralelo; o número de
+ * trajetos em memória é limitado para que uma leitura mais rápida que o cálculo não acumule dados.
+ * Não verifica a existência de cada motorista no serviço de usuários.
+ */
+@Service
+public class RelatorioFrotaServiceImpl implements RelatorioFrotaService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RelatorioFrotaServiceImpl.class);
+
+    private final RelatorioFrotaRepository relatorioFrotaRepository;
+    private final ForkJoinPool pool;
+    private final int maxTrajetosPendentes;
+
+    public RelatorioFrotaServiceImpl(RelatorioFrotaRepository relatorioFrotaRepository,
+                                     @Value("${rastreamento.relatorio.paralelismo:0}") int paralelismo) {
+        this.relatorioFrotaRepository = relatorioFrotaRepository;
+        int threads = paralelismo > 0 ? paralelismo : Runtime.getRuntime().availableProcessors();
+        this.pool = new ForkJoinPool(threads);
+        this.maxTrajetosPendentes = threads * 4;
+    }
+
+    @PreDestroy
+    public void encerrar() {
+        pool.shutdown();
+    }
+
+    @Override
+    public void gerarEstatisticasFrota(LocalDate dataInicio, LocalDate dataFim, Consumer<Map<String, Object>> consumidor) {
+        Semaphore pendentes = new Semaphore(maxTrajetosPendentes);
+        List<CompletableFuture<Void>> calculos = new ArrayList<>();
+        Object saida = new Object();
+        AtomicReference<RuntimeException> falha = new AtomicReference<>();
+
+        relatorioFrotaRepository.percorrerTrajetos(dataInicio.atStartOfDay(), dataFim.atTime(23, 59, 59), trajeto -> {
+            // Interrompe a leitura se a escrita falhou (ex.: cliente desconectado)
+            if (falha.get() != null) {
+                throw falha.get();
+            }
+            pendentes.acquireUninterruptibly();
+            calculos.add(CompletableFuture.runAsync(() -> {
+                try {
+                    Map<String, Object> estatisticas = calcularEstatisticas(trajeto);
+                    // A saída é compartilhada: um resultado por vez, na ordem em que ficam prontos
+                    synchronized (saida) {
+                        if (falha.get() == null) {
+                            consumidor.accept(estatisticas);
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    falha.compareAndSet(null, e);
+                } finally {
+                    pendentes.release();
+                }
+            }, pool));
+        });
+
+        CompletableFuture.allOf(calculos.toArray(CompletableFuture[]::new)).join();
+        if (falha.get() != null) {
+            throw falha.get();
+        }
+        logger.info("Relatório da frota gerado para {} motoristas ({} a {})", calculos.size(), dataInicio, dataFim);
+    }
+
+    // Mesmas chaves de RastreamentoService.calcularEstatisticasMotorista, mais o motoristaId
+    private static Map<String, Object> calcularEstatisticas(Trajeto trajeto) {
+        int n = trajeto.tamanho();
+        double distanciaTotal = DistanciaUtils.calculatePathLengthInKm(trajeto.latitudes(), trajeto.longitudes(), n);
+        long movimentoMs = 0;
+        long ultimoMovimentoMs = -1;
+        long[] contagem = new long[StatusVeiculo.values().length];
+        Set<Long> pedidos = new HashSet<>();
+
+        for (int i = 0; i < n; i++) {
+            StatusVeiculo status = trajeto.status(i);
+            contagem[status.ordinal()]++;
+            if (status == StatusVeiculo.EM_MOVIMENTO) {
+                if (ultimoMovimentoMs >= 0) {
+                    movimentoMs += trajeto.timestampMs(i) - ultimoMovimentoMs;
+                }
+                ultimoMovimentoMs = trajeto.timestampMs(i);
+            }
+            if (trajeto.pedido(i) != 0) {
+                pedidos.add(trajeto.pedido(i));
+            }
+        }
+
+        long tempoEmMovimentoMinutos = movimentoMs / 60_000;
+        double velocidadeMedia = tempoEmMovimentoMinutos > 0
+                ? (distanciaTotal / tempoEmMovimentoMinutos) * 60
+                : 0;
+
+        Map<StatusVeiculo, Long> contagemPorStatus = new EnumMap<>(StatusVeiculo.class);
+        for (StatusVeiculo status : StatusVeiculo.values()) {
+            if (contagem[status.ordinal()] > 0) {
+                contagemPorStatus.put(status, contagem[status.ordinal()]);
+            }
+        }
+
+        Map<String, Object> estatisticas = new LinkedHashMap<>();
+        estatisticas.put("motoristaId", trajeto.motoristaId());
+        estatisticas.put("totalRegistros", n);
+        estatisticas.put("distanciaTotalKm", Math.round(distanciaTotal * 10) / 10.0);
+        estatisticas.put("tempoEmMovimentoMinutos", tempoEmMovimentoMinutos);
+        estatisticas.put("velocidadeMediaKmH", Math.round(velocidadeMedia * 10) / 10.0);
+        estatisticas.put("contagemPorStatus", contagemPorStatus);
+        estatisticas.put("pedidosAtendidos", pedidos.size());
+        estatisticas.put("listaPedidosAtendidos", pedidos);
+        return estatisticas;
+    }
+}
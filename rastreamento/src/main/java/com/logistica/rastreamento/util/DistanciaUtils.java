@@ -2,11 +2,15 @@ package com.logistica.rastreamento.util;
 
 /**
  * Classe utilitária para cálculos geográficos.
+ * Além das distâncias entre dois pontos, oferece operações em lote sobre arrays de coordenadas
+ * (um-para-muitos, comprimento de trajeto e filtro por raio) e uma aproximação equiretangular
+ * para distâncias curtas, que evita funções trigonométricas por ponto.
  */
 public final class DistanciaUtils {
 
     private static final double EARTH_RADIUS_KM = 6371.0;
     private static final double EARTH_RADIUS_METERS = 6371000.0;
+    private static final double GRAUS_PARA_RADIANOS = Math.PI / 180.0;
 
     // Construtor privado para evitar instanciação
     private DistanciaUtils() {
@@ -39,24 +43,165 @@ public final class DistanciaUtils {
         return calculateDistance(lat1, lon1, lat2, lon2, EARTH_RADIUS_METERS);
     }
 
+    /**
+     * Calcula a distância de um ponto de referência a cada ponto de um conjunto, em quilômetros.
+     * O cosseno da latitude de referência é calculado uma única vez.
+     *
+     * @param lat        Latitude do ponto de referência (em graus)
+     * @param lon        Longitude do ponto de referência (em graus)
+     * @param latitudes  Latitudes dos pontos (em graus)
+     * @param longitudes Longitudes dos pontos (em graus)
+     * @param distancias Array de saída, com pelo menos {@code latitudes.length} posições
+     */
+    public static void calculateDistancesInKm(double lat, double lon, double[] latitudes, double[] longitudes,
+                                              double[] distancias) {
+        double latRad = lat * GRAUS_PARA_RADIANOS;
+        double cosLat = Math.cos(latRad);
+        for (int i = 0; i < latitudes.length; i++) {
+            double latIRad = latitudes[i] * GRAUS_PARA_RADIANOS;
+            double a = haversineA(latRad, cosLat, latIRad, Math.cos(latIRad), (longitudes[i] - lon) * GRAUS_PARA_RADIANOS);
+            distancias[i] = 2 * EARTH_RADIUS_KM * Math.asin(Math.sqrt(a));
+        }
+    }
+
+    /**
+     * Calcula o comprimento de um trajeto (soma das distâncias entre pontos consecutivos), em quilômetros.
+     * Cada ponto tem o cosseno da latitude calculado uma única vez.
+     *
+     * @param latitudes  Latitudes dos pontos, na ordem do trajeto (em graus)
+     * @param longitudes Longitudes dos pontos, na ordem do trajeto (em graus)
+     * @param quantidade Quantidade de pontos considerados (a partir do índice 0)
+     * @return Comprimento do trajeto em quilômetros
+     */
+    public static double calculatePathLengthInKm(double[] latitudes, double[] longitudes, int quantidade) {
+        if (quantidade < 2) {
+            return 0.0;
+        }
+        double total = 0.0;
+        double latAnteriorRad = latitudes[0] * GRAUS_PARA_RADIANOS;
+        double cosAnterior = Math.cos(latAnteriorRad);
+        for (int i = 1; i < quantidade; i++) {
+            double latRad = latitudes[i] * GRAUS_PARA_RADIANOS;
+            double cosLat = Math.cos(latRad);
+            double a = haversineA(latAnteriorRad, cosAnterior, latRad, cosLat,
+                    (longitudes[i] - longitudes[i - 1]) * GRAUS_PARA_RADIANOS);
+            total += 2 * Math.asin(Math.sqrt(a));
+            latAnteriorRad = latRad;
+            cosAnterior = cosLat;
+        }
+        return total * EARTH_RADIUS_KM;
+    }
+
+    /**
+     * Seleciona os pontos a até {@code raioKm} do ponto de referência.
+     * Descarta primeiro pelo retângulo envolvente e compara o termo de Haversine com o raio,
+     * sem calcular asin e sqrt para cada ponto. O resultado é exato: a largura do retângulo
+     * considera a convergência dos meridianos (e abrange todas as longitudes quando o círculo
+     * contém um polo), e a diferença de longitude é tomada pelo lado mais curto do antimeridiano.
+     *
+     * @param lat        Latitude do ponto de referência (em graus)
+     * @param lon        Longitude do ponto de referência (em graus)
+     * @param latitudes  Latitudes dos pontos (em graus)
+     * @param longitudes Longitudes dos pontos (em graus)
+     * @param raioKm     Raio em quilômetros
+     * @param indices    Array de saída com os índices selecionados, com pelo menos {@code latitudes.length} posições
+     * @return Quantidade de índices escritos em {@code indices}
+     */
+    public static int filterWithinRadiusKm(double lat, double lon, double[] latitudes, double[] longitudes,
+                                           double raioKm, int[] indices) {
+        double latRad = lat * GRAUS_PARA_RADIANOS;
+        double cosLat = Math.cos(latRad);
+        double raioAngular = Math.min(raioKm / EARTH_RADIUS_KM, Math.PI);
+        double deltaLat = raioAngular / GRAUS_PARA_RADIANOS;
+        double senoRaio = Math.sin(raioAngular);
+        // Meia largura do retângulo envolvente de um círculo na esfera: asin(sen r / cos lat)
+        double deltaLon = Math.abs(lat) + deltaLat < 90.0 && senoRaio < cosLat
+                ? Math.asin(senoRaio / cosLat) / GRAUS_PARA_RADIANOS
+                : 180.0;
+        double senoMeioAngulo = Math.sin(raioAngular / 2);
+        double limiteA = senoMeioAngulo * senoMeioAngulo;
+
+        int total = 0;
+        for (int i = 0; i < latitudes.length; i++) {
+            double dLon = Math.abs(longitudes[i] - lon);
+            if (dLon > 180.0) {
+                dLon = 360.0 - dLon;
+            }
+            if (Math.abs(latitudes[i] - lat) > deltaLat || dLon > deltaLon) {
+                continue;
+            }
+            double latIRad = latitudes[i] * GRAUS_PARA_RADIANOS;
+            if (haversineA(latRad, cosLat, latIRad, Math.cos(latIRad), (longitudes[i] - lon) * GRAUS_PARA_RADIANOS) <= limiteA) {
+                indices[total++] = i;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Distância aproximada (projeção equiretangular) em quilômetros, para pontos próximos.
+     * Usa o cosseno de uma latitude de referência já calculado. O erro relativo cresce com a
+     * distância e com a latitude: fica abaixo de 0,1% até uns 20 km em latitudes de até 45° e
+     * chega a cerca de 0,25% a 50 km na latitude de 60°. Pontos em lados opostos do
+     * antimeridiano não são tratados.
+     *
+     * @param lat1      Latitude do primeiro ponto (em graus)
+     * @param lon1      Longitude do primeiro ponto (em graus)
+     * @param lat2      Latitude do segundo ponto (em graus)
+     * @param lon2      Longitude do segundo ponto (em graus)
+     * @param cosLatRef Cosseno da latitude de referência da região (ver {@link #cosLatitude(double)})
+     * @return Distância aproximada em quilômetros
+     */
+    public static double calculateApproximateDistanceInKm(double lat1, double lon1, double lat2, double lon2,
+                                                          double cosLatRef) {
+        double x = (lon2 - lon1) * cosLatRef;
+        double y = lat2 - lat1;
+        return Math.sqrt(x * x + y * y) * GRAUS_PARA_RADIANOS * EARTH_RADIUS_KM;
+    }
+
+    /**
+     * Versão em lote da aproximação equiretangular, usando a latitude do ponto de referência.
+     * O laço contém apenas multiplicações, somas e raiz quadrada, o que permite ao JIT vetorizá-lo.
+     *
+     * @param lat        Latitude do ponto de referência (em graus)
+     * @param lon        Longitude do ponto de referência (em graus)
+     * @param latitudes  Latitudes dos pontos (em graus)
+     * @param longitudes Longitudes dos pontos (em graus)
+     * @param distancias Array de saída, com pelo menos {@code latitudes.length} posições
+     */
+    public static void calculateApproximateDistancesInKm(double lat, double lon, double[] latitudes, double[] longitudes,
+                                                         double[] distancias) {
+        double cosLat = cosLatitude(lat);
+        double escala = GRAUS_PARA_RADIANOS * EARTH_RADIUS_KM;
+        for (int i = 0; i < latitudes.length; i++) {
+            double x = (longitudes[i] - lon) * cosLat;
+            double y = latitudes[i] - lat;
+            distancias[i] = Math.sqrt(x * x + y * y) * escala;
+        }
+    }
+
+    /**
+     * Cosseno de uma latitude em graus, para uso com as funções aproximadas.
+     */
+    public static double cosLatitude(double lat) {
+        return Math.cos(lat * GRAUS_PARA_RADIANOS);
+    }
+
     private static double calculateDistance(double lat1, double lon1, double lat2, double lon2, double radius) {
         // Converter graus para radianos
-        double lat1Rad = Math.toRadians(lat1);
-        double lon1Rad = Math.toRadians(lon1);
-        double lat2Rad = Math.toRadians(lat2);
-        double lon2Rad = Math.toRadians(lon2);
-
-        // Diferenças entre as coordenadas
-        double dLat = lat2Rad - lat1Rad;
-        double dLon = lon2Rad - lon1Rad;
+        double lat1Rad = lat1 * GRAUS_PARA_RADIANOS;
+        double lat2Rad = lat2 * GRAUS_PARA_RADIANOS;
 
         // Fórmula de Haversine
-        double a = Math.pow(Math.sin(dLat / 2), 2) +
-                Math.cos(lat1Rad) * Math.cos(lat2Rad) *
-                        Math.pow(Math.sin(dLon / 2), 2);
+        double a = haversineA(lat1Rad, Math.cos(lat1Rad), lat2Rad, Math.cos(lat2Rad), (lon2 - lon1) * GRAUS_PARA_RADIANOS);
 
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+        return radius * 2 * Math.asin(Math.sqrt(a));
+    }
 
-        return radius * c;
+    // Termo "a" da fórmula de Haversine, com os cossenos das latitudes já calculados
+    private static double haversineA(double lat1Rad, double cosLat1, double lat2Rad, double cosLat2, double dLonRad) {
+        double senoDLat = Math.sin((lat2Rad - lat1Rad) / 2);
+        double senoDLon = Math.sin(dLonRad / 2);
+        return Math.min(1.0, senoDLat * senoDLat + cosLat1 * cosLat2 * senoDLon * senoDLon);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,129 @@
+package com.logistica.rastreamento.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Roda de temporização hierárquica para expiração de itens com resolução de um tick.
+ *
+ * São quatro níveis de 64 posições: o primeiro cobre os próximos 64 ticks, e cada nível
+ * seguinte cobre 64 vezes o anterior (com ticks de 1 s, cerca de 194 dias no total; prazos
+ * maiores ficam no último nível e são reposicionados a cada volta). Agendar e cancelar são
+ * O(1); ao avançar, os itens de um nível superior descem para os inferiores quando sua
+ * posição é alcançada, até expirarem no primeiro nível no tick exato.
+ *
+ * Thread-safe: as operações são sincronizadas na própria instância.
+ */
+public final class RodaTemporizacao<T> {
+
+    private static final int BITS_POR_NIVEL = 6;
+    private static final int POSICOES = 1 << BITS_POR_NIVEL;
+    private static final int MASCARA = POSICOES - 1;
+    private static final int NIVEIS = 4;
+    private static final long ALCANCE = 1L << (BITS_POR_NIVEL * NIVEIS);
+
+    /**
+     * Agendamento de um item; cancelar apenas marca a entrada, descartada quando sua posição é alcançada.
+     */
+    public static final class Agendamento<T> {
+        private final T item;
+        private final long tickExpiracao;
+        private boolean cancelado;
+
+        private Agendamento(T item, long tickExpiracao) {
+            this.item = item;
+            this.tickExpiracao = tickExpiracao;
+        }
+    }
+
+    private final long duracaoTickMs;
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final List<Agendamento<T>>[][] posicoes = new List[NIVEIS][POSICOES];
+    // Último tick processado
+    private long tickAtual;
+    private int tamanho;
+
+    public RodaTemporizacao(long duracaoTickMs, long agoraMs) {
+        this.duracaoTickMs = duracaoTickMs;
+        this.tickAtual = Math.floorDiv(agoraMs, duracaoTickMs);
+    }
+
+    /**
+     * Agenda o item para expirar no primeiro tick que não seja anterior a expiracaoMs.
+     * Prazos já vencidos expiram no próximo avanço.
+     */
+    public synchronized Agendamento<T> agendar(T item, long expiracaoMs) {
+        long tickExpiracao = Math.max(Math.floorDiv(expiracaoMs + duracaoTickMs - 1, duracaoTickMs), tickAtual + 1);
+        Agendamento<T> agendamento = new Agendamento<>(item, tickExpiracao);
+        inserir(agendamento, tickAtual + 1);
+        tamanho++;
+        return agendamento;
+    }
+
+    public synchronized void cancelar(Agendamento<T> agendamento) {
+        if (!agendamento.cancelado) {
+            agendamento.cancelado = true;
+            tamanho--;
+        }
+    }
+
+    public synchronized int tamanho() {
+        return tamanho;
+    }
+
+    /**
+     * Processa os ticks até agoraMs e retorna os itens expirados, na ordem de expiração.
+     */
+    public synchronized List<T> avancar(long agoraMs) {
+        long alvo = Math.floorDiv(agoraMs, duracaoTickMs);
+        List<T> expirados = new ArrayList<>();
+        while (tickAtual < alvo) {
+            tickAtual++;
+            // Desce os níveis superiores cuja posição foi alcançada, do mais baixo para o mais alto
+            for (int nivel = 1; nivel < NIVEIS; nivel++) {
+                if ((tickAtual & ((1L << (BITS_POR_NIVEL * nivel)) - 1)) != 0) {
+                    break;
+                }
+                int posicao = (int) ((tickAtual >>> (BITS_POR_NIVEL * nivel)) & MASCARA);
+                List<Agendamento<T>> entradas = posicoes[nivel][posicao];
+                if (entradas != null) {
+                    posicoes[nivel][posicao] = null;
+                    for (Agendamento<T> entrada : entradas) {
+                        if (!entrada.cancelado) {
+                            inserir(entrada, tickAtual);
+                        }
+                    }
+                }
+            }
+            List<Agendamento<T>> vencidas = posicoes[0][(int) (tickAtual & MASCARA)];
+            if (vencidas != null) {
+                posicoes[0][(int) (tickAtual & MASCARA)] = null;
+                for (Agendamento<T> entrada : vencidas) {
+                    if (!entrada.cancelado) {
+                        entrada.cancelado = true;
+                        tamanho--;
+                        expirados.add(entrada.item);
+                    }
+                }
+            }
+        }
+        return expirados;
+    }
+
+    // Posiciona a entrada em relação ao tick base (o próximo a ser processado no primeiro nível)
+    private void inserir(Agendamento<T> agendamento, long base) {
+        long restante = Math.max(agendamento.tickExpiracao - base, 0);
+        long tickPosicao = base + Math.min(restante, ALCANCE - 1);
+        int nivel = 0;
+        while (nivel < NIVEIS - 1 && (tickPosicao - base) >= (1L << (BITS_POR_NIVEL * (nivel + 1)))) {
+            nivel++;
+        }
+        int posicao = (int) ((tickPosicao >>> (BITS_POR_NIVEL * nivel)) & MASCARA);
+        List<Agendamento<T>> entradas = posicoes[nivel][posicao];
+        if (entradas == null) {
+            entradas = new ArrayList<>();
+            posicoes[nivel][posicao] = entradas;
+        }
+        entradas.add(agendamento);
+    }
+}
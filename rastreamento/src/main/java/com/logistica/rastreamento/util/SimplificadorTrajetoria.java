@@ -0,0 +1,118 @@
+package com.logistica.rastreamento.util;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.stream.IntStream;
+
+/**
+ * Simplificação de trajetórias pelo algoritmo de Douglas-Peucker.
+ * Em vez de recortar para uma única tolerância, calcula a relevância de cada ponto
+ * (o desvio, em metros, que ele corrige na trajetória simplificada), o que permite
+ * aplicar ao mesmo tempo uma tolerância e um número máximo de pontos.
+ */
+public final class SimplificadorTrajetoria {
+
+    private static final double METROS_POR_GRAU = 111_320.0;
+
+    // Construtor privado para evitar instanciação
+    private SimplificadorTrajetoria() {
+        throw new UnsupportedOperationException("Classe utilitária não pode ser instanciada");
+    }
+
+    /**
+     * Seleciona os pontos da trajetória a manter.
+     *
+     * @param latitudes        Latitudes dos pontos, na ordem da trajetória
+     * @param longitudes       Longitudes dos pontos, na ordem da trajetória
+     * @param toleranciaMetros Desvio máximo aceito em relação à trajetória original (0 = mantém todo ponto que altera o traçado)
+     * @param maxPontos        Quantidade máxima de pontos mantidos (0 = sem limite, mínimo efetivo 2)
+     * @return Índices dos pontos mantidos, em ordem crescente (sempre inclui o primeiro e o último)
+     */
+    public static int[] simplificar(double[] latitudes, double[] longitudes, double toleranciaMetros, int maxPontos) {
+        int n = latitudes.length;
+        if (n <= 2) {
+            return IntStream.range(0, n).toArray();
+        }
+
+        double[] relevancia = calcularRelevancia(latitudes, longitudes);
+
+        int[] candidatos = IntStream.range(0, n)
+                .filter(i -> relevancia[i] > toleranciaMetros)
+                .toArray();
+        int limite = Math.max(maxPontos, 2);
+        if (maxPontos <= 0 || candidatos.length <= limite) {
+            return candidatos;
+        }
+
+        // Mantém os mais relevantes (os extremos têm relevância infinita) e restaura a ordem da trajetória
+        return Arrays.stream(candidatos)
+                .boxed()
+                .sorted(Comparator.comparingDouble((Integer i) -> relevancia[i]).reversed())
+                .limit(limite)
+                .mapToInt(Integer::intValue)
+                .sorted()
+                .toArray();
+    }
+
+    /**
+     * Relevância de cada ponto segundo Douglas-Peucker (versão iterativa, sem recursão).
+     * A relevância de um ponto nunca excede a do ponto que dividiu o seu trecho, de forma que
+     * recortar por qualquer limiar produz exatamente o resultado do algoritmo com essa tolerância.
+     */
+    private static double[] calcularRelevancia(double[] latitudes, double[] longitudes) {
+        int n = latitudes.length;
+        double[] relevancia = new double[n];
+        relevancia[0] = Double.POSITIVE_INFINITY;
+        relevancia[n - 1] = Double.POSITIVE_INFINITY;
+
+        // Projeção equiretangular local: suficiente para as distâncias de uma entrega
+        double cosLatitude = Math.cos(Math.toRadians(latitudes[0]));
+        double[] x = new double[n];
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = longitudes[i] * METROS_POR_GRAU * cosLatitude;
+            y[i] = latitudes[i] * METROS_POR_GRAU;
+        }
+
+        // Cada trecho pendente: {início, fim, relevância do ponto que o originou}
+        Deque<double[]> trechos = new ArrayDeque<>();
+        trechos.push(new double[]{0, n - 1, Double.POSITIVE_INFINITY});
+        while (!trechos.isEmpty()) {
+            double[] trecho = trechos.pop();
+            int inicio = (int) trecho[0];
+            int fim = (int) trecho[1];
+            if (fim - inicio < 2) {
+                continue;
+            }
+
+            int maisDistante = -1;
+            double maiorDistancia = -1;
+            for (int i = inicio + 1; i < fim; i++) {
+                double distancia = distanciaAoSegmento(x[i], y[i], x[inicio], y[inicio], x[fim], y[fim]);
+                if (distancia > maiorDistancia) {
+                    maiorDistancia = distancia;
+                    maisDistante = i;
+                }
+            }
+
+            double valor = Math.min(maiorDistancia, trecho[2]);
+            relevancia[maisDistante] = valor;
+            trechos.push(new double[]{inicio, maisDistante, valor});
+            trechos.push(new double[]{maisDistante, fim, valor});
+        }
+        return relevancia;
+    }
+
+    private static double distanciaAoSegmento(double px, double py, double ax, double ay, double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double comprimento2 = dx * dx + dy * dy;
+        double t = comprimento2 == 0 ? 0 : ((px - ax) * dx + (py - ay) * dy) / comprimento2;
+        t = Math.max(0, Math.min(1, t));
+        double ex = px - (ax + t * dx);
+        double ey = py - (ay + t * dy);
+        return Math.sqrt(ex * ex + ey * ey);
+    }
+}
@@ -0,0 +1,162 @@
+package com.logistica.rastreamento.benchmark;
+
+import com.logistica.rastreamento.util.DistanciaUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara o cálculo de distâncias da implementação anterior de DistanciaUtils (Math.pow, atan2
+ * e quatro toRadians por par) com as funções atuais: Haversine por par, lote um-para-muitos,
+ * comprimento de trajeto, filtro por raio e aproximação equiretangular.
+ * O erro máximo das variantes em relação à implementação anterior é impresso na preparação.
+ *
+ * Execução (a partir de rastreamento/):
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt -Dmdep.includeScope=test
+ * java -cp target/classes:target/test-classes:$(cat cp.txt) org.openjdk.jmh.Main DistanciaBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DistanciaBenchmark {
+
+    // Região metropolitana de Belo Horizonte
+    private static final double LATITUDE_CENTRO = -19.92;
+    private static final double LONGITUDE_CENTRO = -43.94;
+    private static final double AMPLITUDE_GRAUS = 0.5;
+    private static final double RAIO_KM = 5.0;
+
+    @Param({"10000"})
+    private int pontos;
+
+    private double[] latitudes;
+    private double[] longitudes;
+    private double[] distancias;
+    private int[] indices;
+
+    @Setup
+    public void preparar() {
+        Random random = new Random(42);
+        latitudes = new double[pontos];
+        longitudes = new double[pontos];
+        distancias = new double[pontos];
+        indices = new int[pontos];
+        // Passeio aleatório, para que o comprimento de trajeto use pontos próximos como na prática
+        double lat = LATITUDE_CENTRO;
+        double lon = LONGITUDE_CENTRO;
+        for (int i = 0; i < pontos; i++) {
+            lat += (random.nextDouble() - 0.5) * AMPLITUDE_GRAUS / 100;
+            lon += (random.nextDouble() - 0.5) * AMPLITUDE_GRAUS / 100;
+            latitudes[i] = lat;
+            longitudes[i] = lon;
+        }
+        imprimirPrecisao();
+    }
+
+    @Benchmark
+    public void originalUmParaMuitos(Blackhole blackhole) {
+        for (int i = 0; i < pontos; i++) {
+            distancias[i] = distanciaOriginal(LATITUDE_CENTRO, LONGITUDE_CENTRO, latitudes[i], longitudes[i]);
+        }
+        blackhole.consume(distancias);
+    }
+
+    @Benchmark
+    public void haversinePorPar(Blackhole blackhole) {
+        for (int i = 0; i < pontos; i++) {
+            distancias[i] = DistanciaUtils.calculateDistanceInKm(LATITUDE_CENTRO, LONGITUDE_CENTRO, latitudes[i], longitudes[i]);
+        }
+        blackhole.consume(distancias);
+    }
+
+    @Benchmark
+    public void haversineEmLote(Blackhole blackhole) {
+        DistanciaUtils.calculateDistancesInKm(LATITUDE_CENTRO, LONGITUDE_CENTRO, latitudes, longitudes, distancias);
+        blackhole.consume(distancias);
+    }
+
+    @Benchmark
+    public void equiretangularEmLote(Blackhole blackhole) {
+        DistanciaUtils.calculateApproximateDistancesInKm(LATITUDE_CENTRO, LONGITUDE_CENTRO, latitudes, longitudes, distancias);
+        blackhole.consume(distancias);
+    }
+
+    @Benchmark
+    public double originalTrajeto() {
+        double total = 0;
+        for (int i = 1; i < pontos; i++) {
+            total += distanciaOriginal(latitudes[i - 1], longitudes[i - 1], latitudes[i], longitudes[i]);
+        }
+        return total;
+    }
+
+    @Benchmark
+    public double trajetoEmLote() {
+        return DistanciaUtils.calculatePathLengthInKm(latitudes, longitudes, pontos);
+    }
+
+    @Benchmark
+    public int originalFiltroRaio() {
+        int total = 0;
+        for (int i = 0; i < pontos; i++) {
+            if (distanciaOriginal(LATITUDE_CENTRO, LONGITUDE_CENTRO, latitudes[i], longitudes[i]) <= RAIO_KM) {
+                indices[total++] = i;
+            }
+        }
+        return total;
+    }
+
+    @Benchmark
+    public int filtroRaioEmLote() {
+        return DistanciaUtils.filterWithinRadiusKm(LATITUDE_CENTRO, LONGITUDE_CENTRO, latitudes, longitudes, RAIO_KM, indices);
+    }
+
+    private void imprimirPrecisao() {
+        double erroHaversine = 0;
+        double erroEquiretangular = 0;
+        double[] aproximadas = new double[pontos];
+        DistanciaUtils.calculateApproximateDistancesInKm(LATITUDE_CENTRO, LONGITUDE_CENTRO, latitudes, longitudes, aproximadas);
+        for (int i = 0; i < pontos; i++) {
+            double referencia = distanciaOriginal(LATITUDE_CENTRO, LONGITUDE_CENTRO, latitudes[i], longitudes[i]);
+            if (referencia < 1e-6) {
+                continue;
+            }
+            double haversine = DistanciaUtils.calculateDistanceInKm(LATITUDE_CENTRO, LONGITUDE_CENTRO, latitudes[i], longitudes[i]);
+            erroHaversine = Math.max(erroHaversine, Math.abs(haversine - referencia) / referencia);
+            erroEquiretangular = Math.max(erroEquiretangular, Math.abs(aproximadas[i] - referencia) / referencia);
+        }
+        double trajetoOriginal = originalTrajeto();
+        double erroTrajeto = Math.abs(trajetoEmLote() - trajetoOriginal) / trajetoOriginal;
+        System.out.printf("Erro relativo máximo: haversine=%.2e, equiretangular=%.2e, trajeto=%.2e%n",
+                erroHaversine, erroEquiretangular, erroTrajeto);
+    }
+
+    // Implementação anterior de DistanciaUtils.calculateDistance, mantida como referência
+    private static double distanciaOriginal(double lat1, double lon1, double lat2, double lon2) {
+        double lat1Rad = Math.toRadians(lat1);
+        double lon1Rad = Math.toRadians(lon1);
+        double lat2Rad = Math.toRadians(lat2);
+        double lon2Rad = Math.toRadians(lon2);
+        double dLat = lat2Rad - lat1Rad;
+        double dLon = lon2Rad - lon1Rad;
+        double a = Math.pow(Math.sin(dLat / 2), 2) +
+                Math.cos(lat1Rad) * Math.cos(lat2Rad) *
+                        Math.pow(Math.sin(dLon / 2), 2);
+        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+        return 6371.0 * c;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(DistanciaBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
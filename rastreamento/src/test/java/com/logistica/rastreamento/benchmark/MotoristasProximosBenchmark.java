@@ -0,0 +1,92 @@
+package com.logistica.rastreamento.benchmark;
+
+import com.logistica.rastreamento.geo.GradeEspacial;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara a busca de motoristas próximos pela grade em memória com a varredura completa
+ * feita pela consulta SQL (fórmula com acos aplicada a todas as posições + ordenação).
+ * A varredura é executada em memória, sem o custo do DISTINCT ON sobre o histórico,
+ * portanto representa um limite inferior para o caminho SQL.
+ *
+ * Execução (a partir de rastreamento/):
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt -Dmdep.includeScope=test
+ * java -cp target/classes:target/test-classes:$(cat cp.txt) org.openjdk.jmh.Main MotoristasProximosBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MotoristasProximosBenchmark {
+
+    // Região metropolitana de Belo Horizonte
+    private static final double LATITUDE_CENTRO = -19.92;
+    private static final double LONGITUDE_CENTRO = -43.94;
+    private static final double AMPLITUDE_GRAUS = 0.5;
+    private static final double RAIO_KM = 5.0;
+
+    @Param({"10000", "100000"})
+    private int motoristas;
+
+    private double[] latitudes;
+    private double[] longitudes;
+    private GradeEspacial grade;
+    private double latitudeConsulta;
+    private double longitudeConsulta;
+
+    @Setup
+    public void preparar() {
+        Random random = new Random(42);
+        latitudes = new double[motoristas];
+        longitudes = new double[motoristas];
+        grade = new GradeEspacial(1.0);
+        for (int i = 0; i < motoristas; i++) {
+            latitudes[i] = LATITUDE_CENTRO + (random.nextDouble() - 0.5) * AMPLITUDE_GRAUS;
+            longitudes[i] = LONGITUDE_CENTRO + (random.nextDouble() - 0.5) * AMPLITUDE_GRAUS;
+            grade.atualizar(i, latitudes[i], longitudes[i]);
+        }
+        latitudeConsulta = LATITUDE_CENTRO;
+        longitudeConsulta = LONGITUDE_CENTRO;
+    }
+
+    @Benchmark
+    public void gradeEmMemoria(Blackhole blackhole) {
+        blackhole.consume(grade.buscarNoRaio(latitudeConsulta, longitudeConsulta, RAIO_KM));
+    }
+
+    @Benchmark
+    public void varreduraEquivalenteSql(Blackhole blackhole) {
+        double latRad = Math.toRadians(latitudeConsulta);
+        double lonRad = Math.toRadians(longitudeConsulta);
+        List<double[]> resultados = new ArrayList<>();
+        for (int i = 0; i < motoristas; i++) {
+            double lat = Math.toRadians(latitudes[i]);
+            double distancia = 6371 * Math.acos(Math.cos(latRad) * Math.cos(lat)
+                    * Math.cos(Math.toRadians(longitudes[i]) - lonRad)
+                    + Math.sin(latRad) * Math.sin(lat));
+            if (distancia < RAIO_KM) {
+                resultados.add(new double[]{i, distancia});
+            }
+        }
+        resultados.sort(Comparator.comparingDouble(r -> r[1]));
+        blackhole.consume(resultados);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(MotoristasProximosBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,120 @@
+package com.logistica.rastreamento.benchmark;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.logistica.rastreamento.geo.ProgressoRota;
+import com.logistica.rastreamento.geo.RotaPlanejada;
+import com.logistica.rastreamento.util.DistanciaUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mede o custo por localização da projeção na rota planejada: com o segmento anterior como
+ * ponto de partida (caminho de ingestão), percorrendo a rota inteira a cada localização e,
+ * como referência, a distância em linha reta até o destino usada antes.
+ * Com -prof gc, a projeção deve mostrar zero bytes alocados por operação.
+ *
+ * Execução (a partir de rastreamento/):
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt -Dmdep.includeScope=test
+ * java -cp target/classes:target/test-classes:$(cat cp.txt) org.openjdk.jmh.Main RotaPlanejadaBenchmark -prof gc
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RotaPlanejadaBenchmark {
+
+    private static final double LATITUDE_INICIO = -19.92;
+    private static final double LONGITUDE_INICIO = -43.94;
+    private static final double LIMITE_FORA_DA_ROTA_METROS = 150;
+    // Localizações simuladas por vértice da rota, com ruído de GPS de alguns metros
+    private static final int LEITURAS_POR_VERTICE = 3;
+
+    @Param({"500", "5000"})
+    private int vertices;
+
+    private RotaPlanejada rota;
+    private double[] latitudes;
+    private double[] longitudes;
+    private double latitudeFinal;
+    private double longitudeFinal;
+    private int proxima;
+    private final ProgressoRota progressoComDica = new ProgressoRota();
+
+    @Setup
+    public void preparar() {
+        Random random = new Random(42);
+        double[] latVertices = new double[vertices];
+        double[] lonVertices = new double[vertices];
+        ObjectNode geometria = JsonNodeFactory.instance.objectNode();
+        geometria.put("type", "LineString");
+        ArrayNode coordenadas = geometria.putArray("coordinates");
+        double lat = LATITUDE_INICIO;
+        double lon = LONGITUDE_INICIO;
+        for (int i = 0; i < vertices; i++) {
+            // Trechos de ~20 a 100 m, seguindo aproximadamente na mesma direção
+            lat += 0.0002 + random.nextDouble() * 0.0004;
+            lon += (random.nextDouble() - 0.3) * 0.0004;
+            latVertices[i] = lat;
+            lonVertices[i] = lon;
+            coordenadas.addArray().add(lon).add(lat);
+        }
+        rota = RotaPlanejada.de(geometria);
+        latitudeFinal = lat;
+        longitudeFinal = lon;
+
+        int leituras = (vertices - 1) * LEITURAS_POR_VERTICE;
+        latitudes = new double[leituras];
+        longitudes = new double[leituras];
+        for (int i = 0; i < leituras; i++) {
+            int vertice = i / LEITURAS_POR_VERTICE;
+            double t = (double) (i % LEITURAS_POR_VERTICE) / LEITURAS_POR_VERTICE;
+            latitudes[i] = latVertices[vertice] + t * (latVertices[vertice + 1] - latVertices[vertice])
+                    + (random.nextDouble() - 0.5) * 0.00005;
+            longitudes[i] = lonVertices[vertice] + t * (lonVertices[vertice + 1] - lonVertices[vertice])
+                    + (random.nextDouble() - 0.5) * 0.00005;
+        }
+    }
+
+    private int proximaLeitura() {
+        int atual = proxima;
+        proxima = proxima + 1 == latitudes.length ? 0 : proxima + 1;
+        return atual;
+    }
+
+    @Benchmark
+    public double projecaoComSegmentoAnterior() {
+        int i = proximaLeitura();
+        rota.projetar(latitudes[i], longitudes[i], LIMITE_FORA_DA_ROTA_METROS, progressoComDica);
+        return progressoComDica.kmRestantes();
+    }
+
+    @Benchmark
+    public double projecaoRotaInteira() {
+        int i = proximaLeitura();
+        // Progresso novo a cada leitura: sem segmento anterior, a busca percorre todos os segmentos
+        ProgressoRota progresso = new ProgressoRota();
+        rota.projetar(latitudes[i], longitudes[i], LIMITE_FORA_DA_ROTA_METROS, progresso);
+        return progresso.kmRestantes();
+    }
+
+    @Benchmark
+    public double linhaRetaAteDestino() {
+        int i = proximaLeitura();
+        return DistanciaUtils.calculateDistanceInKm(latitudes[i], longitudes[i], latitudeFinal, longitudeFinal);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RotaPlanejadaBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
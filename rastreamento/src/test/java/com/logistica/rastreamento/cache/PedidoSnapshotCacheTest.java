@@ -0,0 +1,75 @@
+package com.logistica.rastreamento.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.logistica.rastreamento.model.StatusPedido;
+import com.logistica.rastreamento.service.PedidoServiceClient;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PedidoSnapshotCacheTest {
+
+    private final PedidoServiceClient pedidoServiceClient = mock(PedidoServiceClient.class);
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    private PedidoSnapshotCache cache(int maxEntradas, long tempoVidaSegundos) {
+        return new PedidoSnapshotCache(pedidoServiceClient, objectMapper, new SimpleMeterRegistry(),
+                maxEntradas, tempoVidaSegundos);
+    }
+
+    @Test
+    void evento_recebido_durante_a_consulta_descarta_o_resultado() {
+        PedidoSnapshotCache cache = cache(100, 300);
+        when(pedidoServiceClient.buscarPedidoPorId(1L)).thenAnswer(invocacao -> {
+            // A coleta é confirmada enquanto a resposta (ainda com o status antigo) está a caminho
+            cache.atualizarStatus(1L, StatusPedido.EM_ROTA, 7L);
+            return pedido(1L, "AGUARDANDO_COLETA");
+        }).thenReturn(pedido(1L, "EM_ROTA"));
+
+        assertThat(cache.buscar(1L).status()).isEqualTo(StatusPedido.AGUARDANDO_COLETA);
+        assertThat(cache.buscar(1L).status()).isEqualTo(StatusPedido.EM_ROTA);
+        assertThat(cache.buscar(1L).status()).isEqualTo(StatusPedido.EM_ROTA);
+        verify(pedidoServiceClient, times(2)).buscarPedidoPorId(1L);
+    }
+
+    @Test
+    void copia_vencida_e_recarregada_e_mantida_se_a_recarga_falhar() {
+        PedidoSnapshotCache cache = cache(100, 0);
+        when(pedidoServiceClient.buscarPedidoPorId(1L))
+                .thenReturn(pedido(1L, "AGUARDANDO_COLETA"))
+                .thenReturn(pedido(1L, "EM_ROTA"))
+                .thenThrow(new IllegalStateException("pedidos indisponível"));
+
+        assertThat(cache.buscar(1L).status()).isEqualTo(StatusPedido.AGUARDANDO_COLETA);
+        assertThat(cache.buscar(1L).status()).isEqualTo(StatusPedido.EM_ROTA);
+        assertThat(cache.buscar(1L).status()).isEqualTo(StatusPedido.EM_ROTA);
+    }
+
+    @Test
+    void pedido_finalizado_sai_do_cache_e_o_limite_nao_e_ultrapassado() {
+        PedidoSnapshotCache cache = cache(1, 300);
+        when(pedidoServiceClient.buscarPedidoPorId(1L)).thenReturn(pedido(1L, "EM_ROTA"));
+        when(pedidoServiceClient.buscarPedidoPorId(2L)).thenReturn(pedido(2L, "EM_ROTA"));
+
+        cache.buscar(1L);
+        cache.buscar(2L);
+        cache.buscar(2L);
+        verify(pedidoServiceClient, times(2)).buscarPedidoPorId(2L);
+
+        cache.atualizarStatus(1L, StatusPedido.ENTREGUE, 7L);
+        cache.buscar(2L);
+        cache.buscar(2L);
+        verify(pedidoServiceClient, times(3)).buscarPedidoPorId(2L);
+    }
+
+    private static Map<String, Object> pedido(long id, String status) {
+        return Map.of("id", id, "status", status, "origemLatitude", -19.80, "origemLongitude", -43.94);
+    }
+}
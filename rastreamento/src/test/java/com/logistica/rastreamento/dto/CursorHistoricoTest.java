@@ -0,0 +1,37 @@
+package com.logistica.rastreamento.dto;
+
+import com.logistica.rastreamento.exception.OperacaoInvalidaException;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CursorHistoricoTest {
+
+    @Test
+    void cursor_sobrevive_ida_e_volta_pelo_texto() {
+        CursorHistorico cursor = new CursorHistorico(LocalDateTime.of(2024, 3, 15, 10, 30, 5, 123_456_789), 42L);
+
+        assertThat(CursorHistorico.de(cursor.toString())).isEqualTo(cursor);
+    }
+
+    @Test
+    void cursor_com_segundos_zerados_sobrevive_ida_e_volta() {
+        // LocalDateTime.toString omite os segundos quando são zero
+        CursorHistorico cursor = new CursorHistorico(LocalDateTime.of(2024, 3, 15, 10, 30), 7L);
+
+        assertThat(cursor.toString()).isEqualTo("2024-03-15T10:30,7");
+        assertThat(CursorHistorico.de(cursor.toString())).isEqualTo(cursor);
+    }
+
+    @Test
+    void cursor_malformado_e_rejeitado() {
+        for (String invalido : new String[]{"", "abc", "2024-03-15T10:30:00", "2024-03-15T10:30:00,x", "ontem,10", ",10"}) {
+            assertThatThrownBy(() -> CursorHistorico.de(invalido))
+                    .as(invalido)
+                    .isInstanceOf(OperacaoInvalidaException.class);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.logistica.rastreamento.geo;
+
+import com.logistica.rastreamento.cache.PedidoSnapshot;
+import com.logistica.rastreamento.cache.UltimaPosicaoCache;
+import com.logistica.rastreamento.exception.OperacaoInvalidaException;
+import com.logistica.rastreamento.message.PedidoChegadaEventSender;
+import com.logistica.rastreamento.model.Localizacao;
+import com.logistica.rastreamento.model.PosicaoAtual;
+import com.logistica.rastreamento.model.StatusPedido;
+import com.logistica.rastreamento.model.StatusVeiculo;
+import com.logistica.rastreamento.repository.PosicaoAtualRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CercasVirtuaisPedidosTest {
+
+    private static final double DESTINO_LATITUDE = -19.92;
+    private static final double DESTINO_LONGITUDE = -43.94;
+    // 1 km ≈ 1/111,2 grau de latitude
+    private static final double GRAUS_POR_KM = 1 / 111.2;
+
+    private final PedidoChegadaEventSender eventSender = mock(PedidoChegadaEventSender.class);
+    private final PosicaoAtualRepository posicaoAtualRepository = mock(PosicaoAtualRepository.class);
+    private final CercasVirtuaisPedidos cercas = new CercasVirtuaisPedidos(
+            mock(UltimaPosicaoCache.class), posicaoAtualRepository, eventSender, new SimpleMeterRegistry(), 1.0, 0.2);
+    private final LocalDateTime agora = LocalDateTime.now();
+    private final PedidoSnapshot pedido = new PedidoSnapshot(1L, -19.80, -43.94, DESTINO_LATITUDE, DESTINO_LONGITUDE,
+            7L, StatusPedido.EM_ROTA, 30, 15.0, LocalDateTime.now(), null);
+
+    @Test
+    void histerese_evita_chegadas_repetidas_na_borda() {
+        avaliarADistancia(0.9);
+        avaliarADistancia(1.1);
+        avaliarADistancia(0.95);
+
+        verify(eventSender, times(1)).enviarNotificacaoChegada(eq("CHEGOU_DESTINO"), eq(1L), eq(7L),
+                anyDouble(), anyDouble(), anyDouble());
+    }
+
+    @Test
+    void confirmacao_usa_o_raio_sem_a_histerese() {
+        avaliarADistancia(0.9);
+        assertThat(cercas.motoristaNoAlvo(pedido, 7L, CercasVirtuaisPedidos.Alvo.DESTINO)).isTrue();
+
+        // Ainda "dentro" para os eventos (raio + histerese), mas fora do raio
+        avaliarADistancia(1.1);
+        assertThat(cercas.motoristaNoAlvo(pedido, 7L, CercasVirtuaisPedidos.Alvo.DESTINO)).isFalse();
+        verify(eventSender, times(1)).enviarNotificacaoChegada(eq("CHEGOU_DESTINO"), anyLong(), anyLong(),
+                anyDouble(), anyDouble(), anyDouble());
+    }
+
+    @Test
+    void confirmacao_usa_a_posicao_gravada_quando_ela_e_mais_recente() {
+        avaliarADistancia(3.0);
+        assertThat(cercas.motoristaNoAlvo(pedido, 7L, CercasVirtuaisPedidos.Alvo.DESTINO)).isFalse();
+
+        // Localização recebida por outra instância, já gravada em posicao_atual
+        when(posicaoAtualRepository.findById(7L)).thenReturn(Optional.of(posicaoGravada(0.5, agora.plusSeconds(30))));
+        assertThat(cercas.motoristaNoAlvo(pedido, 7L, CercasVirtuaisPedidos.Alvo.DESTINO)).isTrue();
+
+        // Posição gravada mais antiga que a avaliada localmente é ignorada
+        when(posicaoAtualRepository.findById(7L)).thenReturn(Optional.of(posicaoGravada(0.5, agora.minusSeconds(30))));
+        assertThat(cercas.motoristaNoAlvo(pedido, 7L, CercasVirtuaisPedidos.Alvo.DESTINO)).isFalse();
+    }
+
+    @Test
+    void confirmacao_de_pedido_sem_coordenadas_do_alvo_e_recusada() {
+        PedidoSnapshot semDestino = new PedidoSnapshot(2L, -19.80, -43.94, null, null,
+                7L, StatusPedido.EM_ROTA, 30, 15.0, LocalDateTime.now(), null);
+
+        assertThatThrownBy(() -> cercas.motoristaNoAlvo(semDestino, 7L, CercasVirtuaisPedidos.Alvo.DESTINO))
+                .isInstanceOf(OperacaoInvalidaException.class);
+    }
+
+    private void avaliarADistancia(double km) {
+        Localizacao localizacao = new Localizacao();
+        localizacao.setMotoristaId(7L);
+        localizacao.setPedidoId(1L);
+        localizacao.setLatitude(DESTINO_LATITUDE + km * GRAUS_POR_KM);
+        localizacao.setLongitude(DESTINO_LONGITUDE);
+        localizacao.setTimestamp(agora);
+        cercas.avaliar(localizacao, pedido);
+    }
+
+    private static PosicaoAtual posicaoGravada(double km, LocalDateTime timestamp) {
+        PosicaoAtual posicao = new PosicaoAtual();
+        posicao.setMotoristaId(7L);
+        posicao.setPedidoId(1L);
+        posicao.setLatitude(DESTINO_LATITUDE + km * GRAUS_POR_KM);
+        posicao.setLongitude(DESTINO_LONGITUDE);
+        posicao.setTimestamp(timestamp);
+        posicao.setStatusVeiculo(StatusVeiculo.EM_MOVIMENTO);
+        return posicao;
+    }
+}
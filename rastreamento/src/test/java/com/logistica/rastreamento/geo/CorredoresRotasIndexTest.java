@@ -0,0 +1,109 @@
+package com.logistica.rastreamento.geo;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.offset;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class CorredoresRotasIndexTest {
+
+    private static final double LATITUDE = -19.92;
+    private static final double LONGITUDE = -43.94;
+    private static final double PASSO_GRAUS = 0.01;
+
+    private final CorredoresRotasIndex index = new CorredoresRotasIndex(new SimpleMeterRegistry(), 1.0);
+
+    @Test
+    void incidente_ja_ultrapassado_no_segmento_atual_nao_afeta_o_pedido() {
+        RotaPlanejada rota = reta(10);
+        posicionar(1L, rota, 3.5);
+
+        assertThat(buscar(rota, 3.2)).isEmpty();
+        assertThat(buscar(rota, 2.5)).isEmpty();
+
+        List<CorredoresRotasIndex.Afetado> afetados = buscar(rota, 3.8);
+        assertThat(afetados).extracting(CorredoresRotasIndex.Afetado::pedidoId).containsExactly(1L);
+        // Distância até a projeção do incidente, não até o início do segmento
+        assertThat(afetados.get(0).distanciaAtePontoKm()).isCloseTo(0.3 * rota.comprimentoKm() / 10, offset(0.01));
+    }
+
+    @Test
+    void incidente_atras_no_segmento_atual_conta_pelo_trecho_seguinte_que_passa_por_ele() {
+        // Ida e volta pela mesma via: o incidente atrás do veículo na ida fica à frente na volta
+        RotaPlanejada rota = RotaPlanejada.de(geometria(new double[][]{
+                {LONGITUDE, LATITUDE}, {LONGITUDE + 4 * PASSO_GRAUS, LATITUDE}, {LONGITUDE, LATITUDE + 0.0001}}));
+        double percorrido = rota.percorridoNaProjecaoMetros(0, LATITUDE, LONGITUDE + 2 * PASSO_GRAUS);
+        index.atualizar(1L, 7L, rota, 0, percorrido);
+
+        List<CorredoresRotasIndex.Afetado> afetados =
+                index.buscarAfetados(LATITUDE, LONGITUDE + PASSO_GRAUS, 0.5);
+
+        assertThat(afetados).hasSize(1);
+        // Até o fim da ida (2 passos) e de volta até o incidente (3 passos)
+        assertThat(afetados.get(0).distanciaAtePontoKm()).isCloseTo(5 * rota.comprimentoKm() / 8, offset(0.05));
+    }
+
+    @Test
+    void pedidos_sao_ordenados_pela_distancia_ao_longo_da_rota_e_podem_ser_removidos() {
+        RotaPlanejada rota = reta(10);
+        posicionar(1L, rota, 1.0);
+        posicionar(2L, rota, 5.0);
+
+        assertThat(buscar(rota, 6.0)).extracting(CorredoresRotasIndex.Afetado::pedidoId).containsExactly(2L, 1L);
+
+        index.remover(2L);
+        assertThat(index.contem(2L)).isFalse();
+        assertThat(buscar(rota, 6.0)).extracting(CorredoresRotasIndex.Afetado::pedidoId).containsExactly(1L);
+    }
+
+    @Test
+    void raio_muito_grande_percorre_os_corredores_em_vez_das_celulas() {
+        RotaPlanejada rota = reta(10);
+        posicionar(1L, rota, 1.0);
+        posicionar(2L, rota, 5.0);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(1), () ->
+                assertThat(index.buscarAfetados(60.0, 10.0, 1_000_000))
+                        .extracting(CorredoresRotasIndex.Afetado::pedidoId).containsExactly(2L, 1L));
+        assertThatThrownBy(() -> index.buscarAfetados(LATITUDE, LONGITUDE, Double.NaN))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private void posicionar(long pedidoId, RotaPlanejada rota, double passos) {
+        int segmento = (int) Math.min(passos, rota.segmentos() - 1);
+        double percorrido = rota.percorridoNaProjecaoMetros(segmento, LATITUDE, LONGITUDE + passos * PASSO_GRAUS);
+        index.atualizar(pedidoId, 7L, rota, segmento, percorrido);
+    }
+
+    private List<CorredoresRotasIndex.Afetado> buscar(RotaPlanejada rota, double passos) {
+        return index.buscarAfetados(LATITUDE + 0.001, LONGITUDE + passos * PASSO_GRAUS, 0.5);
+    }
+
+    private static RotaPlanejada reta(int segmentos) {
+        double[][] coordenadas = new double[segmentos + 1][];
+        for (int i = 0; i <= segmentos; i++) {
+            coordenadas[i] = new double[]{LONGITUDE + i * PASSO_GRAUS, LATITUDE};
+        }
+        return RotaPlanejada.de(geometria(coordenadas));
+    }
+
+    // GeoJSON LineString com as coordenadas em [longitude, latitude]
+    private static ObjectNode geometria(double[][] coordenadas) {
+        ObjectNode geometria = JsonNodeFactory.instance.objectNode();
+        geometria.put("type", "LineString");
+        ArrayNode array = geometria.putArray("coordinates");
+        for (double[] coordenada : coordenadas) {
+            array.addArray().add(coordenada[0]).add(coordenada[1]);
+        }
+        return geometria;
+    }
+}
@@ -0,0 +1,101 @@
+package com.logistica.rastreamento.geo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.logistica.rastreamento.cache.PedidoSnapshot;
+import com.logistica.rastreamento.cache.PedidoSnapshotCache;
+import com.logistica.rastreamento.geo.EstimadorChegada.Estimativa;
+import com.logistica.rastreamento.message.RotaEventSender;
+import com.logistica.rastreamento.model.Localizacao;
+import com.logistica.rastreamento.model.StatusPedido;
+import com.logistica.rastreamento.service.PedidoServiceClient;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DetectorDesvioRotaTest {
+
+    private final PedidoServiceClient pedidoServiceClient = mock(PedidoServiceClient.class);
+    private final RotaEventSender rotaEventSender = mock(RotaEventSender.class);
+    // Sem intervalo mínimo e com no máximo 2 recálculos sem rota por alvo
+    private final DetectorDesvioRota detector = new DetectorDesvioRota(pedidoServiceClient,
+            mock(PedidoSnapshotCache.class), rotaEventSender, new ObjectMapper(), new SimpleMeterRegistry(), 3, 0, 2);
+
+    DetectorDesvioRotaTest() {
+        // Resposta sem rota utilizável, concluída na hora
+        when(pedidoServiceClient.recalcularRotaAsync(anyLong(), anyDouble(), anyDouble()))
+                .thenReturn(CompletableFuture.completedFuture(Map.of()));
+    }
+
+    @Test
+    void desvio_e_detectado_apos_leituras_consecutivas_fora_da_rota() {
+        PedidoSnapshot pedido = pedido(StatusPedido.EM_ROTA);
+
+        avaliar(pedido, true);
+        avaliar(pedido, true);
+        avaliar(pedido, false);
+        avaliar(pedido, true);
+        avaliar(pedido, true);
+        verify(pedidoServiceClient, never()).recalcularRotaAsync(anyLong(), anyDouble(), anyDouble());
+
+        avaliar(pedido, true);
+        verify(pedidoServiceClient, times(1)).recalcularRotaAsync(eq(1L), anyDouble(), anyDouble());
+        verify(rotaEventSender).enviarNotificacaoDesvioRota(eq(1L), eq(7L), anyDouble(), anyDouble(), eq(3), isNull());
+    }
+
+    @Test
+    void recalculos_sem_rota_sao_limitados_por_alvo() {
+        PedidoSnapshot coleta = pedido(StatusPedido.AGUARDANDO_COLETA);
+        for (int i = 0; i < 10; i++) {
+            avaliar(coleta, null);
+        }
+        verify(pedidoServiceClient, times(2)).recalcularRotaAsync(eq(1L), anyDouble(), anyDouble());
+
+        // Mudança de alvo (coleta feita): o limite recomeça
+        PedidoSnapshot entrega = pedido(StatusPedido.EM_ROTA);
+        for (int i = 0; i < 10; i++) {
+            avaliar(entrega, null);
+        }
+        verify(pedidoServiceClient, times(4)).recalcularRotaAsync(eq(1L), anyDouble(), anyDouble());
+        verify(rotaEventSender, never()).enviarNotificacaoDesvioRota(anyLong(), anyLong(), anyDouble(), anyDouble(),
+                anyInt(), isNull());
+    }
+
+    @Test
+    void rota_utilizavel_zera_o_limite_de_recalculos_sem_rota() {
+        PedidoSnapshot pedido = pedido(StatusPedido.EM_ROTA);
+        avaliar(pedido, null);
+        avaliar(pedido, null);
+        avaliar(pedido, false);
+
+        avaliar(pedido, null);
+
+        verify(pedidoServiceClient, times(3)).recalcularRotaAsync(eq(1L), anyDouble(), anyDouble());
+    }
+
+    private void avaliar(PedidoSnapshot pedido, Boolean foraDaRota) {
+        Localizacao localizacao = new Localizacao();
+        localizacao.setMotoristaId(7L);
+        localizacao.setPedidoId(pedido.id());
+        localizacao.setLatitude(-19.92);
+        localizacao.setLongitude(-43.94);
+        detector.avaliar(localizacao, pedido, new Estimativa(7L, LocalDateTime.now(), 5.0, 10, foraDaRota));
+    }
+
+    private static PedidoSnapshot pedido(StatusPedido status) {
+        return new PedidoSnapshot(1L, -19.90, -43.94, -19.95, -43.94, 7L, status, 30, 15.0, LocalDateTime.now(), null);
+    }
+}
@@ -0,0 +1,99 @@
+package com.logistica.rastreamento.geo;
+
+import com.logistica.rastreamento.util.DistanciaUtils;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.offset;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class GradeEspacialTest {
+
+    private static final double LATITUDE = -19.92;
+    private static final double LONGITUDE = -43.94;
+
+    @Test
+    void busca_retorna_pontos_no_raio_ordenados_pela_distancia() {
+        GradeEspacial grade = new GradeEspacial(1.0);
+        grade.atualizar(1, LATITUDE + 0.01, LONGITUDE);  // ~1,1 km
+        grade.atualizar(2, LATITUDE + 0.001, LONGITUDE); // ~0,1 km
+        grade.atualizar(3, LATITUDE + 0.05, LONGITUDE);  // ~5,6 km
+
+        List<GradeEspacial.Resultado> resultados = grade.buscarNoRaio(LATITUDE, LONGITUDE, 2.0);
+
+        assertThat(resultados).extracting(GradeEspacial.Resultado::id).containsExactly(2L, 1L);
+        assertThat(resultados.get(0).distanciaKm()).isCloseTo(0.111, offset(0.01));
+    }
+
+    @Test
+    void mover_e_remover_atualizam_as_celulas() {
+        GradeEspacial grade = new GradeEspacial(1.0);
+        grade.atualizar(1, LATITUDE, LONGITUDE);
+        grade.atualizar(1, LATITUDE + 0.1, LONGITUDE);
+
+        assertThat(grade.tamanho()).isEqualTo(1);
+        assertThat(grade.buscarNoRaio(LATITUDE, LONGITUDE, 1.0)).isEmpty();
+        assertThat(grade.buscarNoRaio(LATITUDE + 0.1, LONGITUDE, 1.0)).hasSize(1);
+
+        grade.remover(1);
+        assertThat(grade.contem(1)).isFalse();
+        assertThat(grade.buscarNoRaio(LATITUDE + 0.1, LONGITUDE, 1.0)).isEmpty();
+    }
+
+    @Test
+    void busca_equivale_a_varredura_completa() {
+        GradeEspacial grade = new GradeEspacial(0.5);
+        Random random = new Random(7);
+        double[] latitudes = new double[2000];
+        double[] longitudes = new double[2000];
+        for (int i = 0; i < latitudes.length; i++) {
+            latitudes[i] = LATITUDE + (random.nextDouble() - 0.5) * 0.2;
+            longitudes[i] = LONGITUDE + (random.nextDouble() - 0.5) * 0.2;
+            grade.atualizar(i, latitudes[i], longitudes[i]);
+        }
+
+        List<Long> esperados = new ArrayList<>();
+        for (int i = 0; i < latitudes.length; i++) {
+            if (DistanciaUtils.calculateDistanceInKm(LATITUDE, LONGITUDE, latitudes[i], longitudes[i]) <= 3.0) {
+                esperados.add((long) i);
+            }
+        }
+
+        assertThat(grade.buscarNoRaio(LATITUDE, LONGITUDE, 3.0))
+                .extracting(GradeEspacial.Resultado::id)
+                .containsExactlyInAnyOrderElementsOf(esperados);
+    }
+
+    @Test
+    void raio_grande_percorre_os_pontos_em_vez_das_celulas() {
+        GradeEspacial grade = new GradeEspacial(0.1);
+        grade.atualizar(1, LATITUDE, LONGITUDE);
+        grade.atualizar(2, 48.85, 2.35);
+        grade.atualizar(3, 89.9, 179.9);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(1), () -> {
+            assertThat(grade.buscarNoRaio(LATITUDE, LONGITUDE, 1_000_000))
+                    .extracting(GradeEspacial.Resultado::id)
+                    .containsExactly(1L, 2L, 3L);
+            assertThat(grade.buscarNoRaio(89.99, 0, 500))
+                    .extracting(GradeEspacial.Resultado::id)
+                    .containsExactly(3L);
+        });
+    }
+
+    @Test
+    void raio_invalido_e_recusado() {
+        GradeEspacial grade = new GradeEspacial(1.0);
+
+        for (double raio : new double[]{0, -1, Double.NaN, Double.POSITIVE_INFINITY}) {
+            assertThatThrownBy(() -> grade.buscarNoRaio(LATITUDE, LONGITUDE, raio))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.logistica.rastreamento.geo;
+
+import com.logistica.rastreamento.model.Incidente;
+import com.logistica.rastreamento.repository.IncidenteRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class IncidentesAtivosIndexTest {
+
+    private final IncidenteRepository repository = mock(IncidenteRepository.class);
+    private final IncidentesAtivosIndex index = new IncidentesAtivosIndex(repository, new SimpleMeterRegistry(), 5.0);
+
+    @AfterEach
+    void encerrar() {
+        index.encerrar();
+    }
+
+    @Test
+    void sincronizacao_adiciona_e_remove_conforme_o_banco() {
+        index.adicionar(incidente(1L));
+        when(repository.findByAtivoTrueAndDataExpiracaoAfter(any())).thenReturn(List.of(incidente(2L)));
+
+        index.sincronizar();
+
+        assertThat(ids()).containsExactly(2L);
+    }
+
+    @Test
+    void incidente_removido_durante_a_consulta_nao_e_reinserido() {
+        Incidente incidente = incidente(1L);
+        index.adicionar(incidente);
+        when(repository.findByAtivoTrueAndDataExpiracaoAfter(any())).thenAnswer(invocacao -> {
+            // Desativado localmente enquanto a consulta (que ainda o vê ativo) está em andamento
+            index.remover(1L);
+            return List.of(incidente);
+        });
+
+        index.sincronizar();
+        assertThat(ids()).isEmpty();
+
+        // Enquanto o banco o devolver como ativo, a marca da remoção é mantida
+        when(repository.findByAtivoTrueAndDataExpiracaoAfter(any())).thenReturn(List.of(incidente));
+        index.sincronizar();
+        assertThat(ids()).isEmpty();
+
+        // Confirmada a remoção pelo banco, a marca é descartada
+        when(repository.findByAtivoTrueAndDataExpiracaoAfter(any())).thenReturn(List.of());
+        index.sincronizar();
+        when(repository.findByAtivoTrueAndDataExpiracaoAfter(any())).thenReturn(List.of(incidente));
+        index.sincronizar();
+        assertThat(ids()).containsExactly(1L);
+    }
+
+    @Test
+    void incidente_reportado_durante_a_consulta_nao_e_removido() {
+        when(repository.findByAtivoTrueAndDataExpiracaoAfter(any())).thenAnswer(invocacao -> {
+            // Reportado (com data de reporte anterior ao início da consulta) depois que ela começou
+            Incidente novo = incidente(1L);
+            novo.setDataReporte(LocalDateTime.now().minusMinutes(1));
+            index.adicionar(novo);
+            return List.of();
+        });
+
+        index.sincronizar();
+
+        assertThat(ids()).containsExactly(1L);
+    }
+
+    @Test
+    void busca_no_raio_usa_apenas_incidentes_indexados() {
+        index.adicionar(incidente(1L));
+        Incidente inativo = incidente(2L);
+        inativo.setAtivo(false);
+        index.adicionar(inativo);
+
+        assertThat(index.buscarNoRaio(-19.92, -43.94, 1.0)).extracting(Incidente::getId).containsExactly(1L);
+        index.remover(1L);
+        assertThat(index.buscarNoRaio(-19.92, -43.94, 1.0)).isEmpty();
+    }
+
+    @Test
+    void busca_com_raio_muito_grande_termina_e_encontra_o_incidente() {
+        index.adicionar(incidente(1L));
+
+        assertTimeoutPreemptively(Duration.ofSeconds(1), () ->
+                assertThat(index.buscarNoRaio(60.0, 10.0, Double.MAX_VALUE))
+                        .extracting(Incidente::getId).containsExactly(1L));
+    }
+
+    private List<Long> ids() {
+        return index.listarAtivos().stream().map(Incidente::getId).toList();
+    }
+
+    private static Incidente incidente(Long id) {
+        Incidente incidente = new Incidente();
+        incidente.setId(id);
+        incidente.setLatitude(-19.92);
+        incidente.setLongitude(-43.94);
+        incidente.setAtivo(true);
+        incidente.setDataReporte(LocalDateTime.now());
+        incidente.setDataExpiracao(LocalDateTime.now().plusHours(1));
+        return incidente;
+    }
+}
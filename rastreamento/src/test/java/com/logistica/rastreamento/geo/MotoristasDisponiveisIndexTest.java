@@ -0,0 +1,53 @@
+package com.logistica.rastreamento.geo;
+
+import com.logistica.rastreamento.cache.UltimaPosicao;
+import com.logistica.rastreamento.cache.UltimaPosicaoCache;
+import com.logistica.rastreamento.model.StatusVeiculo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class MotoristasDisponiveisIndexTest {
+
+    private static final double LATITUDE = -19.92;
+    private static final double LONGITUDE = -43.94;
+
+    private final MotoristasDisponiveisIndex index = new MotoristasDisponiveisIndex(
+            mock(UltimaPosicaoCache.class), new SimpleMeterRegistry(), 1.0, 600);
+
+    private static UltimaPosicao posicao(long motoristaId, LocalDateTime timestamp, StatusVeiculo status) {
+        return new UltimaPosicao(motoristaId, null, LATITUDE, LONGITUDE, timestamp, status);
+    }
+
+    @Test
+    void apenas_motoristas_disponiveis_sao_indexados() {
+        index.atualizar(posicao(1, LocalDateTime.now(), StatusVeiculo.DISPONIVEL));
+        index.atualizar(posicao(2, LocalDateTime.now(), StatusVeiculo.EM_MOVIMENTO));
+        index.atualizar(posicao(3, LocalDateTime.now(), StatusVeiculo.DISPONIVEL));
+        index.atualizar(posicao(3, LocalDateTime.now(), StatusVeiculo.PARADO));
+
+        assertThat(index.buscarNoRaio(LATITUDE, LONGITUDE, 1.0))
+                .extracting(GradeEspacial.Resultado::id)
+                .containsExactly(1L);
+    }
+
+    @Test
+    void motoristas_sem_localizacao_recente_nao_sao_retornados_e_sao_removidos() {
+        index.atualizar(posicao(1, LocalDateTime.now().minusMinutes(11), StatusVeiculo.DISPONIVEL));
+        index.atualizar(posicao(2, LocalDateTime.now().minusMinutes(5), StatusVeiculo.DISPONIVEL));
+
+        assertThat(index.buscarNoRaio(LATITUDE, LONGITUDE, 1.0))
+                .extracting(GradeEspacial.Resultado::id)
+                .containsExactly(2L);
+
+        index.removerDesatualizados();
+        index.atualizar(posicao(1, LocalDateTime.now(), StatusVeiculo.DISPONIVEL));
+        assertThat(index.buscarNoRaio(LATITUDE, LONGITUDE, 1.0))
+                .extracting(GradeEspacial.Resultado::id)
+                .containsExactlyInAnyOrder(1L, 2L);
+    }
+}
@@ -0,0 +1,149 @@
+package com.logistica.rastreamento.geo;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.logistica.rastreamento.util.DistanciaUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+class RotaPlanejadaTest {
+
+    private static final double LATITUDE = -19.92;
+    private static final double LONGITUDE = -43.94;
+    // Espaçamento dos vértices das rotas de teste (~105 m na longitude, ~111 m na latitude)
+    private static final double PASSO_GRAUS = 0.001;
+    private static final double LIMITE_FORA_DA_ROTA_METROS = 100;
+
+    @Test
+    void geometria_invalida_ou_com_menos_de_dois_pontos_nao_gera_rota() {
+        assertThat(RotaPlanejada.de(null)).isNull();
+        assertThat(RotaPlanejada.de(JsonNodeFactory.instance.objectNode())).isNull();
+        assertThat(RotaPlanejada.de(geometria(new double[][]{{LONGITUDE, LATITUDE}}))).isNull();
+        // Pontos repetidos não contam
+        assertThat(RotaPlanejada.de(geometria(new double[][]{{LONGITUDE, LATITUDE}, {LONGITUDE, LATITUDE}}))).isNull();
+
+        ObjectNode semNumero = geometria(new double[][]{{LONGITUDE, LATITUDE}});
+        ((ArrayNode) semNumero.get("coordinates")).addArray().add("x").add(LATITUDE);
+        assertThat(RotaPlanejada.de(semNumero)).isNull();
+    }
+
+    @Test
+    void pontos_repetidos_sao_descartados_e_o_comprimento_acompanha_a_distancia_real() {
+        RotaPlanejada rota = RotaPlanejada.de(geometria(new double[][]{
+                {LONGITUDE, LATITUDE}, {LONGITUDE, LATITUDE}, {LONGITUDE + 0.01, LATITUDE}, {LONGITUDE + 0.01, LATITUDE + 0.01}}));
+
+        assertThat(rota.segmentos()).isEqualTo(2);
+        double esperadoKm = DistanciaUtils.calculateDistanceInKm(LATITUDE, LONGITUDE, LATITUDE, LONGITUDE + 0.01)
+                + DistanciaUtils.calculateDistanceInKm(LATITUDE, LONGITUDE + 0.01, LATITUDE + 0.01, LONGITUDE + 0.01);
+        assertThat(rota.comprimentoKm()).isCloseTo(esperadoKm, offset(0.005));
+        assertThat(rota.latitude(2)).isCloseTo(LATITUDE + 0.01, offset(1e-9));
+        assertThat(rota.longitude(1)).isCloseTo(LONGITUDE + 0.01, offset(1e-9));
+        assertThat(rota.terminaEm(LATITUDE + 0.01, LONGITUDE + 0.01, 0.05)).isTrue();
+        assertThat(rota.terminaEm(LATITUDE, LONGITUDE, 0.05)).isFalse();
+    }
+
+    @Test
+    void projecao_na_rota_informa_segmento_e_quilometros_restantes() {
+        RotaPlanejada rota = retaParaLeste(10);
+        ProgressoRota progresso = new ProgressoRota();
+
+        // Metade do quarto segmento, 20 m ao norte da rota
+        rota.projetar(LATITUDE + 20 / 111_195.0, LONGITUDE + 3.5 * PASSO_GRAUS, LIMITE_FORA_DA_ROTA_METROS, progresso);
+
+        assertThat(progresso.segmento()).isEqualTo(3);
+        assertThat(progresso.distanciaRotaMetros()).isCloseTo(20, offset(0.5));
+        assertThat(progresso.foraDaRota()).isFalse();
+        assertThat(progresso.kmRestantes()).isCloseTo(rota.comprimentoKm() * 6.5 / 10, offset(0.001));
+        assertThat(rota.distanciaAoSegmentoMetros(3, LATITUDE + 20 / 111_195.0, LONGITUDE + 3.5 * PASSO_GRAUS))
+                .isCloseTo(20, offset(0.5));
+    }
+
+    @Test
+    void fora_da_rota_soma_a_distancia_ate_ela_ao_restante() {
+        RotaPlanejada rota = retaParaLeste(10);
+        ProgressoRota progresso = new ProgressoRota();
+
+        rota.projetar(LATITUDE + 500 / 111_195.0, LONGITUDE + 5 * PASSO_GRAUS, LIMITE_FORA_DA_ROTA_METROS, progresso);
+
+        assertThat(progresso.foraDaRota()).isTrue();
+        assertThat(progresso.distanciaRotaMetros()).isCloseTo(500, offset(1.0));
+        assertThat(progresso.kmRestantes()).isCloseTo(rota.comprimentoKm() / 2 + 0.5, offset(0.002));
+    }
+
+    @Test
+    void salto_alem_da_janela_de_busca_cai_na_busca_completa() {
+        RotaPlanejada rota = retaParaLeste(200);
+        ProgressoRota progresso = new ProgressoRota();
+        rota.projetar(LATITUDE, LONGITUDE + 0.5 * PASSO_GRAUS, LIMITE_FORA_DA_ROTA_METROS, progresso);
+        assertThat(progresso.segmento()).isZero();
+
+        // Bem além dos 25 segmentos seguintes ao anterior
+        rota.projetar(LATITUDE, LONGITUDE + 150.5 * PASSO_GRAUS, LIMITE_FORA_DA_ROTA_METROS, progresso);
+
+        assertThat(progresso.segmento()).isEqualTo(150);
+        assertThat(progresso.foraDaRota()).isFalse();
+    }
+
+    @Test
+    void progresso_de_outra_rota_nao_e_usado_como_ponto_de_partida() {
+        RotaPlanejada primeira = retaParaLeste(100);
+        RotaPlanejada segunda = retaParaLeste(100);
+        ProgressoRota progresso = new ProgressoRota();
+        primeira.projetar(LATITUDE, LONGITUDE + 90.5 * PASSO_GRAUS, LIMITE_FORA_DA_ROTA_METROS, progresso);
+
+        segunda.projetar(LATITUDE, LONGITUDE + 10.5 * PASSO_GRAUS, LIMITE_FORA_DA_ROTA_METROS, progresso);
+
+        assertThat(progresso.segmento()).isEqualTo(10);
+    }
+
+    @Test
+    void busca_a_partir_do_segmento_anterior_equivale_a_busca_completa_ao_longo_do_trajeto() {
+        // Zigue-zague: segmentos vizinhos ficam próximos entre si
+        double[][] coordenadas = new double[300][];
+        for (int i = 0; i < coordenadas.length; i++) {
+            coordenadas[i] = new double[]{LONGITUDE + i * PASSO_GRAUS, LATITUDE + (i % 2) * PASSO_GRAUS};
+        }
+        RotaPlanejada rota = RotaPlanejada.de(geometria(coordenadas));
+        Random random = new Random(42);
+        ProgressoRota comDica = new ProgressoRota();
+
+        for (int i = 0; i < coordenadas.length - 1; i++) {
+            double fracao = random.nextDouble();
+            double latitude = coordenadas[i][1] + fracao * (coordenadas[i + 1][1] - coordenadas[i][1])
+                    + (random.nextDouble() - 0.5) * 0.0001;
+            double longitude = coordenadas[i][0] + fracao * PASSO_GRAUS + (random.nextDouble() - 0.5) * 0.0001;
+            ProgressoRota semDica = new ProgressoRota();
+
+            rota.projetar(latitude, longitude, LIMITE_FORA_DA_ROTA_METROS, comDica);
+            rota.projetar(latitude, longitude, LIMITE_FORA_DA_ROTA_METROS, semDica);
+
+            assertThat(comDica.distanciaRotaMetros()).as("leitura %d", i)
+                    .isCloseTo(semDica.distanciaRotaMetros(), offset(1e-6));
+            assertThat(comDica.kmRestantes()).as("leitura %d", i).isCloseTo(semDica.kmRestantes(), offset(1e-6));
+        }
+    }
+
+    private static RotaPlanejada retaParaLeste(int segmentos) {
+        double[][] coordenadas = new double[segmentos + 1][];
+        for (int i = 0; i <= segmentos; i++) {
+            coordenadas[i] = new double[]{LONGITUDE + i * PASSO_GRAUS, LATITUDE};
+        }
+        return RotaPlanejada.de(geometria(coordenadas));
+    }
+
+    // GeoJSON LineString com as coordenadas em [longitude, latitude]
+    private static ObjectNode geometria(double[][] coordenadas) {
+        ObjectNode geometria = JsonNodeFactory.instance.objectNode();
+        geometria.put("type", "LineString");
+        ArrayNode array = geometria.putArray("coordinates");
+        for (double[] coordenada : coordenadas) {
+            array.addArray().add(coordenada[0]).add(coordenada[1]);
+        }
+        return geometria;
+    }
+}
@@ -0,0 +1,152 @@
+package com.logistica.rastreamento.grpc;
+
+import com.logistica.rastreamento.dto.LocalizacaoDTO;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+class CodificadorLocalizacaoCompactaTest {
+
+    private static final LocalDateTime INICIO = LocalDateTime.of(2024, 3, 15, 10, 0);
+
+    @Test
+    void primeiro_quadro_e_chave_e_os_seguintes_sao_deltas() {
+        CodificadorLocalizacaoCompacta codificador = new CodificadorLocalizacaoCompacta(10);
+        Decodificador cliente = new Decodificador();
+
+        LocalizacaoCompacta primeiro = codificador.codificar(localizacao(-19.920001, -43.940001, 0, "EM_MOVIMENTO", 5.2, 12));
+        LocalizacaoCompacta segundo = codificador.codificar(localizacao(-19.921234, -43.939876, 5, "EM_MOVIMENTO", 5.1, 12));
+
+        assertThat(primeiro.getQuadroChave()).isTrue();
+        assertThat(segundo.getQuadroChave()).isFalse();
+        assertThat(segundo.hasStatusVeiculo()).isFalse();
+        assertThat(segundo.hasTempoEstimadoMinutos()).isFalse();
+        assertThat(segundo.getDistanciaDestinoMetros()).isEqualTo(5100);
+
+        cliente.aplicar(primeiro);
+        cliente.aplicar(segundo);
+        assertThat(cliente.pedidoId).isEqualTo(1L);
+        assertThat(cliente.latitude()).isCloseTo(-19.921234, offset(1e-6));
+        assertThat(cliente.longitude()).isCloseTo(-43.939876, offset(1e-6));
+        assertThat(cliente.timestamp).isEqualTo(INICIO.plusSeconds(5).toEpochSecond(ZoneOffset.UTC));
+        assertThat(cliente.status).isEqualTo(StatusVeiculo.EM_MOVIMENTO);
+        assertThat(cliente.distanciaMetros).isEqualTo(5100);
+        assertThat(cliente.tempoEstimadoMinutos).isEqualTo(12);
+    }
+
+    @Test
+    void quadro_chave_e_reenviado_a_cada_intervalo() {
+        CodificadorLocalizacaoCompacta codificador = new CodificadorLocalizacaoCompacta(2);
+
+        boolean[] quadrosChave = new boolean[5];
+        for (int i = 0; i < quadrosChave.length; i++) {
+            quadrosChave[i] = codificador.codificar(localizacao(-19.92, -43.94, i, "PARADO", null, null)).getQuadroChave();
+        }
+
+        assertThat(quadrosChave).containsExactly(true, false, false, true, false);
+    }
+
+    @Test
+    void valor_que_deixa_de_existir_chega_ao_cliente_como_ausente() {
+        CodificadorLocalizacaoCompacta codificador = new CodificadorLocalizacaoCompacta(10);
+        Decodificador cliente = new Decodificador();
+
+        cliente.aplicar(codificador.codificar(localizacao(-19.92, -43.94, 0, "EM_MOVIMENTO", 3.0, 8)));
+        cliente.aplicar(codificador.codificar(localizacao(-19.93, -43.94, 5, "EM_MOVIMENTO", 2.0, 6)));
+        LocalizacaoCompacta semEstimativa = codificador.codificar(localizacao(-19.94, -43.94, 10, "EM_MOVIMENTO", 1.0, null));
+        cliente.aplicar(semEstimativa);
+
+        assertThat(semEstimativa.getQuadroChave()).isTrue();
+        assertThat(cliente.distanciaMetros).isEqualTo(1000);
+        assertThat(cliente.tempoEstimadoMinutos).isNull();
+        assertThat(cliente.latitude()).isCloseTo(-19.94, offset(1e-6));
+
+        // Depois do quadro chave, os deltas voltam a ser usados
+        LocalizacaoCompacta seguinte = codificador.codificar(localizacao(-19.95, -43.94, 15, "EM_MOVIMENTO", null, null));
+        cliente.aplicar(seguinte);
+        assertThat(seguinte.getQuadroChave()).isTrue();
+        assertThat(cliente.distanciaMetros).isNull();
+
+        LocalizacaoCompacta delta = codificador.codificar(localizacao(-19.96, -43.94, 20, "PARADO", null, null));
+        cliente.aplicar(delta);
+        assertThat(delta.getQuadroChave()).isFalse();
+        assertThat(cliente.status).isEqualTo(StatusVeiculo.PARADO);
+        assertThat(cliente.latitude()).isCloseTo(-19.96, offset(1e-6));
+        assertThat(cliente.timestamp).isEqualTo(INICIO.plusSeconds(20).toEpochSecond(ZoneOffset.UTC));
+    }
+
+    @Test
+    void deltas_nao_acumulam_erro_de_arredondamento() {
+        CodificadorLocalizacaoCompacta codificador = new CodificadorLocalizacaoCompacta(1000);
+        Decodificador cliente = new Decodificador();
+
+        double latitude = -19.92;
+        for (int i = 0; i < 500; i++) {
+            latitude += 0.00000037;
+            cliente.aplicar(codificador.codificar(localizacao(latitude, -43.94, i, "EM_MOVIMENTO", null, null)));
+        }
+
+        assertThat(cliente.latitude()).isCloseTo(latitude, offset(0.5e-6));
+    }
+
+    private static LocalizacaoDTO localizacao(double latitude, double longitude, int segundos, String status,
+                                              Double distanciaKm, Integer tempoMinutos) {
+        LocalizacaoDTO dto = new LocalizacaoDTO();
+        dto.setPedidoId(1L);
+        dto.setLatitude(latitude);
+        dto.setLongitude(longitude);
+        dto.setTimestamp(INICIO.plusSeconds(segundos));
+        dto.setStatusVeiculo(status);
+        dto.setDistanciaDestinoKm(distanciaKm);
+        dto.setTempoEstimadoMinutos(tempoMinutos);
+        return dto;
+    }
+
+    // Decodificação como feita pelo cliente do stream
+    private static final class Decodificador {
+        private long pedidoId;
+        private int latitude;
+        private int longitude;
+        private long timestamp;
+        private StatusVeiculo status;
+        private Integer distanciaMetros;
+        private Integer tempoEstimadoMinutos;
+
+        void aplicar(LocalizacaoCompacta quadro) {
+            if (quadro.getQuadroChave()) {
+                pedidoId = quadro.getPedidoId();
+                latitude = quadro.getLatitude();
+                longitude = quadro.getLongitude();
+                timestamp = quadro.getTimestamp();
+                status = quadro.hasStatusVeiculo() ? quadro.getStatusVeiculo() : null;
+                distanciaMetros = quadro.hasDistanciaDestinoMetros() ? quadro.getDistanciaDestinoMetros() : null;
+                tempoEstimadoMinutos = quadro.hasTempoEstimadoMinutos() ? quadro.getTempoEstimadoMinutos() : null;
+                return;
+            }
+            latitude += quadro.getLatitude();
+            longitude += quadro.getLongitude();
+            timestamp += quadro.getDeltaTimestamp();
+            if (quadro.hasStatusVeiculo()) {
+                status = quadro.getStatusVeiculo();
+            }
+            if (quadro.hasDistanciaDestinoMetros()) {
+                distanciaMetros = quadro.getDistanciaDestinoMetros();
+            }
+            if (quadro.hasTempoEstimadoMinutos()) {
+                tempoEstimadoMinutos = quadro.getTempoEstimadoMinutos();
+            }
+        }
+
+        double latitude() {
+            return latitude / 1_000_000.0;
+        }
+
+        double longitude() {
+            return longitude / 1_000_000.0;
+        }
+    }
+}
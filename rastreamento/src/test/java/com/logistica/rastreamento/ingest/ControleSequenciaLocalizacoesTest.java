@@ -0,0 +1,133 @@
+package com.logistica.rastreamento.ingest;
+
+import com.logistica.rastreamento.ingest.ControleSequenciaLocalizacoes.Classificacao;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ControleSequenciaLocalizacoesTest {
+
+    private static final long MOTORISTA = 7L;
+    private static final long INICIO = 1_700_000_000_000L;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ControleSequenciaLocalizacoes controle = new ControleSequenciaLocalizacoes(meterRegistry, 300);
+
+    @Test
+    void classifica_pela_marca_dagua_e_pela_janela() {
+        assertThat(controle.classificar(MOTORISTA, INICIO, true)).isEqualTo(Classificacao.NOVA);
+        assertThat(controle.classificar(MOTORISTA, INICIO + 10_000, true)).isEqualTo(Classificacao.NOVA);
+        assertThat(controle.classificar(MOTORISTA, INICIO + 5_000, true)).isEqualTo(Classificacao.ATRASADA);
+        assertThat(controle.classificar(MOTORISTA, INICIO + 5_000, true)).isEqualTo(Classificacao.DUPLICADA);
+        assertThat(controle.classificar(MOTORISTA, INICIO + 10_000, true)).isEqualTo(Classificacao.DUPLICADA);
+        assertThat(controle.classificar(MOTORISTA, INICIO + 10_000 - 300_001, true)).isEqualTo(Classificacao.FORA_DA_JANELA);
+        // Outro motorista tem a sua própria sequência
+        assertThat(controle.classificar(8L, INICIO, true)).isEqualTo(Classificacao.NOVA);
+    }
+
+    @Test
+    void duplicatas_sao_detectadas_em_toda_a_janela() {
+        // Uma localização por segundo: bem mais horários do que cabiam no antigo buffer de 64
+        for (int i = 0; i <= 300; i++) {
+            assertThat(controle.classificar(MOTORISTA, INICIO + i * 1000L, true)).isEqualTo(Classificacao.NOVA);
+        }
+
+        assertThat(controle.classificar(MOTORISTA, INICIO, true)).isEqualTo(Classificacao.DUPLICADA);
+        assertThat(controle.classificar(MOTORISTA, INICIO + 150_000, true)).isEqualTo(Classificacao.DUPLICADA);
+        assertThat(controle.classificar(MOTORISTA, INICIO + 150_500, true)).isEqualTo(Classificacao.ATRASADA);
+
+        // Com a marca avançando, o primeiro horário sai da janela
+        controle.classificar(MOTORISTA, INICIO + 301_000, true);
+        assertThat(controle.classificar(MOTORISTA, INICIO, true)).isEqualTo(Classificacao.FORA_DA_JANELA);
+    }
+
+    @Test
+    void horario_do_servidor_nao_e_verificado_como_duplicata() {
+        controle.classificar(MOTORISTA, INICIO, false);
+
+        assertThat(controle.classificar(MOTORISTA, INICIO, false)).isEqualTo(Classificacao.ATRASADA);
+    }
+
+    @Test
+    void desfazer_permite_o_reenvio_e_recua_a_marca_dagua() {
+        controle.classificar(MOTORISTA, INICIO, true);
+        controle.classificar(MOTORISTA, INICIO + 1000, true);
+
+        controle.desfazer(MOTORISTA, INICIO + 1000);
+
+        assertThat(controle.classificar(MOTORISTA, INICIO + 1000, true)).isEqualTo(Classificacao.NOVA);
+        controle.desfazer(MOTORISTA, INICIO);
+        assertThat(controle.classificar(MOTORISTA, INICIO, true)).isEqualTo(Classificacao.ATRASADA);
+    }
+
+    @Test
+    void motoristas_inativos_sao_esquecidos() throws InterruptedException {
+        ControleSequenciaLocalizacoes semJanela = new ControleSequenciaLocalizacoes(meterRegistry, 0);
+        semJanela.classificar(MOTORISTA, INICIO + 1000, true);
+        Thread.sleep(5);
+
+        semJanela.removerInativos();
+
+        assertThat(meterRegistry.get("rastreamento.ingest.sequencia.motoristas").gauge().value()).isZero();
+        assertThat(semJanela.classificar(MOTORISTA, INICIO, true)).isEqualTo(Classificacao.NOVA);
+    }
+
+    @Test
+    void motoristas_ativos_sao_mantidos() {
+        controle.classificar(MOTORISTA, INICIO, true);
+
+        controle.removerInativos();
+
+        assertThat(controle.classificar(MOTORISTA, INICIO, true)).isEqualTo(Classificacao.DUPLICADA);
+    }
+
+    @Test
+    void equivale_a_um_conjunto_ordenado_podado_pela_janela() {
+        Random random = new Random(42);
+        long janelaMs = 300_000;
+        TreeSet<Long> aceitos = new TreeSet<>();
+        long marcaDagua = Long.MIN_VALUE;
+        List<Long> enviados = new ArrayList<>();
+
+        for (int i = 0; i < 20_000; i++) {
+            long horario;
+            if (!enviados.isEmpty() && random.nextInt(5) == 0) {
+                horario = enviados.get(random.nextInt(enviados.size()));
+            } else {
+                horario = INICIO + i * 700L - random.nextInt(400_000);
+            }
+            enviados.add(horario);
+
+            if (!aceitos.isEmpty() && random.nextInt(20) == 0) {
+                long desfeito = aceitos.last();
+                controle.desfazer(MOTORISTA, desfeito);
+                aceitos.remove(desfeito);
+                marcaDagua = aceitos.isEmpty() ? Long.MIN_VALUE : aceitos.last();
+            }
+
+            Classificacao esperada;
+            if (horario > marcaDagua) {
+                esperada = Classificacao.NOVA;
+            } else if (aceitos.contains(horario)) {
+                esperada = Classificacao.DUPLICADA;
+            } else if (marcaDagua - horario > janelaMs) {
+                esperada = Classificacao.FORA_DA_JANELA;
+            } else {
+                esperada = Classificacao.ATRASADA;
+            }
+            if (esperada == Classificacao.NOVA || esperada == Classificacao.ATRASADA) {
+                aceitos.add(horario);
+                marcaDagua = Math.max(marcaDagua, horario);
+                aceitos.headSet(marcaDagua - janelaMs).clear();
+            }
+
+            assertThat(controle.classificar(MOTORISTA, horario, true)).as("horário %d", i).isEqualTo(esperada);
+        }
+    }
+}
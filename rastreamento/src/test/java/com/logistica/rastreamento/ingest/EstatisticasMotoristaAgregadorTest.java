@@ -0,0 +1,128 @@
+package com.logistica.rastreamento.ingest;
+
+import com.logistica.rastreamento.model.EstatisticaDiariaMotorista;
+import com.logistica.rastreamento.model.Localizacao;
+import com.logistica.rastreamento.model.PosicaoAtual;
+import com.logistica.rastreamento.model.StatusVeiculo;
+import com.logistica.rastreamento.repository.PosicaoAtualRepository;
+import com.logistica.rastreamento.repository.PreenchimentoEstatisticasRepository;
+import com.logistica.rastreamento.util.DistanciaUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EstatisticasMotoristaAgregadorTest {
+
+    private static final long MOTORISTA = 7L;
+    private static final LocalDateTime INICIO = LocalDateTime.of(2024, 3, 15, 10, 0);
+
+    private PreenchimentoEstatisticasRepository preenchimentoRepository;
+    private PosicaoAtualRepository posicaoAtualRepository;
+    private EstatisticasMotoristaAgregador agregador;
+
+    @BeforeEach
+    void configurar() {
+        preenchimentoRepository = mock(PreenchimentoEstatisticasRepository.class);
+        posicaoAtualRepository = mock(PosicaoAtualRepository.class);
+        when(posicaoAtualRepository.findAllById(any())).thenReturn(List.of());
+        agregador = new EstatisticasMotoristaAgregador(preenchimentoRepository, posicaoAtualRepository);
+        agregador.preencherSeNecessario();
+    }
+
+    @Test
+    void trecho_entre_lotes_usa_a_ultima_localizacao_do_lote_anterior() {
+        agregador.agregar(List.of(localizacao(-19.92, -43.94, 0, StatusVeiculo.EM_MOVIMENTO)));
+        EstatisticaDiariaMotorista dia = unicoDia(agregador.agregar(List.of(
+                localizacao(-19.93, -43.94, 60, StatusVeiculo.EM_MOVIMENTO),
+                localizacao(-19.93, -43.94, 120, StatusVeiculo.PARADO))));
+
+        assertThat(dia.getTotalRegistros()).isEqualTo(2);
+        assertThat(dia.getRegistrosEmMovimento()).isEqualTo(1);
+        assertThat(dia.getRegistrosParado()).isEqualTo(1);
+        assertThat(dia.getDistanciaKm()).isCloseTo(
+                DistanciaUtils.calculateDistanceInKm(-19.92, -43.94, -19.93, -43.94), offset(1e-9));
+        assertThat(dia.getMovimentoSegundos()).isEqualTo(60);
+    }
+
+    @Test
+    void localizacao_fora_de_ordem_conta_apenas_o_registro() {
+        agregador.agregar(List.of(localizacao(-19.92, -43.94, 60, StatusVeiculo.EM_MOVIMENTO)));
+        EstatisticaDiariaMotorista dia = unicoDia(agregador.agregar(List.of(
+                localizacao(-19.95, -43.94, 30, StatusVeiculo.EM_MOVIMENTO))));
+
+        assertThat(dia.getTotalRegistros()).isEqualTo(1);
+        assertThat(dia.getDistanciaKm()).isZero();
+        assertThat(dia.getMovimentoSegundos()).isZero();
+    }
+
+    @Test
+    void apos_reinicio_o_ponto_anterior_vem_da_posicao_atual() {
+        PosicaoAtual posicao = new PosicaoAtual();
+        posicao.setMotoristaId(MOTORISTA);
+        posicao.setLatitude(-19.92);
+        posicao.setLongitude(-43.94);
+        posicao.setTimestamp(INICIO);
+        posicao.setStatusVeiculo(StatusVeiculo.EM_MOVIMENTO);
+        when(posicaoAtualRepository.findAllById(any())).thenReturn(List.of(posicao));
+
+        EstatisticaDiariaMotorista dia = unicoDia(agregador.agregar(List.of(
+                localizacao(-19.93, -43.94, 45, StatusVeiculo.EM_MOVIMENTO))));
+
+        assertThat(dia.getDistanciaKm()).isCloseTo(
+                DistanciaUtils.calculateDistanceInKm(-19.92, -43.94, -19.93, -43.94), offset(1e-9));
+        assertThat(dia.getMovimentoSegundos()).isEqualTo(45);
+
+        // Já em memória: não consulta de novo
+        agregador.agregar(List.of(localizacao(-19.94, -43.94, 90, StatusVeiculo.EM_MOVIMENTO)));
+        verify(posicaoAtualRepository).findAllById(any());
+    }
+
+    @Test
+    void apos_o_preenchimento_so_conta_localizacoes_posteriores_ao_corte() {
+        when(preenchimentoRepository.preencherSeVazia(any())).thenReturn(true);
+        EstatisticasMotoristaAgregador novo = new EstatisticasMotoristaAgregador(preenchimentoRepository, posicaoAtualRepository);
+        novo.preencherSeNecessario();
+
+        // Anterior ao corte: já contada pelo preenchimento a partir do histórico
+        Localizacao antiga = localizacao(-19.92, -43.94, 0, StatusVeiculo.PARADO);
+        antiga.setTimestamp(LocalDateTime.now().minusMinutes(1));
+        assertThat(novo.agregar(List.of(antiga)).dias()).isEmpty();
+
+        Localizacao nova = localizacao(-19.92, -43.94, 0, StatusVeiculo.PARADO);
+        nova.setTimestamp(LocalDateTime.now().plusSeconds(1));
+        assertThat(novo.agregar(List.of(nova)).dias()).hasSize(1);
+    }
+
+    @Test
+    void sem_preenchimento_conta_todas_as_localizacoes() {
+        Localizacao antiga = localizacao(-19.92, -43.94, 0, StatusVeiculo.PARADO);
+        antiga.setTimestamp(LocalDateTime.now().minusMinutes(1));
+
+        assertThat(agregador.agregar(List.of(antiga)).dias()).hasSize(1);
+    }
+
+    private static EstatisticaDiariaMotorista unicoDia(EstatisticasMotoristaAgregador.Incrementos incrementos) {
+        assertThat(incrementos.dias()).hasSize(1);
+        return incrementos.dias().iterator().next();
+    }
+
+    private static Localizacao localizacao(double latitude, double longitude, int segundos, StatusVeiculo status) {
+        Localizacao localizacao = new Localizacao();
+        localizacao.setMotoristaId(MOTORISTA);
+        localizacao.setPedidoId(1L);
+        localizacao.setLatitude(latitude);
+        localizacao.setLongitude(longitude);
+        localizacao.setTimestamp(INICIO.plusSeconds(segundos));
+        localizacao.setStatusVeiculo(status);
+        return localizacao;
+    }
+}
@@ -0,0 +1,76 @@
+package com.logistica.rastreamento.ingest;
+
+import com.logistica.rastreamento.model.Localizacao;
+import com.logistica.rastreamento.model.StatusVeiculo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FiltroTrajetoriaTest {
+
+    private static final LocalDateTime INICIO = LocalDateTime.of(2024, 1, 10, 8, 0);
+    // ~11 m de latitude por segundo (cerca de 40 km/h para o norte)
+    private static final double GRAUS_POR_SEGUNDO = 0.0001;
+
+    private final FiltroTrajetoria filtro = new FiltroTrajetoria(new SimpleMeterRegistry(), true, 15, 60);
+
+    private static Localizacao localizacao(int segundos, double latitude, StatusVeiculo status) {
+        Localizacao localizacao = new Localizacao();
+        localizacao.setMotoristaId(1L);
+        localizacao.setPedidoId(10L);
+        localizacao.setLatitude(latitude);
+        localizacao.setLongitude(-43.94);
+        localizacao.setTimestamp(INICIO.plusSeconds(segundos));
+        localizacao.setStatusVeiculo(status);
+        return localizacao;
+    }
+
+    private static Localizacao emLinhaReta(int segundos) {
+        return localizacao(segundos, -19.92 + segundos * GRAUS_POR_SEGUNDO, StatusVeiculo.EM_MOVIMENTO);
+    }
+
+    private boolean persistir(Localizacao localizacao) {
+        boolean persistir = filtro.devePersistir(localizacao);
+        if (persistir) {
+            filtro.registrarPersistida(localizacao);
+        }
+        return persistir;
+    }
+
+    @Test
+    void localizacoes_previsiveis_pela_velocidade_sao_descartadas() {
+        assertThat(persistir(emLinhaReta(0))).isTrue();
+        assertThat(persistir(emLinhaReta(10))).isTrue();
+        assertThat(persistir(emLinhaReta(20))).isFalse();
+        assertThat(persistir(emLinhaReta(30))).isFalse();
+    }
+
+    @Test
+    void desvio_mudanca_de_status_e_intervalo_maximo_forcam_a_persistencia() {
+        persistir(emLinhaReta(0));
+        persistir(emLinhaReta(10));
+
+        // ~110 m fora da posição prevista
+        assertThat(filtro.devePersistir(localizacao(20, -19.92 + 20 * GRAUS_POR_SEGUNDO + 0.001,
+                StatusVeiculo.EM_MOVIMENTO))).isTrue();
+        assertThat(filtro.devePersistir(localizacao(20, -19.92 + 20 * GRAUS_POR_SEGUNDO,
+                StatusVeiculo.PARADO))).isTrue();
+        assertThat(filtro.devePersistir(emLinhaReta(70))).isTrue();
+    }
+
+    @Test
+    void referencia_so_muda_quando_a_persistencia_e_confirmada() {
+        persistir(emLinhaReta(0));
+        persistir(emLinhaReta(10));
+
+        // Desvio que a fila rejeitou: não é confirmado e não vira referência
+        Localizacao rejeitada = localizacao(20, -19.92 + 20 * GRAUS_POR_SEGUNDO + 0.001, StatusVeiculo.EM_MOVIMENTO);
+        assertThat(filtro.devePersistir(rejeitada)).isTrue();
+
+        // Continua previsível a partir da referência anterior
+        assertThat(filtro.devePersistir(emLinhaReta(30))).isFalse();
+    }
+}
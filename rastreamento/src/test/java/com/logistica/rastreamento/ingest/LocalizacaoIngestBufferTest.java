@@ -0,0 +1,133 @@
+package com.logistica.rastreamento.ingest;
+
+import com.logistica.rastreamento.model.Localizacao;
+import com.logistica.rastreamento.model.StatusVeiculo;
+import com.logistica.rastreamento.repository.LocalizacaoBatchRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LocalizacaoIngestBufferTest {
+
+    private final LocalizacaoBatchRepository repository = mock(LocalizacaoBatchRepository.class);
+    private final EstatisticasMotoristaAgregador agregador = mock(EstatisticasMotoristaAgregador.class);
+    private final ControleSequenciaLocalizacoes controleSequencia =
+            new ControleSequenciaLocalizacoes(new SimpleMeterRegistry(), 300);
+    private final EstatisticasMotoristaAgregador.Incrementos incrementos =
+            new EstatisticasMotoristaAgregador.Incrementos(List.of(), List.of());
+    private LocalizacaoIngestBuffer buffer;
+
+    @AfterEach
+    void encerrar() throws InterruptedException {
+        if (buffer != null) {
+            buffer.encerrar();
+        }
+    }
+
+    private LocalizacaoIngestBuffer iniciarBuffer() {
+        buffer = new LocalizacaoIngestBuffer(repository, agregador, controleSequencia, new SimpleMeterRegistry(),
+                100, 10, 20, 10, 5, 20);
+        buffer.iniciar();
+        return buffer;
+    }
+
+    private static Localizacao localizacao(LocalDateTime timestamp) {
+        Localizacao localizacao = new Localizacao();
+        localizacao.setMotoristaId(1L);
+        localizacao.setLatitude(-19.92);
+        localizacao.setLongitude(-43.94);
+        localizacao.setTimestamp(timestamp);
+        localizacao.setStatusVeiculo(StatusVeiculo.DISPONIVEL);
+        return localizacao;
+    }
+
+    @Test
+    void lote_com_falha_e_regravado_sem_agregar_novamente() {
+        when(agregador.agregar(anyList())).thenReturn(incrementos);
+        doThrow(new DataAccessResourceFailureException("banco indisponível"))
+                .doThrow(new DataAccessResourceFailureException("banco indisponível"))
+                .doNothing()
+                .when(repository).inserirEmLote(anyList(), any());
+
+        assertThat(iniciarBuffer().enfileirar(localizacao(LocalDateTime.now()))).isTrue();
+
+        verify(repository, timeout(2000).times(3)).inserirEmLote(anyList(), same(incrementos));
+        verify(agregador, times(1)).agregar(anyList());
+    }
+
+    @Test
+    void linha_recusada_pelo_banco_e_descartada_sem_travar_o_lote() throws InterruptedException {
+        LocalDateTime horario = LocalDateTime.now().withNano(0);
+        long horarioMs = horario.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        controleSequencia.classificar(1L, horarioMs, true);
+        Localizacao invalida = localizacao(horario);
+        Localizacao valida = localizacao(horario.plusSeconds(1));
+        Localizacao seguinte = localizacao(horario.plusSeconds(2));
+        when(agregador.agregar(anyList())).thenReturn(incrementos);
+        // O buffer reaproveita a lista do lote: guarda cópias do que foi gravado
+        BlockingQueue<List<Localizacao>> gravados = new LinkedBlockingQueue<>();
+        AtomicInteger recusas = new AtomicInteger();
+        doAnswer(chamada -> {
+            List<Localizacao> lote = chamada.getArgument(0);
+            if (lote.contains(invalida)) {
+                recusas.incrementAndGet();
+                throw new DataIntegrityViolationException("violação de restrição");
+            }
+            gravados.add(new ArrayList<>(lote));
+            return null;
+        }).when(repository).inserirEmLote(anyList(), any());
+
+        iniciarBuffer().enfileirar(invalida);
+        buffer.enfileirar(valida);
+
+        assertThat(gravados.poll(2, TimeUnit.SECONDS)).containsExactly(valida);
+        buffer.enfileirar(seguinte);
+        assertThat(gravados.poll(2, TimeUnit.SECONDS)).containsExactly(seguinte);
+        // Sem retentativa: no máximo o lote inteiro e a própria linha
+        assertThat(recusas.get()).isLessThanOrEqualTo(2);
+        assertThat(controleSequencia.classificar(1L, horarioMs, true))
+                .isEqualTo(ControleSequenciaLocalizacoes.Classificacao.NOVA);
+    }
+
+    @Test
+    void lote_abandonado_no_encerramento_libera_o_reenvio() throws InterruptedException {
+        LocalDateTime horario = LocalDateTime.now().withNano(0);
+        long horarioMs = horario.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        assertThat(controleSequencia.classificar(1L, horarioMs, true))
+                .isEqualTo(ControleSequenciaLocalizacoes.Classificacao.NOVA);
+        when(agregador.agregar(anyList())).thenReturn(incrementos);
+        doThrow(new DataAccessResourceFailureException("banco indisponível"))
+                .when(repository).inserirEmLote(anyList(), any());
+
+        iniciarBuffer().enfileirar(localizacao(horario));
+        verify(repository, timeout(2000).atLeastOnce()).inserirEmLote(anyList(), any());
+        buffer.encerrar();
+        buffer = null;
+
+        assertThat(controleSequencia.classificar(1L, horarioMs, true))
+                .isEqualTo(ControleSequenciaLocalizacoes.Classificacao.NOVA);
+    }
+}
@@ -0,0 +1,53 @@
+package com.logistica.rastreamento.message;
+
+import com.logistica.rastreamento.geo.EstimadorChegada;
+import com.logistica.rastreamento.model.Incidente;
+import com.logistica.rastreamento.model.TipoIncidente;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class IncidenteEventSenderTest {
+
+    private static final LocalDateTime AGORA = LocalDateTime.of(2024, 5, 10, 12, 0);
+
+    private final EstimadorChegada estimadorChegada = mock(EstimadorChegada.class);
+    private final IncidenteEventSender sender = new IncidenteEventSender(mock(RabbitTemplate.class), estimadorChegada);
+
+    @Test
+    void atraso_diminui_com_a_distancia_da_rota_ao_incidente() {
+        when(estimadorChegada.velocidadeMotoristaKmMin(7L)).thenReturn(0.5);
+        Incidente incidente = incidente(AGORA.plusHours(2));
+
+        assertThat(sender.atrasoEstimadoMinutos(incidente, 7L, 3.0, 0.0, AGORA)).isEqualTo(20);
+        assertThat(sender.atrasoEstimadoMinutos(incidente, 7L, 3.0, 1.0, AGORA)).isEqualTo(16);
+        assertThat(sender.atrasoEstimadoMinutos(incidente, 7L, 3.0, 5.0, AGORA)).isZero();
+    }
+
+    @Test
+    void motorista_que_chega_depois_da_expiracao_nao_tem_atraso() {
+        Incidente incidente = incidente(AGORA.plusMinutes(30));
+
+        // 20 km a 0,5 km/min: chega em 40 minutos, depois da expiração
+        when(estimadorChegada.velocidadeMotoristaKmMin(7L)).thenReturn(0.5);
+        assertThat(sender.atrasoEstimadoMinutos(incidente, 7L, 20.0, 0.0, AGORA)).isZero();
+
+        // No dobro da velocidade, chega em 20 minutos
+        when(estimadorChegada.velocidadeMotoristaKmMin(7L)).thenReturn(1.0);
+        assertThat(sender.atrasoEstimadoMinutos(incidente, 7L, 20.0, 0.0, AGORA)).isEqualTo(20);
+    }
+
+    private static Incidente incidente(LocalDateTime expiracao) {
+        Incidente incidente = new Incidente();
+        incidente.setId(1L);
+        incidente.setTipo(TipoIncidente.BLOQUEIO);
+        incidente.setRaioImpactoKm(5.0);
+        incidente.setDataExpiracao(expiracao);
+        return incidente;
+    }
+}
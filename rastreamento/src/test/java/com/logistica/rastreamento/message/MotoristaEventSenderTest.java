@@ -0,0 +1,77 @@
+package com.logistica.rastreamento.message;
+
+import com.logistica.rastreamento.model.StatusVeiculo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class MotoristaEventSenderTest {
+
+    private final RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+
+    @Test
+    void status_repetido_nao_e_publicado_de_novo() {
+        MotoristaEventSender sender = new MotoristaEventSender(rabbitTemplate, new SimpleMeterRegistry(), 10_000);
+
+        sender.enviarNotificacaoStatusMotorista(7L, StatusVeiculo.DISPONIVEL);
+        sender.enviarNotificacaoStatusMotorista(7L, StatusVeiculo.DISPONIVEL);
+
+        verify(rabbitTemplate, times(1)).convertAndSend(any(), eq("motorista.status.atualizar"), any(Object.class));
+    }
+
+    @Test
+    void falha_na_publicacao_desfaz_a_transicao() {
+        MotoristaEventSender sender = new MotoristaEventSender(rabbitTemplate, new SimpleMeterRegistry(), 10_000);
+        doThrow(new AmqpException("broker indisponível"))
+                .doNothing()
+                .when(rabbitTemplate).convertAndSend(any(), anyString(), any(Object.class));
+
+        sender.enviarNotificacaoStatusMotorista(7L, StatusVeiculo.DISPONIVEL);
+        sender.enviarNotificacaoStatusMotorista(7L, StatusVeiculo.DISPONIVEL);
+
+        verify(rabbitTemplate, times(2)).convertAndSend(any(), eq("motorista.status.atualizar"), any(Object.class));
+    }
+
+    @Test
+    void falha_na_confirmacao_do_debounce_e_tentada_de_novo() {
+        MotoristaEventSender sender = new MotoristaEventSender(rabbitTemplate, new SimpleMeterRegistry(), 0);
+        sender.enviarNotificacaoStatusMotorista(7L, StatusVeiculo.PARADO);
+        sender.enviarNotificacaoStatusMotorista(7L, StatusVeiculo.EM_MOVIMENTO);
+
+        doThrow(new AmqpException("broker indisponível"))
+                .doNothing()
+                .when(rabbitTemplate).convertAndSend(any(), anyString(), any(Object.class));
+        sender.publicarStatusConfirmados();
+        sender.publicarStatusConfirmados();
+        sender.publicarStatusConfirmados();
+
+        // PARADO, a tentativa que falhou e a que publicou EM_MOVIMENTO
+        verify(rabbitTemplate, times(3)).convertAndSend(any(), anyString(), any(Object.class));
+    }
+
+    @Test
+    void publicacao_forcada_que_falha_volta_ao_status_anterior() {
+        MotoristaEventSender sender = new MotoristaEventSender(rabbitTemplate, new SimpleMeterRegistry(), 10_000);
+        sender.enviarNotificacaoStatusMotorista(7L, StatusVeiculo.EM_MOVIMENTO);
+
+        doThrow(new AmqpException("broker indisponível"))
+                .when(rabbitTemplate).convertAndSend(any(), anyString(), any(Object.class));
+        sender.forcarNotificacaoStatusMotorista(7L, StatusVeiculo.DISPONIVEL);
+
+        // DISPONIVEL não foi publicado: a próxima localização com esse status o publica
+        doNothing().when(rabbitTemplate).convertAndSend(any(), anyString(), any(Object.class));
+        sender.enviarNotificacaoStatusMotorista(7L, StatusVeiculo.DISPONIVEL);
+
+        verify(rabbitTemplate, times(3)).convertAndSend(any(), anyString(), any(Object.class));
+    }
+}
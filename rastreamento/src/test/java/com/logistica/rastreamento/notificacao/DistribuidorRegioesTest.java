@@ -0,0 +1,81 @@
+package com.logistica.rastreamento.notificacao;
+
+import com.logistica.rastreamento.cache.UltimaPosicao;
+import com.logistica.rastreamento.cache.UltimaPosicaoCache;
+import com.logistica.rastreamento.dto.AtualizacaoRegiaoDTO;
+import com.logistica.rastreamento.geo.RetanguloGeografico;
+import com.logistica.rastreamento.model.StatusVeiculo;
+import com.logistica.rastreamento.service.RegiaoObserver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DistribuidorRegioesTest {
+
+    private static final RetanguloGeografico REGIAO = new RetanguloGeografico(-20.0, -44.0, -19.8, -43.8);
+
+    private final UltimaPosicaoCache ultimaPosicaoCache = mock(UltimaPosicaoCache.class);
+    private final DistribuidorRegioes distribuidor = new DistribuidorRegioes(
+            ultimaPosicaoCache, new SimpleMeterRegistry(), 5.0, 10000, 50, 10000, 600);
+
+    @AfterEach
+    void encerrar() {
+        distribuidor.encerrar();
+    }
+
+    @Test
+    void observador_que_falha_no_envio_e_removido_e_encerrado() {
+        when(ultimaPosicaoCache.motoristas()).thenReturn(List.of());
+        RegiaoObserver observer = mock(RegiaoObserver.class);
+        when(observer.prontoParaReceber()).thenReturn(true);
+        doThrow(new IllegalStateException("stream cancelado")).when(observer).onAtualizacao(any());
+
+        distribuidor.registrar(REGIAO, observer);
+        distribuidor.iniciar();
+
+        verify(observer, timeout(2000)).encerrar(anyString());
+        distribuidor.publicar(posicao(1L, LocalDateTime.now()));
+        // Removido: nenhum quadro novo é montado para ele
+        verify(observer, after(200).times(1)).onAtualizacao(any());
+    }
+
+    @Test
+    void motorista_sem_localizacao_recente_sai_da_regiao() {
+        when(ultimaPosicaoCache.motoristas()).thenReturn(List.of());
+        RegiaoObserver observer = mock(RegiaoObserver.class);
+        when(observer.prontoParaReceber()).thenReturn(true);
+        distribuidor.registrar(REGIAO, observer);
+        distribuidor.publicar(posicao(1L, LocalDateTime.now().minusMinutes(11)));
+        distribuidor.publicar(posicao(2L, LocalDateTime.now().minusMinutes(5)));
+        distribuidor.iniciar();
+        verify(observer, timeout(2000)).onAtualizacao(any());
+
+        distribuidor.removerDesatualizados();
+
+        ArgumentCaptor<AtualizacaoRegiaoDTO> quadros = ArgumentCaptor.forClass(AtualizacaoRegiaoDTO.class);
+        verify(observer, timeout(2000).times(2)).onAtualizacao(quadros.capture());
+        assertThat(quadros.getAllValues().get(0).getEntraram())
+                .extracting(UltimaPosicao::motoristaId)
+                .containsExactlyInAnyOrder(1L, 2L);
+        assertThat(quadros.getAllValues().get(1).getSairam()).containsExactly(1L);
+    }
+
+    private static UltimaPosicao posicao(long motoristaId, LocalDateTime timestamp) {
+        return new UltimaPosicao(motoristaId, null, -19.92, -43.94, timestamp, StatusVeiculo.DISPONIVEL);
+    }
+}
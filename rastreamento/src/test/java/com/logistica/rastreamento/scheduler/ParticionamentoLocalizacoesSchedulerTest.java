@@ -0,0 +1,56 @@
+package com.logistica.rastreamento.scheduler;
+
+import com.logistica.rastreamento.model.GranularidadeParticao;
+import com.logistica.rastreamento.repository.ParticaoLocalizacaoRepository;
+import com.logistica.rastreamento.repository.ParticaoLocalizacaoRepository.Particao;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ParticionamentoLocalizacoesSchedulerTest {
+
+    private final ParticaoLocalizacaoRepository repository = mock(ParticaoLocalizacaoRepository.class);
+    private final ParticionamentoLocalizacoesScheduler scheduler =
+            new ParticionamentoLocalizacoesScheduler(repository, true, GranularidadeParticao.DIARIA, 7, 90);
+
+    @Test
+    void retencao_alcanca_as_particoes_antigas_e_a_particao_padrao() {
+        LocalDate hoje = LocalDate.now();
+        Particao antiga = particao(hoje.minusDays(100));
+        Particao recente = particao(hoje.minusDays(10));
+        when(repository.listarParticoes()).thenReturn(List.of(antiga, recente));
+
+        scheduler.manterParticoes();
+
+        verify(repository).consolidarEDescartar(antiga.nome());
+        verify(repository, never()).consolidarEDescartar(recente.nome());
+        verify(repository).consolidarEDescartarPadrao(hoje.minusDays(90));
+        verify(repository).contarNaParticaoPadrao();
+    }
+
+    @Test
+    void sem_retencao_a_particao_padrao_e_apenas_verificada() {
+        ParticionamentoLocalizacoesScheduler semRetencao =
+                new ParticionamentoLocalizacoesScheduler(repository, true, GranularidadeParticao.DIARIA, 7, 0);
+        when(repository.listarParticoes()).thenReturn(List.of());
+
+        semRetencao.manterParticoes();
+
+        verify(repository, never()).consolidarEDescartar(anyString());
+        verify(repository, never()).consolidarEDescartarPadrao(any());
+        verify(repository).contarNaParticaoPadrao();
+    }
+
+    private static Particao particao(LocalDate inicio) {
+        return new Particao(ParticaoLocalizacaoRepository.nomeParticao(GranularidadeParticao.DIARIA, inicio),
+                inicio, inicio.plusDays(1));
+    }
+}
@@ -0,0 +1,126 @@
+package com.logistica.rastreamento.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class DistanciaUtilsTest {
+
+    private static final int PONTOS = 2_000;
+
+    @Test
+    void distancias_em_lote_coincidem_com_o_calculo_ponto_a_ponto() {
+        Random random = new Random(42);
+        double[] latitudes = new double[PONTOS];
+        double[] longitudes = new double[PONTOS];
+        preencher(random, latitudes, longitudes, -90, 90, -180, 180);
+        double[] distancias = new double[PONTOS];
+
+        DistanciaUtils.calculateDistancesInKm(-19.92, -43.94, latitudes, longitudes, distancias);
+
+        for (int i = 0; i < PONTOS; i++) {
+            assertThat(distancias[i]).isCloseTo(
+                    DistanciaUtils.calculateDistanceInKm(-19.92, -43.94, latitudes[i], longitudes[i]), within(1e-9));
+        }
+    }
+
+    @Test
+    void comprimento_do_trajeto_soma_os_trechos_ate_a_quantidade_informada() {
+        double[] latitudes = {-19.92, -19.93, -19.95, -19.90, 10.0};
+        double[] longitudes = {-43.94, -43.95, -43.93, -43.90, 10.0};
+        double esperado = 0;
+        for (int i = 1; i < 4; i++) {
+            esperado += DistanciaUtils.calculateDistanceInKm(latitudes[i - 1], longitudes[i - 1], latitudes[i], longitudes[i]);
+        }
+
+        assertThat(DistanciaUtils.calculatePathLengthInKm(latitudes, longitudes, 4)).isCloseTo(esperado, within(1e-9));
+        assertThat(DistanciaUtils.calculatePathLengthInKm(latitudes, longitudes, 1)).isZero();
+    }
+
+    @Test
+    void filtro_por_raio_coincide_com_a_busca_exaustiva() {
+        Random random = new Random(7);
+        // Latitudes médias, altas (convergência dos meridianos) e círculos que contêm o polo
+        double[][] referencias = {{-19.92, -43.94}, {60.0, 10.0}, {85.0, 0.0}, {89.9, 120.0}, {-88.0, -60.0}};
+        double[] raios = {1.0, 50.0, 500.0, 2_000.0};
+        double[] latitudes = new double[PONTOS];
+        double[] longitudes = new double[PONTOS];
+        int[] indices = new int[PONTOS];
+        for (double[] referencia : referencias) {
+            double lat = referencia[0];
+            double lon = referencia[1];
+            preencher(random, latitudes, longitudes, Math.max(lat - 25, -90), Math.min(lat + 25, 90), -180, 180);
+            for (double raio : raios) {
+                int total = DistanciaUtils.filterWithinRadiusKm(lat, lon, latitudes, longitudes, raio, indices);
+
+                assertThat(Arrays.copyOf(indices, total))
+                        .as("referência (%s, %s), raio %s km", lat, lon, raio)
+                        .containsExactly(buscaExaustiva(lat, lon, latitudes, longitudes, raio));
+            }
+        }
+    }
+
+    @Test
+    void filtro_por_raio_atravessa_o_antimeridiano() {
+        double[] latitudes = {0.0, 0.0, 0.0};
+        double[] longitudes = {-179.99, 179.0, -179.0};
+        int[] indices = new int[3];
+
+        // 0,02° de longitude no equador: pouco mais de 2 km, pelo lado do antimeridiano
+        int total = DistanciaUtils.filterWithinRadiusKm(0.0, 179.99, latitudes, longitudes, 5.0, indices);
+
+        assertThat(Arrays.copyOf(indices, total)).containsExactly(0);
+    }
+
+    @Test
+    void aproximacao_equiretangular_fica_abaixo_de_um_milesimo_ate_20_km_em_latitudes_medias() {
+        Random random = new Random(11);
+        for (double lat : new double[]{-45.0, -19.92, 0.0, 30.0, 45.0}) {
+            double cosLat = DistanciaUtils.cosLatitude(lat);
+            double[] latitudes = new double[PONTOS];
+            double[] longitudes = new double[PONTOS];
+            // Pontos em qualquer direção, a até 20 km da referência
+            for (int i = 0; i < PONTOS; i++) {
+                double direcao = random.nextDouble() * 2 * Math.PI;
+                double graus = (0.5 + random.nextDouble() * 19.5) / 111.2;
+                latitudes[i] = lat + graus * Math.sin(direcao);
+                longitudes[i] = -43.94 + graus * Math.cos(direcao) / cosLat;
+            }
+            double[] aproximadas = new double[PONTOS];
+            DistanciaUtils.calculateApproximateDistancesInKm(lat, -43.94, latitudes, longitudes, aproximadas);
+
+            for (int i = 0; i < PONTOS; i++) {
+                double exata = DistanciaUtils.calculateDistanceInKm(lat, -43.94, latitudes[i], longitudes[i]);
+                double aproximada = DistanciaUtils.calculateApproximateDistanceInKm(lat, -43.94,
+                        latitudes[i], longitudes[i], cosLat);
+                assertThat(aproximadas[i]).isCloseTo(aproximada, within(1e-9));
+                assertThat(aproximada).as("latitude %s", lat).isCloseTo(exata, within(exata * 1e-3));
+            }
+        }
+    }
+
+    private static void preencher(Random random, double[] latitudes, double[] longitudes,
+                                  double latMin, double latMax, double lonMin, double lonMax) {
+        for (int i = 0; i < latitudes.length; i++) {
+            latitudes[i] = latMin + random.nextDouble() * (latMax - latMin);
+            longitudes[i] = lonMin + random.nextDouble() * (lonMax - lonMin);
+        }
+    }
+
+    private static Integer[] buscaExaustiva(double lat, double lon, double[] latitudes, double[] longitudes,
+                                            double raioKm) {
+        List<Integer> indices = new ArrayList<>();
+        for (int i = 0; i < latitudes.length; i++) {
+            if (DistanciaUtils.calculateDistanceInKm(lat, lon, latitudes[i], longitudes[i]) <= raioKm) {
+                indices.add(i);
+            }
+        }
+        return indices.toArray(Integer[]::new);
+    }
+}
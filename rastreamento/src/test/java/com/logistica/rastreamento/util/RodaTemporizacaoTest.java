@@ -0,0 +1,131 @@
+package com.logistica.rastreamento.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RodaTemporizacaoTest {
+
+    // Com ticks de 1 ms, milissegundos e ticks coincidem
+    private static final long TICK_MS = 1;
+    // 64^4 ticks: além disso o prazo fica no último nível e é reposicionado
+    private static final long ALCANCE = 1L << 24;
+
+    @Test
+    void expira_exatamente_no_tick_nas_fronteiras_dos_niveis() {
+        long[] prazos = {1, 63, 64, 65, 4095, 4096, 4097, 262_143, 262_144, ALCANCE - 1, ALCANCE};
+        for (long prazo : prazos) {
+            RodaTemporizacao<Long> roda = new RodaTemporizacao<>(TICK_MS, 0);
+            roda.agendar(prazo, prazo);
+
+            assertThat(roda.avancar(prazo - 1)).as("antes do prazo %d", prazo).isEmpty();
+            assertThat(roda.avancar(prazo)).as("no prazo %d", prazo).containsExactly(prazo);
+            assertThat(roda.tamanho()).isZero();
+        }
+    }
+
+    @Test
+    void fronteiras_sao_respeitadas_a_partir_de_um_tick_qualquer() {
+        // Início fora do alinhamento, para que os prazos cruzem as fronteiras em posições diferentes
+        long inicio = 4_000;
+        long[] prazos = {63, 64, 4095, 4096};
+        RodaTemporizacao<Long> roda = new RodaTemporizacao<>(TICK_MS, inicio);
+        for (long prazo : prazos) {
+            roda.agendar(prazo, inicio + prazo);
+        }
+
+        for (long prazo : prazos) {
+            assertThat(roda.avancar(inicio + prazo - 1)).as("antes do prazo %d", prazo).isEmpty();
+            assertThat(roda.avancar(inicio + prazo)).as("no prazo %d", prazo).containsExactly(prazo);
+        }
+    }
+
+    @Test
+    void prazo_alem_do_alcance_e_reposicionado_ate_expirar_no_tick_exato() {
+        long prazo = 3 * ALCANCE + 12_345;
+        RodaTemporizacao<String> roda = new RodaTemporizacao<>(TICK_MS, 0);
+        roda.agendar("longo", prazo);
+
+        assertThat(roda.avancar(ALCANCE)).isEmpty();
+        assertThat(roda.avancar(2 * ALCANCE)).isEmpty();
+        assertThat(roda.avancar(prazo - 1)).isEmpty();
+        assertThat(roda.tamanho()).isEqualTo(1);
+        assertThat(roda.avancar(prazo)).containsExactly("longo");
+    }
+
+    @Test
+    void cancelado_nao_expira_e_cancelar_de_novo_nao_altera_o_tamanho() {
+        RodaTemporizacao<String> roda = new RodaTemporizacao<>(TICK_MS, 0);
+        RodaTemporizacao.Agendamento<String> curto = roda.agendar("curto", 10);
+        RodaTemporizacao.Agendamento<String> longo = roda.agendar("longo", 5_000);
+        roda.agendar("mantido", 5_000);
+
+        roda.cancelar(curto);
+        roda.cancelar(curto);
+        assertThat(roda.tamanho()).isEqualTo(2);
+
+        // Cancelado depois de descer para o primeiro nível
+        assertThat(roda.avancar(4_999)).isEmpty();
+        roda.cancelar(longo);
+
+        assertThat(roda.avancar(10_000)).containsExactly("mantido");
+        assertThat(roda.tamanho()).isZero();
+
+        // Cancelar um item já expirado não altera o tamanho
+        roda.cancelar(longo);
+        assertThat(roda.tamanho()).isZero();
+    }
+
+    @Test
+    void prazo_vencido_expira_no_proximo_tick() {
+        RodaTemporizacao<String> roda = new RodaTemporizacao<>(TICK_MS, 1_000);
+
+        roda.agendar("vencido", 500);
+
+        assertThat(roda.avancar(1_000)).isEmpty();
+        assertThat(roda.avancar(1_001)).containsExactly("vencido");
+    }
+
+    @Test
+    void ticks_maiores_arredondam_o_prazo_para_cima() {
+        RodaTemporizacao<String> roda = new RodaTemporizacao<>(1000, 0);
+
+        roda.agendar("item", 1_500);
+
+        assertThat(roda.avancar(1_999)).isEmpty();
+        assertThat(roda.avancar(2_000)).containsExactly("item");
+    }
+
+    @Test
+    void cada_item_expira_no_seu_tick_com_avancos_irregulares() {
+        Random random = new Random(42);
+        RodaTemporizacao<Integer> roda = new RodaTemporizacao<>(TICK_MS, 0);
+        Map<Integer, Long> prazos = new HashMap<>();
+        for (int i = 0; i < 5_000; i++) {
+            long prazo = 1 + (random.nextInt(4) == 0 ? random.nextInt(300_000) : random.nextInt(5_000));
+            prazos.put(i, prazo);
+            roda.agendar(i, prazo);
+        }
+
+        long agora = 0;
+        List<Integer> expirados = new ArrayList<>();
+        while (agora < 300_001) {
+            long anterior = agora;
+            agora += 1 + random.nextInt(700);
+            for (Integer item : roda.avancar(agora)) {
+                expirados.add(item);
+                // Expira no avanço que cruza o prazo: nem antes, nem em um avanço posterior
+                assertThat(prazos.get(item)).as("item %d", item).isGreaterThan(anterior).isLessThanOrEqualTo(agora);
+            }
+        }
+
+        assertThat(expirados).hasSize(prazos.size());
+        assertThat(expirados).isSortedAccordingTo((a, b) -> Long.compare(prazos.get(a), prazos.get(b)));
+    }
+}
@@ -0,0 +1,107 @@
+package com.logistica.rastreamento.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SimplificadorTrajetoriaTest {
+
+    private static final double LATITUDE = -19.92;
+    private static final double LONGITUDE = -43.94;
+    private static final double METROS_POR_GRAU = 111_320.0;
+
+    @Test
+    void pontos_colineares_sao_removidos() {
+        double[] latitudes = new double[10];
+        double[] longitudes = new double[10];
+        for (int i = 0; i < latitudes.length; i++) {
+            latitudes[i] = LATITUDE + i * 0.001;
+            longitudes[i] = LONGITUDE + i * 0.001;
+        }
+
+        assertThat(SimplificadorTrajetoria.simplificar(latitudes, longitudes, 1, 0)).containsExactly(0, 9);
+    }
+
+    @Test
+    void esquina_e_mantida_enquanto_a_tolerancia_for_menor_que_o_desvio() {
+        // Quatro trechos para o norte e quatro para o leste (~110 m cada): a esquina desvia ~390 m da reta 0-8
+        double[] latitudes = new double[9];
+        double[] longitudes = new double[9];
+        for (int i = 0; i < 9; i++) {
+            latitudes[i] = LATITUDE + Math.min(i, 4) * 0.001;
+            longitudes[i] = LONGITUDE + Math.max(i - 4, 0) * 0.001;
+        }
+
+        assertThat(SimplificadorTrajetoria.simplificar(latitudes, longitudes, 1, 0)).containsExactly(0, 4, 8);
+        assertThat(SimplificadorTrajetoria.simplificar(latitudes, longitudes, 500, 0)).containsExactly(0, 8);
+    }
+
+    @Test
+    void pontos_removidos_ficam_dentro_da_tolerancia() {
+        Random random = new Random(3);
+        double[] latitudes = new double[500];
+        double[] longitudes = new double[500];
+        for (int i = 0; i < latitudes.length; i++) {
+            latitudes[i] = LATITUDE + i * 0.0002 + (random.nextDouble() - 0.5) * 0.0004;
+            longitudes[i] = LONGITUDE + Math.sin(i / 40.0) * 0.005 + (random.nextDouble() - 0.5) * 0.0004;
+        }
+
+        for (double tolerancia : new double[]{5, 20, 100}) {
+            int[] mantidos = SimplificadorTrajetoria.simplificar(latitudes, longitudes, tolerancia, 0);
+            assertThat(mantidos[0]).isZero();
+            assertThat(mantidos[mantidos.length - 1]).isEqualTo(latitudes.length - 1);
+            for (int k = 0; k + 1 < mantidos.length; k++) {
+                for (int i = mantidos[k] + 1; i < mantidos[k + 1]; i++) {
+                    assertThat(distanciaAoSegmento(latitudes, longitudes, i, mantidos[k], mantidos[k + 1]))
+                            .isLessThanOrEqualTo(tolerancia + 1e-6);
+                }
+            }
+        }
+    }
+
+    @Test
+    void maximo_de_pontos_mantem_os_mais_relevantes_na_ordem_da_trajetoria() {
+        Random random = new Random(5);
+        double[] latitudes = new double[200];
+        double[] longitudes = new double[200];
+        for (int i = 0; i < latitudes.length; i++) {
+            latitudes[i] = LATITUDE + i * 0.0003;
+            longitudes[i] = LONGITUDE + (random.nextDouble() - 0.5) * 0.002;
+        }
+
+        int[] anterior = SimplificadorTrajetoria.simplificar(latitudes, longitudes, 0, 2);
+        assertThat(anterior).containsExactly(0, 199);
+        for (int maxPontos = 3; maxPontos <= 50; maxPontos++) {
+            int[] mantidos = SimplificadorTrajetoria.simplificar(latitudes, longitudes, 0, maxPontos);
+            assertThat(mantidos).hasSize(maxPontos).isSorted().contains(0, 199);
+            // Aumentar o limite só acrescenta pontos
+            assertThat(mantidos).contains(anterior);
+            anterior = mantidos;
+        }
+        // Limite abaixo de dois ainda mantém os extremos
+        assertThat(SimplificadorTrajetoria.simplificar(latitudes, longitudes, 0, 1)).containsExactly(0, 199);
+    }
+
+    @Test
+    void trajetorias_com_ate_dois_pontos_sao_mantidas() {
+        assertThat(SimplificadorTrajetoria.simplificar(new double[]{LATITUDE}, new double[]{LONGITUDE}, 10, 0))
+                .containsExactly(0);
+        assertThat(SimplificadorTrajetoria.simplificar(new double[0], new double[0], 10, 0)).isEmpty();
+    }
+
+    private static double distanciaAoSegmento(double[] latitudes, double[] longitudes, int ponto, int inicio, int fim) {
+        double cos = Math.cos(Math.toRadians(latitudes[0]));
+        double px = longitudes[ponto] * METROS_POR_GRAU * cos;
+        double py = latitudes[ponto] * METROS_POR_GRAU;
+        double ax = longitudes[inicio] * METROS_POR_GRAU * cos;
+        double ay = latitudes[inicio] * METROS_POR_GRAU;
+        double bx = longitudes[fim] * METROS_POR_GRAU * cos;
+        double by = latitudes[fim] * METROS_POR_GRAU;
+        double dx = bx - ax;
+        double dy = by - ay;
+        double t = Math.max(0, Math.min(1, ((px - ax) * dx + (py - ay) * dy) / (dx * dx + dy * dy)));
+        return Math.hypot(ax + t * dx - px, ay + t * dy - py);
+    }
+}